@@ -0,0 +1,84 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.services.docs.v1.model.Document;
+
+/**
+ * Throughput of the two per-document CPU paths: rendering the article JSON and indexing the
+ * document (which is where the images to upload are collected). Run with {@code -prof gc} to
+ * see {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractorBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String documentSize;
+
+    /** Only the rendering benchmarks depend on the output format. */
+    @State(Scope.Benchmark)
+    public static class Format {
+        @Param({"true", "false"})
+        public boolean pretty;
+
+        @Param({"false", "true"})
+        public boolean styleDictionary;
+    }
+
+    private Document document;
+    private DocumentIndex index;
+    private GoogleDocExtractor extractor;
+    private GoogleDocExtractor dictionaryExtractor;
+
+    @Setup
+    public void setUp() {
+        document = SyntheticDocuments.build(SyntheticDocuments.preset(documentSize));
+        index = DocumentIndex.build(document);
+        // No S3 client: only the extraction paths are exercised.
+        extractor = new GoogleDocExtractor(null, "benchmark-bucket");
+        dictionaryExtractor = new GoogleDocExtractor(null, "benchmark-bucket");
+        dictionaryExtractor.enableStyleDictionary();
+    }
+
+    private GoogleDocExtractor extractor(Format format) {
+        return format.styleDictionary ? dictionaryExtractor : extractor;
+    }
+
+    /** Index build plus JSON rendering, as the extract stage does it. */
+    @Benchmark
+    public void extractContentAsJson(Format format) throws IOException {
+        extractor(format).extractContentAsJson(document, Writer.nullWriter(), format.pretty);
+    }
+
+    /** JSON rendering alone, from a prebuilt index. */
+    @Benchmark
+    public void renderFromIndex(Format format) throws IOException {
+        extractor(format).extractContentAsJson(index, Writer.nullWriter(), format.pretty);
+    }
+
+    /** The single walk that finds the introduction, references and images to upload. */
+    @Benchmark
+    public List<DocumentIndex.ImageRef> collectImages() {
+        return DocumentIndex.build(document).getImages();
+    }
+}
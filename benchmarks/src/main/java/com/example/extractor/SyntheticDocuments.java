@@ -0,0 +1,199 @@
+package com.example.extractor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.api.services.docs.v1.model.Body;
+import com.google.api.services.docs.v1.model.Bullet;
+import com.google.api.services.docs.v1.model.Dimension;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+import com.google.api.services.docs.v1.model.ImageProperties;
+import com.google.api.services.docs.v1.model.InlineObject;
+import com.google.api.services.docs.v1.model.InlineObjectElement;
+import com.google.api.services.docs.v1.model.InlineObjectProperties;
+import com.google.api.services.docs.v1.model.Link;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.ParagraphStyle;
+import com.google.api.services.docs.v1.model.Size;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.Table;
+import com.google.api.services.docs.v1.model.TableCell;
+import com.google.api.services.docs.v1.model.TableRow;
+import com.google.api.services.docs.v1.model.TextRun;
+import com.google.api.services.docs.v1.model.TextStyle;
+import com.google.api.services.docs.v1.model.WeightedFontFamily;
+
+/**
+ * Builds {@link Document} instances shaped like the articles the extractor processes: a title,
+ * an "Introduction" heading and paragraph, body paragraphs with styled runs, nested tables,
+ * inline images and a trailing "References" section. Documents are deterministic for a given
+ * {@link Shape} so benchmark runs are comparable.
+ */
+public final class SyntheticDocuments {
+
+    /** How big a generated document is. */
+    public static final class Shape {
+        int paragraphs = 200;
+        int runsPerParagraph = 4;
+        int tables = 4;
+        int tableDepth = 2;
+        int images = 10;
+        int references = 20;
+        long seed = 42;
+
+        public Shape paragraphs(int paragraphs) { this.paragraphs = paragraphs; return this; }
+        public Shape runsPerParagraph(int runsPerParagraph) { this.runsPerParagraph = runsPerParagraph; return this; }
+        public Shape tables(int tables) { this.tables = tables; return this; }
+        public Shape tableDepth(int tableDepth) { this.tableDepth = tableDepth; return this; }
+        public Shape images(int images) { this.images = images; return this; }
+        public Shape references(int references) { this.references = references; return this; }
+        public Shape seed(long seed) { this.seed = seed; return this; }
+    }
+
+    /** Named presets used as JMH {@code @Param} values. */
+    public static Shape preset(String name) {
+        return switch (name) {
+            case "small" -> new Shape().paragraphs(20).runsPerParagraph(2).tables(1).tableDepth(1).images(2).references(3);
+            case "medium" -> new Shape();
+            case "large" -> new Shape().paragraphs(2000).runsPerParagraph(6).tables(20).tableDepth(3).images(60).references(100);
+            default -> throw new IllegalArgumentException("Unknown document preset: " + name);
+        };
+    }
+
+    private static final String[] WORDS = {
+        "extraction", "pipeline", "document", "the", "of", "latency", "throughput", "and",
+        "allocation", "Übersicht", "café", "<tag>", "\"quoted\"", "data", "a", "is"
+    };
+
+    private final Shape shape;
+    private final Random random;
+    private final Map<String, InlineObject> inlineObjects = new HashMap<>();
+    private int nextObjectId = 0;
+
+    private SyntheticDocuments(Shape shape) {
+        this.shape = shape;
+        this.random = new Random(shape.seed);
+    }
+
+    public static Document build(Shape shape) {
+        return new SyntheticDocuments(shape).document();
+    }
+
+    private Document document() {
+        List<StructuralElement> body = new ArrayList<>();
+        body.add(heading("Introduction"));
+        body.add(paragraph("NORMAL_TEXT"));
+
+        // Spread tables and images evenly over the body paragraphs.
+        int tableEvery = shape.tables > 0 ? Math.max(1, shape.paragraphs / shape.tables) : Integer.MAX_VALUE;
+        int imageEvery = shape.images > 0 ? Math.max(1, shape.paragraphs / shape.images) : Integer.MAX_VALUE;
+        int tables = 0;
+        int images = 0;
+        for (int i = 0; i < shape.paragraphs; i++) {
+            body.add(paragraph(i % 10 == 0 ? "HEADING_2" : "NORMAL_TEXT"));
+            if (i % imageEvery == 0 && images < shape.images) {
+                body.add(image());
+                images++;
+            }
+            if (i % tableEvery == tableEvery - 1 && tables < shape.tables) {
+                body.add(table(shape.tableDepth));
+                tables++;
+            }
+        }
+
+        if (shape.references > 0) {
+            body.add(heading("References"));
+            for (int i = 0; i < shape.references; i++) {
+                body.add(new StructuralElement().setParagraph(new Paragraph().setElements(List.of(
+                    run("[" + (i + 1) + "] " + sentence(8) + "\u000Bhttps://example.com/ref/" + i + "\n", null)))));
+            }
+        }
+
+        return new Document()
+            .setDocumentId("synthetic-" + shape.seed)
+            .setRevisionId("rev-" + shape.seed)
+            .setTitle("Synthetic Benchmark Article - Completed")
+            .setBody(new Body().setContent(body))
+            .setInlineObjects(inlineObjects);
+    }
+
+    private StructuralElement heading(String text) {
+        return new StructuralElement().setParagraph(new Paragraph()
+            .setElements(List.of(run(text + "\n", null)))
+            .setParagraphStyle(new ParagraphStyle().setNamedStyleType("HEADING_1")));
+    }
+
+    private StructuralElement paragraph(String namedStyle) {
+        List<ParagraphElement> elements = new ArrayList<>(shape.runsPerParagraph);
+        for (int r = 0; r < shape.runsPerParagraph; r++) {
+            boolean last = r == shape.runsPerParagraph - 1;
+            elements.add(run(sentence(6 + random.nextInt(10)) + (last ? "\n" : " "), style()));
+        }
+        Paragraph paragraph = new Paragraph()
+            .setElements(elements)
+            .setParagraphStyle(new ParagraphStyle().setNamedStyleType(namedStyle));
+        if (random.nextInt(6) == 0) {
+            paragraph.setBullet(new Bullet().setNestingLevel(random.nextInt(3)));
+        }
+        return new StructuralElement().setParagraph(paragraph);
+    }
+
+    private StructuralElement image() {
+        String objectId = "kix.synthetic" + (nextObjectId++);
+        EmbeddedObject embedded = new EmbeddedObject()
+            .setImageProperties(new ImageProperties().setContentUri("https://lh3.googleusercontent.com/synthetic/" + objectId))
+            .setSize(new Size()
+                .setWidth(new Dimension().setMagnitude(400.0).setUnit("PT"))
+                .setHeight(new Dimension().setMagnitude(300.0).setUnit("PT")));
+        inlineObjects.put(objectId, new InlineObject().setObjectId(objectId)
+            .setInlineObjectProperties(new InlineObjectProperties().setEmbeddedObject(embedded)));
+        return new StructuralElement().setParagraph(new Paragraph().setElements(List.of(
+            new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId(objectId)),
+            run("\n", null))));
+    }
+
+    private StructuralElement table(int depth) {
+        List<TableRow> rows = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            List<TableCell> cells = new ArrayList<>();
+            for (int c = 0; c < 3; c++) {
+                List<StructuralElement> content = new ArrayList<>();
+                content.add(paragraph("NORMAL_TEXT"));
+                if (depth > 1 && r == 1 && c == 1) {
+                    content.add(table(depth - 1));
+                }
+                cells.add(new TableCell().setContent(content));
+            }
+            rows.add(new TableRow().setTableCells(cells));
+        }
+        return new StructuralElement().setTable(new Table().setRows(rows.size()).setColumns(3).setTableRows(rows));
+    }
+
+    private ParagraphElement run(String text, TextStyle style) {
+        return new ParagraphElement().setTextRun(new TextRun().setContent(text).setTextStyle(style));
+    }
+
+    private TextStyle style() {
+        return switch (random.nextInt(6)) {
+            case 0 -> new TextStyle().setBold(true);
+            case 1 -> new TextStyle().setItalic(true);
+            case 2 -> new TextStyle().setLink(new Link().setUrl("https://example.com/" + random.nextInt(100)));
+            case 3 -> new TextStyle().setWeightedFontFamily(new WeightedFontFamily().setFontFamily("Roboto")).setUnderline(true);
+            default -> new TextStyle();
+        };
+    }
+
+    private String sentence(int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.services.docs.v1.model.Link;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.TextRun;
+import com.google.api.services.docs.v1.model.TextStyle;
+import com.google.api.services.docs.v1.model.WeightedFontFamily;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * {@link TextNormalizer} against the regular expressions it replaced, per call, and {@link RunStyle}
+ * against the {@link JsonObject} built for every run before it. The style benchmarks write the styles
+ * of all runs of a {@code medium} {@link SyntheticDocuments} document, a mix of bold, italic, linked,
+ * font-family and unstyled runs. With {@code -prof gc} the difference shows up in
+ * {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextNormalizerBenchmark {
+
+    private static final Gson STYLE_GSON = new Gson();
+
+    private String title;
+    private Paragraph paragraph;
+    private String references;
+    private List<TextStyle> runStyles;
+    private final StringBuilder reused = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        title = "Measuring Allocation Rates: A Practical Guide (Part 2) - Completed";
+        paragraph = new Paragraph().setElements(List.of(
+            new ParagraphElement().setTextRun(new TextRun().setContent("  Introduction to the\u000B")),
+            new ParagraphElement().setTextRun(new TextRun().setContent("extraction pipeline\n"))));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            sb.append("[").append(i).append("] Some reference title\u000Bhttps://example.com/").append(i).append("\n\n");
+        }
+        references = sb.toString();
+        runStyles = new ArrayList<>();
+        for (StructuralElement element : SyntheticDocuments.build(SyntheticDocuments.preset("medium")).getBody().getContent()) {
+            if (element.getParagraph() == null) continue;
+            for (ParagraphElement run : element.getParagraph().getElements()) {
+                if (run.getTextRun() != null) runStyles.add(run.getTextRun().getTextStyle());
+            }
+        }
+    }
+
+    @Benchmark
+    public String slugify() {
+        return TextNormalizer.slugify(title);
+    }
+
+    @Benchmark
+    public String slugifyRegex() {
+        String lower = title.toLowerCase();
+        if (lower.endsWith(" - completed")) lower = lower.substring(0, lower.length() - " - completed".length());
+        return lower.replaceAll("[^a-z0-9]", "");
+    }
+
+    @Benchmark
+    public boolean headingMatch() {
+        return TextNormalizer.trimmedEqualsIgnoreCase(TextNormalizer.appendParagraphText(paragraph, reused), "Introduction");
+    }
+
+    @Benchmark
+    public boolean headingMatchRegex() {
+        StringBuilder sb = new StringBuilder();
+        for (ParagraphElement element : paragraph.getElements()) {
+            sb.append(element.getTextRun().getContent());
+        }
+        return "Introduction".equalsIgnoreCase(sb.toString().replaceAll("[\\n\\u000B]", " ").trim());
+    }
+
+    @Benchmark
+    public String normalizeReferences() {
+        return TextNormalizer.normalizeLineBreaks(references);
+    }
+
+    @Benchmark
+    public String normalizeReferencesRegex() {
+        return references.replaceAll("[\\n\\u000B]+", "\n").trim();
+    }
+
+    @Benchmark
+    public void runStyle() throws IOException {
+        JsonWriter writer = new JsonWriter(Writer.nullWriter());
+        writer.beginArray();
+        for (TextStyle textStyle : runStyles) {
+            RunStyle style = RunStyle.of(textStyle);
+            if (!style.isEmpty()) style.write(writer);
+        }
+        writer.endArray();
+    }
+
+    @Benchmark
+    public void runStyleJsonObject() throws IOException {
+        JsonWriter writer = new JsonWriter(Writer.nullWriter());
+        writer.beginArray();
+        for (TextStyle textStyle : runStyles) {
+            JsonObject styleJson = processTextStyle(textStyle);
+            if (styleJson.size() > 0) STYLE_GSON.toJson(styleJson, writer);
+        }
+        writer.endArray();
+    }
+
+    /** The per-run style object GoogleDocExtractor built before {@link RunStyle}. */
+    private static JsonObject processTextStyle(TextStyle textStyle) {
+        JsonObject styleJson = new JsonObject();
+        if (textStyle == null) return styleJson;
+        if (Boolean.TRUE.equals(textStyle.getBold())) styleJson.addProperty("bold", true);
+        if (Boolean.TRUE.equals(textStyle.getItalic())) styleJson.addProperty("italic", true);
+        if (Boolean.TRUE.equals(textStyle.getUnderline())) styleJson.addProperty("underline", true);
+        if (Boolean.TRUE.equals(textStyle.getStrikethrough())) styleJson.addProperty("strikethrough", true);
+        Link link = textStyle.getLink();
+        if (link != null && link.getUrl() != null) {
+            styleJson.addProperty("linkUrl", link.getUrl());
+        }
+        WeightedFontFamily fontFamily = textStyle.getWeightedFontFamily();
+        if (fontFamily != null && fontFamily.getFontFamily() != null) {
+            styleJson.addProperty("fontFamily", fontFamily.getFontFamily());
+        }
+        return styleJson;
+    }
+}
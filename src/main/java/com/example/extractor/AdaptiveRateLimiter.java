@@ -0,0 +1,263 @@
+package com.example.extractor;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Paces and retries the calls made to one remote API (the Docs API, S3), shared by every thread
+ * that talks to it:
+ * <ul>
+ *   <li>a token bucket caps the request rate at the configured quota;</li>
+ *   <li>the number of calls in flight follows AIMD: it grows by one per round of successful calls
+ *       and is halved when the API throttles, so it settles just below what the API accepts;</li>
+ *   <li>throttled and transient failures are retried with exponential backoff and full jitter, and
+ *       a Retry-After from the server holds back every caller, not just the one that saw it.</li>
+ * </ul>
+ * What counts as throttled or transient is decided by a {@link Classifier}, see {@link ApiRetryClassifiers}.
+ */
+public class AdaptiveRateLimiter {
+
+    /** How a failed call should be treated. */
+    public enum FailureKind {
+        /** The API asked us to slow down (429, SlowDown, quota exceeded). */
+        THROTTLED,
+        /** A transient error (5xx, connection reset) worth retrying without slowing down. */
+        TRANSIENT,
+        /** Anything else; not retried. */
+        FATAL
+    }
+
+    /** The classification of one failure, with the server's Retry-After if it sent one. */
+    public static class Failure {
+        final FailureKind kind;
+        final Duration retryAfter;
+
+        public Failure(FailureKind kind, Duration retryAfter) {
+            this.kind = kind;
+            this.retryAfter = retryAfter;
+        }
+
+        public static Failure of(FailureKind kind) {
+            return new Failure(kind, null);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Classifier {
+        Failure classify(Exception e);
+    }
+
+    static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(500);
+    static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+    // Concurrent throttles from one overload episode should only halve the limit once.
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final String name;
+    private final Classifier classifier;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    // Token bucket; tokens may go negative, which is a reservation for callers already waiting.
+    private final double permitsPerSecond;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    // AIMD concurrency window.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final int maxConcurrency;
+    private double concurrencyLimit;
+    private int inFlight = 0;
+    private long lastDecreaseNanos = 0;
+    private long pausedUntilNanos = 0;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond Request quota; bursts of up to one second's worth are allowed.
+     * @param maxConcurrency   Upper bound for the adaptive number of calls in flight; it starts there.
+     * @param maxAttempts      Attempts per call, including the first one.
+     */
+    public AdaptiveRateLimiter(String name, double permitsPerSecond, int maxConcurrency, int maxAttempts, Classifier classifier) {
+        this(name, permitsPerSecond, maxConcurrency, maxAttempts, classifier, DEFAULT_BASE_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    AdaptiveRateLimiter(String name, double permitsPerSecond, int maxConcurrency, int maxAttempts, Classifier classifier,
+                        Duration baseBackoff, Duration maxBackoff) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be positive");
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.name = name;
+        this.classifier = classifier;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1.0, permitsPerSecond);
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyLimit = maxConcurrency;
+    }
+
+    public <T> T call(Callable<T> action) throws Exception {
+        return call(1, action);
+    }
+
+    /**
+     * Runs {@code action} once a concurrency slot and {@code permits} tokens are available, retrying
+     * throttled and transient failures. The last failure is rethrown once the attempts are used up.
+     * @param permits How many requests the call counts as against the quota, e.g. the size of a batch.
+     */
+    public <T> T call(int permits, Callable<T> action) throws Exception {
+        calls.incrementAndGet();
+        for (int attempt = 1; ; attempt++) {
+            acquireSlot();
+            Exception failure;
+            try {
+                awaitTokens(permits);
+                T result = action.call();
+                onSuccess();
+                return result;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                releaseSlot();
+            }
+
+            Failure classified = classifier.classify(failure);
+            if (classified.kind == FailureKind.THROTTLED) {
+                onThrottled(classified.retryAfter);
+            }
+            if (classified.kind == FailureKind.FATAL || attempt >= maxAttempts) {
+                throw failure;
+            }
+            retries.incrementAndGet();
+            long delay = backoffNanos(attempt, classified.retryAfter);
+            System.err.printf("Warning: %s call %s (attempt %d of %d), retrying in %d ms: %s\n", name,
+                    classified.kind == FailureKind.THROTTLED ? "throttled" : "failed", attempt, maxAttempts,
+                    TimeUnit.NANOSECONDS.toMillis(delay), failure.getMessage());
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The current adaptive limit on calls in flight. */
+    public int getConcurrencyLimit() {
+        lock.lock();
+        try {
+            return (int) concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getThrottleCount() {
+        return throttles.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, %d retries, %d throttled, concurrency limit %d of %d",
+                name, getCallCount(), getRetryCount(), getThrottleCount(), getConcurrencyLimit(), maxConcurrency);
+    }
+
+    private void acquireSlot() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long pause = pausedUntilNanos - System.nanoTime();
+                if (pause > 0) {
+                    slotFreed.awaitNanos(pause);
+                } else if (inFlight >= (int) concurrencyLimit) {
+                    slotFreed.await();
+                } else {
+                    inFlight++;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitTokens(int permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerSecond / 1e9);
+            lastRefillNanos = now;
+            tokens -= permits;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / permitsPerSecond * 1e9);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void onSuccess() {
+        lock.lock();
+        try {
+            // Additive increase: about +1 once a full window of calls has succeeded.
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onThrottled(Duration retryAfter) {
+        throttles.incrementAndGet();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos > DECREASE_COOLDOWN_NANOS) {
+                concurrencyLimit = Math.max(1.0, concurrencyLimit / 2);
+                lastDecreaseNanos = now;
+            }
+            if (retryAfter != null) {
+                // The quota is shared, so every caller holds off until the server said to come back.
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + retryAfter.toNanos());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long backoffNanos(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        return retryAfter != null ? Math.max(retryAfter.toNanos(), jittered) : jittered;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.extractor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+
+import com.example.extractor.AdaptiveRateLimiter.Failure;
+import com.example.extractor.AdaptiveRateLimiter.FailureKind;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+/**
+ * Decides which failures of the Docs API and of S3 are throttling, which are transient and
+ * which are final, for {@link AdaptiveRateLimiter}.
+ */
+public final class ApiRetryClassifiers {
+
+    // Reasons the Google APIs attach to a 403 when it is really a quota error.
+    private static final Set<String> GOOGLE_QUOTA_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded", "quotaExceeded");
+
+    private ApiRetryClassifiers() {
+    }
+
+    /** Docs API: 429 and quota 403s throttle, 5xx and I/O errors are transient. */
+    public static Failure classifyDocsApi(Exception e) {
+        if (e instanceof HttpResponseException response) {
+            Duration retryAfter = parseRetryAfter(response.getHeaders() != null ? response.getHeaders().getRetryAfter() : null);
+            if (response.getStatusCode() == 429 || isGoogleQuotaError(e)) {
+                return new Failure(FailureKind.THROTTLED, retryAfter);
+            }
+            return new Failure(response.getStatusCode() >= 500 ? FailureKind.TRANSIENT : FailureKind.FATAL, retryAfter);
+        }
+        return Failure.of(e instanceof IOException ? FailureKind.TRANSIENT : FailureKind.FATAL);
+    }
+
+    /** The same decision for one item of a batch, which only reports an HTTP status. */
+    public static FailureKind classifyDocsApiStatus(int statusCode) {
+        if (statusCode == 429) return FailureKind.THROTTLED;
+        return statusCode >= 500 ? FailureKind.TRANSIENT : FailureKind.FATAL;
+    }
+
+    /**
+     * S3 and the image download that feeds it: throttling exceptions (429, 503 SlowDown) throttle,
+     * other 5xx, client-side network errors and I/O errors are transient. A missing image, or any
+     * other 4xx on its download, is final.
+     */
+    public static Failure classifyS3(Exception e) {
+        if (e instanceof SdkServiceException service) {
+            Duration retryAfter = null;
+            if (e instanceof AwsServiceException aws && aws.awsErrorDetails() != null && aws.awsErrorDetails().sdkHttpResponse() != null) {
+                retryAfter = parseRetryAfter(aws.awsErrorDetails().sdkHttpResponse().firstMatchingHeader("Retry-After").orElse(null));
+            }
+            if (service.isThrottlingException()) {
+                return new Failure(FailureKind.THROTTLED, retryAfter);
+            }
+            return new Failure(service.statusCode() >= 500 ? FailureKind.TRANSIENT : FailureKind.FATAL, retryAfter);
+        }
+        if (e instanceof SdkClientException) {
+            return Failure.of(FailureKind.TRANSIENT);
+        }
+        if (e instanceof PooledHttpClient.StatusException status) {
+            Duration retryAfter = parseRetryAfter(status.getRetryAfter());
+            if (status.getStatusCode() == 429) {
+                return new Failure(FailureKind.THROTTLED, retryAfter);
+            }
+            return new Failure(status.getStatusCode() >= 500 ? FailureKind.TRANSIENT : FailureKind.FATAL, retryAfter);
+        }
+        if (e instanceof FileNotFoundException) {
+            return Failure.of(FailureKind.FATAL);
+        }
+        return Failure.of(e instanceof IOException ? FailureKind.TRANSIENT : FailureKind.FATAL);
+    }
+
+    /** Retry-After is either a number of seconds or an HTTP date. */
+    static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return null;
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // Not seconds, try the date form.
+        }
+        try {
+            Duration until = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return until.isNegative() ? Duration.ZERO : until;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static boolean isGoogleQuotaError(Exception e) {
+        if (!(e instanceof GoogleJsonResponseException json) || json.getStatusCode() != 403 || json.getDetails() == null
+                || json.getDetails().getErrors() == null) {
+            return false;
+        }
+        for (GoogleJsonError.ErrorInfo info : json.getDetails().getErrors()) {
+            if (GOOGLE_QUOTA_REASONS.contains(info.getReason())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.extractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders each document into memory and stores them {@code batchSize} at a time, so the
+ * destination sees a few large writes instead of one small one per document. Rendering runs on
+ * the calling worker; storing a batch runs under the sink's lock, on the worker that filled it.
+ */
+abstract class BatchingOutputSink implements OutputSink {
+
+    /** A rendered document waiting for its batch. */
+    static class PendingDocument {
+        final String docId;
+        final byte[] json;
+        final Listener listener;
+        PendingDocument(String docId, byte[] json, Listener listener) {
+            this.docId = docId;
+            this.json = json;
+            this.listener = listener;
+        }
+    }
+
+    private final int batchSize;
+    private final boolean pretty;
+    private List<PendingDocument> pending = new ArrayList<>();
+
+    BatchingOutputSink(int batchSize, boolean pretty) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+        this.batchSize = batchSize;
+        this.pretty = pretty;
+    }
+
+    /**
+     * Stores a batch.
+     * @return The documents that could not be stored, with the error; every other one is stored.
+     */
+    abstract Map<PendingDocument, Exception> store(List<PendingDocument> batch) throws IOException;
+
+    /** Where a stored document can be found, as passed to its listener. */
+    abstract String locationOf(String docId);
+
+    @Override
+    public long write(String docId, Content content, Listener listener) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+            content.writeTo(writer, pretty);
+        }
+        byte[] json = buffer.toByteArray();
+        synchronized (this) {
+            pending.add(new PendingDocument(docId, json, listener));
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+        return json.length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (pending.isEmpty()) return;
+        List<PendingDocument> batch = pending;
+        pending = new ArrayList<>();
+        Map<PendingDocument, Exception> failures;
+        try {
+            failures = store(batch);
+        } catch (IOException | RuntimeException e) {
+            failures = new HashMap<>();
+            for (PendingDocument document : batch) {
+                failures.put(document, e);
+            }
+        }
+        for (PendingDocument document : batch) {
+            Exception error = failures.get(document);
+            // One listener's failure must not keep the rest of the batch from being recorded
+            try {
+                if (error != null) {
+                    System.err.printf("❌ Failed to store the output of %s in %s: %s\n", document.docId, this, error.getMessage());
+                    document.listener.onFailed(error);
+                } else {
+                    document.listener.onStored(locationOf(document.docId));
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.printf("Failed to record the output of %s. Error: %s\n", document.docId, e.getMessage());
+            }
+        }
+    }
+}
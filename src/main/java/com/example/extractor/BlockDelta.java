@@ -0,0 +1,199 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The difference between two extractions of a document, block by block. A block is an entry of the
+ * top-level {@code document} array and is identified by its content hash, so a block that only moved
+ * is not reported. Blocks are aligned by their longest common subsequence; where blocks were both
+ * removed and added between the same two unchanged blocks, they are paired up as changed.
+ * <p>
+ * The delta lists the hash of every block of the new extraction in order, the content of the blocks
+ * that are added or changed, and the positions and hashes of the blocks removed. A consumer holding
+ * the previous extraction rebuilds the new one from the hash list alone.
+ */
+public class BlockDelta {
+
+    // Beyond this many cells, e.g. a rewrite of two large documents, the aligned middle is all reported as changed
+    static final long MAX_ALIGNMENT_CELLS = 1_000_000;
+
+    /** One top-level block of an extraction: its hash and its compact JSON, without the hash. */
+    public static final class Block {
+        final String hash;
+        final String json;
+
+        Block(String hash, String json) {
+            this.hash = hash;
+            this.json = json;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getJson() {
+            return json;
+        }
+    }
+
+    private final String documentId;
+    private final String baseRevision;
+    private final String revision;
+    private final List<Block> blocks;
+    private final List<String> previousHashes;
+    private final List<Integer> added = new ArrayList<>();
+    // Pairs of {index, previousIndex}
+    private final List<int[]> changed = new ArrayList<>();
+    private final List<Integer> removed = new ArrayList<>();
+
+    private BlockDelta(String documentId, String baseRevision, String revision, List<Block> blocks, List<String> previousHashes) {
+        this.documentId = documentId;
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.blocks = blocks;
+        this.previousHashes = previousHashes;
+    }
+
+    /**
+     * Compares the blocks of a new extraction with the block hashes of the previous one.
+     * @param baseRevision The revision the previous extraction was made from, or null if there is none.
+     * @param previousHashes The previous extraction's block hashes in order; empty if there is none.
+     */
+    public static BlockDelta compute(String documentId, String baseRevision, List<String> previousHashes, String revision, List<Block> blocks) {
+        BlockDelta delta = new BlockDelta(documentId, baseRevision, revision, blocks, previousHashes);
+        int n = previousHashes.size();
+        int m = blocks.size();
+        // Edits are usually local: only the part between the unchanged head and tail needs aligning
+        int prefix = 0;
+        while (prefix < n && prefix < m && previousHashes.get(prefix).equals(blocks.get(prefix).hash)) prefix++;
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix
+                && previousHashes.get(n - 1 - suffix).equals(blocks.get(m - 1 - suffix).hash)) suffix++;
+        delta.align(prefix, n - suffix, prefix, m - suffix);
+        return delta;
+    }
+
+    /** Aligns previousHashes[from, to) with blocks[blockFrom, blockTo) and records the hunks between matches. */
+    private void align(int from, int to, int blockFrom, int blockTo) {
+        int a = to - from;
+        int b = blockTo - blockFrom;
+        List<Integer> hunkRemoved = new ArrayList<>();
+        List<Integer> hunkAdded = new ArrayList<>();
+        if (a == 0 || b == 0 || (long) (a + 1) * (b + 1) > MAX_ALIGNMENT_CELLS) {
+            for (int i = from; i < to; i++) hunkRemoved.add(i);
+            for (int j = blockFrom; j < blockTo; j++) hunkAdded.add(j);
+            recordHunk(hunkRemoved, hunkAdded);
+            return;
+        }
+        // common[i][j]: length of the longest common subsequence of the two suffixes starting at i and j
+        int[][] common = new int[a + 1][b + 1];
+        for (int i = a - 1; i >= 0; i--) {
+            for (int j = b - 1; j >= 0; j--) {
+                common[i][j] = sameBlock(from + i, blockFrom + j)
+                        ? common[i + 1][j + 1] + 1
+                        : Math.max(common[i + 1][j], common[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a && j < b) {
+            if (sameBlock(from + i, blockFrom + j)) {
+                recordHunk(hunkRemoved, hunkAdded);
+                i++;
+                j++;
+            } else if (common[i + 1][j] >= common[i][j + 1]) {
+                hunkRemoved.add(from + i++);
+            } else {
+                hunkAdded.add(blockFrom + j++);
+            }
+        }
+        while (i < a) hunkRemoved.add(from + i++);
+        while (j < b) hunkAdded.add(blockFrom + j++);
+        recordHunk(hunkRemoved, hunkAdded);
+    }
+
+    private boolean sameBlock(int previousIndex, int index) {
+        return previousHashes.get(previousIndex).equals(blocks.get(index).hash);
+    }
+
+    private void recordHunk(List<Integer> hunkRemoved, List<Integer> hunkAdded) {
+        int paired = Math.min(hunkRemoved.size(), hunkAdded.size());
+        for (int k = 0; k < paired; k++) {
+            changed.add(new int[] {hunkAdded.get(k), hunkRemoved.get(k)});
+        }
+        removed.addAll(hunkRemoved.subList(paired, hunkRemoved.size()));
+        added.addAll(hunkAdded.subList(paired, hunkAdded.size()));
+        hunkRemoved.clear();
+        hunkAdded.clear();
+    }
+
+    public int getAddedCount() {
+        return added.size();
+    }
+
+    public int getChangedCount() {
+        return changed.size();
+    }
+
+    public int getRemovedCount() {
+        return removed.size();
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Writes the delta:
+     * <pre>
+     * {"documentId", "baseRevision", "revision",
+     *  "blocks":  [hash, ...],
+     *  "added":   [{"index", "block"}, ...],
+     *  "changed": [{"index", "previousIndex", "previousHash", "block"}, ...],
+     *  "removed": [{"previousIndex", "hash"}, ...]}
+     * </pre>
+     * {@code index} is a position in the new {@code document} array, {@code previousIndex} one in the previous.
+     */
+    public void write(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("documentId").value(documentId);
+        writer.name("baseRevision").value(baseRevision);
+        writer.name("revision").value(revision);
+        writer.name("blocks").beginArray();
+        for (Block block : blocks) {
+            writer.value(block.hash);
+        }
+        writer.endArray();
+        writer.name("added").beginArray();
+        for (int index : added) {
+            writer.beginObject();
+            writer.name("index").value(index);
+            writer.name("block").jsonValue(blocks.get(index).json);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("changed").beginArray();
+        for (int[] pair : changed) {
+            writer.beginObject();
+            writer.name("index").value(pair[0]);
+            writer.name("previousIndex").value(pair[1]);
+            writer.name("previousHash").value(previousHashes.get(pair[1]));
+            writer.name("block").jsonValue(blocks.get(pair[0]).json);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("removed").beginArray();
+        for (int previousIndex : removed) {
+            writer.beginObject();
+            writer.name("previousIndex").value(previousIndex);
+            writer.name("hash").value(previousHashes.get(previousIndex));
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link JsonWriter} that, between {@link #beginBlock()} and {@link #endBlock()}, also renders what it
+ * writes into a compact copy of the block. The copy is the same whether the output is indented or not,
+ * so the hash taken from it only changes when the block's content does.
+ */
+class BlockHashingJsonWriter extends JsonWriter {
+
+    // 64 bits of SHA-256: collisions between the blocks of one document are not a concern
+    private static final int HASH_BYTES = 8;
+
+    private final StringWriter blockJson = new StringWriter();
+    private final MessageDigest digest;
+    private JsonWriter block = null;
+
+    BlockHashingJsonWriter(Writer out) {
+        super(out);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM has it
+        }
+    }
+
+    /** Starts copying; the next call must open the block's object. */
+    void beginBlock() {
+        blockJson.getBuffer().setLength(0);
+        block = new JsonWriter(blockJson);
+        block.setHtmlSafe(isHtmlSafe());
+    }
+
+    /**
+     * Stops copying, right before the block's object is closed in the output, so the caller can still
+     * add the hash to it.
+     */
+    BlockDelta.Block endBlock() throws IOException {
+        block.endObject();
+        block.flush();
+        block = null;
+        String json = blockJson.toString();
+        byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+        return new BlockDelta.Block(HexFormat.of().formatHex(hash, 0, HASH_BYTES), json);
+    }
+
+    /** Writes a value into a JSON writer. */
+    @FunctionalInterface
+    interface Resolved {
+        void writeTo(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes {@code reference}, an index into a document-level table, to the output, but what it refers
+     * to into the block's copy. The hash then does not change when an edit elsewhere renumbers the table.
+     */
+    JsonWriter reference(long reference, Resolved resolved) throws IOException {
+        if (block != null) resolved.writeTo(block);
+        return super.value(reference);
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        if (block != null) block.beginArray();
+        return super.beginArray();
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        if (block != null) block.endArray();
+        return super.endArray();
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        if (block != null) block.beginObject();
+        return super.beginObject();
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (block != null) block.endObject();
+        return super.endObject();
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (block != null) block.name(name);
+        return super.name(name);
+    }
+
+    // The boxed overloads hand null to nullValue() themselves, which would copy it twice
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) return nullValue();
+        if (block != null) block.jsonValue(value);
+        return super.jsonValue(value);
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (block != null) block.nullValue();
+        return super.nullValue();
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) return nullValue();
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) return nullValue();
+        if (block != null) block.value(value);
+        return super.value(value);
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Command-line options for {@link Main}. Document IDs are given either as
+ * positional arguments or through {@code --file}; every other flag is optional.
+ */
+public class CliOptions {
+
+    static final String DEFAULT_JOURNAL_PATH = "run-journal.jsonl";
+    static final String DEFAULT_CACHE_DIR = "doc-cache";
+    static final String DEFAULT_WATCH_STATE = "watch-state.json";
+    static final List<String> S3_CLIENT_TYPES = List.of("sync", "async", "crt");
+    static final List<String> OUTPUT_TYPES = List.of("dir", "ndjson", "s3");
+    static final List<String> CLAIM_TYPES = List.of("dir", "s3");
+
+    final List<String> docIds = new ArrayList<>();
+    String idFile = null;
+    int fetchConcurrency = 4;
+    int fetchBatchSize = 1;
+    int extractConcurrency = 2;
+    int imageConcurrency = 4;
+    int imageTransfersPerDocument = 8;
+    int queueCapacity = 16;
+    boolean compact = false;
+    boolean styleDictionary = false;
+    boolean fullFetch = false;
+    boolean measureFields = false;
+    String dedupManifest = null;
+    String dedupSharedPrefix = null;
+    String journalPath = null;
+    boolean resume = false;
+    boolean overwriteJournal = false;
+    int docsRequestsPerSecond = 5;
+    int s3RequestsPerSecond = 100;
+    int maxAttempts = 5;
+    int connectTimeoutSeconds = 10;
+    int readTimeoutSeconds = 60;
+    String cacheDir = null;
+    boolean replay = false;
+    String s3ClientType = "sync";
+    double[] imageVariantDensities = null;
+    String outputType = "dir";
+    String outputTarget = ".";
+    int outputBatchSize = 100;
+    int servePort = 0;
+    int serverWorkers = 4;
+    String bindAddress = null;
+    String serverToken = null;
+    String metricsDir = null;
+    int metricsIntervalSeconds = 0;
+    int watchIntervalSeconds = 0;
+    String watchStatePath = DEFAULT_WATCH_STATE;
+    int pollConcurrency = 4;
+    String docsEndpoint = null;
+    String deltaDir = null;
+    String imageCacheDir = null;
+    int imageCacheMegabytes = 1024;
+    DocumentShard shard = null;
+    String claimType = null;
+    String claimTarget = null;
+    int leaseSeconds = 300;
+    String nodeId = null;
+    boolean mergeSummaries = false;
+
+    public static void printUsage() {
+        System.err.println("Usage:");
+        System.err.println("  java -jar your-app.jar [options] <docId1> <docId2> ...");
+        System.err.println("  java -jar your-app.jar [options] --file path/to/ids.txt");
+        System.err.println("  java -jar your-app.jar [options] --serve PORT");
+        System.err.println("  java -jar your-app.jar [options] --watch SECONDS --file path/to/ids.txt");
+        System.err.println("  java -jar your-app.jar --merge-summaries --metrics DIR <summary or metrics dir> ...");
+        System.err.println();
+        System.err.println("Options:");
+        System.err.println("  --fetch-concurrency N    Parallel Docs API fetches (default 4)");
+        System.err.println("  --fetch-batch-size N     Documents fetched per batched HTTP request, 1 disables batching (default 1, max " + DocumentBatchFetcher.MAX_BATCH_SIZE + ")");
+        System.err.println("  --extract-concurrency N  Parallel JSON extractions and file writes (default 2)");
+        System.err.println("  --image-concurrency N    Documents uploading images at once (default 4)");
+        System.err.println("  --image-transfers N      Images of one document transferred at once (default 8)");
+        System.err.println("  --queue-capacity N       Documents buffered between stages (default 16)");
+        System.err.println("  --compact                Write compact instead of pretty-printed JSON");
+        System.err.println("  --style-dictionary       Merge adjacent runs with the same style and list each distinct style once");
+        System.err.println("  --output TYPE:TARGET     dir:DIR (one file per document, default dir:.), ndjson:FILE.ndjson.gz");
+        System.err.println("                           (one gzip-compressed stream) or s3:PREFIX (objects in the S3 bucket)");
+        System.err.println("  --delta DIR              Also write DIR/<docId>.delta.json: the blocks added, changed and removed since the last extraction");
+        System.err.println("  --output-batch-size N    Documents buffered per write for ndjson and s3 output (default 100)");
+        System.err.println("  --docs-rate N            Docs API requests per second, the per-user read quota (default 5)");
+        System.err.println("  --s3-rate N              Image transfers per second (default 100)");
+        System.err.println("  --max-attempts N         Attempts per throttled or failing API call (default 5)");
+        System.err.println("  --connect-timeout N      Seconds to open an HTTP connection for the Docs API or an image (default 10)");
+        System.err.println("  --read-timeout N         Seconds to wait for a Docs API or image response, and for each part of its body (default 60)");
+        System.err.println("  --s3-client TYPE         sync, async (non-blocking) or crt (non-blocking, needs a -Pcrt build) (default sync)");
+        System.err.println("  --image-variants D,...   Also store images resized to D times their displayed width, e.g. 1,2");
+        System.err.println("  --image-cache DIR        Keep downloaded images in DIR and read them from there when extracting again");
+        System.err.println("  --image-cache-size N     Megabytes the image cache may hold before evicting the least recently used images (default 1024)");
+        System.err.println("  --full-fetch             Fetch complete documents instead of only the fields the extractor reads");
+        System.err.println("  --measure-fields         Compare full and field-masked fetches of the documents, then exit");
+        System.err.println("  --dedup-manifest PATH    Skip uploading images whose content is already in S3");
+        System.err.println("  --dedup-shared-prefix P  Store deduplicated content once under P/<sha256>");
+        System.err.println("  --journal PATH           Record finished documents and images in PATH");
+        System.err.println("  --resume                 Skip work recorded in the journal (default " + DEFAULT_JOURNAL_PATH + ")");
+        System.err.println("  --overwrite-journal      Start the journal over even if it records an earlier run");
+        System.err.println("  --cache DIR              Keep every fetched document, compressed, in DIR");
+        System.err.println("  --serve PORT             Keep the clients warm and take extraction jobs over HTTP on PORT");
+        System.err.println("  --server-workers N       Jobs the server processes at once (default 4); --queue-capacity more may wait");
+        System.err.println("  --bind ADDRESS           Address the server listens on (default 127.0.0.1); any other needs a token");
+        System.err.println("  --server-token TOKEN     Token every server request must send as 'Authorization: Bearer TOKEN'");
+        System.err.println("                           (default: the SERVER_TOKEN environment variable, if set)");
+        System.err.println("  --metrics DIR            Write a JSON run summary and a Prometheus metrics file into DIR");
+        System.err.println("  --metrics-interval N     Also rewrite them every N seconds during the run");
+        System.err.println("  --watch N                Check the documents' revisions every N seconds and extract the ones that changed");
+        System.err.println("  --watch-state PATH       Revisions extracted so far, kept between polls (default " + DEFAULT_WATCH_STATE + ")");
+        System.err.println("  --poll-concurrency N     Revision checks in flight at once during a poll (default 4)");
+        System.err.println("  --shard I/N              Only process the I-th of N disjoint parts of the list, picked by document ID");
+        System.err.println("  --claim TYPE:TARGET      Claim each document before processing it, in dir:DIR (shared by the nodes)");
+        System.err.println("                           or s3:PREFIX, so idle nodes take over the documents of slow or failed ones");
+        System.err.println("  --lease-seconds N        How long a claim holds without being renewed (default 300)");
+        System.err.println("  --node-id ID             Names this node in claims and its run summary (default host-pid)");
+        System.err.println("  --merge-summaries        Add up the run summaries given as arguments into --metrics DIR, then exit");
+        System.err.println("  --docs-endpoint URL      Send Docs API calls to URL without OAuth, e.g. a local stand-in");
+        System.err.println("  --replay                 Extract from the cache (default " + DEFAULT_CACHE_DIR + ") without network or credentials;");
+        System.err.println("                           without document IDs, replays every cached document");
+    }
+
+    /**
+     * Parses the arguments passed to {@code main}.
+     * @throws IllegalArgumentException if a flag is unknown or lacks its value.
+     */
+    public static CliOptions parse(String... args) {
+        CliOptions options = new CliOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg.toLowerCase()) {
+                case "--file", "-f" -> options.idFile = requireValue(args, ++i, arg);
+                case "--fetch-concurrency" -> options.fetchConcurrency = requirePositiveInt(args, ++i, arg);
+                case "--fetch-batch-size" -> options.fetchBatchSize = requirePositiveInt(args, ++i, arg);
+                case "--extract-concurrency" -> options.extractConcurrency = requirePositiveInt(args, ++i, arg);
+                case "--image-concurrency" -> options.imageConcurrency = requirePositiveInt(args, ++i, arg);
+                case "--image-transfers" -> options.imageTransfersPerDocument = requirePositiveInt(args, ++i, arg);
+                case "--queue-capacity" -> options.queueCapacity = requirePositiveInt(args, ++i, arg);
+                case "--compact" -> options.compact = true;
+                case "--style-dictionary" -> options.styleDictionary = true;
+                case "--output" -> {
+                    String value = requireValue(args, ++i, arg);
+                    int colon = value.indexOf(':');
+                    if (colon < 0 || !OUTPUT_TYPES.contains(value.substring(0, colon).toLowerCase())) {
+                        throw new IllegalArgumentException("--output expects TYPE:TARGET with TYPE one of " + String.join(", ", OUTPUT_TYPES) + ", got '" + value + "'.");
+                    }
+                    options.outputType = value.substring(0, colon).toLowerCase();
+                    options.outputTarget = value.substring(colon + 1);
+                }
+                case "--delta" -> options.deltaDir = requireValue(args, ++i, arg);
+                case "--output-batch-size" -> options.outputBatchSize = requirePositiveInt(args, ++i, arg);
+                case "--docs-rate" -> options.docsRequestsPerSecond = requirePositiveInt(args, ++i, arg);
+                case "--s3-rate" -> options.s3RequestsPerSecond = requirePositiveInt(args, ++i, arg);
+                case "--max-attempts" -> options.maxAttempts = requirePositiveInt(args, ++i, arg);
+                case "--connect-timeout" -> options.connectTimeoutSeconds = requirePositiveInt(args, ++i, arg);
+                case "--read-timeout" -> options.readTimeoutSeconds = requirePositiveInt(args, ++i, arg);
+                case "--s3-client" -> options.s3ClientType = requireValue(args, ++i, arg).toLowerCase();
+                case "--image-variants" -> options.imageVariantDensities = requireDensities(args, ++i, arg);
+                case "--image-cache" -> options.imageCacheDir = requireValue(args, ++i, arg);
+                case "--image-cache-size" -> options.imageCacheMegabytes = requirePositiveInt(args, ++i, arg);
+                case "--full-fetch" -> options.fullFetch = true;
+                case "--measure-fields" -> options.measureFields = true;
+                case "--dedup-manifest" -> options.dedupManifest = requireValue(args, ++i, arg);
+                case "--dedup-shared-prefix" -> options.dedupSharedPrefix = requireValue(args, ++i, arg);
+                case "--journal" -> options.journalPath = requireValue(args, ++i, arg);
+                case "--resume" -> options.resume = true;
+                case "--overwrite-journal" -> options.overwriteJournal = true;
+                case "--cache" -> options.cacheDir = requireValue(args, ++i, arg);
+                case "--replay" -> options.replay = true;
+                case "--serve" -> options.servePort = requirePositiveInt(args, ++i, arg);
+                case "--server-workers" -> options.serverWorkers = requirePositiveInt(args, ++i, arg);
+                case "--bind" -> options.bindAddress = requireValue(args, ++i, arg);
+                case "--server-token" -> options.serverToken = requireValue(args, ++i, arg);
+                case "--metrics" -> options.metricsDir = requireValue(args, ++i, arg);
+                case "--metrics-interval" -> options.metricsIntervalSeconds = requirePositiveInt(args, ++i, arg);
+                case "--watch" -> options.watchIntervalSeconds = requirePositiveInt(args, ++i, arg);
+                case "--watch-state" -> options.watchStatePath = requireValue(args, ++i, arg);
+                case "--poll-concurrency" -> options.pollConcurrency = requirePositiveInt(args, ++i, arg);
+                case "--docs-endpoint" -> options.docsEndpoint = requireValue(args, ++i, arg);
+                case "--shard" -> options.shard = DocumentShard.parse(requireValue(args, ++i, arg));
+                case "--claim" -> {
+                    String value = requireValue(args, ++i, arg);
+                    int colon = value.indexOf(':');
+                    if (colon < 0 || !CLAIM_TYPES.contains(value.substring(0, colon).toLowerCase())) {
+                        throw new IllegalArgumentException("--claim expects TYPE:TARGET with TYPE one of " + String.join(", ", CLAIM_TYPES) + ", got '" + value + "'.");
+                    }
+                    options.claimType = value.substring(0, colon).toLowerCase();
+                    options.claimTarget = value.substring(colon + 1);
+                }
+                case "--lease-seconds" -> options.leaseSeconds = requirePositiveInt(args, ++i, arg);
+                case "--node-id" -> options.nodeId = requireValue(args, ++i, arg);
+                case "--merge-summaries" -> options.mergeSummaries = true;
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    options.docIds.add(arg);
+                }
+            }
+        }
+        if (options.fetchBatchSize > DocumentBatchFetcher.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("--fetch-batch-size must be at most " + DocumentBatchFetcher.MAX_BATCH_SIZE + ".");
+        }
+        if (!S3_CLIENT_TYPES.contains(options.s3ClientType)) {
+            throw new IllegalArgumentException("--s3-client must be one of " + String.join(", ", S3_CLIENT_TYPES) + ".");
+        }
+        if (options.isAsyncS3() && options.dedupManifest != null) {
+            throw new IllegalArgumentException("--dedup-manifest needs the synchronous S3 client and cannot be combined with --s3-client " + options.s3ClientType + ".");
+        }
+        if (options.outputTarget.isEmpty() && !"s3".equals(options.outputType)) {
+            throw new IllegalArgumentException("--output " + options.outputType + ": needs a path.");
+        }
+        if (options.replay && "s3".equals(options.outputType)) {
+            throw new IllegalArgumentException("--output s3: needs S3 credentials and cannot be combined with --replay.");
+        }
+        if (options.isServer() && (!options.docIds.isEmpty() || options.idFile != null)) {
+            throw new IllegalArgumentException("--serve takes its document IDs from HTTP requests, not from the command line.");
+        }
+        if (!options.isServer() && (options.bindAddress != null || options.serverToken != null)) {
+            throw new IllegalArgumentException("--bind and --server-token need --serve.");
+        }
+        if (options.serverToken != null && options.serverToken.isBlank()) {
+            throw new IllegalArgumentException("--server-token must not be blank.");
+        }
+        if (options.isServer() && (options.measureFields || options.resume)) {
+            throw new IllegalArgumentException("--serve cannot be combined with --measure-fields or --resume.");
+        }
+        if (options.isWatching() && (options.isServer() || options.replay || options.measureFields || options.resume)) {
+            throw new IllegalArgumentException("--watch cannot be combined with --serve, --replay, --measure-fields or --resume.");
+        }
+        if (options.isClaiming() && (options.isServer() || options.isWatching() || options.measureFields)) {
+            throw new IllegalArgumentException("--claim cannot be combined with --serve, --watch or --measure-fields.");
+        }
+        if ("dir".equals(options.claimType) && options.claimTarget.isEmpty()) {
+            throw new IllegalArgumentException("--claim dir: needs a path.");
+        }
+        if (options.shard != null && options.isServer()) {
+            throw new IllegalArgumentException("--shard needs a list of document IDs and cannot be combined with --serve.");
+        }
+        if (options.mergeSummaries && options.metricsDir == null) {
+            throw new IllegalArgumentException("--merge-summaries needs --metrics DIR to write the merged summary into.");
+        }
+        if (options.mergeSummaries && (options.docIds.isEmpty() || options.idFile != null || options.isServer() || options.isWatching())) {
+            throw new IllegalArgumentException("--merge-summaries takes the summaries to merge as its only arguments.");
+        }
+        if (options.metricsIntervalSeconds > 0 && options.metricsDir == null) {
+            throw new IllegalArgumentException("--metrics-interval needs --metrics.");
+        }
+        if (options.overwriteJournal && (options.resume || options.journalPath == null)) {
+            throw new IllegalArgumentException("--overwrite-journal needs --journal PATH and cannot be combined with --resume.");
+        }
+        if (options.resume && options.journalPath == null) {
+            options.journalPath = DEFAULT_JOURNAL_PATH;
+        }
+        if (options.replay && options.measureFields) {
+            throw new IllegalArgumentException("--measure-fields needs the Docs API and cannot be combined with --replay.");
+        }
+        if (options.replay && options.cacheDir == null) {
+            options.cacheDir = DEFAULT_CACHE_DIR;
+        }
+        return options;
+    }
+
+    /** Whether to run as an HTTP server instead of processing a list of documents. */
+    public boolean isServer() {
+        return servePort > 0;
+    }
+
+    /** Whether to keep polling the documents and extract only the ones whose revision moved. */
+    public boolean isWatching() {
+        return watchIntervalSeconds > 0;
+    }
+
+    /** Whether each document is claimed in a shared lease store before it is processed. */
+    public boolean isClaiming() {
+        return claimType != null;
+    }
+
+    /** Whether images go through an {@code S3AsyncClient} rather than the blocking {@code S3Client}. */
+    public boolean isAsyncS3() {
+        return !"sync".equals(s3ClientType);
+    }
+
+    /**
+     * Returns the positional document IDs followed by the IDs listed in {@code --file}.
+     * Blank lines and lines starting with '#' are ignored.
+     */
+    public List<String> resolveDocIds() throws IOException {
+        List<String> ids = new ArrayList<>(docIds);
+        if (idFile != null) {
+            System.out.println("Reading document IDs from file: " + idFile);
+            ids.addAll(Files.readAllLines(Paths.get(idFile))
+                    .stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#")) // Also ignore comments
+                    .collect(Collectors.toList()));
+        } else {
+            System.out.println("Reading document IDs from command-line arguments.");
+        }
+        return ids;
+    }
+
+    private static String requireValue(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(flag + " flag requires an argument.");
+        }
+        return args[index];
+    }
+
+    private static double[] requireDensities(String[] args, int index, String flag) {
+        String value = requireValue(args, index, flag);
+        try {
+            String[] parts = value.split(",");
+            double[] densities = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                densities[i] = Double.parseDouble(parts[i].trim());
+                if (!(densities[i] > 0) || Double.isInfinite(densities[i])) throw new NumberFormatException();
+            }
+            return densities;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(flag + " expects comma-separated positive numbers, got '" + value + "'.");
+        }
+    }
+
+    private static int requirePositiveInt(String[] args, int index, String flag) {
+        String value = requireValue(args, index, flag);
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 1) throw new NumberFormatException();
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(flag + " expects a positive integer, got '" + value + "'.");
+        }
+    }
+}
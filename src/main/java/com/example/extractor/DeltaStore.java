@@ -0,0 +1,95 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a {@link BlockDelta} for every extraction, against the previous extraction of the same document:
+ * <pre>
+ * deltaDir/&lt;docId&gt;.delta.json   the delta of the latest extraction
+ * deltaDir/&lt;docId&gt;.blocks       its revision on the first line, then one block hash per line
+ * </pre>
+ * Only the hashes of the previous extraction are kept, since the delta carries the content of the new
+ * blocks alone. Both files are written to a temporary name and moved into place.
+ */
+public class DeltaStore {
+
+    private static final String DELTA_SUFFIX = ".delta.json";
+    private static final String BLOCKS_SUFFIX = ".blocks";
+
+    private final Path deltaDir;
+
+    public DeltaStore(Path deltaDir) throws IOException {
+        this.deltaDir = Files.createDirectories(deltaDir);
+    }
+
+    /**
+     * Computes and writes the delta of {@code blocks} against the extraction recorded last for the
+     * document, then records {@code blocks} as the base of the next delta. Without an earlier
+     * extraction every block is reported as added.
+     */
+    public synchronized BlockDelta record(String docId, String revisionId, List<BlockDelta.Block> blocks) throws IOException {
+        Path blocksFile = deltaDir.resolve(checkName(docId) + BLOCKS_SUFFIX);
+        String baseRevision = null;
+        List<String> previousHashes = List.of();
+        if (Files.exists(blocksFile)) {
+            List<String> lines = Files.readAllLines(blocksFile, StandardCharsets.UTF_8);
+            if (!lines.isEmpty()) {
+                baseRevision = lines.get(0).isEmpty() ? null : lines.get(0);
+                previousHashes = lines.subList(1, lines.size());
+            }
+        }
+        BlockDelta delta = BlockDelta.compute(docId, baseRevision, previousHashes, revisionId, blocks);
+
+        writeAtomically(deltaDir.resolve(docId + DELTA_SUFFIX), out -> {
+            JsonWriter writer = new JsonWriter(out);
+            delta.write(writer);
+            writer.flush();
+        });
+        List<String> lines = new ArrayList<>(blocks.size() + 1);
+        lines.add(revisionId != null ? revisionId : "");
+        for (BlockDelta.Block block : blocks) {
+            lines.add(block.getHash());
+        }
+        writeAtomically(blocksFile, out -> {
+            for (String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        });
+        return delta;
+    }
+
+    @FunctionalInterface
+    private interface WriterAction {
+        void write(Writer out) throws IOException;
+    }
+
+    private void writeAtomically(Path target, WriterAction action) throws IOException {
+        Path temp = Files.createTempFile(deltaDir, target.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                action.write(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Document IDs are URL-safe tokens; refuse anything that could escape the delta directory.
+    private static String checkName(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Not a valid document ID: '" + name + "'");
+        }
+        return name;
+    }
+}
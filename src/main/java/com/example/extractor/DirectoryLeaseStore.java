@@ -0,0 +1,66 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link LeaseStore} in a directory shared by the nodes, e.g. over NFS. An entry is written to a
+ * temporary file first and then hard-linked under its name, which fails if the name exists: the
+ * link is what makes creation exclusive, and it only ever appears with its full content.
+ */
+public class DirectoryLeaseStore implements LeaseStore {
+
+    private final Path dir;
+
+    public DirectoryLeaseStore(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    @Override
+    public boolean create(String name, String content) throws IOException {
+        Path temp = writeTemp(name, content);
+        try {
+            Files.createLink(dir.resolve(name), temp);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void write(String name, String content) throws IOException {
+        Path temp = writeTemp(name, content);
+        try {
+            Files.move(temp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public String read(String name) throws IOException {
+        try {
+            return Files.readString(dir.resolve(name), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path writeTemp(String name, String content) throws IOException {
+        Path temp = Files.createTempFile(dir, "." + name, ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        return temp;
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.docs.v1.Docs;
+import com.google.api.services.docs.v1.model.Document;
+
+/**
+ * Fetches several documents with one HTTP request through the Google API batch endpoint,
+ * instead of paying a full round-trip per {@code documents.get}. Each document in the batch
+ * succeeds or fails on its own.
+ */
+public class DocumentBatchFetcher {
+
+    /** Google accepts up to 1000 calls per batch, but recommends keeping batches far smaller. */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    /** The outcome for one document of a batch: either the document or an error message. */
+    public static class Result {
+        final String docId;
+        final Document document;
+        final int statusCode;
+        final String error;
+
+        private Result(String docId, Document document, int statusCode, String error) {
+            this.docId = docId;
+            this.document = document;
+            this.statusCode = statusCode;
+            this.error = error;
+        }
+
+        public String getDocId() {
+            return docId;
+        }
+
+        public Document getDocument() {
+            return document;
+        }
+
+        /** The HTTP status of a failed item, 0 if unknown. */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return document != null;
+        }
+    }
+
+    private final Docs docsService;
+    private final String fields;
+
+    /**
+     * @param fields Partial-response mask applied to every {@code documents.get}, or null for full documents.
+     */
+    public DocumentBatchFetcher(Docs docsService, String fields) {
+        this.docsService = docsService;
+        this.fields = fields;
+    }
+
+    /**
+     * Fetches all documents in a single batch request.
+     * @return One result per ID, in the order of {@code docIds}.
+     * @throws IOException if the batch request itself fails.
+     */
+    public List<Result> fetch(List<String> docIds) throws IOException {
+        if (docIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " documents per batch, got " + docIds.size());
+        }
+        if (docIds.isEmpty()) return List.of();
+        Result[] results = new Result[docIds.size()];
+
+        BatchRequest batch = docsService.batch();
+        for (int i = 0; i < docIds.size(); i++) {
+            final int slot = i;
+            final String docId = docIds.get(i);
+            Docs.Documents.Get get = docsService.documents().get(docId);
+            if (fields != null) {
+                get.setFields(fields);
+            }
+            get.queue(batch, new JsonBatchCallback<Document>() {
+                @Override
+                public void onSuccess(Document document, HttpHeaders responseHeaders) {
+                    results[slot] = new Result(docId, document, 200, null);
+                }
+
+                @Override
+                public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                    results[slot] = new Result(docId, null, error.getCode(), error.getCode() + " " + error.getMessage());
+                }
+            });
+        }
+        batch.execute();
+
+        List<Result> ordered = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            // The server answers every part; a missing one means the response was cut short.
+            ordered.add(results[i] != null ? results[i] : new Result(docIds.get(i), null, 0, "No response in batch"));
+        }
+        return ordered;
+    }
+}
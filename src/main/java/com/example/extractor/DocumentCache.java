@@ -0,0 +1,109 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.model.Document;
+
+/**
+ * Fetched documents kept on disk, so the extractor can be re-run without the Docs API:
+ * <pre>
+ * cacheDir/&lt;docId&gt;/&lt;revisionId&gt;.json.gz   the document as the API returned it
+ * cacheDir/&lt;docId&gt;/LATEST                  the revisionId fetched most recently
+ * </pre>
+ * Files are written to a temporary name and moved into place, so a crash never leaves a
+ * truncated entry behind. The cache holds whatever was fetched: documents fetched with the
+ * default field mask only contain the fields today's extractor reads.
+ */
+public class DocumentCache {
+
+    private static final GsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final String LATEST = "LATEST";
+    private static final String SUFFIX = ".json.gz";
+    // Documents fetched without a revision (e.g. through a mask that leaves it out).
+    private static final String UNKNOWN_REVISION = "unknown";
+
+    private final Path cacheDir;
+
+    public DocumentCache(Path cacheDir) throws IOException {
+        this.cacheDir = Files.createDirectories(cacheDir);
+    }
+
+    /** Stores the document under its revision and makes it the latest one for {@code docId}. */
+    public void put(String docId, Document document) throws IOException {
+        String revisionId = document.getRevisionId() != null ? document.getRevisionId() : UNKNOWN_REVISION;
+        Path documentDir = Files.createDirectories(documentDir(docId));
+        Path target = documentDir.resolve(checkName(revisionId) + SUFFIX);
+        Path temp = Files.createTempFile(documentDir, "document", ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                JsonGenerator generator = JSON_FACTORY.createJsonGenerator(out, StandardCharsets.UTF_8);
+                generator.serialize(document);
+                generator.flush();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Path latestTemp = Files.createTempFile(documentDir, "latest", ".tmp");
+            Files.writeString(latestTemp, revisionId, StandardCharsets.UTF_8);
+            Files.move(latestTemp, documentDir.resolve(LATEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** The most recently cached revision of the document, or null if it was never cached. */
+    public Document getLatest(String docId) throws IOException {
+        String revisionId;
+        try {
+            revisionId = Files.readString(documentDir(docId).resolve(LATEST), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return get(docId, revisionId);
+    }
+
+    /** The given revision of the document, or null if it is not cached. */
+    public Document get(String docId, String revisionId) throws IOException {
+        Path file = documentDir(docId).resolve(checkName(revisionId) + SUFFIX);
+        if (!Files.exists(file)) return null;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return JSON_FACTORY.createJsonParser(in, StandardCharsets.UTF_8).parseAndClose(Document.class);
+        }
+    }
+
+    /** Every document ID with a cached revision, sorted. */
+    public List<String> listDocIds() throws IOException {
+        List<String> docIds = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            entries.filter(dir -> Files.exists(dir.resolve(LATEST)))
+                .map(dir -> dir.getFileName().toString())
+                .sorted()
+                .forEach(docIds::add);
+        }
+        return docIds;
+    }
+
+    private Path documentDir(String docId) {
+        return cacheDir.resolve(checkName(docId));
+    }
+
+    // Document and revision IDs are URL-safe tokens; refuse anything that could escape the cache directory.
+    private static String checkName(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Not a valid cache key: '" + name + "'");
+        }
+        return name;
+    }
+}
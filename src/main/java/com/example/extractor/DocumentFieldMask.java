@@ -0,0 +1,41 @@
+package com.example.extractor;
+
+/**
+ * The {@code fields} mask for {@code documents.get} that asks only for what {@link GoogleDocExtractor},
+ * {@link DocumentIndex} and the run journal read: the ID, title and revision, paragraph text with
+ * its run and paragraph styles, bullets, tables and the inline objects. Named styles, lists,
+ * headers, footers, footnotes, suggestions and positioned objects are left on the server.
+ * <p>
+ * Partial-response masks cannot recurse, so tables are spelled out to {@link #EXPLICIT_TABLE_DEPTH}
+ * levels of nesting; below that the whole cell content is requested, which keeps deeper tables
+ * correct at the cost of a larger payload for them. Every structural element selects its
+ * {@code endIndex} so that elements the extractor skips (section breaks, tables of contents)
+ * still take up their slot and element positions stay the same as in a full fetch.
+ */
+public final class DocumentFieldMask {
+
+    static final int EXPLICIT_TABLE_DEPTH = 3;
+
+    private static final String TEXT_STYLE =
+        "textStyle(bold,italic,underline,strikethrough,link/url,weightedFontFamily/fontFamily)";
+
+    private static final String PARAGRAPH =
+        "paragraph(elements(textRun(content," + TEXT_STYLE + "),inlineObjectElement/inlineObjectId),"
+            + "paragraphStyle(namedStyleType,alignment),bullet/nestingLevel)";
+
+    /** The mask applied to every {@code documents.get} unless {@code --full-fetch} is given. */
+    public static final String EXTRACTOR_FIELDS =
+        "documentId,title,revisionId,body/" + content(EXPLICIT_TABLE_DEPTH) + ",inlineObjects";
+
+    /** The mask of a watch poll, which only needs to know whether the document changed. */
+    public static final String REVISION_FIELDS = "revisionId";
+
+    private DocumentFieldMask() {
+    }
+
+    /** Structural element content with {@code tableDepth} more levels of tables spelled out. */
+    private static String content(int tableDepth) {
+        String nested = (tableDepth > 0) ? content(tableDepth - 1) : "content";
+        return "content(endIndex," + PARAGRAPH + ",table/tableRows/tableCells/" + nested + ")";
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.extractor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.api.services.docs.v1.model.Dimension;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+import com.google.api.services.docs.v1.model.InlineObject;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.TableCell;
+import com.google.api.services.docs.v1.model.TableRow;
+
+/**
+ * Everything {@link GoogleDocExtractor} needs to know about a document's structure, gathered in a
+ * single walk over the body: the introduction, where each element list's references section
+ * starts (and its text), whether the body renders an image at all, and the ordered list of
+ * images to upload. Extraction and image upload both work from one index instead of each
+ * re-walking the body and re-reading heading text.
+ */
+public final class DocumentIndex {
+
+    static final class ImageRef {
+        final String objectId;
+        final String contentUri;
+        // How wide the document displays the image, in points; 0 if the size is not known.
+        final double displayWidthPt;
+        // Everything the document knows about the image, which the image cache fingerprints
+        final EmbeddedObject embeddedObject;
+        ImageRef(String objectId, String contentUri, double displayWidthPt, EmbeddedObject embeddedObject) {
+            this.objectId = objectId;
+            this.contentUri = contentUri;
+            this.displayWidthPt = displayWidthPt;
+            this.embeddedObject = embeddedObject;
+        }
+    }
+
+    /** Per element list (the body or a table cell): where rendering stops and what follows. */
+    static final class ListInfo {
+        int referencesHeadingIndex = -1;
+        String referencesText = null;
+    }
+
+    private static final ListInfo NO_REFERENCES = new ListInfo();
+    private static final BitSet NOTHING_SKIPPED = new BitSet(0);
+
+    private final Document document;
+    private final Map<String, InlineObject> inlineObjects;
+    private final BitSet skippedBodyIndices = new BitSet();
+    private final Map<List<StructuralElement>, ListInfo> lists = new IdentityHashMap<>();
+    private final List<ImageRef> images = new ArrayList<>();
+    private boolean introFound = false;
+    private String introText = null;
+    private boolean rendersImage = false;
+    private String articleImageObjectId = null;
+    // Reused for every heading and the intro paragraph; only their trimmed forms escape.
+    private final StringBuilder headingText = new StringBuilder();
+    private final StringBuilder scratch = new StringBuilder();
+
+    private DocumentIndex(Document document) {
+        this.document = document;
+        this.inlineObjects = document.getInlineObjects();
+    }
+
+    public static DocumentIndex build(Document document) {
+        DocumentIndex index = new DocumentIndex(document);
+        List<StructuralElement> body = index.getBodyContent();
+        if (body != null) {
+            index.walk(body, true, true);
+        }
+        return index;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    List<StructuralElement> getBodyContent() {
+        return (document.getBody() != null) ? document.getBody().getContent() : null;
+    }
+
+    /** Text of the paragraph following the "Introduction" heading, or null. */
+    String getIntroText() {
+        return introText;
+    }
+
+    /** Top-level indices that are not rendered because they form the introduction. */
+    BitSet getSkippedBodyIndices() {
+        return skippedBodyIndices;
+    }
+
+    static BitSet nothingSkipped() {
+        return NOTHING_SKIPPED;
+    }
+
+    ListInfo getListInfo(List<StructuralElement> elements) {
+        ListInfo info = lists.get(elements);
+        return info != null ? info : NO_REFERENCES;
+    }
+
+    /** Whether any rendered paragraph contains an inline object, i.e. whether there is an {@code image_001}. */
+    boolean rendersImage() {
+        return rendersImage;
+    }
+
+    /** The inline object rendered as {@code image_001}, the article image, or null. */
+    String getArticleImageObjectId() {
+        return articleImageObjectId;
+    }
+
+    /** Every image with a content URI, in document order, including the introduction and references. */
+    List<ImageRef> getImages() {
+        return images;
+    }
+
+    boolean isInlineObject(String objectId) {
+        return objectId != null && inlineObjects != null && inlineObjects.containsKey(objectId);
+    }
+
+    InlineObject getInlineObject(String objectId) {
+        return inlineObjects.get(objectId);
+    }
+
+    /**
+     * @param rendered Whether the extractor renders this list; lists inside a references section
+     *                 are only walked to collect their images.
+     */
+    private void walk(List<StructuralElement> elements, boolean isBody, boolean rendered) {
+        if (elements == null) return;
+        ListInfo info = null;
+        StringBuilder referencesText = null;
+        if (rendered) {
+            info = new ListInfo();
+            lists.put(elements, info);
+        }
+        boolean inReferencesSection = false;
+
+        for (int i = 0; i < elements.size(); i++) {
+            StructuralElement element = elements.get(i);
+            Paragraph paragraph = element.getParagraph();
+            if (paragraph != null) {
+                int imageCount = collectImages(paragraph);
+                boolean isHeading = paragraph.getParagraphStyle() != null
+                    && "HEADING_1".equals(paragraph.getParagraphStyle().getNamedStyleType());
+                if (isHeading) {
+                    TextNormalizer.appendParagraphText(paragraph, headingText);
+                }
+
+                if (isBody && !introFound && isHeading && TextNormalizer.trimmedEqualsIgnoreCase(headingText, "Introduction")) {
+                    introFound = true;
+                    skippedBodyIndices.set(i);
+                    if (i + 1 < elements.size() && elements.get(i + 1).getParagraph() != null) {
+                        introText = TextNormalizer.trimmedString(
+                            TextNormalizer.appendParagraphText(elements.get(i + 1).getParagraph(), scratch));
+                        skippedBodyIndices.set(i + 1);
+                    }
+                }
+                if (!rendered || (isBody && skippedBodyIndices.get(i))) continue;
+
+                if (!inReferencesSection) {
+                    if (imageCount > 0 && !rendersImage) {
+                        rendersImage = true;
+                        articleImageObjectId = firstInlineObjectId(paragraph);
+                    }
+                    if (isHeading && TextNormalizer.trimmedEqualsIgnoreCase(headingText, "References")) {
+                        inReferencesSection = true;
+                        info.referencesHeadingIndex = i;
+                        referencesText = new StringBuilder();
+                    }
+                } else {
+                    TextNormalizer.appendRawParagraphContent(paragraph, referencesText).append('\n');
+                }
+            } else if (element.getTable() != null) {
+                boolean renderCells = rendered && !inReferencesSection;
+                for (TableRow row : element.getTable().getTableRows()) {
+                    for (TableCell cell : row.getTableCells()) {
+                        walk(cell.getContent(), false, renderCells);
+                    }
+                }
+            }
+        }
+
+        if (referencesText != null && referencesText.length() > 0) {
+            info.referencesText = TextNormalizer.normalizeLineBreaks(referencesText);
+        }
+    }
+
+    /**
+     * Adds the paragraph's uploadable images to {@link #images}.
+     * @return The number of inline objects in the paragraph that the extractor numbers as images.
+     */
+    private int collectImages(Paragraph paragraph) {
+        int count = 0;
+        for (ParagraphElement paraElement : paragraph.getElements()) {
+            if (paraElement.getInlineObjectElement() == null) continue;
+            String objectId = paraElement.getInlineObjectElement().getInlineObjectId();
+            if (!isInlineObject(objectId)) continue;
+            count++;
+            InlineObject inlineObject = inlineObjects.get(objectId);
+            if (inlineObject.getInlineObjectProperties() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject().getImageProperties() != null) {
+                EmbeddedObject embeddedObject = inlineObject.getInlineObjectProperties().getEmbeddedObject();
+                String contentUri = embeddedObject.getImageProperties().getContentUri();
+                if (contentUri != null && !contentUri.isEmpty()) {
+                    images.add(new ImageRef(objectId, contentUri, displayWidthPt(embeddedObject), embeddedObject));
+                }
+            }
+        }
+        return count;
+    }
+
+    private String firstInlineObjectId(Paragraph paragraph) {
+        for (ParagraphElement paraElement : paragraph.getElements()) {
+            if (paraElement.getInlineObjectElement() == null) continue;
+            String objectId = paraElement.getInlineObjectElement().getInlineObjectId();
+            if (isInlineObject(objectId)) return objectId;
+        }
+        return null;
+    }
+
+    private static double displayWidthPt(EmbeddedObject embeddedObject) {
+        if (embeddedObject.getSize() == null || embeddedObject.getSize().getWidth() == null) return 0;
+        Dimension width = embeddedObject.getSize().getWidth();
+        // The Docs API reports object sizes in points; anything else is not a size we can scale to.
+        if (width.getMagnitude() == null || (width.getUnit() != null && !"PT".equals(width.getUnit()))) return 0;
+        return width.getMagnitude();
+    }
+}
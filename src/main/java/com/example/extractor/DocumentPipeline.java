@@ -0,0 +1,297 @@
+package com.example.extractor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.api.services.docs.v1.model.Document;
+
+/**
+ * Runs documents through a chain of stages (fetch, extract, upload, ...).
+ * Every stage has its own pool of virtual-thread workers and is connected to the
+ * next one by a bounded queue, so a slow stage applies back-pressure instead of
+ * letting work pile up in memory. A failure in any stage only drops that document.
+ * <p>
+ * Each call of a stage's handler is timed as {@code stage.<name>} in the {@link RunMetrics}; for a
+ * batch stage that is the time of the whole batch.
+ */
+public class DocumentPipeline {
+
+    /** Work performed by a single stage on a single document. */
+    @FunctionalInterface
+    public interface StageHandler {
+        void process(DocumentJob job) throws Exception;
+    }
+
+    /**
+     * Work performed by a stage on several documents at once, e.g. one batched API request.
+     * Throwing fails every job of the batch.
+     */
+    @FunctionalInterface
+    public interface BatchStageHandler {
+        /** @return The jobs that failed, with their cause; every other job moves on. */
+        Map<DocumentJob, Exception> process(List<DocumentJob> jobs) throws Exception;
+    }
+
+    /** Told about every document that fails, from the worker of the stage it failed in. */
+    @FunctionalInterface
+    public interface FailureListener {
+        void failed(String docId, String stage, Exception error);
+    }
+
+    /** The state of one document as it travels through the pipeline. */
+    public static class DocumentJob {
+        final String docId;
+        Document document;
+        DocumentIndex index;
+        // Results of the image stage, which the JSON uses to link to the stored images
+        List<ImageTransferResult> images = List.of();
+        String outputPath;
+
+        DocumentJob(String docId) {
+            this.docId = docId;
+        }
+
+        public String getDocId() {
+            return docId;
+        }
+    }
+
+    /** Outcome of a pipeline run. */
+    public static class PipelineSummary {
+        final List<String> succeeded;
+        final Map<String, String> failed;
+
+        PipelineSummary(List<String> succeeded, Map<String, String> failed) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        public List<String> getSucceeded() {
+            return succeeded;
+        }
+
+        public Map<String, String> getFailed() {
+            return failed;
+        }
+    }
+
+    private static class Stage {
+        final String name;
+        final int concurrency;
+        final int batchSize;
+        final BatchStageHandler handler;
+        Stage(String name, int concurrency, int batchSize, BatchStageHandler handler) {
+            this.name = name;
+            this.concurrency = concurrency;
+            this.batchSize = batchSize;
+            this.handler = handler;
+        }
+    }
+
+    // Marker pushed through the queues once the upstream stage has drained.
+    private static final DocumentJob END_OF_STREAM = new DocumentJob(null);
+    // How long a batch stage waits for a partial batch to fill up before processing it.
+    static final long BATCH_LINGER_MILLIS = 50;
+
+    private final int queueCapacity;
+    private final RunMetrics metrics;
+    private final List<Stage> stages = new ArrayList<>();
+    private FailureListener failureListener = (docId, stage, error) -> { };
+
+    public DocumentPipeline(int queueCapacity) {
+        this(queueCapacity, new RunMetrics());
+    }
+
+    public DocumentPipeline(int queueCapacity, RunMetrics metrics) {
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        this.queueCapacity = queueCapacity;
+        this.metrics = metrics;
+    }
+
+    public DocumentPipeline addStage(String name, int concurrency, StageHandler handler) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency of stage '" + name + "' must be at least 1");
+        stages.add(new Stage(name, concurrency, 1, jobs -> {
+            handler.process(jobs.get(0));
+            return Map.of();
+        }));
+        return this;
+    }
+
+    /**
+     * Adds a stage whose workers take up to {@code batchSize} documents at a time. A worker waits
+     * at most {@link #BATCH_LINGER_MILLIS} for a partial batch to fill before handing it over.
+     */
+    public DocumentPipeline addBatchStage(String name, int concurrency, int batchSize, BatchStageHandler handler) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency of stage '" + name + "' must be at least 1");
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size of stage '" + name + "' must be at least 1");
+        stages.add(new Stage(name, concurrency, batchSize, handler));
+        return this;
+    }
+
+    public DocumentPipeline onFailure(FailureListener listener) {
+        this.failureListener = listener;
+        return this;
+    }
+
+    public PipelineSummary run(List<String> docIds) throws InterruptedException {
+        return run(docIds.iterator());
+    }
+
+    /**
+     * Runs the documents {@code docIds} hands out. The iterator is drained on the calling thread as
+     * the first stage takes documents, so it may block until it has the next one, e.g. until a
+     * document is claimed.
+     */
+    public PipelineSummary run(Iterator<String> docIds) throws InterruptedException {
+        if (stages.isEmpty()) throw new IllegalStateException("Pipeline has no stages");
+
+        List<BlockingQueue<DocumentJob>> queues = new ArrayList<>();
+        for (Stage stage : stages) {
+            // A batch stage needs room for at least one full batch in front of it.
+            queues.add(new ArrayBlockingQueue<>(Math.max(queueCapacity, stage.batchSize)));
+        }
+        List<String> succeeded = Collections.synchronizedList(new ArrayList<>());
+        Map<String, String> failed = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        List<Thread> workers = new ArrayList<>();
+        for (int s = 0; s < stages.size(); s++) {
+            Stage stage = stages.get(s);
+            BlockingQueue<DocumentJob> input = queues.get(s);
+            BlockingQueue<DocumentJob> output = (s + 1 < queues.size()) ? queues.get(s + 1) : null;
+            AtomicInteger activeWorkers = new AtomicInteger(stage.concurrency);
+            for (int w = 0; w < stage.concurrency; w++) {
+                Runnable worker = () -> runWorker(stage, input, output, activeWorkers, succeeded, failed);
+                workers.add(Thread.ofVirtual().name(stage.name + "-" + w).start(worker));
+            }
+        }
+
+        // The calling thread acts as the source; put() blocks while the first stage is saturated.
+        BlockingQueue<DocumentJob> source = queues.get(0);
+        while (docIds.hasNext()) {
+            source.put(new DocumentJob(docIds.next()));
+        }
+        source.put(END_OF_STREAM);
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new PipelineSummary(new ArrayList<>(succeeded), new LinkedHashMap<>(failed));
+    }
+
+    private void runWorker(Stage stage, BlockingQueue<DocumentJob> input, BlockingQueue<DocumentJob> output,
+                           AtomicInteger activeWorkers, List<String> succeeded, Map<String, String> failed) {
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                List<DocumentJob> batch = new ArrayList<>(stage.batchSize);
+                endOfStream = takeBatch(stage.batchSize, input, batch);
+                if (batch.isEmpty()) break;
+
+                Map<DocumentJob, Exception> errors;
+                long startNanos = System.nanoTime();
+                try {
+                    errors = stage.handler.process(batch);
+                } catch (Exception e) {
+                    errors = new LinkedHashMap<>();
+                    for (DocumentJob job : batch) {
+                        errors.put(job, e);
+                    }
+                }
+                metrics.recordSince("stage." + stage.name, startNanos);
+                for (DocumentJob job : batch) {
+                    Exception error = errors.get(job);
+                    if (error != null) {
+                        System.err.printf("❌ Error processing document %s during %s: %s\n", job.docId, stage.name, error.getMessage());
+                        failed.put(job.docId, stage.name + ": " + error.getMessage());
+                        metrics.increment("documents.failed." + stage.name);
+                        notifyFailure(job.docId, stage.name, error);
+                    } else if (output != null) {
+                        output.put(job);
+                    } else {
+                        succeeded.add(job.docId);
+                        metrics.increment("documents.succeeded");
+                        System.out.println("--- Finished processing " + job.docId + " ---");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // However this worker ends, the next stage must learn once the last one of its stage is gone
+            if (activeWorkers.decrementAndGet() == 0 && output != null) {
+                putUninterruptibly(output, END_OF_STREAM);
+            }
+        }
+    }
+
+    // A throwing listener must not take the stage's worker down with it
+    private void notifyFailure(String docId, String stage, Exception error) {
+        try {
+            failureListener.failed(docId, stage, error);
+        } catch (RuntimeException e) {
+            System.err.printf("Failure listener failed for document %s: %s\n", docId, e.getMessage());
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<DocumentJob> queue, DocumentJob job) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(job);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Fails documents after they passed every stage, e.g. whose output a batching sink could not store
+     * in the end, so that the summary does not report them as succeeded. Counters only ever grow, so
+     * {@code documents.succeeded} keeps counting them as having passed every stage and
+     * {@code documents.failed.<stage>} counts them again as failed there.
+     * @param errors The error message per document.
+     * @return {@code summary} with the documents of {@code errors} it counted as succeeded moved to the
+     *         failed ones, under {@code stage}.
+     */
+    public PipelineSummary failAfterwards(PipelineSummary summary, String stage, Map<String, String> errors) {
+        List<String> succeeded = new ArrayList<>(summary.succeeded);
+        Map<String, String> failed = new LinkedHashMap<>(summary.failed);
+        errors.forEach((docId, error) -> {
+            if (succeeded.remove(docId)) {
+                failed.put(docId, stage + ": " + error);
+                metrics.increment("documents.failed." + stage);
+            }
+        });
+        return new PipelineSummary(succeeded, failed);
+    }
+
+    /**
+     * Blocks for one job, then collects up to {@code batchSize} jobs in total, lingering briefly for
+     * stragglers. On the end-of-stream marker, hands it back for sibling workers.
+     * @return Whether the end of the stream was reached.
+     */
+    private boolean takeBatch(int batchSize, BlockingQueue<DocumentJob> input, List<DocumentJob> batch) throws InterruptedException {
+        DocumentJob job = input.take();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER_MILLIS);
+        while (true) {
+            if (job == END_OF_STREAM) {
+                input.put(END_OF_STREAM);
+                return true;
+            }
+            batch.add(job);
+            if (batch.size() >= batchSize) return false;
+            job = input.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (job == null) return false;
+        }
+    }
+}
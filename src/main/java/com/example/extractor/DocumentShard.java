@@ -0,0 +1,74 @@
+package com.example.extractor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One of {@code count} disjoint parts of a document ID list, picked by a hash of each ID, so that
+ * nodes given the same list and {@code --shard 1/n} to {@code --shard n/n} split it between them
+ * without talking to each other. The shard of a document only depends on its ID: reordering the
+ * list or adding IDs to it never moves the others.
+ */
+public final class DocumentShard {
+
+    final int index;
+    final int count;
+
+    DocumentShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("A shard is I/N with 1 <= I <= N, got " + index + "/" + count + ".");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /** Parses {@code I/N}, the I-th of N shards, counted from 1. */
+    public static DocumentShard parse(String value) {
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("--shard expects I/N, e.g. 2/4, got '" + value + "'.");
+        }
+        try {
+            return new DocumentShard(Integer.parseInt(value.substring(0, slash).trim()), Integer.parseInt(value.substring(slash + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--shard expects I/N, e.g. 2/4, got '" + value + "'.");
+        }
+    }
+
+    public boolean contains(String docId) {
+        return shardOf(docId, count) == index;
+    }
+
+    /** The IDs of this shard, in list order. */
+    public List<String> select(List<String> docIds) {
+        List<String> selected = new ArrayList<>();
+        for (String docId : docIds) {
+            if (contains(docId)) selected.add(docId);
+        }
+        return selected;
+    }
+
+    /** The shard, from 1 to {@code count}, of a document. */
+    static int shardOf(String docId, int count) {
+        // String.hashCode clusters IDs that share a long prefix; the first 64 bits of SHA-256 do not
+        long hash = ByteBuffer.wrap(sha256(docId.getBytes(StandardCharsets.UTF_8))).getLong();
+        return (int) Long.remainderUnsigned(hash, count) + 1;
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM has it
+        }
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
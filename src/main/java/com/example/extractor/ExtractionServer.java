@@ -0,0 +1,420 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves extractions over HTTP from one long-lived process, so the Docs service, the S3 clients
+ * and a JIT-compiled extractor are reused by every job instead of being rebuilt per batch:
+ * <pre>
+ * POST /jobs?docId=ID[&amp;wait=true]  queue a job (or {"docId": "ID"} as the body); 202 with its status,
+ *                                     or 200 with the finished status when waiting; 503 if the queue is full
+ * GET  /jobs/ID                       the job's status
+ * GET  /jobs/ID/result                the extracted JSON once the job succeeded; 409 before
+ * GET  /health                        queue depth and worker count
+ * GET  /metrics                       the {@link RunMetrics} in the Prometheus text format
+ * </pre>
+ * Jobs run on a fixed number of virtual-thread workers behind a bounded queue. Finished jobs are
+ * kept for lookups until {@code retainedJobs} newer ones have finished.
+ * <p>
+ * A job fetches with the operator's credentials and writes to their bucket, so the server listens
+ * on the loopback interface unless given another address, and then only with a token that every
+ * request must present as {@code Authorization: Bearer <token>}.
+ */
+public class ExtractionServer implements AutoCloseable {
+
+    /** Extracts one document with the warm clients. */
+    @FunctionalInterface
+    public interface Processor {
+        Result process(String docId) throws Exception;
+    }
+
+    /** What a finished extraction produced. */
+    public static class Result {
+        final String json;
+        final List<ImageTransferResult> images;
+        final String outputLocation;
+        public Result(String json, List<ImageTransferResult> images, String outputLocation) {
+            this.json = json;
+            this.images = images;
+            this.outputLocation = outputLocation;
+        }
+    }
+
+    enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    /** One submitted extraction; its fields are guarded by the job itself. */
+    static class Job {
+        final String id;
+        final String docId;
+        final long submittedNanos = System.nanoTime();
+        final CountDownLatch done = new CountDownLatch(1);
+        Status status = Status.QUEUED;
+        long startedNanos;
+        long finishedNanos;
+        Result result;
+        String error;
+        Job(String id, String docId) {
+            this.id = id;
+            this.docId = docId;
+        }
+    }
+
+    private static final long MAX_WAIT_SECONDS = 300;
+    private static final int MAX_REQUEST_BYTES = 64 * 1024;
+    // How long close() lets running jobs finish before interrupting them
+    private static final long SHUTDOWN_GRACE_SECONDS = 60;
+
+    private final Processor processor;
+    private final RunMetrics metrics;
+    private final int workers;
+    private final int retainedJobs;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong jobSequence = new AtomicLong();
+    // In submission order, so the oldest finished jobs are dropped first
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final byte[] token;
+    private final HttpServer server;
+
+    /** A server on the loopback interface that takes requests without a token; see the other constructor. */
+    public ExtractionServer(Processor processor, RunMetrics metrics, int port, int workers, int queueCapacity, int retainedJobs) throws IOException {
+        this(processor, metrics, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null, workers, queueCapacity, retainedJobs);
+    }
+
+    /**
+     * @param address       Address to listen on; port 0 picks a free one (see {@link #getPort()}).
+     * @param token         Token every request must present, or null to take any request, which is
+     *                      only allowed on a loopback address.
+     * @param workers       Jobs processed at once.
+     * @param queueCapacity Jobs waiting for a worker before submissions are rejected.
+     * @param retainedJobs  Finished jobs kept for status and result lookups.
+     */
+    public ExtractionServer(Processor processor, RunMetrics metrics, InetSocketAddress address, String token,
+                            int workers, int queueCapacity, int retainedJobs) throws IOException {
+        if (workers < 1) throw new IllegalArgumentException("workers must be at least 1");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        if (token != null && token.isBlank()) throw new IllegalArgumentException("token must not be blank");
+        if (token == null && (address.getAddress() == null || !address.getAddress().isLoopbackAddress())) {
+            throw new IllegalArgumentException("Listening on " + address + " needs a token; without one, bind to a loopback address");
+        }
+        this.token = (token != null) ? token.getBytes(StandardCharsets.UTF_8) : null;
+        this.processor = processor;
+        this.metrics = metrics;
+        this.workers = workers;
+        this.retainedJobs = retainedJobs;
+        this.jobExecutor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("job-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/health", exchange -> handle(exchange, "GET", () -> sendJson(exchange, 200, health())));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", () -> {
+            StringWriter text = new StringWriter();
+            metrics.writePrometheus(text);
+            send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text.toString());
+        }));
+    }
+
+    public void start() {
+        server.start();
+        System.out.printf("Extraction server listening on %s:%d with %d worker(s)%s.\n", server.getAddress().getHostString(),
+                getPort(), workers, (token != null) ? ", requiring a token" : "");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, drops queued jobs and lets running ones finish, interrupting them
+     * only if they take longer than a minute.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        jobExecutor.getQueue().clear();
+        jobExecutor.shutdown();
+        try {
+            if (!jobExecutor.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                jobExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            jobExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        requestExecutor.shutdown();
+    }
+
+    /** Queues an extraction of {@code docId}. */
+    Job submit(String docId) {
+        Job job = new Job("job-" + jobSequence.incrementAndGet(), docId);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            metrics.increment("server.jobs.rejected");
+            return null;
+        }
+        metrics.increment("server.jobs.submitted");
+        return job;
+    }
+
+    private void run(Job job) {
+        synchronized (job) {
+            job.status = Status.RUNNING;
+            job.startedNanos = System.nanoTime();
+        }
+        metrics.timer("server.queue_wait").record(job.startedNanos - job.submittedNanos);
+        Result result = null;
+        String error = null;
+        try {
+            result = processor.process(job.docId);
+        } catch (Exception e) {
+            error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+            System.err.printf("❌ Error processing document %s for %s: %s\n", job.docId, job.id, error);
+        }
+        synchronized (job) {
+            job.result = result;
+            job.error = error;
+            job.status = (error == null) ? Status.SUCCEEDED : Status.FAILED;
+            job.finishedNanos = System.nanoTime();
+        }
+        metrics.timer("server.job").record(job.finishedNanos - job.startedNanos);
+        metrics.increment(error == null ? "server.jobs.succeeded" : "server.jobs.failed");
+        job.done.countDown();
+        forgetOldJobs();
+    }
+
+    private void forgetOldJobs() {
+        synchronized (jobs) {
+            long finished = jobs.values().stream().filter(job -> job.done.getCount() == 0).count();
+            Iterator<Job> oldestFirst = jobs.values().iterator();
+            while (finished > retainedJobs && oldestFirst.hasNext()) {
+                if (oldestFirst.next().done.getCount() == 0) {
+                    oldestFirst.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.replaceAll("/+$", "").split("/");
+        // "", "jobs", [id, ["result"]]
+        if (parts.length == 2) {
+            handle(exchange, "POST", () -> handleSubmit(exchange));
+            return;
+        }
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(parts[2]);
+        }
+        if (job == null || parts.length > 4 || (parts.length == 4 && !parts[3].equals("result"))) {
+            handle(exchange, "GET", () -> sendError(exchange, 404, "Unknown job " + path));
+            return;
+        }
+        if (parts.length == 3) {
+            handle(exchange, "GET", () -> sendJson(exchange, 200, status(job)));
+            return;
+        }
+        handle(exchange, "GET", () -> {
+            Result result;
+            synchronized (job) {
+                result = (job.status == Status.SUCCEEDED) ? job.result : null;
+            }
+            if (result == null) {
+                sendError(exchange, 409, "Job " + job.id + " has not succeeded");
+            } else {
+                send(exchange, 200, "application/json; charset=utf-8", result.json);
+            }
+        });
+    }
+
+    private void handleSubmit(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        String docId = query.get("docId");
+        if (docId == null) {
+            docId = docIdFromBody(exchange.getRequestBody());
+        }
+        if (docId == null || docId.isBlank()) {
+            sendError(exchange, 400, "A docId is required, as a query parameter or in a JSON body");
+            return;
+        }
+        Job job = submit(docId.trim());
+        if (job == null) {
+            sendError(exchange, 503, "The job queue is full");
+            return;
+        }
+        if (!Boolean.parseBoolean(query.get("wait"))) {
+            exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+            sendJson(exchange, 202, status(job));
+            return;
+        }
+        try {
+            job.done.await(MAX_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sendJson(exchange, 200, status(job));
+    }
+
+    private static String docIdFromBody(InputStream body) throws IOException {
+        byte[] bytes = body.readNBytes(MAX_REQUEST_BYTES);
+        if (bytes.length == 0) return null;
+        try {
+            JsonObject request = new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), JsonObject.class);
+            return (request != null && request.has("docId")) ? request.get("docId").getAsString() : null;
+        } catch (JsonSyntaxException | IllegalStateException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private String status(Job job) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        synchronized (job) {
+            writer.beginObject();
+            writer.name("jobId").value(job.id);
+            writer.name("docId").value(job.docId);
+            writer.name("status").value(job.status.name().toLowerCase());
+            if (job.status == Status.SUCCEEDED || job.status == Status.FAILED) {
+                writer.name("queuedMillis").value(TimeUnit.NANOSECONDS.toMillis(job.startedNanos - job.submittedNanos));
+                writer.name("elapsedMillis").value(TimeUnit.NANOSECONDS.toMillis(job.finishedNanos - job.startedNanos));
+            }
+            if (job.error != null) {
+                writer.name("error").value(job.error);
+            }
+            if (job.result != null) {
+                writer.name("result").value("/jobs/" + job.id + "/result");
+                if (job.result.outputLocation != null) {
+                    writer.name("output").value(job.result.outputLocation);
+                }
+                writer.name("images").beginArray();
+                for (ImageTransferResult image : job.result.images) {
+                    writer.beginObject();
+                    writer.name("objectId").value(image.getObjectId());
+                    writer.name("s3Key").value(image.getS3Key());
+                    writer.name("success").value(image.isSuccess());
+                    if (image.getError() != null) {
+                        writer.name("error").value(image.getError());
+                    }
+                    writer.endObject();
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    private String health() {
+        JsonObject health = new JsonObject();
+        health.addProperty("status", "ok");
+        health.addProperty("workers", workers);
+        health.addProperty("running", jobExecutor.getActiveCount());
+        health.addProperty("queued", jobExecutor.getQueue().size());
+        health.addProperty("queueCapacity", jobExecutor.getQueue().size() + jobExecutor.getQueue().remainingCapacity());
+        return health.toString();
+    }
+
+    @FunctionalInterface
+    private interface ExchangeAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs {@code action} if the request carries the token and uses {@code method}, answers 401 or 405
+     * otherwise, and always closes the exchange.
+     */
+    private void handle(HttpExchange exchange, String method, ExchangeAction action) throws IOException {
+        try (exchange) {
+            if (!isAuthorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendError(exchange, 401, "A valid token is required");
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Use " + method);
+                return;
+            }
+            action.run();
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (token == null) return true;
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return false;
+        // Compares in constant time, so the response time does not reveal how much of a guess was right
+        return MessageDigest.isEqual(token, authorization.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        sendJson(exchange, status, error.toString());
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new LinkedHashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) return query;
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.docs.v1.Docs;
+import com.google.api.services.docs.v1.model.Document;
+
+/**
+ * Fetches each document twice, once in full and once with {@link DocumentFieldMask#EXTRACTOR_FIELDS},
+ * and reports the response size and the time it takes to parse each response into a {@link Document}.
+ * Sizes are of the decoded JSON, i.e. after any gzip transfer encoding has been undone.
+ */
+public class FieldMaskMeasurement {
+
+    // Parse each payload a few times and keep the fastest, so JIT warm-up does not skew small documents.
+    private static final int PARSE_ROUNDS = 5;
+
+    static class Sample {
+        final String docId;
+        final long fullBytes;
+        final long maskedBytes;
+        final long fullParseNanos;
+        final long maskedParseNanos;
+        Sample(String docId, long fullBytes, long maskedBytes, long fullParseNanos, long maskedParseNanos) {
+            this.docId = docId;
+            this.fullBytes = fullBytes;
+            this.maskedBytes = maskedBytes;
+            this.fullParseNanos = fullParseNanos;
+            this.maskedParseNanos = maskedParseNanos;
+        }
+    }
+
+    private final Docs docsService;
+
+    public FieldMaskMeasurement(Docs docsService) {
+        this.docsService = docsService;
+    }
+
+    /** Measures every document and prints one line per document plus the totals. */
+    public void run(List<String> docIds) {
+        long fullBytes = 0, maskedBytes = 0, fullNanos = 0, maskedNanos = 0;
+        System.out.printf("%-46s %12s %12s %8s %10s %10s\n", "Document", "Full bytes", "Masked bytes", "Saved", "Full ms", "Masked ms");
+        for (String docId : docIds) {
+            try {
+                Sample sample = measure(docId);
+                fullBytes += sample.fullBytes;
+                maskedBytes += sample.maskedBytes;
+                fullNanos += sample.fullParseNanos;
+                maskedNanos += sample.maskedParseNanos;
+                printRow(docId, sample.fullBytes, sample.maskedBytes, sample.fullParseNanos, sample.maskedParseNanos);
+            } catch (IOException e) {
+                System.err.printf("❌ Could not measure document %s: %s\n", docId, e.getMessage());
+            }
+        }
+        printRow("Total", fullBytes, maskedBytes, fullNanos, maskedNanos);
+    }
+
+    Sample measure(String docId) throws IOException {
+        byte[] full = download(docsService.documents().get(docId));
+        byte[] masked = download(docsService.documents().get(docId).setFields(DocumentFieldMask.EXTRACTOR_FIELDS));
+        return new Sample(docId, full.length, masked.length, bestParseNanos(full), bestParseNanos(masked));
+    }
+
+    private static byte[] download(Docs.Documents.Get request) throws IOException {
+        HttpResponse response = request.executeUnparsed();
+        try (InputStream in = response.getContent()) {
+            return in.readAllBytes();
+        } finally {
+            response.disconnect();
+        }
+    }
+
+    private long bestParseNanos(byte[] payload) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < PARSE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            docsService.getJsonFactory().createJsonParser(new ByteArrayInputStream(payload)).parseAndClose(Document.class);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void printRow(String label, long fullBytes, long maskedBytes, long fullNanos, long maskedNanos) {
+        double saved = fullBytes > 0 ? 100.0 * (fullBytes - maskedBytes) / fullBytes : 0;
+        System.out.printf("%-46s %12d %12d %7.1f%% %10.2f %10.2f\n",
+                label, fullBytes, maskedBytes, saved, fullNanos / 1e6, maskedNanos / 1e6);
+    }
+}
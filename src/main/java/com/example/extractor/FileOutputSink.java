@@ -0,0 +1,49 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** Writes {@code <docId>.json} into a directory, streaming the JSON straight into the file. */
+public class FileOutputSink implements OutputSink {
+
+    private final Path directory;
+    private final boolean pretty;
+
+    public FileOutputSink(Path directory, boolean pretty) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.pretty = pretty;
+    }
+
+    @Override
+    public long write(String docId, Content content, Listener listener) throws IOException {
+        Path file = directory.resolve(docId + ".json");
+        // Stream the JSON straight into the file instead of materializing it as a String first
+        try (Writer fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            content.writeTo(fileWriter, pretty);
+        }
+        listener.onStored(file.toString());
+        return Files.size(file);
+    }
+
+    @Override
+    public boolean exists(String location) {
+        return Files.exists(Paths.get(location));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
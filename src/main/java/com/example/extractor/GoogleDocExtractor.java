@@ -1,19 +1,42 @@
 package com.example.extractor;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL; // <-- ADDED IMPORT
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.google.api.services.docs.v1.model.Dimension;
 import com.google.api.services.docs.v1.model.Document;
 import com.google.api.services.docs.v1.model.EmbeddedObject;
 import com.google.api.services.docs.v1.model.InlineObject;
-import com.google.api.services.docs.v1.model.Link;
 import com.google.api.services.docs.v1.model.Paragraph;
 import com.google.api.services.docs.v1.model.ParagraphElement;
 import com.google.api.services.docs.v1.model.ParagraphStyle;
@@ -23,288 +46,750 @@ import com.google.api.services.docs.v1.model.StructuralElement;
 import com.google.api.services.docs.v1.model.Table;
 import com.google.api.services.docs.v1.model.TableCell;
 import com.google.api.services.docs.v1.model.TableRow;
-import com.google.api.services.docs.v1.model.TextStyle;
-import com.google.api.services.docs.v1.model.WeightedFontFamily;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
-import software.amazon.awssdk.core.sync.RequestBody;
+import com.google.gson.stream.JsonWriter;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
 
 public class GoogleDocExtractor {
 
+
     private final S3Client s3Client;
     private final String s3BucketName;
+    private final int imageTransferConcurrency;
+    private final S3StreamingUploader uploader;
+    private final S3AsyncUploader asyncUploader;
+    // Downloads the images; null for the default client, which is only built by the first download
+    private final PooledHttpClient http;
+    private ImageDeduplicator deduplicator = null;
+    private AdaptiveRateLimiter transferLimiter = null;
+    private ImageVariants imageVariants = null;
+    private ImageCache imageCache = null;
+    private boolean styleDictionary = false;
+    private RunMetrics metrics = new RunMetrics();
 
     public GoogleDocExtractor(S3Client s3Client, String s3BucketName) {
+        this(s3Client, s3BucketName, 1);
+    }
+
+    /**
+     * @param imageTransferConcurrency Maximum number of images of one document transferred at once.
+     *                                 1 keeps the transfers strictly sequential.
+     */
+    public GoogleDocExtractor(S3Client s3Client, String s3BucketName, int imageTransferConcurrency) {
+        this(s3Client, s3BucketName, imageTransferConcurrency, null);
+    }
+
+    /**
+     * @param http Downloads the images, over connections shared with the rest of the process;
+     *             null for {@link PooledHttpClient#defaultClient()}.
+     */
+    public GoogleDocExtractor(S3Client s3Client, String s3BucketName, int imageTransferConcurrency, PooledHttpClient http) {
+        this(s3Client, null, s3BucketName, imageTransferConcurrency, http);
+    }
+
+    private GoogleDocExtractor(S3Client s3Client, S3AsyncClient s3AsyncClient, String s3BucketName,
+                               int imageTransferConcurrency, PooledHttpClient http) {
+        if (imageTransferConcurrency < 1) throw new IllegalArgumentException("imageTransferConcurrency must be at least 1");
         this.s3Client = s3Client;
         this.s3BucketName = s3BucketName;
+        this.imageTransferConcurrency = imageTransferConcurrency;
+        this.uploader = (s3Client != null) ? new S3StreamingUploader(s3Client, s3BucketName) : null;
+        this.http = http;
+        this.asyncUploader = (s3AsyncClient != null)
+            ? new S3AsyncUploader(s3AsyncClient, s3BucketName, (http != null) ? http : PooledHttpClient.defaultClient())
+            : null;
+    }
+
+    /**
+     * An extractor that transfers images through an {@link S3AsyncClient} instead: no thread waits on a
+     * download or an upload, so the number of images in flight is no longer tied to the number of threads.
+     * Deduplication and {@link #enableRateLimiting(AdaptiveRateLimiter)} need the synchronous client;
+     * the async client relies on the SDK's own retry policy.
+     * @param imageTransferConcurrency Maximum number of images of one document in flight at once.
+     */
+    public static GoogleDocExtractor withAsyncClient(S3AsyncClient s3AsyncClient, String s3BucketName, int imageTransferConcurrency) {
+        return withAsyncClient(s3AsyncClient, s3BucketName, imageTransferConcurrency, null);
     }
 
-    private static class ImageInfo {
-        final String objectId;
-        final String contentUri;
-        final String contentType;
-        ImageInfo(String objectId, String contentUri, String contentType) {
-            this.objectId = objectId;
-            this.contentUri = contentUri;
-            this.contentType = contentType;
+    /**
+     * @param http Downloads the images; null for {@link PooledHttpClient#defaultClient()}.
+     */
+    public static GoogleDocExtractor withAsyncClient(S3AsyncClient s3AsyncClient, String s3BucketName,
+                                                     int imageTransferConcurrency, PooledHttpClient http) {
+        return new GoogleDocExtractor(null, s3AsyncClient, s3BucketName, imageTransferConcurrency, http);
+    }
+
+    /**
+     * Hashes every image before uploading it and skips the upload when the manifest shows the
+     * same content is already stored. See {@link ImageDeduplicator}.
+     * @param sharedPrefix Key prefix for shared content-addressed objects, or null.
+     */
+    public void enableDeduplication(ImageManifest manifest, String sharedPrefix) {
+        if (asyncUploader != null) throw new IllegalStateException("Deduplication needs the synchronous S3 client");
+        this.deduplicator = new ImageDeduplicator(s3Client, s3BucketName, uploader, manifest, sharedPrefix);
+    }
+
+    /**
+     * Paces image transfers through {@code limiter} and retries throttled or transient failures;
+     * a retry downloads the image again, since the first response body was already consumed.
+     */
+    public void enableRateLimiting(AdaptiveRateLimiter limiter) {
+        if (asyncUploader != null) throw new IllegalStateException("Rate limiting needs the synchronous S3 client");
+        this.transferLimiter = limiter;
+    }
+
+    /**
+     * Stores downscaled copies of every resizable image next to the original and lists them in the JSON
+     * rendered from the transfer results. See {@link ImageVariants}.
+     */
+    public void enableImageVariants(ImageVariants variants) {
+        this.imageVariants = variants;
+    }
+
+    /**
+     * Reads images from {@code cache} when it holds them and keeps every image downloaded in it, so
+     * extracting a document again does not download its images again. Cache hits and misses are
+     * counted as {@code image.cache.hits} and {@code image.cache.misses}. See {@link ImageCache}.
+     */
+    public void enableImageCache(ImageCache cache) {
+        this.imageCache = cache;
+    }
+
+    /**
+     * Shrinks the JSON of long documents, where the same few styles repeat on thousands of runs: adjacent
+     * text runs with the same style are merged into one, and a run's {@code style} becomes an index into
+     * a {@code styles} array written after the {@code document} array, which lists each distinct style once.
+     */
+    public void enableStyleDictionary() {
+        this.styleDictionary = true;
+    }
+
+    /**
+     * Records image transfers into {@code metrics}: {@code image.transfer} per image, split into
+     * {@code image.download}, {@code image.upload} and {@code image.resize}, and the {@code images.*}
+     * and {@code image.bytes} counters. A streamed download overlaps its upload, so there
+     * {@code image.download} only covers the wait for the response and the body counts as upload time.
+     */
+    public void enableMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        if (asyncUploader != null) {
+            asyncUploader.enableMetrics(metrics);
         }
     }
 
     private static class ProcessingContext {
         final String documentId;
         final String topicSlug;
-        final Map<String, InlineObject> inlineObjectsMap;
-        final AtomicInteger imageCounter = new AtomicInteger(0);
-        String firstImageUrl = null;
-        ProcessingContext(String documentId, String topicSlug, Map<String, InlineObject> inlineObjectsMap) {
+        final DocumentIndex index;
+        // Successful transfers by inline object ID; images without one keep the legacy .jpg URL.
+        final Map<String, ImageTransferResult> storedImages;
+        // Collects the top-level blocks for a delta, or null
+        final List<BlockDelta.Block> blocks;
+        // The index of every distinct style in the styles array, in order of first use, or null without a dictionary
+        final Map<RunStyle, Integer> styles;
+        int imageCounter = 0;
+        ProcessingContext(String documentId, String topicSlug, DocumentIndex index, Map<String, ImageTransferResult> storedImages,
+                          List<BlockDelta.Block> blocks, Map<RunStyle, Integer> styles) {
             this.documentId = documentId;
             this.topicSlug = topicSlug;
-            this.inlineObjectsMap = inlineObjectsMap;
+            this.index = index;
+            this.storedImages = storedImages;
+            this.blocks = blocks;
+            this.styles = styles;
         }
     }
     
-    private static class IntroductionExtractionResult {
-        final String text;
-        final List<Integer> indicesToRemove;
-        IntroductionExtractionResult(String text, List<Integer> indicesToRemove) {
-            this.text = text;
-            this.indicesToRemove = indicesToRemove;
-        }
+    /**
+     * Downloads every image of the document and uploads it to S3 as {@code topicSlug/documentId/image_NNN.ext},
+     * with the content type and extension of the format its bytes are in. Up to {@code imageTransferConcurrency}
+     * images are transferred at once; the keys only depend on the position of the image in the document and
+     * its format, never on the order in which transfers finish.
+     * @return One result per image, in document order.
+     */
+    public List<ImageTransferResult> downloadAndUploadImagesToS3(Document document) {
+        return downloadAndUploadImagesToS3(document, ImageTransferTracker.NONE);
     }
 
-    public void downloadAndUploadImagesToS3(Document document) {
-        if (document.getBody() == null || document.getBody().getContent() == null) return;
+    /**
+     * Same as {@link #downloadAndUploadImagesToS3(Document)}, but images the tracker reports as already
+     * transferred are not downloaded again and every finished transfer is reported back to it.
+     */
+    public List<ImageTransferResult> downloadAndUploadImagesToS3(Document document, ImageTransferTracker tracker) {
+        return downloadAndUploadImagesToS3(DocumentIndex.build(document), tracker);
+    }
+
+    /**
+     * Same as {@link #downloadAndUploadImagesToS3(Document, ImageTransferTracker)}, reusing an index that was
+     * already built for {@link #extractContentAsJson(DocumentIndex, Writer, boolean)}.
+     */
+    public List<ImageTransferResult> downloadAndUploadImagesToS3(DocumentIndex documentIndex, ImageTransferTracker tracker) {
+        if (asyncUploader != null) {
+            return transferImagesAsync(documentIndex, tracker).join();
+        }
+        Document document = documentIndex.getDocument();
+        if (documentIndex.getBodyContent() == null) return Collections.emptyList();
         String topicSlug = slugifyTitle(document.getTitle());
         String documentId = document.getDocumentId();
-        List<ImageInfo> imagesToProcess = new ArrayList<>();
-        collectImagesInOrder(document.getBody().getContent(), document.getInlineObjects(), imagesToProcess);
+        List<DocumentIndex.ImageRef> imagesToProcess = documentIndex.getImages();
         
         System.out.printf("Found %d images to process for document: %s\n", imagesToProcess.size(), document.getTitle());
+        List<Supplier<ImageTransferResult>> transfers = new ArrayList<>();
         for (int i = 0; i < imagesToProcess.size(); i++) {
-            ImageInfo imageInfo = imagesToProcess.get(i);
-            String imageName = String.format("image_%03d.jpg", i + 1);
-            String s3Key = String.format("%s/%s/%s", topicSlug, documentId, imageName);
-            System.out.printf("Processing image %d: %s\n", (i + 1), s3Key);
-            try (InputStream imageStream = new URL(imageInfo.contentUri).openStream()) {
-                byte[] imageBytes = imageStream.readAllBytes();
-                PutObjectRequest request = PutObjectRequest.builder()
-                    .bucket(this.s3BucketName)
-                    .key(s3Key)
-                    .contentType(imageInfo.contentType)
-                    .build();
-                s3Client.putObject(request, RequestBody.fromBytes(imageBytes));
-                System.out.printf("Successfully uploaded to s3://%s/%s\n", this.s3BucketName, s3Key);
-            } catch (IOException | S3Exception e) {
-                System.err.printf("Failed to process image %s. Error: %s\n", s3Key, e.getMessage());
+            DocumentIndex.ImageRef imageInfo = imagesToProcess.get(i);
+            int index = i + 1;
+            String baseKey = imageBaseKey(topicSlug, documentId, index);
+            ImageTransferResult earlier = tracker.findTransferred(index, imageInfo.objectId, baseKey);
+            if (earlier != null) {
+                metrics.increment("images.skipped");
+                transfers.add(() -> earlier);
+                continue;
             }
+            transfers.add(() -> {
+                ImageTransferResult result = transferImage(documentId, index, imageInfo, baseKey);
+                tracker.onTransferred(result);
+                return result;
+            });
         }
-    }
 
-    private void collectImagesInOrder(List<StructuralElement> elements, Map<String, InlineObject> inlineObjectsMap, List<ImageInfo> imageList) {
-        if (elements == null) return;
-        for (StructuralElement structuralElement : elements) {
-            if (structuralElement.getParagraph() != null) {
-                for (ParagraphElement paraElement : structuralElement.getParagraph().getElements()) {
-                    if (paraElement.getInlineObjectElement() != null) {
-                        String objectId = paraElement.getInlineObjectElement().getInlineObjectId();
-                        if (objectId != null && inlineObjectsMap != null && inlineObjectsMap.containsKey(objectId)) {
-                            InlineObject inlineObject = inlineObjectsMap.get(objectId);
-                            if (inlineObject.getInlineObjectProperties() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject().getImageProperties() != null) {
-                                String contentUri = inlineObject.getInlineObjectProperties().getEmbeddedObject().getImageProperties().getContentUri();
-                                if (contentUri != null && !contentUri.isEmpty()) {
-                                    imageList.add(new ImageInfo(objectId, contentUri, "image/jpeg"));
-                                }
-                            }
-                        }
+        if (imageTransferConcurrency == 1 || transfers.size() <= 1) {
+            List<ImageTransferResult> results = new ArrayList<>();
+            for (Supplier<ImageTransferResult> transfer : transfers) {
+                results.add(transfer.get());
+            }
+            return results;
+        }
+        Semaphore permits = new Semaphore(imageTransferConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<ImageTransferResult>> futures = new ArrayList<>();
+            for (Supplier<ImageTransferResult> transfer : transfers) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return transfer.get();
+                    } finally {
+                        permits.release();
                     }
+                }));
+            }
+            List<ImageTransferResult> results = new ArrayList<>();
+            for (Future<ImageTransferResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while transferring images of " + documentId, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Image transfer failed for " + documentId, e.getCause());
+        }
+    }
+
+    /**
+     * Starts transferring every image of the document and returns at once, so callers can join the
+     * result or compose it with other work. With the asynchronous client nothing blocks: up to
+     * {@code imageTransferConcurrency} transfers are in flight and each one that finishes starts the
+     * next. With the synchronous client the transfers run on a virtual thread.
+     * @return Completes with one result per image, in document order. A failed transfer is a failure
+     *         result, not an exceptional completion.
+     */
+    public CompletableFuture<List<ImageTransferResult>> transferImagesAsync(DocumentIndex documentIndex, ImageTransferTracker tracker) {
+        if (asyncUploader == null) {
+            CompletableFuture<List<ImageTransferResult>> future = new CompletableFuture<>();
+            Thread.ofVirtual().name("images-" + documentIndex.getDocument().getDocumentId()).start(() -> {
+                try {
+                    future.complete(downloadAndUploadImagesToS3(documentIndex, tracker));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
                 }
-            } else if (structuralElement.getTable() != null) {
-                for (TableRow row : structuralElement.getTable().getTableRows()) {
-                    for (TableCell cell : row.getTableCells()) {
-                        collectImagesInOrder(cell.getContent(), inlineObjectsMap, imageList);
+            });
+            return future;
+        }
+        Document document = documentIndex.getDocument();
+        if (documentIndex.getBodyContent() == null) return CompletableFuture.completedFuture(Collections.emptyList());
+        String topicSlug = slugifyTitle(document.getTitle());
+        List<DocumentIndex.ImageRef> images = documentIndex.getImages();
+
+        System.out.printf("Found %d images to process for document: %s\n", images.size(), document.getTitle());
+        ImageTransferResult[] results = new ImageTransferResult[images.size()];
+        AtomicInteger next = new AtomicInteger();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < Math.min(imageTransferConcurrency, images.size()); lane++) {
+            lanes.add(transferRemaining(images, topicSlug, document.getDocumentId(), tracker, next, results));
+        }
+        return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> List.of(results));
+    }
+
+    /**
+     * One lane of {@link #transferImagesAsync}: claims the next image nobody has started yet and, once it
+     * is transferred, the one after that, until none are left.
+     */
+    private CompletableFuture<Void> transferRemaining(List<DocumentIndex.ImageRef> images, String topicSlug, String documentId,
+                                                      ImageTransferTracker tracker, AtomicInteger next, ImageTransferResult[] results) {
+        while (true) {
+            int i = next.getAndIncrement();
+            if (i >= images.size()) return CompletableFuture.completedFuture(null);
+            DocumentIndex.ImageRef imageInfo = images.get(i);
+            int index = i + 1;
+            String baseKey = imageBaseKey(topicSlug, documentId, index);
+            ImageTransferResult earlier = tracker.findTransferred(index, imageInfo.objectId, baseKey);
+            if (earlier != null) {
+                metrics.increment("images.skipped");
+                results[i] = earlier;
+                continue;
+            }
+            return transferImageAsync(documentId, index, imageInfo, baseKey).thenCompose(result -> {
+                tracker.onTransferred(result);
+                results[i] = result;
+                return transferRemaining(images, topicSlug, documentId, tracker, next, results);
+            });
+        }
+    }
+
+    private CompletableFuture<ImageTransferResult> transferImageAsync(String documentId, int index, DocumentIndex.ImageRef imageInfo, String baseKey) {
+        System.out.printf("Processing image %d: %s\n", index, baseKey);
+        long startNanos = System.nanoTime();
+        CompletableFuture<S3AsyncUploader.StoredImage> upload;
+        try {
+            upload = (imageCache != null)
+                ? transferThroughCache(documentId, imageInfo, baseKey)
+                : asyncUploader.transferImage(baseKey, URI.create(imageInfo.contentUri), imageVariants, imageInfo.displayWidthPt);
+        } catch (IllegalArgumentException | IOException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+        return upload.handle((stored, error) -> {
+            if (error != null) {
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                System.err.printf("Failed to process image %s. Error: %s\n", baseKey, cause.getMessage());
+                return recordTransfer(ImageTransferResult.failure(index, imageInfo.objectId, baseKey, elapsedMillis(startNanos), cause.getMessage()), startNanos);
+            }
+            System.out.printf("Successfully uploaded to s3://%s/%s\n", this.s3BucketName, stored.getKey());
+            return recordTransfer(ImageTransferResult.success(index, imageInfo.objectId, stored.getKey(), stored.getBytes(), elapsedMillis(startNanos))
+                .withRendition(stored.getFormat().getContentType(), stored.getVariants()), startNanos);
+        });
+    }
+
+    /** {@link #transferImageAsync} with the image read from the cache, or downloaded into it first. */
+    private CompletableFuture<S3AsyncUploader.StoredImage> transferThroughCache(String documentId, DocumentIndex.ImageRef imageInfo,
+                                                                               String baseKey) throws IOException {
+        String cacheKey = ImageCache.keyOf(documentId, imageInfo);
+        Path cached = imageCache.pin(cacheKey);
+        CompletableFuture<Path> pinned;
+        if (cached != null) {
+            metrics.increment("image.cache.hits");
+            pinned = CompletableFuture.completedFuture(cached);
+        } else {
+            metrics.increment("image.cache.misses");
+            Path temp = imageCache.newTempFile();
+            pinned = asyncUploader.download(URI.create(imageInfo.contentUri), temp)
+                .thenApply(downloaded -> {
+                    try {
+                        return imageCache.commit(cacheKey, downloaded);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
+                })
+                .whenComplete((link, error) -> deleteQuietly(temp));
+        }
+        return pinned.thenCompose(link -> asyncUploader.transferFile(baseKey, link, imageVariants, imageInfo.displayWidthPt)
+            .whenComplete((stored, error) -> deleteQuietly(link)));
+    }
+
+    private ImageTransferResult recordTransfer(ImageTransferResult result, long startNanos) {
+        metrics.recordSince("image.transfer", startNanos);
+        if (!result.isSuccess()) {
+            metrics.increment("images.failed");
+        } else if (result.isDeduplicated()) {
+            metrics.increment("images.deduplicated");
+        } else {
+            metrics.increment("images.uploaded");
+            metrics.add("image.bytes", result.getBytes());
+        }
+        metrics.add("image.variants", result.getVariants().size());
+        return result;
+    }
+
+    /** The key of image {@code index} without its extension, which depends on the format of its bytes. */
+    private static String imageBaseKey(String topicSlug, String documentId, int index) {
+        return topicSlug + "/" + documentId + "/" + TextNormalizer.imageName(index);
+    }
+
+    private ImageTransferResult transferImage(String documentId, int index, DocumentIndex.ImageRef imageInfo, String baseKey) {
+        System.out.printf("Processing image %d: %s\n", index, baseKey);
+        long startNanos = System.nanoTime();
+        try {
+            ImageTransferResult result = (transferLimiter != null)
+                ? transferLimiter.call(() -> streamImage(documentId, index, imageInfo, baseKey, startNanos))
+                : streamImage(documentId, index, imageInfo, baseKey, startNanos);
+            if (!result.isDeduplicated()) {
+                System.out.printf("Successfully uploaded to s3://%s/%s\n", this.s3BucketName, result.getS3Key());
+            }
+            return recordTransfer(result, startNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return recordTransfer(ImageTransferResult.failure(index, imageInfo.objectId, baseKey, elapsedMillis(startNanos), "Interrupted"), startNanos);
+        } catch (IOException | SdkException e) {
+            System.err.printf("Failed to process image %s. Error: %s\n", baseKey, e.getMessage());
+            return recordTransfer(ImageTransferResult.failure(index, imageInfo.objectId, baseKey, elapsedMillis(startNanos), e.getMessage()), startNanos);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // streamImage only throws the above; this is the limiter's checked signature
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ImageTransferResult streamImage(String documentId, int index, DocumentIndex.ImageRef imageInfo, String baseKey,
+                                            long startNanos) throws IOException {
+        long stepNanos = System.nanoTime();
+        try (PooledHttpClient.Download download = openImage(documentId, imageInfo)) {
+            InputStream body = download.getBody();
+            if (imageVariants == null) {
+                stepNanos = metrics.recordSince("image.download", stepNanos);
+                // Pipe the response body straight into S3 instead of buffering the whole image on the heap;
+                // only the first bytes are looked at, to tell the format
+                PushbackInputStream imageStream = new PushbackInputStream(body, ImageFormat.HEADER_BYTES);
+                ImageFormat format = ImageFormat.detect(imageStream);
+                ImageTransferResult result = storeImage(index, imageInfo, baseKey, format, imageStream, download.getContentLength(), startNanos);
+                metrics.recordSince("image.upload", stepNanos);
+                return result;
+            }
+            // The variants are decoded from the original, so it is spooled to disk rather than piped through
+            Path spooled = Files.createTempFile("image-", ".download");
+            try {
+                Files.copy(body, spooled, StandardCopyOption.REPLACE_EXISTING);
+                stepNanos = metrics.recordSince("image.download", stepNanos);
+                ImageFormat format = ImageFormat.detect(spooled);
+                ImageTransferResult result;
+                try (InputStream imageStream = Files.newInputStream(spooled)) {
+                    result = storeImage(index, imageInfo, baseKey, format, imageStream, Files.size(spooled), startNanos);
+                }
+                stepNanos = metrics.recordSince("image.upload", stepNanos);
+                // The original is stored by now; an image its variants cannot be made of, e.g. a CMYK JPEG
+                // that ImageIO will not decode, keeps it and is listed without variants
+                List<ImageTransferResult.Variant> variants;
+                try {
+                    variants = storeVariants(spooled, format, imageInfo, baseKey, stepNanos);
+                } catch (IOException | RuntimeException e) {
+                    metrics.increment("image.variants.failed");
+                    System.err.printf("Failed to store variants of image %s. Error: %s\n", baseKey, e.getMessage());
+                    variants = List.of();
                 }
+                return result.withRendition(format.getContentType(), variants);
+            } finally {
+                Files.deleteIfExists(spooled);
             }
         }
     }
 
+    private List<ImageTransferResult.Variant> storeVariants(Path spooled, ImageFormat format, DocumentIndex.ImageRef imageInfo,
+                                                            String baseKey, long stepNanos) throws IOException {
+        List<ImageVariants.Rendition> renditions = imageVariants.render(spooled, format, imageInfo.displayWidthPt);
+        stepNanos = metrics.recordSince("image.resize", stepNanos);
+        List<ImageTransferResult.Variant> variants = new ArrayList<>();
+        for (ImageVariants.Rendition rendition : renditions) {
+            String variantKey = ImageVariants.variantKey(baseKey, rendition.getWidth(), format);
+            try (InputStream variantStream = new ByteArrayInputStream(rendition.getData())) {
+                if (deduplicator != null) {
+                    deduplicator.store(variantKey, format.getContentType(), variantStream);
+                } else {
+                    uploader.upload(variantKey, format.getContentType(), variantStream, rendition.getData().length);
+                }
+            }
+            variants.add(new ImageTransferResult.Variant(variantKey, rendition.getWidth(), rendition.getHeight()));
+        }
+        if (!renditions.isEmpty()) {
+            metrics.recordSince("image.upload", stepNanos);
+        }
+        return variants;
+    }
+
+    /**
+     * Opens the bytes of an image: from the image cache when it holds them, otherwise downloaded, into
+     * the cache first if there is one. A cached image is read through its own link, which is deleted
+     * once the stream is closed.
+     */
+    private PooledHttpClient.Download openImage(String documentId, DocumentIndex.ImageRef imageInfo) throws IOException {
+        PooledHttpClient client = (http != null) ? http : PooledHttpClient.defaultClient();
+        URI source = URI.create(imageInfo.contentUri);
+        if (imageCache == null) {
+            return client.open(source);
+        }
+        String cacheKey = ImageCache.keyOf(documentId, imageInfo);
+        Path pinned = imageCache.pin(cacheKey);
+        if (pinned != null) {
+            metrics.increment("image.cache.hits");
+        } else {
+            metrics.increment("image.cache.misses");
+            try (PooledHttpClient.Download download = client.open(source)) {
+                pinned = imageCache.store(cacheKey, download.getBody());
+            }
+        }
+        return new PooledHttpClient.Download(Files.newInputStream(pinned, StandardOpenOption.DELETE_ON_CLOSE), Files.size(pinned));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.printf("Failed to delete temporary image file %s. Error: %s\n", file, e.getMessage());
+        }
+    }
+
+    private ImageTransferResult storeImage(int index, DocumentIndex.ImageRef imageInfo, String baseKey, ImageFormat format,
+                                           InputStream imageStream, long contentLength, long startNanos) throws IOException {
+        String s3Key = baseKey + "." + format.getExtension();
+        if (deduplicator != null) {
+            ImageDeduplicator.StoredImage stored = deduplicator.store(s3Key, format.getContentType(), imageStream);
+            if (stored.getOutcome() != ImageDeduplicator.Outcome.UPLOADED) {
+                System.out.printf("Skipped upload of s3://%s/%s (%s)\n", this.s3BucketName, s3Key, stored.getOutcome());
+                return ImageTransferResult.deduplicated(index, imageInfo.objectId, s3Key, stored.getBytes(), elapsedMillis(startNanos))
+                    .withRendition(format.getContentType(), List.of());
+            }
+            return ImageTransferResult.success(index, imageInfo.objectId, s3Key, stored.getBytes(), elapsedMillis(startNanos))
+                .withRendition(format.getContentType(), List.of());
+        }
+        long bytes = uploader.upload(s3Key, format.getContentType(), imageStream, contentLength).getBytes();
+        return ImageTransferResult.success(index, imageInfo.objectId, s3Key, bytes, elapsedMillis(startNanos))
+            .withRendition(format.getContentType(), List.of());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Extracts the document as pretty-printed JSON.
+     */
     public String extractContentAsJson(Document document) {
-        JsonObject rootObject = new JsonObject();
-        List<StructuralElement> structuralElements = (document.getBody() != null) ? document.getBody().getContent() : null;
+        StringWriter out = new StringWriter();
+        try {
+            extractContentAsJson(document, out, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    /**
+     * Streams the JSON for the document to {@code out} as it is produced, so memory use does not grow
+     * with the size of the output. The stream is flushed but not closed.
+     * @param pretty Whether to indent the output like {@link #extractContentAsJson(Document)}; otherwise it is compact.
+     */
+    public void extractContentAsJson(Document document, OutputStream out, boolean pretty) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        extractContentAsJson(document, writer, pretty);
+    }
+
+    /**
+     * Streams the JSON for the document to {@code out} as it is produced. The writer is flushed but not closed.
+     * @param pretty Whether to indent the output like {@link #extractContentAsJson(Document)}; otherwise it is compact.
+     */
+    public void extractContentAsJson(Document document, Writer out, boolean pretty) throws IOException {
+        extractContentAsJson(DocumentIndex.build(document), out, pretty);
+    }
+
+    /**
+     * Streams the JSON for an already indexed document to {@code out}. The writer is flushed but not closed.
+     */
+    public void extractContentAsJson(DocumentIndex index, Writer out, boolean pretty) throws IOException {
+        extractContentAsJson(index, out, pretty, List.of());
+    }
+
+    /**
+     * Same as {@link #extractContentAsJson(DocumentIndex, Writer, boolean)}, pointing every image that was
+     * transferred at the key it was stored under and listing its variants. Images without a successful
+     * result keep the {@code image_NNN.jpg} URL.
+     * @param images The results of {@link #downloadAndUploadImagesToS3(DocumentIndex, ImageTransferTracker)}.
+     */
+    public void extractContentAsJson(DocumentIndex index, Writer out, boolean pretty, List<ImageTransferResult> images) throws IOException {
+        extractContentAsJson(index, out, pretty, images, null);
+    }
+
+    /**
+     * Same as {@link #extractContentAsJson(DocumentIndex, Writer, boolean, List)}, also adding every block of
+     * the {@code document} array, with its hash, to {@code blocks} for a {@link BlockDelta}.
+     * @param blocks Receives the top-level blocks in order, or null.
+     */
+    public void extractContentAsJson(DocumentIndex index, Writer out, boolean pretty, List<ImageTransferResult> images,
+                                     List<BlockDelta.Block> blocks) throws IOException {
+        Document document = index.getDocument();
         String title = document.getTitle();
         String documentId = document.getDocumentId();
         
-        IntroductionExtractionResult introResult = extractIntroductionAndGetIndicesToRemove(structuralElements);
         String topicSlug = slugifyTitle(title);
-        ProcessingContext context = new ProcessingContext(documentId, topicSlug, document.getInlineObjects());
-        JsonArray documentContentArray = processStructuralElements(structuralElements, context, introResult.indicesToRemove);
+        Map<String, ImageTransferResult> storedImages = new HashMap<>();
+        for (ImageTransferResult image : images) {
+            if (image.isSuccess()) storedImages.put(image.getObjectId(), image);
+        }
+        ProcessingContext context = new ProcessingContext(documentId, topicSlug, index, storedImages, blocks,
+                styleDictionary ? new LinkedHashMap<>() : null);
 
         String processedTitle = title;
         final String suffixToRemove = " - Completed";
         if (processedTitle != null && processedTitle.endsWith(suffixToRemove)) {
             processedTitle = processedTitle.substring(0, processedTitle.length() - suffixToRemove.length());
         }
+        // The first rendered image is promoted to the header and left out of the body.
+        String articleImage = index.rendersImage() ? imageUrl(context, 1, index.getArticleImageObjectId()) : "";
 
-        rootObject.addProperty("article_title", processedTitle != null ? processedTitle : "");
-        rootObject.addProperty("article_info", introResult.text != null ? introResult.text : ".");
-        rootObject.addProperty("article_image", context.firstImageUrl != null ? context.firstImageUrl : "");
-        rootObject.add("document", documentContentArray);
+        // Same settings as Gson's default pretty printer, so the output matches the previous tree-based version.
+        // Each top-level block also gets a hash of its content, for consumers that only reprocess changed blocks.
+        BlockHashingJsonWriter writer = new BlockHashingJsonWriter(out);
+        writer.setHtmlSafe(true);
+        if (pretty) writer.setIndent("  ");
 
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(rootObject);
+        writer.beginObject();
+        writer.name("article_title").value(processedTitle != null ? processedTitle : "");
+        writer.name("article_info").value(index.getIntroText() != null ? index.getIntroText() : ".");
+        writer.name("article_image").value(articleImage);
+        if (index.rendersImage()) {
+            writeVariants(context, index.getArticleImageObjectId(), "article_image_variants", writer);
+        }
+        writer.name("document");
+        processStructuralElements(index.getBodyContent(), context, index.getSkippedBodyIndices(), true, writer);
+        if (context.styles != null) {
+            // Only known once the body is written; the runs before it refer to its entries by position
+            writer.name("styles").beginArray();
+            for (RunStyle style : context.styles.keySet()) {
+                style.write(writer);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+        writer.flush();
     }
     
-    private IntroductionExtractionResult extractIntroductionAndGetIndicesToRemove(List<StructuralElement> elements) {
+    /**
+     * @param topLevel Whether these are the entries of the {@code document} array, which are hashed; nested
+     *                 blocks are covered by the hash of the table they are in.
+     */
+    private void processStructuralElements(List<StructuralElement> elements, ProcessingContext context, BitSet indicesToSkip,
+                                           boolean topLevel, BlockHashingJsonWriter writer) throws IOException {
+        writer.beginArray();
         if (elements == null) {
-            return new IntroductionExtractionResult(null, Collections.emptyList());
-        }
-        List<Integer> indicesToRemove = new ArrayList<>();
-        String introText = null;
-        for (int i = 0; i < elements.size(); i++) {
-            StructuralElement element = elements.get(i);
-            if (element.getParagraph() != null) {
-                Paragraph p = element.getParagraph();
-                if (p.getParagraphStyle() != null && "HEADING_1".equals(p.getParagraphStyle().getNamedStyleType())) {
-                    String text = extractTextFromParagraph(p);
-                    if ("Introduction".equalsIgnoreCase(text.trim())) {
-                        indicesToRemove.add(i);
-                        if (i + 1 < elements.size() && elements.get(i + 1).getParagraph() != null) {
-                            introText = extractTextFromParagraph(elements.get(i + 1).getParagraph());
-                            indicesToRemove.add(i + 1);
-                        }
-                        break;
-                    }
-                }
-            }
+            writer.endArray();
+            return;
         }
-        return new IntroductionExtractionResult(introText, indicesToRemove);
-    }
-
-    private JsonArray processStructuralElements(List<StructuralElement> elements, ProcessingContext context, List<Integer> indicesToSkip) {
-        JsonArray contentArray = new JsonArray();
-        if (elements == null) return contentArray;
-
-        boolean inReferencesSection = false;
-        StringBuilder referencesTextBuilder = new StringBuilder();
 
-        for (int i = 0; i < elements.size(); i++) {
-            if (indicesToSkip.contains(i)) continue;
+        // Rendering stops after the "References" heading; the paragraphs below it become one text block.
+        DocumentIndex.ListInfo listInfo = context.index.getListInfo(elements);
+        int end = (listInfo.referencesHeadingIndex >= 0) ? listInfo.referencesHeadingIndex + 1 : elements.size();
+        for (int i = 0; i < end; i++) {
+            if (indicesToSkip.get(i)) continue;
 
             StructuralElement structuralElement = elements.get(i);
-            Paragraph paragraph = structuralElement.getParagraph();
-
-            if (!inReferencesSection) {
-                if (paragraph != null) {
-                    if (paragraph.getParagraphStyle() != null && "HEADING_1".equals(paragraph.getParagraphStyle().getNamedStyleType())) {
-                        String text = extractTextFromParagraph(paragraph);
-                        if ("References".equalsIgnoreCase(text.trim())) {
-                            inReferencesSection = true;
-                        }
-                    }
-                    JsonObject processedParagraph = processParagraph(paragraph, context);
-                    if (processedParagraph != null) {
-                        contentArray.add(processedParagraph);
-                    }
-                } else if (structuralElement.getTable() != null) {
-                    contentArray.add(processTable(structuralElement.getTable(), context));
-                }
-            } else {
-                if (paragraph != null) {
-                    referencesTextBuilder.append(getRawParagraphContent(paragraph)).append("\n");
-                }
+            if (structuralElement.getParagraph() != null) {
+                processParagraph(structuralElement.getParagraph(), context, topLevel, writer);
+            } else if (structuralElement.getTable() != null) {
+                processTable(structuralElement.getTable(), context, topLevel, writer);
             }
         }
 
-        if (referencesTextBuilder.length() > 0) {
-            JsonObject referencesParaJson = new JsonObject();
-            referencesParaJson.addProperty("type", "paragraph");
-            referencesParaJson.addProperty("styleType", "NORMAL_TEXT");
-            JsonArray referencesContentArray = new JsonArray();
-            JsonObject textObject = new JsonObject();
-            textObject.addProperty("type", "text");
-            String rawReferences = referencesTextBuilder.toString();
-            String cleanedReferences = rawReferences.replaceAll("[\\n\\u000B]+", "\n").trim();
-            textObject.addProperty("value", cleanedReferences);
-            referencesContentArray.add(textObject);
-            referencesParaJson.add("content", referencesContentArray);
-            contentArray.add(referencesParaJson);
+        if (listInfo.referencesText != null) {
+            beginBlock(topLevel, writer);
+            writer.beginObject();
+            writer.name("type").value("paragraph");
+            writer.name("styleType").value("NORMAL_TEXT");
+            writer.name("content").beginArray();
+            writer.beginObject();
+            writer.name("type").value("text");
+            writer.name("value").value(listInfo.referencesText);
+            writer.endObject();
+            writer.endArray();
+            endBlock(topLevel, context, writer);
+            writer.endObject();
         }
 
-        return contentArray;
+        writer.endArray();
     }
 
-    private JsonObject processTable(Table table, ProcessingContext context) {
-        JsonObject tableJson = new JsonObject();
-        tableJson.addProperty("type", "table");
-        JsonArray rowsArray = new JsonArray();
+    private void processTable(Table table, ProcessingContext context, boolean topLevel, BlockHashingJsonWriter writer) throws IOException {
+        beginBlock(topLevel, writer);
+        writer.beginObject();
+        writer.name("type").value("table");
+        writer.name("rows").beginArray();
         for (TableRow row : table.getTableRows()) {
-            JsonObject rowJson = new JsonObject();
-            rowJson.addProperty("type", "tableRow");
-            JsonArray cellsArray = new JsonArray();
+            writer.beginObject();
+            writer.name("type").value("tableRow");
+            writer.name("cells").beginArray();
             for (TableCell cell : row.getTableCells()) {
-                JsonObject cellJson = new JsonObject();
-                cellJson.addProperty("type", "tableCell");
-                JsonArray cellContent = processStructuralElements(cell.getContent(), context, Collections.emptyList());
-                cellJson.add("content", cellContent);
-                cellsArray.add(cellJson);
+                writer.beginObject();
+                writer.name("type").value("tableCell");
+                writer.name("content");
+                processStructuralElements(cell.getContent(), context, DocumentIndex.nothingSkipped(), false, writer);
+                writer.endObject();
             }
-            rowJson.add("cells", cellsArray);
-            rowsArray.add(rowJson);
+            writer.endArray();
+            writer.endObject();
         }
-        tableJson.add("rows", rowsArray);
-        return tableJson;
+        writer.endArray();
+        endBlock(topLevel, context, writer);
+        writer.endObject();
     }
 
-    private JsonObject processParagraph(Paragraph paragraph, ProcessingContext context) {
-        JsonObject paragraphJson = new JsonObject();
-        JsonArray contentArray = new JsonArray();
-        
+    private void processParagraph(Paragraph paragraph, ProcessingContext context, boolean topLevel, BlockHashingJsonWriter writer) throws IOException {
+        // Paragraphs without any visible text or body image are left out entirely.
+        if (!hasRenderedContent(paragraph, context)) {
+            context.imageCounter += countImages(paragraph, context);
+            return;
+        }
+
+        beginBlock(topLevel, writer);
+        writer.beginObject();
         ParagraphStyle paragraphStyle = paragraph.getParagraphStyle();
         if (paragraph.getBullet() != null) {
-            paragraphJson.addProperty("type", "listItem");
-            paragraphJson.addProperty("nestingLevel", paragraph.getBullet().getNestingLevel() != null ? paragraph.getBullet().getNestingLevel() : 0);
+            writer.name("type").value("listItem");
+            writer.name("nestingLevel").value(paragraph.getBullet().getNestingLevel() != null ? paragraph.getBullet().getNestingLevel() : 0);
         } else {
-            paragraphJson.addProperty("type", "paragraph");
+            writer.name("type").value("paragraph");
         }
         if (paragraphStyle != null) {
-            if (paragraphStyle.getNamedStyleType() != null) paragraphJson.addProperty("styleType", paragraphStyle.getNamedStyleType());
-            if (paragraphStyle.getAlignment() != null) paragraphJson.addProperty("alignment", paragraphStyle.getAlignment());
+            if (paragraphStyle.getNamedStyleType() != null) writer.name("styleType").value(paragraphStyle.getNamedStyleType());
+            if (paragraphStyle.getAlignment() != null) writer.name("alignment").value(paragraphStyle.getAlignment());
         }
 
+        writer.name("content").beginArray();
+        // With the style dictionary, a run is held back until the next one turns out to have another style
+        StringBuilder pendingText = null;
+        RunStyle pendingStyle = null;
         for (ParagraphElement element : paragraph.getElements()) {
             if (element.getTextRun() != null) {
                 String text = element.getTextRun().getContent();
                 if (text != null && !text.equals("\n")) {
-                    JsonObject textJson = new JsonObject();
-                    textJson.addProperty("type", "text");
-                    textJson.addProperty("value", text);
-                    JsonObject styleJson = processTextStyle(element.getTextRun().getTextStyle());
-                    if (styleJson.size() > 0) textJson.add("style", styleJson);
-                    contentArray.add(textJson);
+                    RunStyle style = RunStyle.of(element.getTextRun().getTextStyle());
+                    if (context.styles == null) {
+                        writeTextRun(text, style, context, writer);
+                    } else if (pendingText != null && style.equals(pendingStyle)) {
+                        pendingText.append(text);
+                    } else {
+                        if (pendingText != null) writeTextRun(pendingText.toString(), pendingStyle, context, writer);
+                        pendingText = new StringBuilder(text);
+                        pendingStyle = style;
+                    }
                 }
             } else if (element.getInlineObjectElement() != null) {
                 String objectId = element.getInlineObjectElement().getInlineObjectId();
-                if (objectId != null && context.inlineObjectsMap != null && context.inlineObjectsMap.containsKey(objectId)) {
-                    int imageIndex = context.imageCounter.incrementAndGet();
-                    String imageName = String.format("image_%03d", imageIndex);
-                    String newImageUrl = String.format("/api/images/%s/%s/%s.jpg", context.topicSlug, context.documentId, imageName);
+                if (context.index.isInlineObject(objectId)) {
+                    int imageIndex = ++context.imageCounter;
                     if (imageIndex == 1) {
-                        context.firstImageUrl = newImageUrl;
+                        // The first image becomes the article_image and is not repeated in the body.
                         continue;
                     }
-                    JsonObject imageJson = new JsonObject();
-                    imageJson.addProperty("type", "image");
-                    imageJson.addProperty("objectId", objectId);
-                    imageJson.addProperty("url", newImageUrl);
+                    if (pendingText != null) {
+                        writeTextRun(pendingText.toString(), pendingStyle, context, writer);
+                        pendingText = null;
+                    }
+                    writer.beginObject();
+                    writer.name("type").value("image");
+                    writer.name("objectId").value(objectId);
+                    writer.name("url").value(imageUrl(context, imageIndex, objectId));
+                    writeVariants(context, objectId, "variants", writer);
                     
                     // >> START: CORRECTED LOGIC FOR IMAGE DIMENSIONS <<
-                    InlineObject inlineObject = context.inlineObjectsMap.get(objectId);
+                    InlineObject inlineObject = context.index.getInlineObject(objectId);
                     if (inlineObject.getInlineObjectProperties() != null &&
                         inlineObject.getInlineObjectProperties().getEmbeddedObject() != null) {
                         
@@ -314,66 +799,107 @@ public class GoogleDocExtractor {
                             Size size = embeddedObject.getSize();
                             Dimension width = size.getWidth();
                             if (width != null && width.getMagnitude() != null) {
-                                imageJson.addProperty("width", width.getMagnitude());
+                                writer.name("width").value(width.getMagnitude());
                             }
                             Dimension height = size.getHeight();
                             if (height != null && height.getMagnitude() != null) {
-                                imageJson.addProperty("height", height.getMagnitude());
+                                writer.name("height").value(height.getMagnitude());
                             }
                         }
                     }
                     // >> END: CORRECTED LOGIC FOR IMAGE DIMENSIONS <<
 
-                    contentArray.add(imageJson);
+                    writer.endObject();
                 }
             }
         }
-        
-        if (contentArray.isEmpty()) return null;
-        paragraphJson.add("content", contentArray);
-        return paragraphJson;
+        if (pendingText != null) writeTextRun(pendingText.toString(), pendingStyle, context, writer);
+        writer.endArray();
+        endBlock(topLevel, context, writer);
+        writer.endObject();
     }
-    
-    private String extractTextFromParagraph(Paragraph paragraph) {
-        if (paragraph == null || paragraph.getElements() == null) return "";
-        StringBuilder sb = new StringBuilder();
-        for (ParagraphElement element : paragraph.getElements()) {
-            if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
-                sb.append(element.getTextRun().getContent());
+
+    /**
+     * Writes one text run. With the style dictionary its style is the index of the style in the
+     * {@code styles} array; the block's hash still covers the style itself.
+     */
+    private static void writeTextRun(String text, RunStyle style, ProcessingContext context, BlockHashingJsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("type").value("text");
+        writer.name("value").value(text);
+        if (!style.isEmpty()) {
+            writer.name("style");
+            if (context.styles == null) {
+                style.write(writer);
+            } else {
+                int styleIndex = context.styles.computeIfAbsent(style, s -> context.styles.size());
+                writer.reference(styleIndex, style::write);
             }
         }
-        return sb.toString().replaceAll("[\\n\\u000B]", " ").trim();
+        writer.endObject();
     }
 
-    private String getRawParagraphContent(Paragraph paragraph) {
-        if (paragraph == null || paragraph.getElements() == null) return "";
-        StringBuilder sb = new StringBuilder();
+    private static void beginBlock(boolean topLevel, BlockHashingJsonWriter writer) {
+        if (topLevel) writer.beginBlock();
+    }
+
+    /** Adds the hash as the block's last property, right before its object is closed. */
+    private static void endBlock(boolean topLevel, ProcessingContext context, BlockHashingJsonWriter writer) throws IOException {
+        if (!topLevel) return;
+        BlockDelta.Block block = writer.endBlock();
+        writer.name("hash").value(block.getHash());
+        if (context.blocks != null) context.blocks.add(block);
+    }
+
+    /**
+     * Whether {@link #processParagraph} would emit anything: a text run other than a bare newline,
+     * or an image that is not the article's first image.
+     */
+    private boolean hasRenderedContent(Paragraph paragraph, ProcessingContext context) {
         for (ParagraphElement element : paragraph.getElements()) {
-            if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
-                sb.append(element.getTextRun().getContent());
+            if (element.getTextRun() != null) {
+                String text = element.getTextRun().getContent();
+                if (text != null && !text.equals("\n")) return true;
             }
         }
-        return sb.toString();
+        int images = countImages(paragraph, context);
+        return context.imageCounter == 0 ? images > 1 : images > 0;
     }
 
-    private JsonObject processTextStyle(TextStyle textStyle) {
-        JsonObject styleJson = new JsonObject();
-        if (textStyle == null) return styleJson;
-        if (Boolean.TRUE.equals(textStyle.getBold())) styleJson.addProperty("bold", true);
-        if (Boolean.TRUE.equals(textStyle.getItalic())) styleJson.addProperty("italic", true);
-        if (Boolean.TRUE.equals(textStyle.getUnderline())) styleJson.addProperty("underline", true);
-        if (Boolean.TRUE.equals(textStyle.getStrikethrough())) styleJson.addProperty("strikethrough", true);
-        Link link = textStyle.getLink();
-        if (link != null && link.getUrl() != null) {
-            styleJson.addProperty("linkUrl", link.getUrl());
-        }
-        WeightedFontFamily fontFamily = textStyle.getWeightedFontFamily();
-        if (fontFamily != null && fontFamily.getFontFamily() != null) {
-            styleJson.addProperty("fontFamily", fontFamily.getFontFamily());
+    private int countImages(Paragraph paragraph, ProcessingContext context) {
+        int images = 0;
+        for (ParagraphElement element : paragraph.getElements()) {
+            if (element.getInlineObjectElement() != null) {
+                String objectId = element.getInlineObjectElement().getInlineObjectId();
+                if (context.index.isInlineObject(objectId)) {
+                    images++;
+                }
+            }
         }
-        return styleJson;
+        return images;
     }
 
+    private String imageUrl(ProcessingContext context, int imageIndex, String objectId) {
+        ImageTransferResult stored = (objectId != null) ? context.storedImages.get(objectId) : null;
+        if (stored != null) return "/api/images/" + stored.getS3Key();
+        return "/api/images/" + context.topicSlug + "/" + context.documentId + "/" + TextNormalizer.imageName(imageIndex) + ".jpg";
+    }
+
+    /** Lists the downscaled copies of the image, smallest first, for a {@code srcset}; nothing if there are none. */
+    private void writeVariants(ProcessingContext context, String objectId, String name, JsonWriter writer) throws IOException {
+        ImageTransferResult stored = (objectId != null) ? context.storedImages.get(objectId) : null;
+        if (stored == null || stored.getVariants().isEmpty()) return;
+        writer.name(name).beginArray();
+        for (ImageTransferResult.Variant variant : stored.getVariants()) {
+            writer.beginObject();
+            writer.name("url").value("/api/images/" + variant.getS3Key());
+            writer.name("width").value(variant.getWidth());
+            writer.name("height").value(variant.getHeight());
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+    
     private String formatRgbColor(RgbColor rgbColor) {
         if (rgbColor == null) return null;
         float rFloat = rgbColor.getRed() == null ? 0f : rgbColor.getRed();
@@ -386,12 +912,6 @@ public class GoogleDocExtractor {
     }
     
     private String slugifyTitle(String title) {
-        if (title == null || title.isEmpty()) return "";
-        String processedTitle = title.toLowerCase();
-        final String suffixToRemove = " - completed";
-        if (processedTitle.endsWith(suffixToRemove)) {
-            processedTitle = processedTitle.substring(0, processedTitle.length() - suffixToRemove.length());
-        }
-        return processedTitle.replaceAll("[^a-z0-9]", "");
+        return TextNormalizer.slugify(title);
     }
 }
\ No newline at end of file
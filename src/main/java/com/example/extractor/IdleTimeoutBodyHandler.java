@@ -0,0 +1,152 @@
+package com.example.extractor;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails a response body that stops arriving. {@link java.net.http.HttpRequest#timeout()} only bounds
+ * the wait for the headers, so a server that stalls halfway through a body would otherwise keep its
+ * reader, or the future of an async download, waiting forever. The clock only runs while the body's
+ * consumer has asked for more bytes and none came, so a slow consumer never trips it.
+ */
+final class IdleTimeoutBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+
+    // One daemon thread watches every body in flight; a check is a few comparisons
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-idle-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpResponse.BodyHandler<T> handler;
+    private final Duration timeout;
+    private final URI uri;
+
+    IdleTimeoutBodyHandler(HttpResponse.BodyHandler<T> handler, Duration timeout, URI uri) {
+        this.handler = handler;
+        this.timeout = timeout;
+        this.uri = uri;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        return new Subscriber<>(handler.apply(responseInfo), timeout, uri);
+    }
+
+    /**
+     * Sits between the client and the real subscriber, which sees it as its subscription. Signals to the
+     * real subscriber are made under this object's lock, so a timeout never overlaps an {@code onNext}.
+     */
+    private static final class Subscriber<T> implements HttpResponse.BodySubscriber<T>, Flow.Subscription {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final Duration timeout;
+        private final URI uri;
+        private Flow.Subscription upstream;
+        // Buffers requested by the real subscriber and not delivered yet
+        private long demand = 0;
+        private long lastActivityNanos;
+        private ScheduledFuture<?> check = null;
+        private boolean done = false;
+
+        Subscriber(HttpResponse.BodySubscriber<T> delegate, Duration timeout, URI uri) {
+            this.delegate = delegate;
+            this.timeout = timeout;
+            this.uri = uri;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                upstream = subscription;
+                lastActivityNanos = System.nanoTime();
+            }
+            delegate.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription subscription;
+            synchronized (this) {
+                if (done) return;
+                // The wait for bytes starts with the first request after the consumer had all it asked for
+                if (demand == 0) lastActivityNanos = System.nanoTime();
+                demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                if (check == null) schedule(timeout.toNanos());
+                subscription = upstream;
+            }
+            subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                finish();
+            }
+            upstream.cancel();
+        }
+
+        @Override
+        public synchronized void onNext(List<ByteBuffer> item) {
+            if (done) return;
+            if (demand != Long.MAX_VALUE) demand--;
+            lastActivityNanos = System.nanoTime();
+            delegate.onNext(item);
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            if (done) return;
+            finish();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            if (done) return;
+            finish();
+            delegate.onComplete();
+        }
+
+        private void checkIdle() {
+            synchronized (this) {
+                check = null;
+                if (done || demand == 0) return;
+                long idleNanos = System.nanoTime() - lastActivityNanos;
+                if (idleNanos < timeout.toNanos()) {
+                    schedule(timeout.toNanos() - idleNanos);
+                    return;
+                }
+                finish();
+                delegate.onError(new HttpTimeoutException("No data for " + timeout.toMillis() + " ms reading " + uri));
+            }
+            upstream.cancel();
+        }
+
+        private void schedule(long delayNanos) {
+            check = WATCHDOG.schedule(this::checkIdle, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void finish() {
+            done = true;
+            if (check != null) {
+                check.cancel(false);
+                check = null;
+            }
+        }
+    }
+}
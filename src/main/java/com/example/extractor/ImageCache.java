@@ -0,0 +1,195 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+
+/**
+ * Keeps downloaded image bytes on local disk, so extracting a document again reads its images from
+ * there instead of the network. An image is cached under a hash of its document ID, its inline
+ * object ID and a fingerprint of the embedded object's properties other than the content URI, which
+ * the Docs API signs anew on every fetch. Replacing or cropping an image changes the fingerprint.
+ * <p>
+ * The cache holds at most {@code maxBytes}; beyond that, the least recently used images are evicted.
+ * Entries are written to a temporary file and moved into place, and the last-modified time of an
+ * entry is its last use, so the order survives restarts. A reader gets its own hard link to the
+ * entry, or a copy where the file system refuses one, which stays readable if the entry is evicted
+ * meanwhile. One process owns a cache directory.
+ */
+public class ImageCache {
+
+    private static final String ENTRY_SUFFIX = ".img";
+    private static final String TEMP_PREFIX = ".";
+
+    private final Path dir;
+    private final long maxBytes;
+    // Entry sizes in least to most recently used order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be at least 1");
+        this.dir = Files.createDirectories(dir);
+        this.maxBytes = maxBytes;
+        List<Path> found = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(TEMP_PREFIX)) {
+                    // Left over by a process that died mid-download or mid-read
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    found.add(file);
+                    attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+                }
+            }
+        }
+        found.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+        for (Path file : found) {
+            String name = file.getFileName().toString();
+            long size = attributes.get(file).size();
+            entries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    /** The cache key of an image of a document. */
+    public static String keyOf(String documentId, DocumentIndex.ImageRef image) {
+        String identity = documentId + '\n' + image.objectId + '\n' + fingerprint(image.embeddedObject);
+        return HexFormat.of().formatHex(sha256(identity.getBytes(StandardCharsets.UTF_8)), 0, 16);
+    }
+
+    /**
+     * A private link to the cached bytes of {@code key}, marked as just used, or null if they are not
+     * cached. The caller deletes it once read.
+     */
+    public synchronized Path pin(String key) throws IOException {
+        if (entries.get(key) == null) return null;
+        Path entry = entryPath(key);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return link(entry);
+        } catch (NoSuchFileException e) {
+            // Removed behind the cache's back
+            totalBytes -= entries.remove(key);
+            return null;
+        }
+    }
+
+    /** A temporary file in the cache directory, to download into and then {@link #commit}. */
+    public Path newTempFile() throws IOException {
+        return Files.createTempFile(dir, TEMP_PREFIX, ".download");
+    }
+
+    /**
+     * Moves the complete download {@code temp} into the cache as {@code key} and evicts the least
+     * recently used entries until the cache fits again.
+     * @return A private link to the entry, as from {@link #pin}; it stays readable even if the entry
+     *         alone is larger than the cache and is evicted right away.
+     */
+    public synchronized Path commit(String key, Path temp) throws IOException {
+        Path entry = entryPath(key);
+        long size = Files.size(temp);
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Long replaced = entries.put(key, size);
+        totalBytes += size - (replaced != null ? replaced : 0);
+        Path pinned = link(entry);
+        evict();
+        return pinned;
+    }
+
+    /** Downloads {@code source} into the cache as {@code key}; see {@link #commit}. */
+    public Path store(String key, InputStream source) throws IOException {
+        Path temp = newTempFile();
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            return commit(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+
+    // The map iterates from the least recently used entry; one just committed comes last
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            Files.deleteIfExists(entryPath(entry.getKey()));
+            totalBytes -= entry.getValue();
+            oldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private Path link(Path entry) throws IOException {
+        Path pinned = dir.resolve(TEMP_PREFIX + "read-" + Thread.currentThread().threadId() + "-" + System.nanoTime());
+        try {
+            return Files.createLink(pinned, entry);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Some file systems (FAT, several network mounts) implement links by failing at run time
+            return Files.copy(entry, pinned);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return dir.resolve(key + ENTRY_SUFFIX);
+    }
+
+    // The embedded object as JSON without its content URI: size, crop, source URI, ...
+    private static String fingerprint(EmbeddedObject embeddedObject) {
+        if (embeddedObject == null) return "";
+        EmbeddedObject properties = embeddedObject.clone();
+        if (properties.getImageProperties() != null) {
+            properties.getImageProperties().setContentUri(null);
+        }
+        try {
+            return GsonFactory.getDefaultInstance().toString(properties);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Serializing to a string does not do I/O
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM has it
+        }
+    }
+}
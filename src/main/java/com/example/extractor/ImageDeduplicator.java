@@ -0,0 +1,148 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Skips image uploads whose content is already in the bucket. The image is spooled
+ * to a temporary file while its SHA-256 is computed, then compared against the
+ * {@link ImageManifest}:
+ * <ul>
+ *   <li>same hash already stored under the target key: nothing is sent to S3;</li>
+ *   <li>same hash stored under another key: S3 copies the object server-side;</li>
+ *   <li>new content: the file is uploaded.</li>
+ * </ul>
+ * With a shared prefix, new content is uploaded once to {@code sharedPrefix/sha256}
+ * and every key that needs it becomes a server-side copy of that object.
+ */
+public class ImageDeduplicator {
+
+    public enum Outcome { UPLOADED, UNCHANGED, COPIED }
+
+    public static class StoredImage {
+        final Outcome outcome;
+        final long bytes;
+        final String sha256;
+        StoredImage(Outcome outcome, long bytes, String sha256) {
+            this.outcome = outcome;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final S3StreamingUploader uploader;
+    private final ImageManifest manifest;
+    private final String sharedPrefix;
+
+    /**
+     * @param sharedPrefix Key prefix for content-addressed objects, or null to copy from whichever key holds the content.
+     */
+    public ImageDeduplicator(S3Client s3Client, String bucketName, S3StreamingUploader uploader, ImageManifest manifest, String sharedPrefix) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.uploader = uploader;
+        this.manifest = manifest;
+        this.sharedPrefix = sharedPrefix;
+    }
+
+    public StoredImage store(String key, String contentType, InputStream in) throws IOException {
+        Path spooled = Files.createTempFile("image-", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (DigestInputStream digestStream = new DigestInputStream(in, digest)) {
+                size = Files.copy(digestStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+
+            ImageManifest.Entry existing = manifest.findByKey(key);
+            if (existing != null && existing.getSha256().equals(sha256)) {
+                return new StoredImage(Outcome.UNCHANGED, size, sha256);
+            }
+
+            if (sharedPrefix != null) {
+                String sharedKey = sharedPrefix + "/" + sha256;
+                ImageManifest.Entry shared = manifest.findByKey(sharedKey);
+                boolean uploaded = false;
+                if (shared == null || !shared.getSha256().equals(sha256)) {
+                    upload(sharedKey, contentType, spooled, size, sha256);
+                    uploaded = true;
+                }
+                copy(sharedKey, key, sha256, size);
+                return new StoredImage(uploaded ? Outcome.UPLOADED : Outcome.COPIED, size, sha256);
+            }
+
+            ImageManifest.Entry source = manifest.findByHash(sha256);
+            if (source != null && !source.getKey().equals(key) && holds(source.getKey(), sha256)) {
+                try {
+                    copy(source.getKey(), key, sha256, size);
+                    return new StoredImage(Outcome.COPIED, size, sha256);
+                } catch (S3Exception e) {
+                    // The source object may have been deleted since it was recorded; fall back to uploading.
+                    System.err.printf("Server-side copy from %s failed, uploading instead. Error: %s\n", source.getKey(), e.getMessage());
+                }
+            }
+            upload(key, contentType, spooled, size, sha256);
+            return new StoredImage(Outcome.UPLOADED, size, sha256);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    private void upload(String key, String contentType, Path file, long size, String sha256) throws IOException {
+        S3StreamingUploader.UploadedObject uploaded;
+        try (InputStream in = Files.newInputStream(file)) {
+            uploaded = uploader.upload(key, contentType, in, size);
+        }
+        manifest.record(key, sha256, uploaded.getETag(), size);
+    }
+
+    // The manifest still records this content under the key, so a copy from it cannot pick up other bytes
+    private boolean holds(String key, String sha256) {
+        ImageManifest.Entry current = manifest.findByKey(key);
+        return current != null && current.getSha256().equals(sha256);
+    }
+
+    private void copy(String sourceKey, String targetKey, String sha256, long size) throws IOException {
+        String eTag = s3Client.copyObject(CopyObjectRequest.builder()
+            .sourceBucket(bucketName)
+            .sourceKey(sourceKey)
+            .destinationBucket(bucketName)
+            .destinationKey(targetKey)
+            .build()).copyObjectResult().eTag();
+        manifest.record(targetKey, sha256, eTag, size);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
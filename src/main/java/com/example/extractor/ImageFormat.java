@@ -0,0 +1,84 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Image formats recognised from their leading magic bytes, with the content type and file
+ * extension they are stored under. Google serves inline images as PNG, JPEG or GIF whatever
+ * the document says, so the bytes are the only reliable source.
+ */
+public enum ImageFormat {
+    JPEG("image/jpeg", "jpg", true),
+    PNG("image/png", "png", true),
+    // Resizing would drop every frame of an animation but the first.
+    GIF("image/gif", "gif", false),
+    WEBP("image/webp", "webp", false),
+    BMP("image/bmp", "bmp", false),
+    TIFF("image/tiff", "tif", false),
+    UNKNOWN("application/octet-stream", "bin", false);
+
+    /** Enough leading bytes to tell every format above apart ({@code RIFF....WEBP} is the longest). */
+    public static final int HEADER_BYTES = 12;
+
+    final String contentType;
+    final String extension;
+    final boolean resizable;
+
+    ImageFormat(String contentType, String extension, boolean resizable) {
+        this.contentType = contentType;
+        this.extension = extension;
+        this.resizable = resizable;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /** Whether {@link ImageVariants} can decode the format and write a smaller copy in the same format. */
+    public boolean isResizable() {
+        return resizable;
+    }
+
+    /** The format of the first {@code length} bytes of {@code header}. */
+    public static ImageFormat detect(byte[] header, int length) {
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) return JPEG;
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return PNG;
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) return GIF;
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') return WEBP;
+        if (startsWith(header, length, 'B', 'M')) return BMP;
+        if (startsWith(header, length, 'I', 'I', 0x2A, 0x00) || startsWith(header, length, 'M', 'M', 0x00, 0x2A)) return TIFF;
+        return UNKNOWN;
+    }
+
+    /** Peeks at the start of the stream and pushes the bytes back, so the stream can still be read in full. */
+    public static ImageFormat detect(PushbackInputStream in) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        int length = in.readNBytes(header, 0, HEADER_BYTES);
+        in.unread(header, 0, length);
+        return detect(header, length);
+    }
+
+    public static ImageFormat detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = new byte[HEADER_BYTES];
+            return detect(header, in.readNBytes(header, 0, HEADER_BYTES));
+        }
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) return false;
+        }
+        return true;
+    }
+}
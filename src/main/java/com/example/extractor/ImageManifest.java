@@ -0,0 +1,138 @@
+package com.example.extractor;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local, append-only record of which content (by SHA-256) is stored under which S3 key.
+ * Each line is {@code key<TAB>sha256<TAB>etag<TAB>size}; when a key appears several
+ * times the last line wins, so the file never has to be rewritten.
+ */
+public class ImageManifest implements Closeable {
+
+    public static class Entry {
+        final String key;
+        final String sha256;
+        final String eTag;
+        final long size;
+        Entry(String key, String sha256, String eTag, long size) {
+            this.key = key;
+            this.sha256 = sha256;
+            this.eTag = eTag;
+            this.size = size;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    private final Map<String, Entry> entriesByKey = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entriesByHash = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    private ImageManifest(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Loads the manifest at {@code path}, creating it if it does not exist yet.
+     */
+    public static ImageManifest open(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<String> lines = Files.exists(path) ? Files.readAllLines(path, StandardCharsets.UTF_8) : List.of();
+        boolean torn = !lines.isEmpty() && !endsWithNewline(path);
+        ImageManifest manifest = new ImageManifest(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (torn) {
+            // Terminate a torn last line so the next record starts on a line of its own.
+            manifest.writer.newLine();
+            manifest.writer.flush();
+        }
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 4) continue; // Tolerate a torn last line from an interrupted run
+            try {
+                manifest.index(new Entry(parts[0], parts[1], parts[2], Long.parseLong(parts[3])));
+            } catch (NumberFormatException e) {
+                // Skip the malformed line
+            }
+        }
+        return manifest;
+    }
+
+    /** The content currently recorded for {@code key}, or null. */
+    public Entry findByKey(String key) {
+        return entriesByKey.get(key);
+    }
+
+    /**
+     * Some key that is known to hold content with this hash, or null. A key whose content was
+     * replaced since is no longer returned for the old hash.
+     */
+    public Entry findByHash(String sha256) {
+        return entriesByHash.get(sha256);
+    }
+
+    public void record(String key, String sha256, String eTag, long size) throws IOException {
+        Entry entry = new Entry(key, sha256, eTag != null ? eTag : "", size);
+        synchronized (writer) {
+            writer.write(key + "\t" + entry.sha256 + "\t" + entry.eTag + "\t" + size);
+            writer.newLine();
+            writer.flush();
+        }
+        index(entry);
+    }
+
+    public int size() {
+        return entriesByKey.size();
+    }
+
+    private void index(Entry entry) {
+        Entry previous = entriesByKey.put(entry.key, entry);
+        if (previous != null && !previous.sha256.equals(entry.sha256)) {
+            // The key no longer holds the old content; stop offering it as a copy source for that hash
+            entriesByHash.remove(previous.sha256, previous);
+        }
+        entriesByHash.put(entry.sha256, entry);
+    }
+
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, reader.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.extractor;
+
+import java.util.List;
+
+/**
+ * Outcome of transferring one image from its Google content URI to S3.
+ */
+public class ImageTransferResult {
+
+    /** A downscaled copy stored next to the original, see {@link ImageVariants}. */
+    public static class Variant {
+        final String s3Key;
+        final int width;
+        final int height;
+        public Variant(String s3Key, int width, int height) {
+            this.s3Key = s3Key;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String getS3Key() {
+            return s3Key;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    private final int index;
+    private final String objectId;
+    private final String s3Key;
+    private final boolean success;
+    private final boolean deduplicated;
+    private final long bytes;
+    private final long latencyMillis;
+    private final String error;
+    private final String contentType;
+    private final List<Variant> variants;
+
+    private ImageTransferResult(int index, String objectId, String s3Key, boolean success, boolean deduplicated, long bytes, long latencyMillis, String error) {
+        this(index, objectId, s3Key, success, deduplicated, bytes, latencyMillis, error, null, List.of());
+    }
+
+    private ImageTransferResult(int index, String objectId, String s3Key, boolean success, boolean deduplicated, long bytes, long latencyMillis, String error,
+                                String contentType, List<Variant> variants) {
+        this.index = index;
+        this.objectId = objectId;
+        this.s3Key = s3Key;
+        this.success = success;
+        this.deduplicated = deduplicated;
+        this.bytes = bytes;
+        this.latencyMillis = latencyMillis;
+        this.error = error;
+        this.contentType = contentType;
+        this.variants = variants;
+    }
+
+    /** The same result, recording the detected content type and the variants stored with the image. */
+    public ImageTransferResult withRendition(String contentType, List<Variant> variants) {
+        return new ImageTransferResult(index, objectId, s3Key, success, deduplicated, bytes, latencyMillis, error, contentType, List.copyOf(variants));
+    }
+
+    public static ImageTransferResult success(int index, String objectId, String s3Key, long bytes, long latencyMillis) {
+        return new ImageTransferResult(index, objectId, s3Key, true, false, bytes, latencyMillis, null);
+    }
+
+    /** The image was already stored, so no image bytes were sent to S3. */
+    public static ImageTransferResult deduplicated(int index, String objectId, String s3Key, long bytes, long latencyMillis) {
+        return new ImageTransferResult(index, objectId, s3Key, true, true, bytes, latencyMillis, null);
+    }
+
+    public static ImageTransferResult failure(int index, String objectId, String s3Key, long latencyMillis, String error) {
+        return new ImageTransferResult(index, objectId, s3Key, false, false, 0, latencyMillis, error);
+    }
+
+    /** 1-based position of the image in document order, as used in {@code image_NNN}. */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public String getS3Key() {
+        return s3Key;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /** The failure message, or null if the transfer succeeded. */
+    public String getError() {
+        return error;
+    }
+
+    /** The content type detected from the image bytes, or null if the image was not read. */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** The downscaled copies, smallest first; empty unless variants are enabled. */
+    public List<Variant> getVariants() {
+        return variants;
+    }
+
+    @Override
+    public String toString() {
+        if (deduplicated) return String.format("%s: unchanged (%d bytes) in %d ms", s3Key, bytes, latencyMillis);
+        return success
+            ? String.format("%s: %d bytes in %d ms", s3Key, bytes, latencyMillis)
+            : String.format("%s: FAILED after %d ms (%s)", s3Key, latencyMillis, error);
+    }
+}
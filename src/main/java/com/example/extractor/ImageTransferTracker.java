@@ -0,0 +1,29 @@
+package com.example.extractor;
+
+/**
+ * Lets the caller of {@link GoogleDocExtractor#downloadAndUploadImagesToS3(com.google.api.services.docs.v1.model.Document, ImageTransferTracker)}
+ * skip images that are known to be uploaded already and observe each transfer as soon as it finishes.
+ */
+public interface ImageTransferTracker {
+
+    ImageTransferTracker NONE = new ImageTransferTracker() {
+        @Override
+        public ImageTransferResult findTransferred(int index, String objectId, String baseKey) {
+            return null;
+        }
+
+        @Override
+        public void onTransferred(ImageTransferResult result) {
+        }
+    };
+
+    /**
+     * The result of an earlier transfer of the image, which is reported again instead of downloading
+     * the image, or null to transfer it now.
+     * @param baseKey The image's key without its extension, which depends on the format of its bytes.
+     */
+    ImageTransferResult findTransferred(int index, String objectId, String baseKey);
+
+    /** Called once per image that was actually attempted, from the thread that finished the transfer. */
+    void onTransferred(ImageTransferResult result);
+}
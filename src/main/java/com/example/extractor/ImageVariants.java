@@ -0,0 +1,153 @@
+package com.example.extractor;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Downscaled copies of an image sized for how large the document displays it. Google Docs keeps
+ * the full-resolution original even when an image is shown a few hundred points wide, so a
+ * variant is made for each requested pixel density of the displayed width (1x, 2x, ...) that is
+ * smaller than the original. Variants keep the original's format; formats that cannot be resized
+ * faithfully (see {@link ImageFormat#isResizable()}) get none.
+ */
+public class ImageVariants {
+
+    /** One downscaled copy, encoded and ready to upload. */
+    public static class Rendition {
+        final int width;
+        final int height;
+        final byte[] data;
+        Rendition(int width, int height, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    // Embedded objects are sized in points (1/72 inch); CSS pixels are 1/96 inch.
+    static final double PIXELS_PER_POINT = 96.0 / 72.0;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final double[] densities;
+
+    /** @param densities Pixel densities of the displayed width to make variants for, e.g. 1 and 2. */
+    public ImageVariants(double... densities) {
+        if (densities.length == 0) throw new IllegalArgumentException("At least one density is required");
+        for (double density : densities) {
+            if (!(density > 0)) throw new IllegalArgumentException("Densities must be positive, got " + density);
+        }
+        this.densities = densities.clone();
+    }
+
+    /**
+     * The variant widths, in pixels and ascending, for an image displayed {@code displayWidthPt} points
+     * wide whose original is {@code originalWidth} pixels wide. Widths that would not be smaller than
+     * the original are dropped.
+     */
+    List<Integer> targetWidths(double displayWidthPt, int originalWidth) {
+        TreeSet<Integer> widths = new TreeSet<>();
+        for (double density : densities) {
+            int width = (int) Math.round(displayWidthPt * PIXELS_PER_POINT * density);
+            if (width >= 1 && width < originalWidth) widths.add(width);
+        }
+        return new ArrayList<>(widths);
+    }
+
+    /**
+     * Decodes {@code original} and encodes one smaller copy per target width.
+     * @return The variants, smallest first; empty if the format is not resizable, the displayed size is
+     *         unknown or the original is already small enough.
+     */
+    public List<Rendition> render(Path original, ImageFormat format, double displayWidthPt) throws IOException {
+        if (!format.isResizable() || !(displayWidthPt > 0)) return List.of();
+        BufferedImage image = ImageIO.read(original.toFile());
+        if (image == null) return List.of(); // Recognised by its header, but not decodable
+        List<Rendition> renditions = new ArrayList<>();
+        for (int width : targetWidths(displayWidthPt, image.getWidth())) {
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            boolean alpha = format == ImageFormat.PNG && image.getColorModel().hasAlpha();
+            renditions.add(new Rendition(width, height, encode(scale(image, width, height, alpha), format)));
+        }
+        return renditions;
+    }
+
+    /** The key of the variant {@code width} pixels wide of the image stored under {@code baseKey} plus its extension. */
+    public static String variantKey(String baseKey, int width, ImageFormat format) {
+        return baseKey + "_w" + width + "." + format.getExtension();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(densities);
+    }
+
+    /**
+     * Scales down in steps of at most a half: a single bilinear pass from a much larger image
+     * samples too few source pixels and aliases.
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, ImageFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (format != ImageFormat.JPEG) {
+            ImageIO.write(image, format.getExtension(), out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
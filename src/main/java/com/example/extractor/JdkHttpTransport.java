@@ -0,0 +1,173 @@
+package com.example.extractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+/**
+ * A google-http-client transport over a {@link PooledHttpClient}, in place of {@code NetHttpTransport}
+ * and its {@code HttpURLConnection}s, so the Docs API shares the pooled HTTP/2 connections. The client
+ * library asks for gzip and decodes responses by their Content-Encoding itself, so bodies pass through
+ * untouched.
+ */
+final class JdkHttpTransport extends HttpTransport {
+
+    // Headers java.net.http sets itself and refuses to take from callers
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final PooledHttpClient http;
+
+    JdkHttpTransport(PooledHttpClient http) {
+        this.http = http;
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+        return new Request(method, URI.create(url));
+    }
+
+    private final class Request extends LowLevelHttpRequest {
+        private final String method;
+        private final URI uri;
+        private final List<String> headerNames = new ArrayList<>();
+        private final List<String> headerValues = new ArrayList<>();
+        private Duration readTimeout;
+
+        Request(String method, URI uri) {
+            this.method = method;
+            this.uri = uri;
+            this.readTimeout = http.getReadTimeout();
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            headerNames.add(name);
+            headerValues.add(value);
+        }
+
+        /**
+         * The read timeout applies to this request, 0 being none. The connect timeout belongs to the shared
+         * client, so a request asking for another one is refused rather than quietly given the client's.
+         */
+        @Override
+        public void setTimeout(int connectTimeout, int readTimeout) {
+            long clientConnectMillis = http.getConnectTimeout().toMillis();
+            if (connectTimeout != clientConnectMillis) {
+                throw new IllegalArgumentException("Connect timeout of " + connectTimeout + " ms requested, but the shared HTTP client uses "
+                    + clientConnectMillis + " ms; set it on the PooledHttpClient");
+            }
+            this.readTimeout = (readTimeout > 0) ? Duration.ofMillis(readTimeout) : null;
+        }
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            HttpRequest.Builder builder = http.newRequest(uri, readTimeout);
+            for (int i = 0; i < headerNames.size(); i++) {
+                if (!RESTRICTED_HEADERS.contains(headerNames.get(i).toLowerCase(Locale.ROOT))) {
+                    builder.header(headerNames.get(i), headerValues.get(i));
+                }
+            }
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+            if (getStreamingContent() != null) {
+                // Request bodies are small: a batch of document GETs at most
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                getStreamingContent().writeTo(content);
+                body = HttpRequest.BodyPublishers.ofByteArray(content.toByteArray());
+                if (getContentType() != null && !hasHeader("Content-Type")) builder.header("Content-Type", getContentType());
+                if (getContentEncoding() != null && !hasHeader("Content-Encoding")) builder.header("Content-Encoding", getContentEncoding());
+            }
+            builder.method(method, body);
+            return new Response(http.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+        }
+
+        private boolean hasHeader(String name) {
+            return headerNames.stream().anyMatch(name::equalsIgnoreCase);
+        }
+    }
+
+    private static final class Response extends LowLevelHttpResponse {
+        private final HttpResponse<InputStream> response;
+        private final List<String> headerNames = new ArrayList<>();
+        private final List<String> headerValues = new ArrayList<>();
+
+        Response(HttpResponse<InputStream> response) {
+            this.response = response;
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                for (String value : header.getValue()) {
+                    headerNames.add(header.getKey());
+                    headerValues.add(value);
+                }
+            }
+        }
+
+        @Override
+        public InputStream getContent() {
+            return response.body();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return response.headers().firstValue("Content-Encoding").orElse(null);
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        }
+
+        @Override
+        public String getContentType() {
+            return response.headers().firstValue("Content-Type").orElse(null);
+        }
+
+        @Override
+        public String getStatusLine() {
+            return (response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2 " : "HTTP/1.1 ") + response.statusCode();
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        /** HTTP/2 has no reason phrases and java.net.http does not keep HTTP/1.1's. */
+        @Override
+        public String getReasonPhrase() {
+            return null;
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return headerNames.size();
+        }
+
+        @Override
+        public String getHeaderName(int index) {
+            return headerNames.get(index);
+        }
+
+        @Override
+        public String getHeaderValue(int index) {
+            return headerValues.get(index);
+        }
+
+        @Override
+        public void disconnect() throws IOException {
+            response.body().close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.extractor;
+
+/**
+ * A client that is only built the first time it is asked for, so a run that never needs it
+ * does not pay for its construction (the OAuth flow, the SDK's HTTP stack, the classes behind them).
+ * The factory runs at most once: its result, null included, and its failure are both remembered,
+ * so a broken configuration is reported once instead of being retried for every document.
+ */
+public class LazyClient<T> implements AutoCloseable {
+
+    /** Builds the client; may return null when the client is not configured. */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create() throws Exception;
+    }
+
+    private final String name;
+    private final Factory<T> factory;
+    private volatile boolean created = false;
+    private T client;
+    private Exception failure;
+
+    public LazyClient(String name, Factory<T> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the client, building it on the first call.
+     * @return The client, or null if the factory returned null.
+     * @throws IllegalStateException if the factory failed, now or on an earlier call.
+     */
+    public T get() {
+        if (!created) {
+            synchronized (this) {
+                if (!created) {
+                    try {
+                        client = factory.create();
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                    created = true;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("The " + name + " could not be created: " + failure.getMessage(), failure);
+        }
+        return client;
+    }
+
+    /** Whether the factory has already run. */
+    public boolean isCreated() {
+        return created;
+    }
+
+    /** Closes the client if it was built and is closeable; a client never asked for is never built. */
+    @Override
+    public synchronized void close() throws Exception {
+        if (created && client instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.extractor;
+
+import java.io.IOException;
+
+/**
+ * The small shared storage {@link WorkClaims} coordinates nodes through: a directory every node
+ * mounts ({@link DirectoryLeaseStore}) or an S3 prefix ({@link S3LeaseStore}). Entries are short
+ * UTF-8 texts under flat names.
+ */
+public interface LeaseStore {
+
+    /**
+     * Creates {@code name} unless it exists, atomically: of several nodes creating the same name at
+     * once, exactly one succeeds, and nobody reads the entry before its content is complete.
+     * @return Whether this call created it.
+     */
+    boolean create(String name, String content) throws IOException;
+
+    /** Replaces the content of {@code name}, which only the node that created it writes. */
+    void write(String name, String content) throws IOException;
+
+    /** The content of {@code name}, or null if there is no such entry. */
+    String read(String name) throws IOException;
+}
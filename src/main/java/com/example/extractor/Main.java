@@ -2,16 +2,24 @@ package com.example.extractor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter; // Using FileWriter for clarity in the loop
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import com.google.api.client.auth.oauth2.Credential;
@@ -19,8 +27,8 @@ import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInsta
 import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.api.services.docs.v1.Docs;
@@ -29,7 +37,9 @@ import com.google.api.services.docs.v1.model.Document;
 
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 public class Main {
@@ -41,22 +51,33 @@ public class Main {
     private static final List<String> SCOPES = Collections.singletonList(DocsScopes.DOCUMENTS_READONLY);
     private static final String CREDENTIALS_FILE_PATH = "/credentials.json";
 
-    // AWS S3 Configuration (loaded from EnvLoader)
-    private static final String AWS_ACCESS_KEY = EnvLoader.get("AWS_ACCESS_KEY_ID");
-    private static final String AWS_SECRET_KEY = EnvLoader.get("AWS_SECRET_ACCESS_KEY");
-    private static final String AWS_REGION = EnvLoader.get("AWS_REGION", "us-east-1");
-    private static final String S3_BUCKET_NAME = EnvLoader.get("S3_BUCKET_NAME");
+    // Finished server jobs kept for status and result lookups
+    private static final int SERVER_RETAINED_JOBS = 1000;
 
-    private static Credential getCredentials() throws Exception {
+    /**
+     * AWS S3 configuration, loaded from EnvLoader the first time it is read. Holding it in its own class
+     * keeps .env.local and the environment unread in runs that never touch S3, such as a replay.
+     */
+    private static final class AwsConfig {
+        static final String ACCESS_KEY = EnvLoader.get("AWS_ACCESS_KEY_ID");
+        static final String SECRET_KEY = EnvLoader.get("AWS_SECRET_ACCESS_KEY");
+        static final String REGION = EnvLoader.get("AWS_REGION", "us-east-1");
+        static final String BUCKET_NAME = EnvLoader.get("S3_BUCKET_NAME");
+
+        static boolean isConfigured() {
+            return ACCESS_KEY != null && SECRET_KEY != null && BUCKET_NAME != null;
+        }
+    }
+
+    private static Credential getCredentials(HttpTransport transport) throws Exception {
         InputStream in = Main.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
         if (in == null) {
             throw new FileNotFoundException("Resource not found: " + CREDENTIALS_FILE_PATH);
         }
         GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
 
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
         GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, SCOPES)
+                transport, JSON_FACTORY, clientSecrets, SCOPES)
                 .setDataStoreFactory(new FileDataStoreFactory(new File(TOKENS_DIRECTORY_PATH)))
                 .setAccessType("offline")
                 .build();
@@ -64,109 +85,683 @@ public class Main {
         return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
     }
 
+    /**
+     * Builds the Docs service over the shared HTTP client, running the OAuth flow unless {@code endpoint}
+     * points it at a stand-in for the Docs API, which takes no credentials.
+     */
+    private static Docs initializeDocsService(String endpoint, PooledHttpClient http) throws Exception {
+        HttpTransport transport = http.newGoogleTransport();
+        Credential credential = (endpoint != null) ? null : getCredentials(transport);
+        // The client library applies its own 20 s timeouts to every request unless told otherwise
+        int connectMillis = (int) http.getConnectTimeout().toMillis();
+        int readMillis = (int) http.getReadTimeout().toMillis();
+        HttpRequestInitializer initializer = request -> {
+            if (credential != null) credential.initialize(request);
+            request.setConnectTimeout(connectMillis);
+            request.setReadTimeout(readMillis);
+        };
+        Docs.Builder builder = new Docs.Builder(transport, JSON_FACTORY, initializer)
+                .setApplicationName(APPLICATION_NAME);
+        if (endpoint != null) {
+            builder.setRootUrl(endpoint.endsWith("/") ? endpoint : endpoint + "/");
+        }
+        return builder.build();
+    }
+
     public static void main(String... args) throws Exception {
         // --- 1. PARSE COMMAND-LINE ARGUMENTS ---
         if (args.length == 0) {
-            System.err.println("Usage:");
-            System.err.println("  java -jar your-app.jar <docId1> <docId2> ...");
-            System.err.println("  java -jar your-app.jar --file path/to/ids.txt");
+            CliOptions.printUsage();
             System.exit(1);
         }
 
+        CliOptions options = parseOptionsOrExit(args);
+        if (options.mergeSummaries) {
+            mergeSummaries(options);
+            return;
+        }
         List<String> docIds = new ArrayList<>();
-        if (args[0].equalsIgnoreCase("--file") || args[0].equalsIgnoreCase("-f")) {
-            if (args.length < 2) {
-                System.err.println("Error: --file flag requires a file path argument.");
-                System.exit(1);
+        try {
+            docIds = options.resolveDocIds();
+        } catch (IOException e) {
+            System.err.println("Error reading file '" + options.idFile + "': " + e.getMessage());
+            System.exit(1);
+        }
+
+        DocumentCache documentCache = null;
+        if (options.cacheDir != null) {
+            documentCache = new DocumentCache(Paths.get(options.cacheDir));
+            if (options.replay && docIds.isEmpty()) {
+                docIds = documentCache.listDocIds();
+                System.out.printf("Replaying every document cached in %s.\n", options.cacheDir);
             }
-            String filePath = args[1];
-            System.out.println("Reading document IDs from file: " + filePath);
+        }
+
+        // Every node reads the same list and keeps its own part; the resume filter below works per node
+        if (options.shard != null) {
+            int before = docIds.size();
+            docIds = options.shard.select(docIds);
+            System.out.printf("Shard %s: processing %d of %d document(s).\n", options.shard, docIds.size(), before);
+        }
+
+        RunJournal journal = null;
+        if (options.journalPath != null) {
+            RunJournal.Mode mode = options.resume ? RunJournal.Mode.RESUME
+                : options.overwriteJournal ? RunJournal.Mode.OVERWRITE : RunJournal.Mode.NEW;
             try {
-                docIds = Files.readAllLines(Paths.get(filePath))
-                        .stream()
-                        .map(String::trim)
-                        .filter(line -> !line.isEmpty() && !line.startsWith("#")) // Also ignore comments
-                        .collect(Collectors.toList());
-            } catch (IOException e) {
-                System.err.println("Error reading file '" + filePath + "': " + e.getMessage());
+                journal = RunJournal.open(Paths.get(options.journalPath), mode);
+            } catch (FileAlreadyExistsException e) {
+                System.err.println("Error: journal '" + options.journalPath + "' records an earlier run. "
+                    + "Pass --resume to continue it or --overwrite-journal to start over.");
                 System.exit(1);
             }
-        } else {
-            System.out.println("Reading document IDs from command-line arguments.");
-            docIds.addAll(Arrays.asList(args));
+            if (options.resume) {
+                final RunJournal resumed = journal;
+                int before = docIds.size();
+                docIds = docIds.stream().filter(docId -> !resumed.isComplete(docId)).collect(Collectors.toList());
+                System.out.printf("Resuming from %s: skipping %d completed document(s).\n", options.journalPath, before - docIds.size());
+            }
         }
 
-        if (docIds.isEmpty()) {
+        if (docIds.isEmpty() && !options.isServer()) {
             System.out.println("No document IDs to process.");
+            if (journal != null) {
+                journal.close();
+            }
             return;
         }
 
-        // --- 2. INITIALIZE SERVICES (ONE TIME) ---
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-        Docs docsService = new Docs.Builder(HTTP_TRANSPORT, JSON_FACTORY, getCredentials())
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+        // --- 2. INITIALIZE SERVICES (ON FIRST USE) ---
+        // Each client is built the first time a stage needs it: a replay never runs the OAuth flow and a run
+        // whose documents have no images never builds an S3 client.
+        // Image downloads and the Docs API share one pooled HTTP/2 client, and with it their connections
+        LazyClient<PooledHttpClient> httpClient = new LazyClient<>("HTTP client", () -> new PooledHttpClient(
+                Duration.ofSeconds(options.connectTimeoutSeconds), Duration.ofSeconds(options.readTimeoutSeconds)));
+        LazyClient<Docs> docsService = new LazyClient<>("Docs service", () -> initializeDocsService(options.docsEndpoint, httpClient.get()));
+        if (options.measureFields) {
+            new FieldMaskMeasurement(docsService.get()).run(docIds);
+            if (journal != null) {
+                journal.close();
+            }
+            return;
+        }
 
-        S3Client s3Client = initializeS3Client();
-        GoogleDocExtractor extractor = new GoogleDocExtractor(s3Client, S3_BUCKET_NAME);
-        
-        System.out.printf("\nFound %d document(s) to process.\n", docIds.size());
+        boolean transfersImages = false;
+        if (!options.replay) {
+            transfersImages = AwsConfig.isConfigured();
+            if (!transfersImages) {
+                System.out.println("AWS credentials not found. S3 upload functionality is disabled.");
+            }
+        }
+        // Asynchronous uploads park no thread per transfer; the image stage keeps its few workers either way
+        int imagesInFlight = options.imageConcurrency * options.imageTransfersPerDocument;
+        LazyClient<S3Client> s3Client = new LazyClient<>("S3 client", Main::initializeS3Client);
+        LazyClient<S3AsyncClient> s3AsyncClient = new LazyClient<>("S3 client",
+                () -> initializeS3AsyncClient("crt".equals(options.s3ClientType), imagesInFlight));
+        // One limiter per API, shared by all workers, so the pipeline runs at whatever rate the quotas allow
+        AdaptiveRateLimiter docsLimiter = new AdaptiveRateLimiter("Docs API", options.docsRequestsPerSecond,
+                options.fetchConcurrency, options.maxAttempts, ApiRetryClassifiers::classifyDocsApi);
+        AdaptiveRateLimiter s3Limiter = new AdaptiveRateLimiter("S3", options.s3RequestsPerSecond,
+                imagesInFlight, options.maxAttempts, ApiRetryClassifiers::classifyS3);
+        RunMetrics metrics = new RunMetrics();
+        String nodeId = (options.nodeId != null) ? options.nodeId : defaultNodeId();
+        if (options.nodeId != null || options.shard != null || options.isClaiming()) {
+            // Names this node in the summary, which --merge-summaries adds up with the other nodes'
+            metrics.addNode(nodeId);
+        }
+        if (!options.replay) {
+            registerLimiterCounters(metrics, "docs_api", docsLimiter);
+        }
+        // S3 output goes through the synchronous client and its limiter, whichever client moves the images.
+        // Every document is stored through it, so it is built right away.
+        S3Client outputS3Client = null;
+        if ("s3".equals(options.outputType)) {
+            outputS3Client = s3Client.get();
+            if (outputS3Client == null) {
+                System.err.println("Error: --output s3: needs the AWS credentials and S3_BUCKET_NAME.");
+                System.exit(1);
+            }
+        }
+        WorkClaims claims = null;
+        if (options.isClaiming()) {
+            LeaseStore leases;
+            if ("s3".equals(options.claimType)) {
+                S3Client claimS3Client = s3Client.get();
+                if (claimS3Client == null) {
+                    System.err.println("Error: --claim s3: needs the AWS credentials and S3_BUCKET_NAME.");
+                    System.exit(1);
+                }
+                leases = new S3LeaseStore(claimS3Client, AwsConfig.BUCKET_NAME, options.claimTarget, s3Limiter);
+            } else {
+                leases = new DirectoryLeaseStore(Paths.get(options.claimTarget));
+            }
+            claims = new WorkClaims(leases, nodeId, Duration.ofSeconds(options.leaseSeconds), metrics);
+            System.out.printf("Claiming documents in %s as %s.\n", leases, nodeId);
+        }
+        if ((transfersImages && !options.isAsyncS3()) || outputS3Client != null || "s3".equals(options.claimType)) {
+            registerLimiterCounters(metrics, "s3", s3Limiter);
+        }
+        OutputSink outputSink = openOutputSink(options, outputS3Client, s3Limiter);
+        DeltaStore deltaStore = (options.deltaDir != null) ? new DeltaStore(Paths.get(options.deltaDir)) : null;
+        ImageManifest imageManifest = null;
+        if (transfersImages && !options.isAsyncS3() && options.dedupManifest != null) {
+            imageManifest = ImageManifest.open(Paths.get(options.dedupManifest));
+            System.out.printf("Image deduplication enabled (%d known objects).\n", imageManifest.size());
+        }
+        // The JSON needs no client; the extractor that moves images is built with its client on the first image
+        GoogleDocExtractor extractor = new GoogleDocExtractor(null, null);
+        if (options.styleDictionary) {
+            extractor.enableStyleDictionary();
+        }
+        ImageCache imageCache = null;
+        if (transfersImages && options.imageCacheDir != null) {
+            imageCache = new ImageCache(Paths.get(options.imageCacheDir), options.imageCacheMegabytes * 1024L * 1024L);
+            metrics.registerCounter("image.cache.evictions", imageCache::getEvictionCount);
+            System.out.printf("Image cache in %s holds %d bytes.\n", imageCache, imageCache.getTotalBytes());
+        }
+        final ImageManifest manifest = imageManifest;
+        final ImageCache cache = imageCache;
+        LazyClient<GoogleDocExtractor> imageExtractor = transfersImages
+                ? new LazyClient<>("image uploader", () -> initializeImageExtractor(options, s3Client, s3AsyncClient, httpClient, s3Limiter, manifest, cache, metrics))
+                : null;
 
-        // --- 3. PROCESS EACH DOCUMENT IN A LOOP ---
-        for (String docId : docIds) {
-            System.out.println("=================================================");
-            System.out.printf("Processing Document ID: %s\n", docId);
-            System.out.println("=================================================");
-            
+        if (options.isServer()) {
+            // A server starts once and serves many jobs, so it builds its clients up front rather than on the first job
+            if (!options.replay) {
+                docsService.get();
+            }
+            if (imageExtractor != null) {
+                imageExtractor.get();
+            }
+            ExtractionServer.Processor processor = serverProcessor(options, docsService, docsLimiter, documentCache,
+                    extractor, imageExtractor, outputSink, deltaStore, metrics);
+            InetSocketAddress address = (options.bindAddress != null)
+                    ? new InetSocketAddress(options.bindAddress, options.servePort)
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), options.servePort);
+            String token = (options.serverToken != null) ? options.serverToken : EnvLoader.get("SERVER_TOKEN");
+            ExtractionServer server;
             try {
-                System.out.println("Fetching document...");
-                Document document = docsService.documents().get(docId).execute();
-                System.out.println("Document fetched: " + document.getTitle());
-
-                // a) Extract content to JSON
-                String jsonOutput = extractor.extractContentAsJson(document);
-                String outputFilename = docId + ".json";
-                try (FileWriter fileWriter = new FileWriter(outputFilename)) {
-                    fileWriter.write(jsonOutput);
-                    System.out.println("✅ Success! Extracted JSON written to " + outputFilename);
-                }
+                server = new ExtractionServer(processor, metrics, address, token,
+                        options.serverWorkers, options.queueCapacity, SERVER_RETAINED_JOBS);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage() + " (--server-token or SERVER_TOKEN).");
+                System.exit(1);
+                return;
+            }
+            closeOnShutdown(server, outputSink, manifest, s3Client, s3AsyncClient, httpClient);
+            // The server's own threads keep the JVM alive until it is stopped
+            server.start();
+            return;
+        }
 
-                // b) Upload images to S3 (if S3 client is available)
-                if (s3Client != null) {
-                    System.out.println("Uploading images to S3...");
-                    extractor.downloadAndUploadImagesToS3(document);
+        System.out.printf("\nFound %d document(s) to process.\n", docIds.size());
+
+        // --- 3. PROCESS THE DOCUMENTS THROUGH A STAGED PIPELINE ---
+        final RunJournal runJournal = journal;
+        RevisionWatcher watcher = null;
+        if (options.isWatching()) {
+            // Polls go through the Docs API limiter too, and ask for nothing but the revision
+            RevisionWatcher.RevisionSource revisions = RevisionWatcher.fromDocsApi(docsService::get);
+            watcher = RevisionWatcher.open(Paths.get(options.watchStatePath),
+                    docId -> docsLimiter.call(() -> revisions.fetchRevisionId(docId)), options.pollConcurrency);
+        }
+        final RevisionWatcher revisionWatcher = watcher;
+        final WorkClaims workClaims = claims;
+        DocumentPipeline pipeline = new DocumentPipeline(options.queueCapacity, metrics);
+        if (workClaims != null) {
+            // Another node may retry a document that failed here, right away rather than once the lease expires
+            pipeline.onFailure((docId, stage, error) -> releaseClaim(workClaims, docId));
+        }
+        if (options.replay) {
+            addReplayStage(pipeline, options, documentCache);
+        } else {
+            addFetchStage(pipeline, options, docsService, docsLimiter, documentCache, metrics);
+        }
+        // Images go up before the JSON is written: their keys carry the extension of the format actually
+        // downloaded, and the JSON links to them and their variants.
+        if (imageExtractor != null) {
+            pipeline.addStage("images", options.imageConcurrency, job -> {
+                // One walk over the body serves both the image stage and the JSON output
+                long startNanos = System.nanoTime();
+                job.index = DocumentIndex.build(job.document);
+                metrics.recordSince("extract.index", startNanos);
+                if (job.index.getImages().isEmpty()) {
+                    return;
+                }
+                GoogleDocExtractor uploader = imageExtractor.get();
+                if (uploader == null) {
+                    // The client could not be built; that was reported once, the JSON keeps the legacy links
+                    return;
+                }
+                System.out.println("Uploading images to S3 for " + job.docId + "...");
+                List<ImageTransferResult> results = uploader.downloadAndUploadImagesToS3(job.index,
+                        runJournal != null ? journalTracker(runJournal, job) : ImageTransferTracker.NONE);
+                job.images = results;
+                long failures = results.stream().filter(result -> !result.isSuccess()).count();
+                long skipped = results.stream().filter(ImageTransferResult::isDeduplicated).count();
+                long bytes = results.stream().filter(result -> !result.isDeduplicated()).mapToLong(ImageTransferResult::getBytes).sum();
+                System.out.printf("Images for %s: %d uploaded (%d bytes), %d unchanged, %d failed\n",
+                        job.docId, results.size() - failures - skipped, bytes, skipped, failures);
+            });
+        }
+        // Documents whose output a batching sink could not store after their extract stage succeeded
+        Map<String, String> outputFailures = new ConcurrentHashMap<>();
+        pipeline.addStage("extract", options.extractConcurrency, job -> {
+            long startNanos = System.nanoTime();
+            if (job.index == null) {
+                job.index = DocumentIndex.build(job.document);
+                startNanos = metrics.recordSince("extract.index", startNanos);
+            }
+            String revisionId = job.document.getRevisionId();
+            if (runJournal != null) {
+                String writtenPath = runJournal.getOutputPath(job.docId, revisionId);
+                if (writtenPath != null && outputSink.exists(writtenPath)) {
+                    System.out.println("Output for this revision already written to " + writtenPath);
+                    job.outputPath = writtenPath;
+                    runJournal.recordComplete(job.docId, revisionId);
+                    if (revisionWatcher != null) {
+                        revisionWatcher.recordProcessed(job.docId, revisionId);
+                    }
+                    if (workClaims != null) {
+                        completeClaim(workClaims, job.docId);
+                    }
+                    return;
                 }
-                
-                System.out.println("--- Finished processing " + docId + " ---");
+            }
+            // A batching sink stores the document later, so it only counts as complete once it is stored.
+            // The delta's base moves on at the same point, so a delta always follows an output that was stored.
+            List<BlockDelta.Block> blocks = (deltaStore != null) ? new ArrayList<>() : null;
+            long bytes = outputSink.write(job.docId,
+                    (out, pretty) -> extractor.extractContentAsJson(job.index, out, pretty, job.images, blocks),
+                    new OutputSink.Listener() {
+                        @Override
+                        public void onStored(String location) throws IOException {
+                            job.outputPath = location;
+                            if (runJournal != null) {
+                                runJournal.recordOutput(job.docId, revisionId, location);
+                                runJournal.recordComplete(job.docId, revisionId);
+                            }
+                            if (revisionWatcher != null) {
+                                revisionWatcher.recordProcessed(job.docId, revisionId);
+                            }
+                            if (deltaStore != null) {
+                                recordDelta(deltaStore, job.docId, revisionId, blocks, metrics);
+                            }
+                            if (workClaims != null) {
+                                completeClaim(workClaims, job.docId);
+                            }
+                            System.out.println("✅ Success! Extracted JSON written to " + location);
+                        }
 
-            } catch (Exception e) {
-                System.err.println("❌ Error processing document " + docId + ": " + e.getMessage());
-                // Continue to the next document
+                        @Override
+                        public void onFailed(Exception error) {
+                            outputFailures.put(job.docId, String.valueOf(error.getMessage()));
+                            if (workClaims != null) {
+                                releaseClaim(workClaims, job.docId);
+                            }
+                        }
+                    });
+            metrics.recordSince("extract.json", startNanos);
+            metrics.add("output.bytes", bytes);
+        });
+        AutoCloseable periodicExport = (options.metricsDir != null && options.metricsIntervalSeconds > 0)
+                ? metrics.exportPeriodically(Paths.get(options.metricsDir), Duration.ofSeconds(options.metricsIntervalSeconds))
+                : null;
+        // From JVM launch until the first document enters the pipeline; the clients are built after this
+        metrics.add("startup.millis", millisSinceLaunch());
+        if (watcher != null) {
+            closeOnShutdown(outputSink, periodicExport, imageManifest, journal, s3Client, s3AsyncClient, httpClient);
+            watchForChanges(options, pipeline, watcher, docIds, outputSink, outputFailures, metrics);
+            return;
+        }
+        // With claims, the pipeline takes documents as this node wins them, until none is left to any node
+        DocumentPipeline.PipelineSummary summary = pipeline.run((claims != null) ? claims.claiming(docIds) : docIds.iterator());
+        // Stores the last batch before the journal and the metrics are closed
+        outputSink.close();
+        summary = pipeline.failAfterwards(summary, "output", outputFailures);
+        if (claims != null) {
+            claims.close();
+        }
+        if (periodicExport != null) {
+            periodicExport.close();
+        }
+        if (options.metricsDir != null) {
+            metrics.export(Paths.get(options.metricsDir));
+            System.out.printf("Run summary written to %s.\n", Paths.get(options.metricsDir, RunMetrics.SUMMARY_FILE));
+        }
+        System.out.printf("\nProcessed %d document(s): %d succeeded, %d failed.\n",
+                summary.getSucceeded().size() + summary.getFailed().size(), summary.getSucceeded().size(), summary.getFailed().size());
+        if (!options.replay) {
+            System.out.println(docsLimiter);
+            if (s3Client.isCreated()) {
+                System.out.println(s3Limiter);
             }
-            System.out.println(); // Add a blank line for readability
         }
 
         // --- 4. CLEAN UP ---
-        if (s3Client != null) {
-            s3Client.close();
+        if (imageManifest != null) {
+            imageManifest.close();
+        }
+        if (journal != null) {
+            journal.close();
         }
+        s3Client.close();
+        s3AsyncClient.close();
+        httpClient.close();
         System.out.println("All documents processed. Application finished.");
     }
     
+    /**
+     * Polls the revisions of {@code docIds} every {@code --watch} seconds and runs the documents whose
+     * revision moved through the pipeline, until the process is stopped. The state is saved after every
+     * round, once the round's output is stored, so a restart picks up where the last round ended.
+     */
+    private static void watchForChanges(CliOptions options, DocumentPipeline pipeline, RevisionWatcher watcher, List<String> docIds,
+                                        OutputSink outputSink, Map<String, String> outputFailures, RunMetrics metrics) throws Exception {
+        System.out.printf("\nWatching %d document(s) for changes every %d second(s).\n", docIds.size(), options.watchIntervalSeconds);
+        while (true) {
+            long startNanos = System.nanoTime();
+            List<String> changed = watcher.findChanged(docIds);
+            metrics.recordSince("watch.poll", startNanos);
+            metrics.add("watch.checked", docIds.size());
+            metrics.add("watch.changed", changed.size());
+            if (!changed.isEmpty()) {
+                System.out.printf("\n%d of %d document(s) changed.\n", changed.size(), docIds.size());
+                DocumentPipeline.PipelineSummary summary = pipeline.run(changed);
+                // A batching sink only reports a document as processed once its batch is stored
+                outputSink.flush();
+                summary = pipeline.failAfterwards(summary, "output", outputFailures);
+                outputFailures.clear();
+                watcher.save();
+                System.out.printf("Processed %d changed document(s): %d succeeded, %d failed.\n",
+                        changed.size(), summary.getSucceeded().size(), summary.getFailed().size());
+            }
+            if (options.metricsDir != null) {
+                metrics.export(Paths.get(options.metricsDir));
+            }
+            Thread.sleep(Duration.ofSeconds(options.watchIntervalSeconds));
+        }
+    }
+
+    /**
+     * Adds up the run summaries given as arguments, each a summary file or the metrics directory holding
+     * one, and exports the result into {@code --metrics DIR}.
+     */
+    private static void mergeSummaries(CliOptions options) {
+        try {
+            List<RunMetrics> summaries = new ArrayList<>();
+            for (String path : options.docIds) {
+                summaries.add(RunMetrics.readSummary(Paths.get(path)));
+            }
+            RunMetrics merged = RunMetrics.combine(summaries);
+            merged.export(Paths.get(options.metricsDir));
+            System.out.printf("Merged %d run summaries (nodes: %s) into %s.\n", summaries.size(),
+                    merged.getNodes().isEmpty() ? "unnamed" : String.join(", ", merged.getNodes()),
+                    Paths.get(options.metricsDir, RunMetrics.SUMMARY_FILE));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void completeClaim(WorkClaims claims, String docId) {
+        try {
+            claims.complete(docId);
+        } catch (IOException | RuntimeException e) {
+            // The document is stored; without the marker another node may extract it again once the lease expires
+            System.err.printf("Failed to mark %s as done: %s\n", docId, e.getMessage());
+        }
+    }
+
+    private static void releaseClaim(WorkClaims claims, String docId) {
+        try {
+            claims.release(docId);
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("Failed to release the lease on %s: %s\n", docId, e.getMessage());
+        }
+    }
+
+    /** {@code host-pid}, unique among the nodes of a run unless two share a host name. */
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "node";
+        }
+        return host.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Closes the resources, in order, when the JVM is stopped; for the modes that run until they are killed.
+     * Null entries are skipped.
+     */
+    private static void closeOnShutdown(AutoCloseable... resources) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (AutoCloseable resource : resources) {
+                if (resource == null) continue;
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close " + resource + ": " + e.getMessage());
+                }
+            }
+        }));
+    }
+
+    /**
+     * Fetches documents from the Docs API, one request per document or batched, and caches
+     * them when a cache is configured. Every call goes through {@code limiter}.
+     */
+    private static void addFetchStage(DocumentPipeline pipeline, CliOptions options, LazyClient<Docs> docsService,
+                                      AdaptiveRateLimiter limiter, DocumentCache cache, RunMetrics metrics) {
+        // Only download what the extractor reads, unless asked for the complete document
+        String fetchFields = options.fullFetch ? null : DocumentFieldMask.EXTRACTOR_FIELDS;
+        if (options.fetchBatchSize > 1) {
+            pipeline.addBatchStage("fetch", options.fetchConcurrency, options.fetchBatchSize, jobs -> {
+                DocumentBatchFetcher batchFetcher = new DocumentBatchFetcher(docsService.get(), fetchFields);
+                System.out.printf("Fetching %d document(s) in one batch...\n", jobs.size());
+                List<String> ids = jobs.stream().map(DocumentPipeline.DocumentJob::getDocId).collect(Collectors.toList());
+                // Every document of a batch counts against the quota
+                List<DocumentBatchFetcher.Result> results = limiter.call(jobs.size(), () -> batchFetcher.fetch(ids));
+                Map<DocumentPipeline.DocumentJob, Exception> failures = new HashMap<>();
+                for (int i = 0; i < jobs.size(); i++) {
+                    DocumentPipeline.DocumentJob job = jobs.get(i);
+                    DocumentBatchFetcher.Result result = results.get(i);
+                    try {
+                        if (result.isSuccess()) {
+                            job.document = result.getDocument();
+                        } else if (ApiRetryClassifiers.classifyDocsApiStatus(result.getStatusCode()) != AdaptiveRateLimiter.FailureKind.FATAL) {
+                            // Throttled or failed inside the batch: retry this one on its own, with backoff
+                            job.document = limiter.call(() -> fetchDocument(docsService.get(), job.docId, fetchFields));
+                        } else {
+                            throw new IOException(result.getError());
+                        }
+                        System.out.println("Document fetched: " + job.document.getTitle());
+                        metrics.increment("documents.fetched");
+                        if (cache != null) {
+                            long startNanos = System.nanoTime();
+                            cache.put(job.docId, job.document);
+                            metrics.recordSince("cache.write", startNanos);
+                        }
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        failures.put(job, e);
+                    }
+                }
+                return failures;
+            });
+        } else {
+            pipeline.addStage("fetch", options.fetchConcurrency, job -> {
+                System.out.printf("Fetching document %s...\n", job.docId);
+                job.document = limiter.call(() -> fetchDocument(docsService.get(), job.docId, fetchFields));
+                System.out.println("Document fetched: " + job.document.getTitle());
+                metrics.increment("documents.fetched");
+                if (cache != null) {
+                    long startNanos = System.nanoTime();
+                    cache.put(job.docId, job.document);
+                    metrics.recordSince("cache.write", startNanos);
+                }
+            });
+        }
+    }
+
+    /**
+     * Extracts one document per server job with the clients built at startup: fetch (or load from
+     * the cache when replaying), images, then the JSON, which is rendered once, stored through the
+     * output sink right away and also returned to the client as stored.
+     * @param imageExtractor Moves the images to S3, or null when S3 is not configured.
+     * @param deltaStore Records a delta of every stored output, or null.
+     */
+    private static ExtractionServer.Processor serverProcessor(CliOptions options, LazyClient<Docs> docsService, AdaptiveRateLimiter docsLimiter,
+                                                              DocumentCache cache, GoogleDocExtractor extractor,
+                                                              LazyClient<GoogleDocExtractor> imageExtractor,
+                                                              OutputSink outputSink, DeltaStore deltaStore, RunMetrics metrics) {
+        String fetchFields = options.fullFetch ? null : DocumentFieldMask.EXTRACTOR_FIELDS;
+        return docId -> {
+            long startNanos = System.nanoTime();
+            Document document;
+            if (options.replay) {
+                document = cache.getLatest(docId);
+                if (document == null) {
+                    throw new FileNotFoundException("Document is not in the cache " + options.cacheDir);
+                }
+            } else {
+                document = docsLimiter.call(() -> fetchDocument(docsService.get(), docId, fetchFields));
+                if (cache != null) {
+                    cache.put(docId, document);
+                }
+            }
+            startNanos = metrics.recordSince("stage.fetch", startNanos);
+            DocumentIndex index = DocumentIndex.build(document);
+            startNanos = metrics.recordSince("extract.index", startNanos);
+            List<ImageTransferResult> images = List.of();
+            GoogleDocExtractor uploader = (imageExtractor != null) ? imageExtractor.get() : null;
+            if (uploader != null && !index.getImages().isEmpty()) {
+                images = uploader.downloadAndUploadImagesToS3(index, ImageTransferTracker.NONE);
+                startNanos = metrics.recordSince("stage.images", startNanos);
+            }
+            List<ImageTransferResult> storedImages = images;
+            List<BlockDelta.Block> blocks = (deltaStore != null) ? new ArrayList<>() : null;
+            AtomicReference<String> json = new AtomicReference<>();
+            AtomicReference<String> location = new AtomicReference<>();
+            long bytes = outputSink.write(docId, (out, pretty) -> {
+                // Rendered once, so the client gets exactly what the sink stores
+                StringWriter rendered = new StringWriter();
+                extractor.extractContentAsJson(index, rendered, pretty, storedImages, blocks);
+                json.set(rendered.toString());
+                out.write(json.get());
+            }, location::set);
+            // A job is done once its output is stored, even if the sink batches
+            outputSink.flush();
+            if (location.get() == null) {
+                throw new IOException("The output could not be stored in " + outputSink);
+            }
+            if (deltaStore != null) {
+                recordDelta(deltaStore, docId, document.getRevisionId(), blocks, metrics);
+            }
+            metrics.recordSince("extract.json", startNanos);
+            metrics.add("output.bytes", bytes);
+            System.out.println("✅ Success! Extracted JSON written to " + location.get());
+            return new ExtractionServer.Result(json.get(), storedImages, location.get());
+        };
+    }
+
+    private static void recordDelta(DeltaStore deltaStore, String docId, String revisionId, List<BlockDelta.Block> blocks,
+                                    RunMetrics metrics) throws IOException {
+        BlockDelta delta = deltaStore.record(docId, revisionId, blocks);
+        metrics.add("delta.added", delta.getAddedCount());
+        metrics.add("delta.changed", delta.getChangedCount());
+        metrics.add("delta.removed", delta.getRemovedCount());
+        System.out.printf("Delta for %s: %d block(s) added, %d changed, %d removed\n",
+                docId, delta.getAddedCount(), delta.getChangedCount(), delta.getRemovedCount());
+    }
+
+    private static OutputSink openOutputSink(CliOptions options, S3Client s3Client, AdaptiveRateLimiter s3Limiter) throws IOException {
+        return switch (options.outputType) {
+            // A resumed run keeps the stream its journal points into and starts a new one next to it
+            case "ndjson" -> new NdjsonOutputSink(Paths.get(options.outputTarget), options.outputBatchSize, options.resume);
+            case "s3" -> new S3OutputSink(s3Client, AwsConfig.BUCKET_NAME, options.outputTarget, options.outputBatchSize, !options.compact, s3Limiter);
+            default -> new FileOutputSink(Paths.get(options.outputTarget), !options.compact);
+        };
+    }
+
+    private static void registerLimiterCounters(RunMetrics metrics, String prefix, AdaptiveRateLimiter limiter) {
+        metrics.registerCounter(prefix + ".calls", limiter::getCallCount);
+        metrics.registerCounter(prefix + ".retries", limiter::getRetryCount);
+        metrics.registerCounter(prefix + ".throttles", limiter::getThrottleCount);
+    }
+
+    private static Document fetchDocument(Docs docsService, String docId, String fields) throws IOException {
+        Docs.Documents.Get get = docsService.documents().get(docId);
+        if (fields != null) {
+            get.setFields(fields);
+        }
+        return get.execute();
+    }
+
+    /** Loads the latest cached revision of each document instead of fetching it. */
+    private static void addReplayStage(DocumentPipeline pipeline, CliOptions options, DocumentCache cache) {
+        pipeline.addStage("load", options.fetchConcurrency, job -> {
+            job.document = cache.getLatest(job.docId);
+            if (job.document == null) {
+                throw new FileNotFoundException("Document is not in the cache " + options.cacheDir);
+            }
+        });
+    }
+
+    private static CliOptions parseOptionsOrExit(String... args) {
+        try {
+            return CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+            return null; // Unreachable
+        }
+    }
+
+    /**
+     * Skips images the journal already lists for this revision and records the ones uploaded now.
+     */
+    private static ImageTransferTracker journalTracker(RunJournal journal, DocumentPipeline.DocumentJob job) {
+        String revisionId = job.document.getRevisionId();
+        return new ImageTransferTracker() {
+            @Override
+            public ImageTransferResult findTransferred(int index, String objectId, String baseKey) {
+                RunJournal.UploadedImage image = journal.findImage(job.docId, revisionId, baseKey);
+                if (image == null) return null;
+                return ImageTransferResult.deduplicated(index, objectId, image.getS3Key(), 0, 0)
+                        .withRendition(image.getContentType(), image.getVariants());
+            }
+
+            @Override
+            public void onTransferred(ImageTransferResult result) {
+                if (!result.isSuccess()) return;
+                try {
+                    journal.recordImage(job.docId, revisionId, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
     /**
      * Initializes the S3 client if credentials are available.
      * @return A configured S3Client, or null if configuration is missing.
      */
     private static S3Client initializeS3Client() {
-        if (AWS_ACCESS_KEY != null && AWS_SECRET_KEY != null && S3_BUCKET_NAME != null) {
+        if (AwsConfig.isConfigured()) {
             try {
-                AwsBasicCredentials credentials = AwsBasicCredentials.create(AWS_ACCESS_KEY, AWS_SECRET_KEY);
-                StaticCredentialsProvider provider = StaticCredentialsProvider.create(credentials);
+                StaticCredentialsProvider provider = awsCredentialsProvider();
                 S3Client client = S3Client.builder()
-                        .region(Region.of(AWS_REGION))
+                        .region(Region.of(AwsConfig.REGION))
                         .credentialsProvider(provider)
+                        // Retries are left to AdaptiveRateLimiter, which also needs to see the throttling
+                        .overrideConfiguration(config -> config.retryPolicy(RetryPolicy.none()))
                         .build();
-                System.out.println("S3 client initialized successfully for region " + AWS_REGION);
+                System.out.println("S3 client initialized successfully for region " + AwsConfig.REGION);
                 return client;
             } catch (Exception e) {
                 System.err.println("Failed to initialize S3 client: " + e.getMessage());
@@ -177,4 +772,92 @@ public class Main {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Initializes the asynchronous S3 client, Netty based or, with {@code crt}, built on the AWS Common
+     * Runtime, which needs the {@code aws-crt} library from the {@code crt} Maven profile. Unlike the
+     * synchronous client it keeps the SDK's retry policy, as {@link AdaptiveRateLimiter} only paces blocking calls.
+     * @param maxConcurrency Images in flight across all documents; the CRT client sizes its connection pool by it.
+     * @return A configured S3AsyncClient, or null if configuration is missing.
+     */
+    private static S3AsyncClient initializeS3AsyncClient(boolean crt, int maxConcurrency) {
+        if (!AwsConfig.isConfigured()) {
+            System.out.println("AWS credentials not found. S3 upload functionality is disabled.");
+            return null;
+        }
+        if (crt && !isClassPresent("software.amazon.awssdk.crt.CRT")) {
+            System.err.println("Failed to initialize S3 client: the CRT-based client needs aws-crt, build with 'mvn package -Pcrt'.");
+            return null;
+        }
+        try {
+            S3AsyncClient client = crt
+                    ? S3AsyncClient.crtBuilder()
+                        .region(Region.of(AwsConfig.REGION))
+                        .credentialsProvider(awsCredentialsProvider())
+                        .maxConcurrency(maxConcurrency)
+                        .build()
+                    : S3AsyncClient.builder()
+                        .region(Region.of(AwsConfig.REGION))
+                        .credentialsProvider(awsCredentialsProvider())
+                        .build();
+            System.out.printf("%s S3 client initialized successfully for region %s\n", crt ? "CRT" : "Async", AwsConfig.REGION);
+            return client;
+        } catch (Exception e) {
+            System.err.println("Failed to initialize S3 client: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds the extractor that moves images to S3 over the configured client, with the rate limiting,
+     * deduplication, variants and metrics the options ask for.
+     * @return The extractor, or null if the S3 client could not be created.
+     */
+    private static GoogleDocExtractor initializeImageExtractor(CliOptions options, LazyClient<S3Client> s3Client,
+                                                               LazyClient<S3AsyncClient> s3AsyncClient, LazyClient<PooledHttpClient> httpClient,
+                                                               AdaptiveRateLimiter s3Limiter, ImageManifest manifest,
+                                                               ImageCache imageCache, RunMetrics metrics) {
+        GoogleDocExtractor extractor;
+        if (options.isAsyncS3()) {
+            S3AsyncClient client = s3AsyncClient.get();
+            if (client == null) return null;
+            extractor = GoogleDocExtractor.withAsyncClient(client, AwsConfig.BUCKET_NAME, options.imageTransfersPerDocument, httpClient.get());
+        } else {
+            S3Client client = s3Client.get();
+            if (client == null) return null;
+            extractor = new GoogleDocExtractor(client, AwsConfig.BUCKET_NAME, options.imageTransfersPerDocument, httpClient.get());
+            extractor.enableRateLimiting(s3Limiter);
+            if (manifest != null) {
+                extractor.enableDeduplication(manifest, options.dedupSharedPrefix);
+            }
+        }
+        extractor.enableMetrics(metrics);
+        if (imageCache != null) {
+            extractor.enableImageCache(imageCache);
+        }
+        if (options.imageVariantDensities != null) {
+            extractor.enableImageVariants(new ImageVariants(options.imageVariantDensities));
+        }
+        return extractor;
+    }
+
+    private static StaticCredentialsProvider awsCredentialsProvider() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(AwsConfig.ACCESS_KEY, AwsConfig.SECRET_KEY));
+    }
+
+    /** Milliseconds since the JVM was launched, or -1 where the OS does not report the process start time. */
+    private static long millisSinceLaunch() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, Main.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.extractor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends every document as one compact line of JSON to a single gzip-compressed NDJSON file.
+ * Each batch ends with a gzip sync flush, so everything reported as stored can be decompressed
+ * even if the run dies before the file is closed. Locations look like {@code <file>#<docId>}.
+ */
+public class NdjsonOutputSink extends BatchingOutputSink {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path file;
+    private final GZIPOutputStream out;
+
+    /**
+     * @param keepExisting Whether an existing file must be kept, e.g. because a resumed run's journal
+     *                     points into it. The output then goes to the first free {@code name.N.ndjson.gz}
+     *                     next to it, since appending to a file whose last batch may be torn would
+     *                     corrupt it.
+     */
+    public NdjsonOutputSink(Path file, int batchSize, boolean keepExisting) throws IOException {
+        super(batchSize, false);
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        this.file = keepExisting ? firstFreePart(absolute) : absolute;
+        OutputStream fileStream = new BufferedOutputStream(Files.newOutputStream(this.file), BUFFER_SIZE);
+        this.out = new GZIPOutputStream(fileStream, BUFFER_SIZE, true);
+    }
+
+    @Override
+    Map<PendingDocument, Exception> store(List<PendingDocument> batch) throws IOException {
+        for (PendingDocument document : batch) {
+            out.write(document.json);
+            out.write('\n');
+        }
+        out.flush();
+        return Map.of();
+    }
+
+    @Override
+    String locationOf(String docId) {
+        return file + "#" + docId;
+    }
+
+    @Override
+    public boolean exists(String location) {
+        int hash = location.lastIndexOf('#');
+        return hash > 0 && Files.exists(Paths.get(location.substring(0, hash)));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private static Path firstFreePart(Path file) {
+        if (!Files.exists(file)) return file;
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        String stem = (dot > 0) ? name.substring(0, dot) : name;
+        String extension = (dot > 0) ? name.substring(dot) : "";
+        for (int part = 1; ; part++) {
+            Path candidate = file.resolveSibling(stem + "." + part + extension);
+            if (!Files.exists(candidate)) return candidate;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.extractor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Where the extracted JSON of each document goes: one file per document ({@link FileOutputSink}),
+ * one gzip-compressed NDJSON stream ({@link NdjsonOutputSink}) or objects under an S3 prefix
+ * ({@link S3OutputSink}). Implementations are safe to call from several extraction workers.
+ */
+public interface OutputSink extends Closeable {
+
+    /** Renders one document's JSON; the sink decides whether it is pretty-printed. */
+    @FunctionalInterface
+    interface Content {
+        void writeTo(Writer out, boolean pretty) throws IOException;
+    }
+
+    /** Told where a document ended up once it is durably stored, e.g. to record it in the run journal. */
+    @FunctionalInterface
+    interface Listener {
+        void onStored(String location) throws IOException;
+
+        /** Told instead when a batching sink could not store the document after {@link #write} returned. */
+        default void onFailed(Exception error) { }
+    }
+
+    /**
+     * Writes the JSON of {@code docId}. Batching sinks only buffer it here and store it with the
+     * next batch, so {@code listener} may be called later, from whichever thread flushes the batch,
+     * and is told through {@link Listener#onFailed} if the batch could not store the document.
+     * @return The number of uncompressed bytes of JSON.
+     */
+    long write(String docId, Content content, Listener listener) throws IOException;
+
+    /** Whether the output reported at {@code location} by an earlier run is still there. */
+    boolean exists(String location) throws IOException;
+
+    /** Stores everything written so far. */
+    void flush() throws IOException;
+
+    /** Flushes, then releases the sink. */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,204 @@
+package com.example.extractor;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+import com.google.api.client.http.HttpTransport;
+
+/**
+ * The HTTP client shared by the image downloads and the Docs API. Over TLS it negotiates HTTP/2 where the
+ * server offers it, so one connection per host carries every concurrent request, and otherwise keeps
+ * HTTP/1.1 connections alive in a pool: a run pays for a TLS handshake per host instead of per image.
+ * Plain {@code http:} requests stay on HTTP/1.1 rather than attempting an h2c upgrade.
+ * <p>
+ * The connect timeout bounds opening a connection. The read timeout bounds the wait for a response's
+ * headers and then every wait for more of its body (see {@link IdleTimeoutBodyHandler}).
+ * Image downloads ask for gzip and are decoded here; the Docs API client negotiates its own.
+ */
+public class PooledHttpClient implements AutoCloseable {
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+
+    public PooledHttpClient(Duration connectTimeout, Duration readTimeout) {
+        this.client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(connectTimeout)
+            .build();
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    // Built on first use: a run that downloads nothing never starts the client's selector thread
+    private static final class DefaultHolder {
+        static final PooledHttpClient INSTANCE = new PooledHttpClient(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /** The client with the default timeouts, for extractors and uploaders that were not handed one. */
+    public static PooledHttpClient defaultClient() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /** A transport for the Google API clients that sends their requests through this client. */
+    public HttpTransport newGoogleTransport() {
+        return new JdkHttpTransport(this);
+    }
+
+    /** A non-success response, with the status the retry classifiers decide on. */
+    public static class StatusException extends IOException {
+        private final int statusCode;
+        private final String retryAfter;
+
+        StatusException(URI uri, int statusCode, String retryAfter) {
+            super("HTTP " + statusCode + " downloading " + uri);
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /** The raw Retry-After header, or null. */
+        public String getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /** An open download: the decoded body, and its length or -1 where that is not known up front. */
+    public static final class Download implements Closeable {
+        final InputStream body;
+        final long contentLength;
+
+        Download(InputStream body, long contentLength) {
+            this.body = body;
+            this.contentLength = contentLength;
+        }
+
+        public InputStream getBody() {
+            return body;
+        }
+
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * A request for {@code uri} with the read timeout, which {@link #send} and {@link #download} also apply
+     * to the body. Plain HTTP stays on HTTP/1.1, where the client would otherwise offer an h2c upgrade.
+     */
+    HttpRequest.Builder newRequest(URI uri) {
+        return newRequest(uri, readTimeout);
+    }
+
+    /** @param timeout The read timeout of this request, or null for none. */
+    HttpRequest.Builder newRequest(URI uri, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (timeout != null) builder.timeout(timeout);
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    /**
+     * Starts downloading {@code uri}.
+     * @throws FileNotFoundException If the server has no such resource.
+     * @throws StatusException For any other status than 200.
+     */
+    public Download open(URI uri) throws IOException {
+        HttpRequest request = newRequest(uri).header("Accept-Encoding", "gzip").GET().build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw statusException(uri, response.statusCode(), response.headers());
+        }
+        HttpHeaders headers = response.headers();
+        if (headers.firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            return new Download(new GZIPInputStream(response.body()), -1);
+        }
+        return new Download(response.body(), headers.firstValueAsLong("Content-Length").orElse(-1));
+    }
+
+    /**
+     * Downloads {@code uri} into {@code target}, which it overwrites, without holding a thread.
+     * @return Completes with {@code target}, or exceptionally with the download failure as {@link #open} throws it.
+     */
+    public CompletableFuture<Path> download(URI uri, Path target) {
+        HttpRequest request = newRequest(uri).GET().build();
+        return client.sendAsync(request, withBodyTimeout(request, HttpResponse.BodyHandlers.ofFile(target)))
+            .thenCompose(response -> {
+                if (response.statusCode() != 200) {
+                    return CompletableFuture.<Path>failedFuture(statusException(uri, response.statusCode(), response.headers()));
+                }
+                return CompletableFuture.completedFuture(target);
+            });
+    }
+
+    /**
+     * Sends {@code request}, turning an interrupt into an {@link InterruptedIOException} with the flag kept.
+     * The request's timeout also bounds each wait for more of the body.
+     */
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, withBodyTimeout(request, handler));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + request.uri());
+        }
+    }
+
+    private static <T> HttpResponse.BodyHandler<T> withBodyTimeout(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return request.timeout()
+            .<HttpResponse.BodyHandler<T>>map(timeout -> new IdleTimeoutBodyHandler<>(handler, timeout, request.uri()))
+            .orElse(handler);
+    }
+
+    /** Waits for the requests in flight, then closes the connections. */
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    // 404 and 410 keep the FileNotFoundException HttpURLConnection threw, which the S3 classifier treats as final
+    static IOException statusException(URI uri, int statusCode, HttpHeaders headers) {
+        if (statusCode == 404 || statusCode == 410) {
+            return new FileNotFoundException("HTTP " + statusCode + " downloading " + uri);
+        }
+        return new StatusException(uri, statusCode, headers.firstValue("Retry-After").orElse(null));
+    }
+}
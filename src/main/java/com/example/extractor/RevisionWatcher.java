@@ -0,0 +1,143 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import com.google.api.services.docs.v1.Docs;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Remembers the revision of every watched document that was last extracted, so a poll only has to
+ * ask the Docs API for each document's {@code revisionId} and re-extract the ones that moved.
+ * The state file is a JSON object of {@code docId -> revisionId}; it is rewritten atomically by
+ * {@link #save()}, so a crash between polls never loses or truncates it.
+ */
+public class RevisionWatcher {
+
+    /** Looks up the current revision of a document. */
+    @FunctionalInterface
+    public interface RevisionSource {
+        String fetchRevisionId(String docId) throws Exception;
+    }
+
+    private final Path stateFile;
+    private final RevisionSource source;
+    private final int concurrency;
+    private final Map<String, String> processed = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+
+    private RevisionWatcher(Path stateFile, RevisionSource source, int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+        this.stateFile = stateFile;
+        this.source = source;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Loads the state saved at {@code stateFile}, or starts empty if there is none yet.
+     * @param concurrency Revision lookups in flight at once during a poll.
+     */
+    public static RevisionWatcher open(Path stateFile, RevisionSource source, int concurrency) throws IOException {
+        RevisionWatcher watcher = new RevisionWatcher(stateFile, source, concurrency);
+        if (Files.exists(stateFile)) {
+            try (Reader in = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                JsonObject state = watcher.gson.fromJson(in, JsonObject.class);
+                if (state != null) {
+                    for (Map.Entry<String, JsonElement> entry : state.entrySet()) {
+                        watcher.processed.put(entry.getKey(), entry.getValue().getAsString());
+                    }
+                }
+            }
+        }
+        return watcher;
+    }
+
+    /**
+     * Asks the Docs API for nothing but the revision of a document.
+     * @param docsService Called for every lookup, so the service can be built on the first poll.
+     */
+    public static RevisionSource fromDocsApi(Supplier<Docs> docsService) {
+        return docId -> docsService.get().documents().get(docId).setFields(DocumentFieldMask.REVISION_FIELDS).execute().getRevisionId();
+    }
+
+    /**
+     * Looks up the current revision of every document, up to {@code concurrency} at once.
+     * A document whose lookup fails is left out and looked at again on the next poll.
+     * @return The documents never extracted or whose revision moved since, in the order of {@code docIds}.
+     */
+    public List<String> findChanged(List<String> docIds) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        Map<String, Future<String>> lookups = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String docId : docIds) {
+                lookups.put(docId, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return source.fetchRevisionId(docId);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<String> changed = new ArrayList<>();
+            for (Map.Entry<String, Future<String>> lookup : lookups.entrySet()) {
+                String docId = lookup.getKey();
+                try {
+                    String revisionId = lookup.getValue().get();
+                    if (revisionId == null || !revisionId.equals(processed.get(docId))) {
+                        changed.add(docId);
+                    }
+                } catch (ExecutionException e) {
+                    System.err.printf("Could not check document %s for changes: %s\n", docId, e.getCause().getMessage());
+                }
+            }
+            return changed;
+        }
+    }
+
+    /** Records that {@code revisionId} of the document was extracted; takes effect for the next poll. */
+    public void recordProcessed(String docId, String revisionId) {
+        if (revisionId != null) {
+            processed.put(docId, revisionId);
+        }
+    }
+
+    /** The revision last extracted, or null if the document never was. */
+    public String getProcessedRevision(String docId) {
+        return processed.get(docId);
+    }
+
+    /** Writes the state file. */
+    public void save() throws IOException {
+        JsonObject state = new JsonObject();
+        new TreeMap<>(processed).forEach(state::addProperty);
+        Path temp = Files.createTempFile(stateFile.toAbsolutePath().getParent(), stateFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(state, out);
+            }
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.extractor;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+/**
+ * Append-only record of what a batch run has finished, one JSON object per line:
+ * <pre>
+ * {"type":"output","docId":"...","revisionId":"...","path":"doc.json"}
+ * {"type":"image","docId":"...","revisionId":"...","s3Key":"slug/doc/image_001.png","contentType":"image/png",
+ *  "variants":[{"s3Key":"slug/doc/image_001_w320.png","width":320,"height":240}]}
+ * {"type":"complete","docId":"...","revisionId":"..."}
+ * </pre>
+ * Writers on any thread append under one lock; the file is fsynced by a background
+ * task every {@code syncIntervalMillis} (group commit) and on {@link #close()}, so a
+ * crash loses at most that window of progress, never the consistency of the file.
+ */
+public class RunJournal implements Closeable {
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+    /** What {@link #open} does with a journal that already has entries. */
+    public enum Mode {
+        /** Refuses it, so a run does not wipe the progress of an earlier one by accident. */
+        NEW,
+        /** Loads its entries, so that finished work can be skipped, and appends to it. */
+        RESUME,
+        /** Discards its entries and starts empty. */
+        OVERWRITE
+    }
+
+    /** An image recorded as uploaded, with what the JSON needs to point at it. */
+    public static class UploadedImage {
+        final String s3Key;
+        final String contentType;
+        final List<ImageTransferResult.Variant> variants;
+        UploadedImage(String s3Key, String contentType, List<ImageTransferResult.Variant> variants) {
+            this.s3Key = s3Key;
+            this.contentType = contentType;
+            this.variants = variants;
+        }
+
+        public String getS3Key() {
+            return s3Key;
+        }
+
+        /** The detected content type, or null for entries written before formats were detected. */
+        public String getContentType() {
+            return contentType;
+        }
+
+        public List<ImageTransferResult.Variant> getVariants() {
+            return variants;
+        }
+    }
+
+    private static class DocumentState {
+        final String revisionId;
+        String outputPath = null;
+        // By key without extension, since the extension is only known once the image is downloaded.
+        final Map<String, UploadedImage> uploadedImages = new HashMap<>();
+        boolean complete = false;
+        DocumentState(String revisionId) {
+            this.revisionId = revisionId;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final Map<String, DocumentState> states = new ConcurrentHashMap<>();
+    private final FileChannel channel;
+    private final Writer writer;
+    private final ScheduledExecutorService syncer;
+    private boolean dirty = false;
+
+    private RunJournal(FileChannel channel, long syncIntervalMillis) {
+        this.channel = channel;
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal at {@code path} for appending.
+     * @param mode What to do with entries already in the file.
+     * @throws FileAlreadyExistsException In {@link Mode#NEW}, if the file already has entries.
+     */
+    public static RunJournal open(Path path, Mode mode) throws IOException {
+        return open(path, mode, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    public static RunJournal open(Path path, Mode mode, long syncIntervalMillis) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (mode == Mode.NEW && Files.exists(path) && Files.size(path) > 0) {
+            throw new FileAlreadyExistsException(path.toString(), null, "holds the progress of an earlier run");
+        }
+        boolean replay = mode == Mode.RESUME;
+        List<String> lines = (replay && Files.exists(path)) ? Files.readAllLines(path, StandardCharsets.UTF_8) : List.of();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            replay ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        RunJournal journal = new RunJournal(channel, syncIntervalMillis);
+        for (String line : lines) {
+            journal.replay(line);
+        }
+        if (channel.size() > 0 && !endsWithNewline(path)) {
+            // Terminate a torn last line so the next entry starts on a line of its own.
+            synchronized (journal.writer) {
+                journal.writer.write('\n');
+                journal.dirty = true;
+            }
+        }
+        return journal;
+    }
+
+    /** Whether every stage finished for this document in an earlier run. */
+    public boolean isComplete(String docId) {
+        DocumentState state = states.get(docId);
+        return state != null && state.complete;
+    }
+
+    /** The output path recorded for this revision of the document, or null. */
+    public String getOutputPath(String docId, String revisionId) {
+        DocumentState state = currentState(docId, revisionId);
+        return state != null ? state.outputPath : null;
+    }
+
+    /** The image uploaded for this revision under {@code baseKey} plus an extension, or null. */
+    public UploadedImage findImage(String docId, String revisionId, String baseKey) {
+        DocumentState state = currentState(docId, revisionId);
+        if (state == null) return null;
+        synchronized (state) {
+            return state.uploadedImages.get(baseKey);
+        }
+    }
+
+    public void recordOutput(String docId, String revisionId, String outputPath) throws IOException {
+        JsonObject entry = entry("output", docId, revisionId);
+        entry.addProperty("path", outputPath);
+        append(entry);
+    }
+
+    /** Records a successful transfer with its content type and variants. */
+    public void recordImage(String docId, String revisionId, ImageTransferResult result) throws IOException {
+        JsonObject entry = entry("image", docId, revisionId);
+        entry.addProperty("s3Key", result.getS3Key());
+        if (result.getContentType() != null) {
+            entry.addProperty("contentType", result.getContentType());
+        }
+        if (!result.getVariants().isEmpty()) {
+            JsonArray variants = new JsonArray();
+            for (ImageTransferResult.Variant variant : result.getVariants()) {
+                JsonObject item = new JsonObject();
+                item.addProperty("s3Key", variant.getS3Key());
+                item.addProperty("width", variant.getWidth());
+                item.addProperty("height", variant.getHeight());
+                variants.add(item);
+            }
+            entry.add("variants", variants);
+        }
+        append(entry);
+    }
+
+    public void recordComplete(String docId, String revisionId) throws IOException {
+        append(entry("complete", docId, revisionId));
+    }
+
+    /** Flushes buffered entries and forces them to disk. */
+    public void sync() throws IOException {
+        synchronized (writer) {
+            if (!dirty) return;
+            writer.flush();
+            dirty = false;
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        sync();
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    private JsonObject entry(String type, String docId, String revisionId) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("type", type);
+        entry.addProperty("docId", docId);
+        entry.addProperty("revisionId", revisionId);
+        return entry;
+    }
+
+    private void append(JsonObject entry) throws IOException {
+        String line = gson.toJson(entry);
+        synchronized (writer) {
+            writer.write(line);
+            writer.write('\n');
+            dirty = true;
+        }
+        apply(entry);
+    }
+
+    private void replay(String line) {
+        if (line.isBlank()) return;
+        try {
+            apply(gson.fromJson(line, JsonObject.class));
+        } catch (JsonParseException | IllegalStateException e) {
+            // A torn last line from a crashed run; everything before it is still valid.
+        }
+    }
+
+    private void apply(JsonObject entry) {
+        String docId = entry.get("docId").getAsString();
+        String revisionId = entry.has("revisionId") && !entry.get("revisionId").isJsonNull() ? entry.get("revisionId").getAsString() : null;
+        // Progress recorded for an older revision no longer applies once a newer one shows up.
+        DocumentState state = states.compute(docId, (id, existing) ->
+            (existing != null && Objects.equals(existing.revisionId, revisionId)) ? existing : new DocumentState(revisionId));
+        synchronized (state) {
+            switch (entry.get("type").getAsString()) {
+                case "output" -> state.outputPath = entry.get("path").getAsString();
+                case "image" -> {
+                    UploadedImage image = toUploadedImage(entry);
+                    state.uploadedImages.put(baseKey(image.s3Key), image);
+                }
+                case "complete" -> state.complete = true;
+                default -> { }
+            }
+        }
+    }
+
+    private static UploadedImage toUploadedImage(JsonObject entry) {
+        List<ImageTransferResult.Variant> variants = new ArrayList<>();
+        if (entry.has("variants")) {
+            for (JsonElement element : entry.getAsJsonArray("variants")) {
+                JsonObject item = element.getAsJsonObject();
+                variants.add(new ImageTransferResult.Variant(item.get("s3Key").getAsString(),
+                    item.get("width").getAsInt(), item.get("height").getAsInt()));
+            }
+        }
+        String contentType = entry.has("contentType") ? entry.get("contentType").getAsString() : null;
+        return new UploadedImage(entry.get("s3Key").getAsString(), contentType, variants);
+    }
+
+    private static String baseKey(String s3Key) {
+        int dot = s3Key.lastIndexOf('.');
+        return (dot > s3Key.lastIndexOf('/')) ? s3Key.substring(0, dot) : s3Key;
+    }
+
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, reader.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private DocumentState currentState(String docId, String revisionId) {
+        DocumentState state = states.get(docId);
+        return (state != null && Objects.equals(state.revisionId, revisionId)) ? state : null;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not sync run journal: " + e.getMessage());
+        }
+    }
+}
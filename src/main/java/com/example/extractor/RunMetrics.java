@@ -0,0 +1,321 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Timers and counters for one run, shared by every stage and worker. Timers keep a
+ * {@link LatencyHistogram} each, so the summary reports p50/p95/p99 and not just averages;
+ * counters track bytes, images, retries and failures. Names are dotted, e.g. {@code stage.fetch}
+ * or {@code image.bytes}.
+ * <p>
+ * {@link #export(Path)} writes the JSON summary ({@value #SUMMARY_FILE}) and the same numbers in
+ * the Prometheus text format ({@value #PROMETHEUS_FILE}), which node_exporter's textfile collector
+ * can pick up while a long run is still going.
+ * <p>
+ * The summary keeps the raw histogram buckets of every timer, so the summaries of the nodes that
+ * split one run between them can be read back with {@link #readSummary} and added up with
+ * {@link #combine} into the summary of the whole run, percentiles included.
+ */
+public class RunMetrics {
+
+    static final String SUMMARY_FILE = "run-summary.json";
+    static final String PROMETHEUS_FILE = "metrics.prom";
+    private static final String PROMETHEUS_PREFIX = "extractor_";
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Instant startedAt;
+    private final long startNanos = System.nanoTime();
+    // The length of a run that is over, for summaries read back; -1 while this run is going
+    private final long fixedElapsedNanos;
+    private final Set<String> nodes = new ConcurrentSkipListSet<>();
+    // Sorted, so both exports list the metrics in a stable order
+    private final Map<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> sampledCounters = new ConcurrentSkipListMap<>();
+
+    public RunMetrics() {
+        this(Instant.now(), -1);
+    }
+
+    private RunMetrics(Instant startedAt, long fixedElapsedNanos) {
+        this.startedAt = startedAt;
+        this.fixedElapsedNanos = fixedElapsedNanos;
+    }
+
+    /** Names the node this run is on, so that a combined summary lists the nodes it covers. */
+    public void addNode(String nodeId) {
+        nodes.add(nodeId);
+    }
+
+    public Set<String> getNodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    long elapsedNanos() {
+        return (fixedElapsedNanos >= 0) ? fixedElapsedNanos : System.nanoTime() - startNanos;
+    }
+
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Records the time since {@code startNanos} under {@code name}.
+     * @return The current {@link System#nanoTime()}, to start timing the next step from.
+     */
+    public long recordSince(String name, long startNanos) {
+        long now = System.nanoTime();
+        timer(name).record(now - startNanos);
+        return now;
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    /** The value of a counter, including one registered with {@link #registerCounter}; 0 if unknown. */
+    public long getCounter(String name) {
+        LongSupplier sampled = sampledCounters.get(name);
+        if (sampled != null) return sampled.getAsLong();
+        LongAdder counter = counters.get(name);
+        return (counter != null) ? counter.sum() : 0;
+    }
+
+    /** Reports a count that another component already keeps, such as a rate limiter's retries, as a counter. */
+    public void registerCounter(String name, LongSupplier value) {
+        sampledCounters.put(name, value);
+    }
+
+    /** Adds the timers and counters of {@code other}, e.g. of another worker process, to this run. */
+    public void merge(RunMetrics other) {
+        other.timers.forEach((name, histogram) -> timer(name).merge(histogram));
+        other.allCounters().forEach(this::add);
+    }
+
+    /**
+     * The summary of a run split over several nodes: it starts with the earliest of {@code summaries}
+     * and ends with the latest, and adds up their timers and counters.
+     */
+    public static RunMetrics combine(List<RunMetrics> summaries) {
+        if (summaries.isEmpty()) throw new IllegalArgumentException("No summaries to combine");
+        Instant start = null;
+        Instant end = null;
+        for (RunMetrics summary : summaries) {
+            Instant summaryEnd = summary.startedAt.plusNanos(summary.elapsedNanos());
+            if (start == null || summary.startedAt.isBefore(start)) start = summary.startedAt;
+            if (end == null || summaryEnd.isAfter(end)) end = summaryEnd;
+        }
+        RunMetrics combined = new RunMetrics(start, Duration.between(start, end).toNanos());
+        for (RunMetrics summary : summaries) {
+            combined.merge(summary);
+            combined.nodes.addAll(summary.nodes);
+        }
+        return combined;
+    }
+
+    /** Reads back a summary written by {@link #export}, a file or the directory holding it. */
+    public static RunMetrics readSummary(Path path) throws IOException {
+        Path file = Files.isDirectory(path) ? path.resolve(SUMMARY_FILE) : path;
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return readSummary(in);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Cannot read the run summary " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    static RunMetrics readSummary(Reader in) throws IOException {
+        JsonObject json = JsonParser.parseReader(in).getAsJsonObject();
+        long elapsedNanos = Math.round(json.get("elapsedSeconds").getAsDouble() * 1_000_000_000.0);
+        RunMetrics summary = new RunMetrics(Instant.parse(json.get("startedAt").getAsString()), elapsedNanos);
+        if (json.has("nodes")) {
+            json.getAsJsonArray("nodes").forEach(node -> summary.nodes.add(node.getAsString()));
+        }
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("timers").entrySet()) {
+            JsonObject timer = entry.getValue().getAsJsonObject();
+            if (!timer.has("buckets")) {
+                throw new IOException("Timer '" + entry.getKey() + "' has no buckets; the summary predates mergeable summaries");
+            }
+            LatencyHistogram histogram = summary.timer(entry.getKey());
+            for (Map.Entry<String, JsonElement> bucket : timer.getAsJsonObject("buckets").entrySet()) {
+                histogram.addToBucket(Integer.parseInt(bucket.getKey()), bucket.getValue().getAsLong());
+            }
+            histogram.restoreTotals(timer.get("sumNanos").getAsLong(), timer.get("maxNanos").getAsLong());
+        }
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("counters").entrySet()) {
+            summary.add(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return summary;
+    }
+
+    /** Writes the summary and the Prometheus file into {@code dir}, replacing each atomically. */
+    public void export(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        writeAtomically(dir.resolve(SUMMARY_FILE), this::writeJson);
+        writeAtomically(dir.resolve(PROMETHEUS_FILE), this::writePrometheus);
+    }
+
+    /**
+     * Exports into {@code dir} every {@code interval} until the returned handle is closed, which
+     * stops the exports without writing a final one.
+     */
+    public AutoCloseable exportPeriodically(Path dir, Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("metrics-export").daemon(true).factory());
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                export(dir);
+            } catch (IOException e) {
+                System.err.printf("Failed to export metrics to %s. Error: %s\n", dir, e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return scheduler::shutdownNow;
+    }
+
+    /**
+     * The summary: run times and nodes, then per timer its count, total and percentiles in
+     * milliseconds, followed by the exact sum, maximum and non-empty buckets that
+     * {@link #readSummary} restores the histogram from, then the counters.
+     */
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginObject();
+        writer.name("startedAt").value(startedAt.toString());
+        writer.name("elapsedSeconds").value(seconds(elapsedNanos()));
+        if (!nodes.isEmpty()) {
+            writer.name("nodes").beginArray();
+            for (String node : nodes) {
+                writer.value(node);
+            }
+            writer.endArray();
+        }
+        writer.name("timers").beginObject();
+        for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            writer.name(entry.getKey()).beginObject();
+            writer.name("count").value(histogram.getCount());
+            writer.name("totalMillis").value(millis(histogram.getSumNanos()));
+            writer.name("meanMillis").value(histogram.getCount() == 0 ? 0 : millis(histogram.getSumNanos() / histogram.getCount()));
+            for (double quantile : QUANTILES) {
+                writer.name("p" + Math.round(quantile * 100) + "Millis").value(millis(histogram.getValueAtQuantile(quantile)));
+            }
+            writer.name("maxMillis").value(millis(histogram.getMaxNanos()));
+            writer.name("sumNanos").value(histogram.getSumNanos());
+            writer.name("maxNanos").value(histogram.getMaxNanos());
+            writer.name("buckets").beginObject();
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                long bucketCount = histogram.getBucketCount(i);
+                if (bucketCount != 0) writer.name(Integer.toString(i)).value(bucketCount);
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.name("counters").beginObject();
+        for (Map.Entry<String, Long> entry : allCounters().entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+        out.write('\n');
+        out.flush();
+    }
+
+    /** Timers as summaries in seconds ({@code extractor_stage_fetch_seconds}), counters with a {@code _total} suffix. */
+    public void writePrometheus(Writer out) throws IOException {
+        String elapsed = PROMETHEUS_PREFIX + "run_elapsed_seconds";
+        out.write("# TYPE " + elapsed + " gauge\n");
+        out.write(elapsed + " " + format(seconds(elapsedNanos())) + "\n");
+        for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+            String name = PROMETHEUS_PREFIX + sanitize(entry.getKey()) + "_seconds";
+            LatencyHistogram histogram = entry.getValue();
+            out.write("# TYPE " + name + " summary\n");
+            for (double quantile : QUANTILES) {
+                out.write(name + "{quantile=\"" + quantile + "\"} " + format(seconds(histogram.getValueAtQuantile(quantile))) + "\n");
+            }
+            out.write(name + "_sum " + format(seconds(histogram.getSumNanos())) + "\n");
+            out.write(name + "_count " + histogram.getCount() + "\n");
+        }
+        for (Map.Entry<String, Long> entry : allCounters().entrySet()) {
+            String name = PROMETHEUS_PREFIX + sanitize(entry.getKey()) + "_total";
+            out.write("# TYPE " + name + " counter\n");
+            out.write(name + " " + entry.getValue() + "\n");
+        }
+        out.flush();
+    }
+
+    private Map<String, Long> allCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        sampledCounters.forEach((name, value) -> values.put(name, value.getAsLong()));
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface WriterAction {
+        void write(Writer out) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, WriterAction action) throws IOException {
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                action.write(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import com.google.api.services.docs.v1.model.Link;
+import com.google.api.services.docs.v1.model.TextStyle;
+import com.google.api.services.docs.v1.model.WeightedFontFamily;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The part of a text run's {@link TextStyle} that ends up in the extracted JSON.
+ * Immutable; runs without any visible style all share {@link #EMPTY}.
+ */
+public final class RunStyle {
+
+    public static final RunStyle EMPTY = new RunStyle(false, false, false, false, null, null);
+
+    final boolean bold;
+    final boolean italic;
+    final boolean underline;
+    final boolean strikethrough;
+    final String linkUrl;
+    final String fontFamily;
+
+    private RunStyle(boolean bold, boolean italic, boolean underline, boolean strikethrough, String linkUrl, String fontFamily) {
+        this.bold = bold;
+        this.italic = italic;
+        this.underline = underline;
+        this.strikethrough = strikethrough;
+        this.linkUrl = linkUrl;
+        this.fontFamily = fontFamily;
+    }
+
+    public static RunStyle of(TextStyle textStyle) {
+        if (textStyle == null) return EMPTY;
+        boolean bold = Boolean.TRUE.equals(textStyle.getBold());
+        boolean italic = Boolean.TRUE.equals(textStyle.getItalic());
+        boolean underline = Boolean.TRUE.equals(textStyle.getUnderline());
+        boolean strikethrough = Boolean.TRUE.equals(textStyle.getStrikethrough());
+        Link link = textStyle.getLink();
+        String linkUrl = (link != null) ? link.getUrl() : null;
+        WeightedFontFamily family = textStyle.getWeightedFontFamily();
+        String fontFamily = (family != null) ? family.getFontFamily() : null;
+        if (!bold && !italic && !underline && !strikethrough && linkUrl == null && fontFamily == null) {
+            return EMPTY;
+        }
+        return new RunStyle(bold, italic, underline, strikethrough, linkUrl, fontFamily);
+    }
+
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /** Writes the style object, with only the properties that are set. */
+    public void write(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        if (bold) writer.name("bold").value(true);
+        if (italic) writer.name("italic").value(true);
+        if (underline) writer.name("underline").value(true);
+        if (strikethrough) writer.name("strikethrough").value(true);
+        if (linkUrl != null) writer.name("linkUrl").value(linkUrl);
+        if (fontFamily != null) writer.name("fontFamily").value(fontFamily);
+        writer.endObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RunStyle)) return false;
+        RunStyle other = (RunStyle) o;
+        return bold == other.bold && italic == other.italic && underline == other.underline
+            && strikethrough == other.strikethrough && Objects.equals(linkUrl, other.linkUrl)
+            && Objects.equals(fontFamily, other.fontFamily);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bold, italic, underline, strikethrough, linkUrl, fontFamily);
+    }
+}
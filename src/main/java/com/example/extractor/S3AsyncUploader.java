@@ -0,0 +1,213 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * Copies an image from its content URI into S3 without holding a thread while bytes are on the
+ * wire: the download runs on {@link java.net.http.HttpClient#sendAsync} and the upload on an {@link S3AsyncClient}
+ * (Netty or CRT based), so the returned futures complete on the clients' own event loops.
+ * <p>
+ * Downloads land in a temporary file, which keeps the heap flat no matter how many transfers are in
+ * flight. Since the body is spooled as it arrives, downloads ask for the identity encoding rather than
+ * gzip, which images barely shrink under anyway. The file's magic bytes decide the content
+ * type and extension it is stored under. Objects go up in a single {@code putObject}; the CRT client
+ * splits large ones into parts by itself. Resizing for {@link ImageVariants} is CPU work and runs on
+ * the common fork-join pool.
+ */
+public class S3AsyncUploader {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final String bucketName;
+    private final PooledHttpClient http;
+    private RunMetrics metrics = new RunMetrics();
+
+    public S3AsyncUploader(S3AsyncClient s3AsyncClient, String bucketName) {
+        this(s3AsyncClient, bucketName, PooledHttpClient.defaultClient());
+    }
+
+    public S3AsyncUploader(S3AsyncClient s3AsyncClient, String bucketName, PooledHttpClient http) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.bucketName = bucketName;
+        this.http = http;
+    }
+
+    /**
+     * Times downloads, uploads and resizing as {@code image.download}, {@code image.upload} and {@code image.resize},
+     * and counts images whose variants could not be stored as {@code image.variants.failed}.
+     */
+    public void enableMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** What {@link #transferImage} stored: the original under its detected extension, and its variants. */
+    public static class StoredImage {
+        final String key;
+        final ImageFormat format;
+        final long bytes;
+        final List<ImageTransferResult.Variant> variants;
+        StoredImage(String key, ImageFormat format, long bytes, List<ImageTransferResult.Variant> variants) {
+            this.key = key;
+            this.format = format;
+            this.bytes = bytes;
+            this.variants = variants;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public ImageFormat getFormat() {
+            return format;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public List<ImageTransferResult.Variant> getVariants() {
+            return variants;
+        }
+    }
+
+    /**
+     * Uploads an image already on disk, e.g. in the image cache, like {@link #transferImage} does once it is downloaded.
+     * @return Completes with what was stored, or exceptionally with the read or S3 failure.
+     */
+    public CompletableFuture<StoredImage> transferFile(String baseKey, Path file, ImageVariants variants, double displayWidthPt) {
+        return store(baseKey, file, variants, displayWidthPt);
+    }
+
+    /**
+     * Downloads {@code source} and uploads it to {@code baseKey} plus the extension of its detected format.
+     * @param variants       The variants to store next to it, or null for none.
+     * @param displayWidthPt How wide the document displays the image, which sizes the variants.
+     * @return Completes with what was stored, or exceptionally with the download or S3 failure.
+     */
+    public CompletableFuture<StoredImage> transferImage(String baseKey, URI source, ImageVariants variants, double displayWidthPt) {
+        Path temp;
+        try {
+            temp = Files.createTempFile("image", ".download");
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return download(source, temp)
+            .thenCompose(downloaded -> store(baseKey, downloaded, variants, displayWidthPt))
+            .whenComplete((stored, error) -> deleteQuietly(temp));
+    }
+
+    /**
+     * Downloads {@code source} into {@code target}, which it overwrites.
+     * @return Completes with {@code target}, or exceptionally with the download failure.
+     */
+    public CompletableFuture<Path> download(URI source, Path target) {
+        long startNanos = System.nanoTime();
+        return http.download(source, target)
+            .thenApply(downloaded -> {
+                metrics.recordSince("image.download", startNanos);
+                return downloaded;
+            });
+    }
+
+    private CompletableFuture<StoredImage> store(String baseKey, Path file, ImageVariants variants, double displayWidthPt) {
+        ImageFormat format;
+        try {
+            format = ImageFormat.detect(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String key = baseKey + "." + format.getExtension();
+        CompletableFuture<S3StreamingUploader.UploadedObject> original = upload(key, format.getContentType(), file);
+        if (variants == null) {
+            return original.thenApply(uploaded -> new StoredImage(key, format, uploaded.getBytes(), List.of()));
+        }
+        CompletableFuture<List<ImageTransferResult.Variant>> stored = CompletableFuture
+            .supplyAsync(() -> {
+                try {
+                    long startNanos = System.nanoTime();
+                    List<ImageVariants.Rendition> renditions = variants.render(file, format, displayWidthPt);
+                    metrics.recordSince("image.resize", startNanos);
+                    return renditions;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .thenCompose(renditions -> uploadVariants(baseKey, format, renditions))
+            .exceptionally(error -> {
+                // The original still goes up; the image is listed without variants, as on the blocking path
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                metrics.increment("image.variants.failed");
+                System.err.printf("Failed to store variants of image %s. Error: %s\n", baseKey, cause.getMessage());
+                return List.of();
+            });
+        return original.thenCombine(stored, (uploaded, storedVariants) -> new StoredImage(key, format, uploaded.getBytes(), storedVariants));
+    }
+
+    private CompletableFuture<List<ImageTransferResult.Variant>> uploadVariants(String baseKey, ImageFormat format, List<ImageVariants.Rendition> renditions) {
+        List<CompletableFuture<ImageTransferResult.Variant>> uploads = new ArrayList<>();
+        for (ImageVariants.Rendition rendition : renditions) {
+            String key = ImageVariants.variantKey(baseKey, rendition.getWidth(), format);
+            uploads.add(upload(key, format.getContentType(), rendition.getData())
+                .thenApply(uploaded -> new ImageTransferResult.Variant(key, rendition.getWidth(), rendition.getHeight())));
+        }
+        return CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> uploads.stream().map(CompletableFuture::join).toList());
+    }
+
+    /** Uploads a local file to {@code key}. */
+    public CompletableFuture<S3StreamingUploader.UploadedObject> upload(String key, String contentType, Path file) {
+        long contentLength;
+        try {
+            contentLength = Files.size(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .contentType(contentType)
+            .contentLength(contentLength)
+            .build();
+        long startNanos = System.nanoTime();
+        return s3AsyncClient.putObject(request, AsyncRequestBody.fromFile(file))
+            .thenApply(response -> {
+                metrics.recordSince("image.upload", startNanos);
+                return new S3StreamingUploader.UploadedObject(contentLength, response.eTag());
+            });
+    }
+
+    /** Uploads an encoded image held in memory to {@code key}. */
+    public CompletableFuture<S3StreamingUploader.UploadedObject> upload(String key, String contentType, byte[] data) {
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .contentType(contentType)
+            .contentLength((long) data.length)
+            .build();
+        long startNanos = System.nanoTime();
+        return s3AsyncClient.putObject(request, AsyncRequestBody.fromBytes(data))
+            .thenApply(response -> {
+                metrics.recordSince("image.upload", startNanos);
+                return new S3StreamingUploader.UploadedObject(data.length, response.eTag());
+            });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.printf("Failed to delete temporary download %s. Error: %s\n", file, e.getMessage());
+        }
+    }
+}
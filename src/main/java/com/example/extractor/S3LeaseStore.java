@@ -0,0 +1,92 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * A {@link LeaseStore} under {@code s3://bucket/<prefix>}. Creation is a conditional PUT with
+ * {@code If-None-Match: *}, which S3 refuses with 412 once the key exists (409 while a concurrent
+ * PUT of the same key is still in flight), so it needs an S3 or S3-compatible store that honours
+ * conditional writes.
+ */
+public class S3LeaseStore implements LeaseStore {
+
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String prefix;
+    private final AdaptiveRateLimiter limiter;
+
+    /** @param limiter Paces and retries the requests, or null to call S3 directly. */
+    public S3LeaseStore(S3Client s3Client, String bucketName, String prefix, AdaptiveRateLimiter limiter) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean create(String name, String content) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(prefix + name)
+            .contentType(CONTENT_TYPE)
+            .overrideConfiguration(config -> config.putHeader("If-None-Match", "*"))
+            .build();
+        try {
+            call(() -> s3Client.putObject(request, RequestBody.fromString(content, StandardCharsets.UTF_8)));
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 412 || e.statusCode() == 409) return false;
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(String name, String content) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(prefix + name)
+            .contentType(CONTENT_TYPE)
+            .build();
+        call(() -> s3Client.putObject(request, RequestBody.fromString(content, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public String read(String name) throws IOException {
+        GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(prefix + name).build();
+        try {
+            return call(() -> s3Client.getObjectAsBytes(request).asUtf8String());
+        } catch (NoSuchKeyException e) {
+            return null;
+        }
+    }
+
+    private <T> T call(Callable<T> request) throws IOException {
+        try {
+            return (limiter != null) ? limiter.call(request) : request.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for S3");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "s3://" + bucketName + "/" + prefix;
+    }
+}
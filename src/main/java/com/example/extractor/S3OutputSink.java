@@ -0,0 +1,109 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Uploads each document to {@code s3://bucket/<prefix><docId>.json}, so no sync step is needed
+ * after the run. A batch is uploaded in parallel, each upload through the S3 rate limiter when one
+ * is given; a document whose upload fails is reported and left out of the journal.
+ */
+public class S3OutputSink extends BatchingOutputSink {
+
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String prefix;
+    private final AdaptiveRateLimiter limiter;
+
+    /** @param limiter Paces and retries the uploads, or null to call S3 directly. */
+    public S3OutputSink(S3Client s3Client, String bucketName, String prefix, int batchSize, boolean pretty, AdaptiveRateLimiter limiter) {
+        super(batchSize, pretty);
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.limiter = limiter;
+    }
+
+    @Override
+    Map<PendingDocument, Exception> store(List<PendingDocument> batch) throws IOException {
+        Map<PendingDocument, Exception> failures = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> uploads = new ArrayList<>();
+            for (PendingDocument document : batch) {
+                uploads.add(executor.submit(() -> (limiter != null)
+                        ? limiter.call(() -> upload(document))
+                        : upload(document)));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    uploads.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.put(batch.get(i), (e.getCause() instanceof Exception cause) ? cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while uploading documents", e);
+                }
+            }
+        }
+        return failures;
+    }
+
+    private String upload(PendingDocument document) {
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(keyOf(document.docId))
+            .contentType(CONTENT_TYPE)
+            .build();
+        return s3Client.putObject(request, RequestBody.fromBytes(document.json)).eTag();
+    }
+
+    @Override
+    String locationOf(String docId) {
+        return "s3://" + bucketName + "/" + keyOf(docId);
+    }
+
+    @Override
+    public boolean exists(String location) {
+        String bucketPrefix = "s3://" + bucketName + "/";
+        if (!location.startsWith(bucketPrefix)) return false;
+        try {
+            s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(location.substring(bucketPrefix.length())).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) return false;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    @Override
+    public String toString() {
+        return "s3://" + bucketName + "/" + prefix;
+    }
+
+    private String keyOf(String docId) {
+        return prefix + docId + ".json";
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * Pipes an {@link InputStream} into S3 without loading the whole object on the heap.
+ * Streams of known length below the multipart threshold go through a single
+ * {@code putObject}. Other streams are read into a buffer that starts small and grows
+ * up to {@code partSize} bytes: one that ends before filling a part still goes through
+ * a single {@code putObject}, anything longer is sent as a multipart upload, one part
+ * at a time.
+ */
+public class S3StreamingUploader {
+
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 8L * 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    // S3 rejects multipart uploads whose non-final parts are smaller than 5 MiB.
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    // Most streams of unknown length, e.g. gzip-encoded downloads, are small images
+    static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /** What ended up in S3 after an upload. */
+    public static class UploadedObject {
+        final long bytes;
+        final String eTag;
+        UploadedObject(long bytes, String eTag) {
+            this.bytes = bytes;
+            this.eTag = eTag;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final long multipartThreshold;
+    private final int partSize;
+
+    public S3StreamingUploader(S3Client s3Client, String bucketName) {
+        this(s3Client, bucketName, DEFAULT_MULTIPART_THRESHOLD, DEFAULT_PART_SIZE);
+    }
+
+    public S3StreamingUploader(S3Client s3Client, String bucketName, long multipartThreshold, int partSize) {
+        if (partSize < MIN_PART_SIZE) throw new IllegalArgumentException("partSize must be at least " + MIN_PART_SIZE + " bytes");
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Uploads the stream to {@code key}.
+     * @param contentLength The exact length of the stream, or -1 if unknown.
+     * @return The size and ETag of the stored object.
+     */
+    public UploadedObject upload(String key, String contentType, InputStream in, long contentLength) throws IOException {
+        if (contentLength >= 0 && contentLength < multipartThreshold) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .build();
+            String eTag = s3Client.putObject(request, RequestBody.fromInputStream(in, contentLength)).eTag();
+            return new UploadedObject(contentLength, eTag);
+        }
+
+        // A known length sizes the buffer up front; one byte more shows the stream ended without another read
+        byte[] buffer = new byte[(int) Math.min(partSize, (contentLength >= 0) ? contentLength + 1 : INITIAL_BUFFER_SIZE)];
+        int firstPartLength = readFully(in, buffer, 0);
+        while (firstPartLength == buffer.length && buffer.length < partSize) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(partSize, 2L * buffer.length));
+            firstPartLength = readFully(in, buffer, firstPartLength);
+        }
+        if (firstPartLength < partSize) {
+            // The whole object fit into one buffer, so a multipart upload would only add round-trips.
+            PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) firstPartLength)
+                .build();
+            String eTag = s3Client.putObject(request, RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, firstPartLength), firstPartLength)).eTag();
+            return new UploadedObject(firstPartLength, eTag);
+        }
+        return uploadMultipart(key, contentType, in, buffer, firstPartLength);
+    }
+
+    private UploadedObject uploadMultipart(String key, String contentType, InputStream in, byte[] buffer, int firstPartLength) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .contentType(contentType)
+            .build()).uploadId();
+        try {
+            List<CompletedPart> completedParts = new ArrayList<>();
+            long totalBytes = 0;
+            int partLength = firstPartLength;
+            int partNumber = 1;
+            while (partLength > 0) {
+                UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) partLength)
+                        .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, partLength), partLength));
+                completedParts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                totalBytes += partLength;
+                partNumber++;
+                partLength = (partLength == buffer.length) ? readFully(in, buffer, 0) : 0;
+            }
+            String eTag = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build()).eTag();
+            return new UploadedObject(totalBytes, eTag);
+        } catch (IOException | SdkException e) {
+            abortQuietly(key, uploadId);
+            throw e;
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+        } catch (SdkException e) {
+            System.err.printf("Failed to abort multipart upload %s for %s. Error: %s\n", uploadId, key, e.getMessage());
+        }
+    }
+
+    /** Reads into {@code buffer} from {@code offset} until it is full or the stream ends; returns the bytes it holds. */
+    private static int readFully(InputStream in, byte[] buffer, int offset) throws IOException {
+        int total = offset;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+}
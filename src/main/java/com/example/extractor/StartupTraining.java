@@ -0,0 +1,120 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.Docs;
+import com.google.api.services.docs.v1.model.Body;
+import com.google.api.services.docs.v1.model.Dimension;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+import com.google.api.services.docs.v1.model.ImageProperties;
+import com.google.api.services.docs.v1.model.InlineObject;
+import com.google.api.services.docs.v1.model.InlineObjectElement;
+import com.google.api.services.docs.v1.model.InlineObjectProperties;
+import com.google.api.services.docs.v1.model.Link;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.ParagraphStyle;
+import com.google.api.services.docs.v1.model.Size;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.Table;
+import com.google.api.services.docs.v1.model.TableCell;
+import com.google.api.services.docs.v1.model.TableRow;
+import com.google.api.services.docs.v1.model.TextRun;
+import com.google.api.services.docs.v1.model.TextStyle;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * The training run of the {@code fast-start} Maven profile, executed under
+ * {@code -XX:ArchiveClassesAtExit} so the classes it loads end up in the AppCDS archive.
+ * It needs no network or credentials: it caches a small document, replays it through {@link Main}
+ * (options, pipeline, index, JSON output, metrics) and builds, without calling, a Docs service and
+ * an S3 client so the bulk of both client stacks is archived too.
+ */
+public class StartupTraining {
+
+    public static void main(String... args) throws Exception {
+        Path workDir = Files.createTempDirectory("startup-training");
+        try {
+            Path cacheDir = workDir.resolve("cache");
+            new DocumentCache(cacheDir).put("training", trainingDocument());
+            Main.main("--replay", "--cache", cacheDir.toString(),
+                    "--output", "dir:" + workDir.resolve("out"),
+                    "--metrics", workDir.resolve("metrics").toString());
+
+            try (PooledHttpClient http = new PooledHttpClient(PooledHttpClient.DEFAULT_CONNECT_TIMEOUT, PooledHttpClient.DEFAULT_READ_TIMEOUT);
+                 S3Client s3Client = S3Client.builder()
+                    .region(Region.US_EAST_1)
+                    .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("training", "training")))
+                    .build()) {
+                Docs docs = new Docs.Builder(http.newGoogleTransport(), GsonFactory.getDefaultInstance(), null)
+                        .setApplicationName("startup-training")
+                        .build();
+                docs.documents().get("training");
+                System.out.println("Trained with " + s3Client.serviceName() + " and " + docs.getApplicationName() + ".");
+            }
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /** A heading, styled paragraphs, a table, an image and a references section. */
+    private static Document trainingDocument() {
+        List<StructuralElement> body = new ArrayList<>();
+        body.add(paragraph("HEADING_1", run("Introduction\n", null)));
+        body.add(paragraph("NORMAL_TEXT", run("A short ", null), run("styled", new TextStyle().setBold(true).setItalic(true)),
+                run(" paragraph with a ", null), run("link", new TextStyle().setLink(new Link().setUrl("https://example.com"))), run(".\n", null)));
+        List<TableCell> cells = List.of(
+                new TableCell().setContent(List.of(paragraph("NORMAL_TEXT", run("cell\n", null)))),
+                new TableCell().setContent(List.of(paragraph("NORMAL_TEXT", run("café\n", null)))));
+        body.add(new StructuralElement().setTable(new Table().setRows(1).setColumns(2)
+                .setTableRows(List.of(new TableRow().setTableCells(cells)))));
+        body.add(paragraph("NORMAL_TEXT", new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId("kix.training")),
+                run("\n", null)));
+        body.add(paragraph("HEADING_1", run("References\n", null)));
+        body.add(paragraph("NORMAL_TEXT", run("[1] A reference\u000Bhttps://example.com/ref\n", null)));
+
+        EmbeddedObject image = new EmbeddedObject()
+                .setImageProperties(new ImageProperties().setContentUri("https://lh3.googleusercontent.com/training"))
+                .setSize(new Size()
+                        .setWidth(new Dimension().setMagnitude(400.0).setUnit("PT"))
+                        .setHeight(new Dimension().setMagnitude(300.0).setUnit("PT")));
+        return new Document()
+                .setDocumentId("training")
+                .setRevisionId("training-1")
+                .setTitle("Startup Training Article - Completed")
+                .setBody(new Body().setContent(body))
+                .setInlineObjects(Map.of("kix.training", new InlineObject().setObjectId("kix.training")
+                        .setInlineObjectProperties(new InlineObjectProperties().setEmbeddedObject(image))));
+    }
+
+    private static StructuralElement paragraph(String namedStyle, ParagraphElement... elements) {
+        return new StructuralElement().setParagraph(new Paragraph()
+                .setElements(List.of(elements))
+                .setParagraphStyle(new ParagraphStyle().setNamedStyleType(namedStyle)));
+    }
+
+    private static ParagraphElement run(String text, TextStyle style) {
+        return new ParagraphElement().setTextRun(new TextRun().setContent(text).setTextStyle(style));
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
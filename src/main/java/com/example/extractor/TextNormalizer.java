@@ -0,0 +1,135 @@
+package com.example.extractor;
+
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+
+/**
+ * Hand-written replacements for the regular expressions the extractor used on its hot paths.
+ * Each method produces exactly the same string as the regex version it replaces, without
+ * compiling a pattern or allocating a matcher per call. Callers that process many paragraphs
+ * pass in a {@link StringBuilder} they reuse.
+ */
+public final class TextNormalizer {
+
+    private static final char VERTICAL_TAB = '\u000B';
+    private static final String COMPLETED_SUFFIX = " - completed";
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Lower-cases the title, drops a trailing " - Completed" and keeps only {@code [a-z0-9]}.
+     * Same result as {@code toLowerCase()} followed by {@code replaceAll("[^a-z0-9]", "")}.
+     */
+    public static String slugify(String title) {
+        if (title == null || title.isEmpty()) return "";
+        String lower = title.toLowerCase();
+        int end = lower.endsWith(COMPLETED_SUFFIX) ? lower.length() - COMPLETED_SUFFIX.length() : lower.length();
+        char[] slug = new char[end];
+        int length = 0;
+        for (int i = 0; i < end; i++) {
+            char c = lower.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                slug[length++] = c;
+            }
+        }
+        return new String(slug, 0, length);
+    }
+
+    /**
+     * Clears {@code sb} and fills it with the concatenated text runs of the paragraph, with every
+     * newline and vertical tab turned into a space. Trim the result with {@link #trimmedEqualsIgnoreCase}
+     * or {@link #trimmedString}; together they match {@code replaceAll("[\\n\\u000B]", " ").trim()}.
+     */
+    public static StringBuilder appendParagraphText(Paragraph paragraph, StringBuilder sb) {
+        sb.setLength(0);
+        if (paragraph == null || paragraph.getElements() == null) return sb;
+        for (ParagraphElement element : paragraph.getElements()) {
+            if (element.getTextRun() == null || element.getTextRun().getContent() == null) continue;
+            String content = element.getTextRun().getContent();
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                sb.append(c == '\n' || c == VERTICAL_TAB ? ' ' : c);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Appends the raw concatenated text runs of the paragraph to {@code sb}.
+     */
+    public static StringBuilder appendRawParagraphContent(Paragraph paragraph, StringBuilder sb) {
+        if (paragraph == null || paragraph.getElements() == null) return sb;
+        for (ParagraphElement element : paragraph.getElements()) {
+            if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
+                sb.append(element.getTextRun().getContent());
+            }
+        }
+        return sb;
+    }
+
+    /** {@code text.toString().trim()}, without the intermediate untrimmed copy. */
+    public static String trimmedString(CharSequence text) {
+        int start = trimStart(text);
+        int end = trimEnd(text, start);
+        return text.subSequence(start, end).toString();
+    }
+
+    /** {@code text.toString().trim().equalsIgnoreCase(expected)}, without allocating. */
+    public static boolean trimmedEqualsIgnoreCase(CharSequence text, String expected) {
+        int start = trimStart(text);
+        int end = trimEnd(text, start);
+        if (end - start != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            char a = text.charAt(start + i);
+            char b = expected.charAt(i);
+            if (a == b) continue;
+            char upperA = Character.toUpperCase(a);
+            char upperB = Character.toUpperCase(b);
+            if (upperA != upperB && Character.toLowerCase(upperA) != Character.toLowerCase(upperB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collapses every run of newlines and vertical tabs into a single newline and trims the result.
+     * Same result as {@code replaceAll("[\\n\\u000B]+", "\n").trim()}.
+     */
+    public static String normalizeLineBreaks(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean inBreak = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == VERTICAL_TAB) {
+                if (!inBreak) sb.append('\n');
+                inBreak = true;
+            } else {
+                sb.append(c);
+                inBreak = false;
+            }
+        }
+        return trimmedString(sb);
+    }
+
+    /** {@code String.format("image_%03d", index)}. */
+    public static String imageName(int index) {
+        if (index >= 0 && index < 10) return "image_00" + index;
+        if (index >= 0 && index < 100) return "image_0" + index;
+        return "image_" + index;
+    }
+
+    // Same notion of whitespace as String.trim(): any char up to and including ' '.
+    private static int trimStart(CharSequence text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') start++;
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start) {
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        return end;
+    }
+}
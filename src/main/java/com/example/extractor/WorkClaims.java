@@ -0,0 +1,259 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Lets several nodes work through one document list by claiming each document before processing
+ * it, so a node that finishes early takes over documents a slower node has not reached yet, and
+ * the documents of a node that died are picked up once its leases run out. In the
+ * {@link LeaseStore}:
+ * <pre>
+ * &lt;docId&gt;.lease.&lt;g&gt;   {"node": ..., "expiresAt": ...}, the g-th claim of the document
+ * &lt;docId&gt;.done        {"node": ..., "completedAt": ...}, written once its output is stored
+ * </pre>
+ * A node claims a document by creating the next lease generation, which only one node can do, and
+ * only while the latest lease has expired. Held leases are renewed every third of the lease time
+ * until the document completes or is released. A node whose lease was taken over after all, e.g.
+ * after a long pause, finishes the document anyway, which rewrites the same output; expiry is
+ * judged by the wall clock, so the nodes' clocks should agree to well within the lease time.
+ */
+public class WorkClaims implements AutoCloseable {
+
+    static final String DONE_SUFFIX = ".done";
+    static final String LEASE_INFIX = ".lease.";
+
+    /** The outcome of a claim. */
+    public enum Claim { WON, HELD_ELSEWHERE, DONE }
+
+    /**
+     * A lease this node holds. Renewing and giving it up both write the lease under its lock, and
+     * neither writes once it is given up, so a renewal never lands after a release.
+     */
+    private static final class HeldLease {
+        final int generation;
+        boolean givenUp = false;
+        HeldLease(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    private final LeaseStore store;
+    private final String nodeId;
+    private final Duration leaseTime;
+    private final RunMetrics metrics;
+    private final LongSupplier clock;
+    // Lease held by this node, per document
+    private final Map<String, HeldLease> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat;
+
+    public WorkClaims(LeaseStore store, String nodeId, Duration leaseTime, RunMetrics metrics) {
+        this(store, nodeId, leaseTime, metrics, System::currentTimeMillis);
+    }
+
+    WorkClaims(LeaseStore store, String nodeId, Duration leaseTime, RunMetrics metrics, LongSupplier clock) {
+        this.store = store;
+        this.nodeId = checkName(nodeId, "node ID");
+        this.leaseTime = leaseTime;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("lease-heartbeat").daemon(true).factory());
+        long renewMillis = Math.max(1, leaseTime.toMillis() / 3);
+        heartbeat.scheduleAtFixedRate(this::renewAll, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Claims {@code docId} for this node, unless another node holds a lease on it that has not
+     * expired or it is done.
+     */
+    public Claim claim(String docId) throws IOException {
+        checkName(docId, "document ID");
+        if (store.read(docId + DONE_SUFFIX) != null) return Claim.DONE;
+        int generation = 0;
+        String latest = null;
+        String lease;
+        while ((lease = store.read(docId + LEASE_INFIX + (generation + 1))) != null) {
+            generation++;
+            latest = lease;
+        }
+        if (latest != null && expiresAt(latest) > clock.getAsLong()) return Claim.HELD_ELSEWHERE;
+        if (!store.create(docId + LEASE_INFIX + (generation + 1), leaseContent(clock.getAsLong() + leaseTime.toMillis()))) {
+            return Claim.HELD_ELSEWHERE;
+        }
+        held.put(docId, new HeldLease(generation + 1));
+        metrics.increment("claims.won");
+        if (generation > 0) {
+            System.out.printf("Took over %s, whose earlier lease had expired or was released.\n", docId);
+            metrics.increment("claims.stolen");
+        }
+        return Claim.WON;
+    }
+
+    /** Records {@code docId} as done, so that no node claims it again, and stops renewing its lease. */
+    public void complete(String docId) throws IOException {
+        JsonObject done = new JsonObject();
+        done.addProperty("node", nodeId);
+        done.addProperty("completedAt", clock.getAsLong());
+        store.create(docId + DONE_SUFFIX, done.toString());
+        HeldLease lease = held.remove(docId);
+        if (lease != null) {
+            synchronized (lease) {
+                lease.givenUp = true;
+            }
+        }
+    }
+
+    /** Gives up the lease on {@code docId} without completing it, so that another node may try it right away. */
+    public void release(String docId) throws IOException {
+        HeldLease lease = held.remove(docId);
+        if (lease == null) return;
+        synchronized (lease) {
+            lease.givenUp = true;
+            store.write(docId + LEASE_INFIX + lease.generation, leaseContent(0));
+        }
+    }
+
+    /**
+     * The documents of {@code docIds} this node claims, in turn. Each node starts at a different
+     * point of the list, so that nodes starting together do not contend for the same documents.
+     * After one pass, the documents held by other nodes are checked again every tenth of the lease
+     * time until they are done or their lease expires and this node takes them over; each document
+     * is handed out at most once. A document whose claim fails is reported and skipped.
+     */
+    public Iterator<String> claiming(List<String> docIds) {
+        List<String> order = new ArrayList<>(docIds);
+        if (!order.isEmpty()) {
+            Collections.rotate(order, -Math.floorMod(nodeId.hashCode(), order.size()));
+        }
+        long pollMillis = Math.max(1, leaseTime.toMillis() / 10);
+        return new Iterator<>() {
+            private Iterator<String> pass = order.iterator();
+            private List<String> pending = new ArrayList<>();
+            private List<String> waiting = null;
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (!pass.hasNext()) {
+                        if (pending.isEmpty()) return false;
+                        // A later pass only goes over the documents other nodes held during the last one
+                        if (waiting != null) sleep(pollMillis);
+                        waiting = pending;
+                        pending = new ArrayList<>();
+                        pass = waiting.iterator();
+                        continue;
+                    }
+                    String docId = pass.next();
+                    try {
+                        switch (claim(docId)) {
+                            case WON -> next = docId;
+                            case HELD_ELSEWHERE -> {
+                                if (waiting == null) metrics.increment("claims.held_elsewhere");
+                                pending.add(docId);
+                            }
+                            case DONE -> metrics.increment("claims.done_elsewhere");
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        System.err.printf("❌ Could not claim %s in %s: %s\n", docId, store, e.getMessage());
+                        metrics.increment("claims.failed");
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String docId = next;
+                next = null;
+                return docId;
+            }
+        };
+    }
+
+    /**
+     * Stops renewing leases and gives up the ones still held, of documents that were neither
+     * completed nor released, e.g. whose output could not be stored. A node that dies without
+     * closing leaves them to expire instead.
+     */
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        for (String docId : List.copyOf(held.keySet())) {
+            try {
+                release(docId);
+            } catch (IOException | RuntimeException e) {
+                System.err.printf("Failed to release the lease on %s: %s\n", docId, e.getMessage());
+            }
+        }
+    }
+
+    private void renewAll() {
+        long expiresAt = clock.getAsLong() + leaseTime.toMillis();
+        held.forEach((docId, lease) -> {
+            synchronized (lease) {
+                // Completed or released since the iteration started
+                if (lease.givenUp) return;
+                try {
+                    if (store.read(docId + LEASE_INFIX + (lease.generation + 1)) != null) {
+                        // Another node took over: leave its lease alone, and this node's output will just be written twice
+                        held.remove(docId, lease);
+                        metrics.increment("claims.lost");
+                        return;
+                    }
+                    store.write(docId + LEASE_INFIX + lease.generation, leaseContent(expiresAt));
+                } catch (IOException | RuntimeException e) {
+                    System.err.printf("Failed to renew the lease on %s: %s\n", docId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private String leaseContent(long expiresAt) {
+        JsonObject lease = new JsonObject();
+        lease.addProperty("node", nodeId);
+        lease.addProperty("expiresAt", expiresAt);
+        return lease.toString();
+    }
+
+    private static long expiresAt(String lease) {
+        return JsonParser.parseString(lease).getAsJsonObject().get("expiresAt").getAsLong();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for other nodes' leases", e);
+        }
+    }
+
+    // Names become file names and object keys; refuse anything that could escape the claim directory
+    private static String checkName(String name, String what) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Not a valid " + what + ": '" + name + "'");
+        }
+        return name;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.extractor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.extractor.AdaptiveRateLimiter.Failure;
+import com.example.extractor.AdaptiveRateLimiter.FailureKind;
+
+class AdaptiveRateLimiterTest {
+
+    /** Fails with this to simulate a 429 carrying a Retry-After. */
+    private static class ThrottledException extends IOException {
+        final Duration retryAfter;
+        ThrottledException(Duration retryAfter) {
+            super("429 Too Many Requests");
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    private static Failure classify(Exception e) {
+        if (e instanceof ThrottledException throttled) return new Failure(FailureKind.THROTTLED, throttled.retryAfter);
+        if (e instanceof FileNotFoundException) return Failure.of(FailureKind.FATAL);
+        return Failure.of(e instanceof IOException ? FailureKind.TRANSIENT : FailureKind.FATAL);
+    }
+
+    private static AdaptiveRateLimiter limiter(double permitsPerSecond, int maxConcurrency, int maxAttempts) {
+        return new AdaptiveRateLimiter("test", permitsPerSecond, maxConcurrency, maxAttempts,
+            AdaptiveRateLimiterTest::classify, Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    @Test
+    void testCall_RetriesThrottlingAfterRetryAfterAndHalvesConcurrency() throws Exception {
+        // --- ARRANGE ---
+        AdaptiveRateLimiter limiter = limiter(1000, 8, 5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // --- ACT ---
+        long start = System.nanoTime();
+        String result = limiter.call(() -> {
+            if (attempts.incrementAndGet() < 3) throw new ThrottledException(Duration.ofMillis(100));
+            return "ok";
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // --- ASSERT ---
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, limiter.getRetryCount());
+        assertEquals(2, limiter.getThrottleCount());
+        assertTrue(elapsedMillis >= 200, "each retry waits for Retry-After, took " + elapsedMillis + " ms");
+        // Halved once: both throttles belong to the same overload episode.
+        assertEquals(4, limiter.getConcurrencyLimit());
+    }
+
+    @Test
+    void testCall_FatalFailuresAreNotRetriedAndAttemptsAreBounded() {
+        // --- ARRANGE ---
+        AdaptiveRateLimiter limiter = limiter(1000, 2, 3);
+        AtomicInteger fatalAttempts = new AtomicInteger();
+        AtomicInteger transientAttempts = new AtomicInteger();
+
+        // --- ACT & ASSERT ---
+        assertThrows(FileNotFoundException.class, () -> limiter.call(() -> {
+            fatalAttempts.incrementAndGet();
+            throw new FileNotFoundException("404");
+        }));
+        IOException last = assertThrows(IOException.class, () -> limiter.call(() -> {
+            throw new IOException("connection reset " + transientAttempts.incrementAndGet());
+        }));
+        assertEquals(1, fatalAttempts.get());
+        assertEquals(3, transientAttempts.get());
+        assertEquals("connection reset 3", last.getMessage());
+        // Transient failures do not shrink the window.
+        assertEquals(2, limiter.getConcurrencyLimit());
+    }
+
+    @Test
+    void testCall_TokenBucketAndConcurrencyWindowBoundTheLoad() throws Exception {
+        // --- ARRANGE ---
+        // 50 permits per second with a burst of 50: 75 calls need at least half a second.
+        AdaptiveRateLimiter limiter = limiter(50, 3, 1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        // --- ACT ---
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 75; i++) {
+                futures.add(executor.submit(() -> limiter.call(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    Thread.sleep(1);
+                    return inFlight.decrementAndGet();
+                })));
+            }
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // --- ASSERT ---
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+        assertTrue(elapsedMillis >= 450, "75 calls at 50/s took only " + elapsedMillis + " ms");
+        assertEquals(75, limiter.getCallCount());
+    }
+
+    @Test
+    void testParseRetryAfter_SecondsAndHttpDate() {
+        assertEquals(Duration.ofSeconds(7), ApiRetryClassifiers.parseRetryAfter("7"));
+        assertEquals(Duration.ZERO, ApiRetryClassifiers.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertNull(ApiRetryClassifiers.parseRetryAfter("soon"));
+        assertEquals(FailureKind.THROTTLED, ApiRetryClassifiers.classifyDocsApiStatus(429));
+        assertEquals(FailureKind.FATAL, ApiRetryClassifiers.classifyDocsApiStatus(404));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.extractor;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+class BlockDeltaTest {
+
+    @Test
+    void testCompute_ReportsAddedChangedAndRemovedBlocks() throws Exception {
+        // --- ARRANGE ---
+        // b was edited into b2 and d was replaced by x; a, c and e are untouched
+        List<String> previous = List.of("a", "b", "c", "d", "e");
+        List<BlockDelta.Block> blocks = blocks("a", "b2", "c", "x", "e");
+
+        // --- ACT ---
+        BlockDelta delta = BlockDelta.compute("doc", "r1", previous, "r2", blocks);
+        JsonObject json = toJson(delta);
+
+        // --- ASSERT ---
+        assertEquals(0, delta.getAddedCount());
+        assertEquals(2, delta.getChangedCount());
+        assertEquals(0, delta.getRemovedCount());
+        assertEquals("r1", json.get("baseRevision").getAsString());
+        assertEquals(5, json.getAsJsonArray("blocks").size());
+        JsonArray changed = json.getAsJsonArray("changed");
+        assertEquals(1, changed.get(0).getAsJsonObject().get("index").getAsInt());
+        assertEquals("b", changed.get(0).getAsJsonObject().get("previousHash").getAsString());
+        assertEquals("b2", changed.get(0).getAsJsonObject().getAsJsonObject("block").get("text").getAsString());
+        assertEquals(3, changed.get(1).getAsJsonObject().get("index").getAsInt());
+        assertEquals(3, changed.get(1).getAsJsonObject().get("previousIndex").getAsInt());
+    }
+
+    @Test
+    void testCompute_InsertionsAndDeletionsAreNotReportedAsChanges() throws Exception {
+        // --- ACT ---
+        BlockDelta inserted = BlockDelta.compute("doc", "r1", List.of("a", "b", "c"), "r2", blocks("a", "x", "y", "b", "c"));
+        BlockDelta deleted = BlockDelta.compute("doc", "r1", List.of("a", "b", "c", "d"), "r2", blocks("a", "d"));
+        BlockDelta unchanged = BlockDelta.compute("doc", "r1", List.of("a", "b"), "r2", blocks("a", "b"));
+
+        // --- ASSERT ---
+        assertEquals(2, inserted.getAddedCount());
+        assertEquals(0, inserted.getChangedCount() + inserted.getRemovedCount());
+        JsonArray added = toJson(inserted).getAsJsonArray("added");
+        assertEquals(1, added.get(0).getAsJsonObject().get("index").getAsInt());
+        assertEquals(2, added.get(1).getAsJsonObject().get("index").getAsInt());
+        assertEquals(2, deleted.getRemovedCount());
+        assertEquals(0, deleted.getAddedCount() + deleted.getChangedCount());
+        JsonArray removed = toJson(deleted).getAsJsonArray("removed");
+        assertEquals("b", removed.get(0).getAsJsonObject().get("hash").getAsString());
+        assertEquals(2, removed.get(1).getAsJsonObject().get("previousIndex").getAsInt());
+        assertTrue(unchanged.isEmpty());
+    }
+
+    @Test
+    void testDeltaStore_DiffsAgainstTheLastRecordedExtraction(@TempDir Path dir) throws Exception {
+        // --- ARRANGE ---
+        DeltaStore store = new DeltaStore(dir);
+
+        // --- ACT ---
+        BlockDelta first = store.record("doc", "r1", blocks("a", "b"));
+        BlockDelta second = store.record("doc", "r2", blocks("a", "b", "c"));
+
+        // --- ASSERT ---
+        // Without an earlier extraction everything is new
+        assertEquals(2, first.getAddedCount());
+        assertEquals(1, second.getAddedCount());
+        JsonObject written = new Gson().fromJson(Files.readString(dir.resolve("doc.delta.json")), JsonObject.class);
+        assertEquals("r1", written.get("baseRevision").getAsString());
+        assertEquals("r2", written.get("revision").getAsString());
+        assertEquals(List.of("r2", "a", "b", "c"), Files.readAllLines(dir.resolve("doc.blocks")));
+    }
+
+    /** Blocks whose hash is their text, so the tests can name them. */
+    private static List<BlockDelta.Block> blocks(String... hashes) {
+        List<BlockDelta.Block> blocks = new ArrayList<>();
+        for (String hash : hashes) {
+            blocks.add(new BlockDelta.Block(hash, "{\"type\":\"paragraph\",\"text\":\"" + hash + "\"}"));
+        }
+        return blocks;
+    }
+
+    private static JsonObject toJson(BlockDelta delta) throws Exception {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        delta.write(writer);
+        writer.flush();
+        return new Gson().fromJson(out.toString(), JsonObject.class);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.extractor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.docs.v1.Docs;
+
+class DocumentBatchFetcherTest {
+
+    @Test
+    void testFetch_ReportsEachDocumentOfTheBatchSeparately() throws Exception {
+        // --- ARRANGE ---
+        // A multipart/mixed batch response: the first document is found, the second one is not.
+        String boundary = "batch_boundary";
+        String body = "--" + boundary + "\r\n"
+            + "Content-Type: application/http\r\n"
+            + "Content-ID: <response-1>\r\n\r\n"
+            + "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: application/json; charset=UTF-8\r\n\r\n"
+            + "{\"documentId\": \"doc_a\", \"title\": \"First\", \"revisionId\": \"r1\"}\r\n"
+            + "--" + boundary + "\r\n"
+            + "Content-Type: application/http\r\n"
+            + "Content-ID: <response-2>\r\n\r\n"
+            + "HTTP/1.1 404 Not Found\r\n"
+            + "Content-Type: application/json; charset=UTF-8\r\n\r\n"
+            + "{\"error\": {\"code\": 404, \"message\": \"Requested entity was not found.\", \"status\": \"NOT_FOUND\"}}\r\n"
+            + "--" + boundary + "--\r\n";
+        MockLowLevelHttpRequest request = new MockLowLevelHttpRequest().setResponse(new MockLowLevelHttpResponse()
+            .setContentType("multipart/mixed; boundary=" + boundary)
+            .setContent(body));
+        MockHttpTransport transport = new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build();
+        Docs docs = new Docs.Builder(transport, GsonFactory.getDefaultInstance(), null).setApplicationName("test").build();
+
+        // --- ACT ---
+        List<DocumentBatchFetcher.Result> results = new DocumentBatchFetcher(docs, DocumentFieldMask.EXTRACTOR_FIELDS).fetch(List.of("doc_a", "doc_missing"));
+
+        // --- ASSERT ---
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("First", results.get(0).getDocument().getTitle());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("doc_missing", results.get(1).getDocId());
+        assertEquals("404 Requested entity was not found.", results.get(1).getError());
+        // Both documents went out in a single HTTP request.
+        assertTrue(request.getContentAsString().contains("/v1/documents/doc_a"));
+        assertTrue(request.getContentAsString().contains("/v1/documents/doc_missing"));
+        assertTrue(request.getContentAsString().contains("fields=documentId"));
+    }
+}
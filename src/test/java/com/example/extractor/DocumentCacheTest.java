@@ -0,0 +1,56 @@
+package com.example.extractor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.api.services.docs.v1.model.Body;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.TextRun;
+
+class DocumentCacheTest {
+
+    @Test
+    void testPutAndGet_ReplaysTheLatestRevisionWithIdenticalOutput(@TempDir Path tempDir) throws Exception {
+        // --- ARRANGE ---
+        DocumentCache cache = new DocumentCache(tempDir.resolve("cache"));
+        Document first = createDocument("rev_1", "Första versionen");
+        Document second = createDocument("rev_2", "Second <version> & more");
+        GoogleDocExtractor extractor = new GoogleDocExtractor(null, "bucket");
+
+        // --- ACT ---
+        cache.put("doc_a", first);
+        cache.put("doc_a", second);
+        cache.put("doc_b", first);
+        Document replayed = cache.getLatest("doc_a");
+
+        // --- ASSERT ---
+        assertEquals("rev_2", replayed.getRevisionId());
+        assertEquals(extractor.extractContentAsJson(second), extractor.extractContentAsJson(replayed));
+        assertEquals("rev_1", cache.get("doc_a", "rev_1").getRevisionId());
+        assertNull(cache.getLatest("doc_unknown"));
+        assertEquals(List.of("doc_a", "doc_b"), cache.listDocIds());
+        assertTrue(Files.exists(tempDir.resolve("cache/doc_a/rev_2.json.gz")));
+        assertThrows(IllegalArgumentException.class, () -> cache.getLatest("../escape"));
+    }
+
+    private Document createDocument(String revisionId, String text) {
+        StructuralElement paragraph = new StructuralElement().setParagraph(new Paragraph().setElements(List.of(
+            new ParagraphElement().setTextRun(new TextRun().setContent(text + "\n")))));
+        return new Document()
+            .setDocumentId("doc")
+            .setRevisionId(revisionId)
+            .setTitle("Cached")
+            .setBody(new Body().setContent(List.of(paragraph)));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.model.Body;
+import com.google.api.services.docs.v1.model.Bullet;
+import com.google.api.services.docs.v1.model.Dimension;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+import com.google.api.services.docs.v1.model.Footer;
+import com.google.api.services.docs.v1.model.ImageProperties;
+import com.google.api.services.docs.v1.model.InlineObject;
+import com.google.api.services.docs.v1.model.InlineObjectElement;
+import com.google.api.services.docs.v1.model.InlineObjectProperties;
+import com.google.api.services.docs.v1.model.Link;
+import com.google.api.services.docs.v1.model.NamedStyle;
+import com.google.api.services.docs.v1.model.NamedStyles;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.ParagraphStyle;
+import com.google.api.services.docs.v1.model.SectionBreak;
+import com.google.api.services.docs.v1.model.Size;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.Table;
+import com.google.api.services.docs.v1.model.TableCell;
+import com.google.api.services.docs.v1.model.TableRow;
+import com.google.api.services.docs.v1.model.TextRun;
+import com.google.api.services.docs.v1.model.TextStyle;
+import com.google.api.services.docs.v1.model.WeightedFontFamily;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+class DocumentFieldMaskTest {
+
+    private static final GsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    @Test
+    void testExtractorFields_ProjectedDocumentExtractsIdentically() throws IOException {
+        // --- ARRANGE ---
+        Document full = createDocument();
+        // Apply the mask the way the Docs API would answer a partial-response request.
+        JsonObject projected = project(JsonParser.parseString(JSON_FACTORY.toString(full)).getAsJsonObject(),
+            parseMask(DocumentFieldMask.EXTRACTOR_FIELDS));
+        Document masked = JSON_FACTORY.fromString(projected.toString(), Document.class);
+        GoogleDocExtractor extractor = new GoogleDocExtractor(null, "bucket");
+
+        // --- ACT ---
+        String fromFull = extractor.extractContentAsJson(full);
+        String fromMasked = extractor.extractContentAsJson(masked);
+
+        // --- ASSERT ---
+        assertEquals(fromFull, fromMasked);
+        assertEquals(full.getRevisionId(), masked.getRevisionId());
+        assertFalse(projected.has("namedStyles"));
+        assertFalse(projected.has("footers"));
+        assertFalse(projected.toString().contains("fontSize"));
+        assertTrue(projected.toString().contains("deep cell"));
+    }
+
+    private Document createDocument() {
+        List<StructuralElement> body = new ArrayList<>();
+        body.add(paragraph("Introduction\n", "HEADING_1", null));
+        body.add(new StructuralElement().setEndIndex(20).setSectionBreak(new SectionBreak()));
+        body.add(paragraph("Not the intro, a section break came first.\n", "NORMAL_TEXT", null));
+        body.add(paragraph("Styled", "NORMAL_TEXT", new TextStyle().setBold(true).setFontSize(new Dimension().setMagnitude(14.0).setUnit("PT"))
+            .setLink(new Link().setUrl("https://example.com")).setWeightedFontFamily(new WeightedFontFamily().setFontFamily("Arial").setWeight(700))));
+        StructuralElement bullet = paragraph("A bullet\n", "NORMAL_TEXT", null);
+        bullet.getParagraph().setBullet(new Bullet().setListId("kix.list").setNestingLevel(1));
+        body.add(bullet);
+        body.add(new StructuralElement().setEndIndex(40).setParagraph(new Paragraph().setElements(List.of(
+            new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId("kix.img1")),
+            new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId("kix.img2"))))));
+        body.add(nestedTable(6));
+        body.add(paragraph("References\n", "HEADING_1", null));
+        body.add(paragraph("[1] A source\u000Bhttps://example.com/1\n", "NORMAL_TEXT", null));
+
+        Map<String, InlineObject> inlineObjects = new LinkedHashMap<>();
+        for (String id : List.of("kix.img1", "kix.img2")) {
+            inlineObjects.put(id, new InlineObject().setObjectId(id).setInlineObjectProperties(new InlineObjectProperties()
+                .setEmbeddedObject(new EmbeddedObject()
+                    .setImageProperties(new ImageProperties().setContentUri("https://lh3/" + id))
+                    .setSize(new Size().setWidth(new Dimension().setMagnitude(320.0)).setHeight(new Dimension().setMagnitude(200.0))))));
+        }
+
+        return new Document()
+            .setDocumentId("doc_mask")
+            .setTitle("Field Masks - Completed")
+            .setRevisionId("rev_7")
+            .setBody(new Body().setContent(body))
+            .setInlineObjects(inlineObjects)
+            .setNamedStyles(new NamedStyles().setStyles(List.of(new NamedStyle().setNamedStyleType("NORMAL_TEXT"))))
+            .setFooters(Map.of("kix.footer", new Footer().setFooterId("kix.footer")));
+    }
+
+    private StructuralElement paragraph(String text, String styleType, TextStyle style) {
+        return new StructuralElement().setEndIndex(text.length()).setParagraph(new Paragraph()
+            .setElements(List.of(new ParagraphElement().setTextRun(new TextRun().setContent(text).setTextStyle(style))))
+            .setParagraphStyle(new ParagraphStyle().setNamedStyleType(styleType).setAlignment("START").setLineSpacing(115f)));
+    }
+
+    /** Tables nested deeper than the mask spells out. */
+    private StructuralElement nestedTable(int depth) {
+        List<StructuralElement> content = new ArrayList<>();
+        content.add(paragraph(depth == 1 ? "deep cell\n" : "cell " + depth + "\n", "NORMAL_TEXT", null));
+        if (depth > 1) content.add(nestedTable(depth - 1));
+        TableCell cell = new TableCell().setContent(content);
+        return new StructuralElement().setEndIndex(100 + depth)
+            .setTable(new Table().setRows(1).setColumns(1).setTableRows(List.of(new TableRow().setTableCells(List.of(cell)))));
+    }
+
+    // --- A minimal partial-response evaluator for masks like "a,b/c,d(e,f/g)" ---
+
+    /** Field name to sub-selection; a null sub-selection selects the whole field. */
+    private static final class Selection extends LinkedHashMap<String, Selection> {
+    }
+
+    private static Selection parseMask(String mask) {
+        int[] position = {0};
+        Selection selection = parseList(mask, position);
+        assertEquals(mask.length(), position[0], "Unbalanced mask: " + mask);
+        return selection;
+    }
+
+    private static Selection parseList(String mask, int[] position) {
+        Selection selection = new Selection();
+        parseItem(mask, position, selection);
+        while (position[0] < mask.length() && mask.charAt(position[0]) == ',') {
+            position[0]++;
+            parseItem(mask, position, selection);
+        }
+        return selection;
+    }
+
+    private static void parseItem(String mask, int[] position, Selection into) {
+        int start = position[0];
+        while (position[0] < mask.length() && "/(),".indexOf(mask.charAt(position[0])) < 0) position[0]++;
+        String name = mask.substring(start, position[0]);
+        Selection sub = null;
+        if (position[0] < mask.length() && mask.charAt(position[0]) == '/') {
+            position[0]++;
+            sub = new Selection();
+            parseItem(mask, position, sub);
+        } else if (position[0] < mask.length() && mask.charAt(position[0]) == '(') {
+            position[0]++;
+            sub = parseList(mask, position);
+            assertEquals(')', mask.charAt(position[0]++));
+        }
+        into.put(name, sub);
+    }
+
+    private static JsonObject project(JsonObject source, Selection selection) {
+        JsonObject result = new JsonObject();
+        for (Map.Entry<String, Selection> field : selection.entrySet()) {
+            JsonElement value = source.get(field.getKey());
+            if (value == null) continue;
+            result.add(field.getKey(), field.getValue() == null ? value : projectValue(value, field.getValue()));
+        }
+        return result;
+    }
+
+    private static JsonElement projectValue(JsonElement value, Selection selection) {
+        if (value.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            for (JsonElement item : value.getAsJsonArray()) {
+                array.add(projectValue(item, selection));
+            }
+            return array;
+        }
+        return value.isJsonObject() ? project(value.getAsJsonObject(), selection) : value;
+    }
+}
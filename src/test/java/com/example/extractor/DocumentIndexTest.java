@@ -0,0 +1,511 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.api.services.docs.v1.model.Body;
+import com.google.api.services.docs.v1.model.Bullet;
+import com.google.api.services.docs.v1.model.Dimension;
+import com.google.api.services.docs.v1.model.Document;
+import com.google.api.services.docs.v1.model.EmbeddedObject;
+import com.google.api.services.docs.v1.model.ImageProperties;
+import com.google.api.services.docs.v1.model.InlineObject;
+import com.google.api.services.docs.v1.model.InlineObjectElement;
+import com.google.api.services.docs.v1.model.InlineObjectProperties;
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.ParagraphStyle;
+import com.google.api.services.docs.v1.model.Size;
+import com.google.api.services.docs.v1.model.StructuralElement;
+import com.google.api.services.docs.v1.model.Table;
+import com.google.api.services.docs.v1.model.TableCell;
+import com.google.api.services.docs.v1.model.TableRow;
+import com.google.api.services.docs.v1.model.TextRun;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Compares {@link DocumentIndex} and the JSON rendered from it with the separate walks the extractor
+ * made before the index existed, which {@link LegacyWalk} reproduces.
+ */
+@ExtendWith(MockitoExtension.class)
+class DocumentIndexTest {
+
+    private static final String BUCKET_NAME = "test-bucket";
+
+    @Mock
+    private S3Client mockS3Client;
+
+    @Test
+    void testBuild_MatchesOldWalksOnDocumentWithEveryFeature() throws IOException {
+        // --- ARRANGE ---
+        DocumentBuilder builder = new DocumentBuilder();
+        List<StructuralElement> nestedCell = List.of(
+            builder.text("inner text", "NORMAL_TEXT"),
+            builder.text("References", "HEADING_1"),
+            builder.text("inner ref\u000B", "NORMAL_TEXT"));
+        List<StructuralElement> cell = List.of(
+            builder.text("cell text", "NORMAL_TEXT"),
+            builder.images(null, "id_cell"),
+            builder.text(" references \n", "HEADING_1"),
+            builder.text("cell ref 1\u000B", "NORMAL_TEXT"),
+            builder.images("cell ref 2", "id_cell_ref"),
+            builder.table(List.of(List.of(builder.text("table in cell references", "NORMAL_TEXT")))));
+        Document document = builder.document(List.of(
+            builder.text("Introduction", "HEADING_1"),
+            builder.images("The introduction, with a picture.", "id_intro"),
+            builder.images(null, "id_article"),
+            builder.bullet("A list item"),
+            builder.table(List.of(cell, List.of(builder.table(List.of(nestedCell))))),
+            builder.images(null, "id_pair_1", "id_pair_2"),
+            builder.text("\n", "NORMAL_TEXT"),
+            builder.images(null, "id_not_an_object"),
+            builder.text("REFERENCES", "HEADING_1"),
+            builder.text("ref 1\u000B\u000B", "NORMAL_TEXT"),
+            builder.images("ref 2", "id_ref"),
+            builder.table(List.of(List.of(builder.images("table in references", "id_ref_table")))),
+            builder.text("Introduction", "HEADING_1"),
+            builder.text("ref 3\n", "NORMAL_TEXT")));
+
+        // --- ACT & ASSERT ---
+        assertMatchesOldWalks(document);
+    }
+
+    @Test
+    void testBuild_MatchesOldWalksOnRandomDocuments() throws IOException {
+        for (long seed = 0; seed < 300; seed++) {
+            // --- ARRANGE ---
+            Document document = new DocumentBuilder().random(new Random(seed)).setTitle("Seed " + seed);
+
+            // --- ACT & ASSERT ---
+            assertMatchesOldWalks(document);
+        }
+    }
+
+    private void assertMatchesOldWalks(Document document) throws IOException {
+        String name = document.getTitle();
+        LegacyWalk legacy = new LegacyWalk(document);
+
+        DocumentIndex index = DocumentIndex.build(document);
+        StringWriter out = new StringWriter();
+        new GoogleDocExtractor(mockS3Client, BUCKET_NAME).extractContentAsJson(index, out, false);
+        JsonObject json = new Gson().fromJson(out.toString(), JsonObject.class);
+
+        assertEquals(legacy.introText, index.getIntroText(), name);
+        BitSet skipped = new BitSet();
+        legacy.indicesToRemove.forEach(skipped::set);
+        assertEquals(skipped, index.getSkippedBodyIndices(), name);
+        assertEquals(legacy.rendersImage, index.rendersImage(), name);
+        assertEquals(legacy.images, describeImages(index.getImages()), name);
+
+        assertEquals(legacy.introText != null ? legacy.introText : ".", json.get("article_info").getAsString(), name);
+        assertEquals(legacy.rendersImage, json.get("article_image").getAsString().endsWith("/image_001.jpg"), name);
+        assertEquals(legacy.rendered, describe(json.getAsJsonArray("document")), name);
+        if (legacy.rendersImage) {
+            assertEquals(legacy.articleImageObjectId, index.getArticleImageObjectId(), name);
+        }
+    }
+
+    private static List<String> describeImages(List<DocumentIndex.ImageRef> images) {
+        List<String> described = new ArrayList<>();
+        for (DocumentIndex.ImageRef image : images) {
+            described.add(image.objectId + " " + image.contentUri);
+        }
+        return described;
+    }
+
+    /** The parts of the rendered JSON that depend on the walk, in the form {@link LegacyWalk} produces. */
+    private static List<String> describe(JsonArray elements) {
+        List<String> described = new ArrayList<>();
+        for (JsonElement element : elements) {
+            JsonObject object = element.getAsJsonObject();
+            String type = object.get("type").getAsString();
+            if (type.equals("table")) {
+                List<String> rows = new ArrayList<>();
+                for (JsonElement row : object.getAsJsonArray("rows")) {
+                    List<String> cells = new ArrayList<>();
+                    for (JsonElement cell : row.getAsJsonObject().getAsJsonArray("cells")) {
+                        cells.add("cell" + describe(cell.getAsJsonObject().getAsJsonArray("content")));
+                    }
+                    rows.add("row" + cells);
+                }
+                described.add("table" + rows);
+                continue;
+            }
+            StringBuilder sb = new StringBuilder(type).append('/')
+                .append(object.has("styleType") ? object.get("styleType").getAsString() : null).append(':');
+            for (JsonElement item : object.getAsJsonArray("content")) {
+                JsonObject content = item.getAsJsonObject();
+                if (content.get("type").getAsString().equals("text")) {
+                    sb.append('|').append(content.get("value").getAsString());
+                } else {
+                    String url = content.get("url").getAsString();
+                    sb.append("|<").append(url.substring(url.lastIndexOf('/') + 1, url.length() - ".jpg".length()))
+                        .append(' ').append(content.get("objectId").getAsString()).append('>');
+                }
+            }
+            described.add(sb.toString());
+        }
+        return described;
+    }
+
+    /**
+     * The introduction, image pre-scan, image collection and rendering walks as the extractor made them
+     * before {@link DocumentIndex}, each over the whole body. Rendering is reduced to which elements are
+     * emitted, their text and their numbered images, and the trailing references paragraph.
+     */
+    private static final class LegacyWalk {
+        final Map<String, InlineObject> inlineObjectsMap;
+        final List<String> images = new ArrayList<>();
+        String introText;
+        List<Integer> indicesToRemove;
+        boolean rendersImage;
+        List<String> rendered;
+        String articleImageObjectId;
+        private int imageCounter = 0;
+
+        LegacyWalk(Document document) {
+            this.inlineObjectsMap = document.getInlineObjects();
+            List<StructuralElement> structuralElements = document.getBody().getContent();
+            collectImagesInOrder(structuralElements);
+            extractIntroductionAndGetIndicesToRemove(structuralElements);
+            rendersImage = containsRenderedImage(structuralElements, indicesToRemove);
+            rendered = processStructuralElements(structuralElements, indicesToRemove);
+        }
+
+        private void collectImagesInOrder(List<StructuralElement> elements) {
+            if (elements == null) return;
+            for (StructuralElement structuralElement : elements) {
+                if (structuralElement.getParagraph() != null) {
+                    for (ParagraphElement paraElement : structuralElement.getParagraph().getElements()) {
+                        if (paraElement.getInlineObjectElement() != null) {
+                            String objectId = paraElement.getInlineObjectElement().getInlineObjectId();
+                            if (objectId != null && inlineObjectsMap != null && inlineObjectsMap.containsKey(objectId)) {
+                                InlineObject inlineObject = inlineObjectsMap.get(objectId);
+                                if (inlineObject.getInlineObjectProperties() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject() != null && inlineObject.getInlineObjectProperties().getEmbeddedObject().getImageProperties() != null) {
+                                    String contentUri = inlineObject.getInlineObjectProperties().getEmbeddedObject().getImageProperties().getContentUri();
+                                    if (contentUri != null && !contentUri.isEmpty()) {
+                                        images.add(objectId + " " + contentUri);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                } else if (structuralElement.getTable() != null) {
+                    for (TableRow row : structuralElement.getTable().getTableRows()) {
+                        for (TableCell cell : row.getTableCells()) {
+                            collectImagesInOrder(cell.getContent());
+                        }
+                    }
+                }
+            }
+        }
+
+        private void extractIntroductionAndGetIndicesToRemove(List<StructuralElement> elements) {
+            indicesToRemove = new ArrayList<>();
+            for (int i = 0; i < elements.size(); i++) {
+                StructuralElement element = elements.get(i);
+                if (element.getParagraph() != null) {
+                    Paragraph p = element.getParagraph();
+                    if (p.getParagraphStyle() != null && "HEADING_1".equals(p.getParagraphStyle().getNamedStyleType())) {
+                        String text = extractTextFromParagraph(p);
+                        if ("Introduction".equalsIgnoreCase(text.trim())) {
+                            indicesToRemove.add(i);
+                            if (i + 1 < elements.size() && elements.get(i + 1).getParagraph() != null) {
+                                introText = extractTextFromParagraph(elements.get(i + 1).getParagraph());
+                                indicesToRemove.add(i + 1);
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean containsRenderedImage(List<StructuralElement> elements, List<Integer> indicesToSkip) {
+            if (elements == null) return false;
+            for (int i = 0; i < elements.size(); i++) {
+                if (indicesToSkip.contains(i)) continue;
+                StructuralElement structuralElement = elements.get(i);
+                Paragraph paragraph = structuralElement.getParagraph();
+                if (paragraph != null) {
+                    if (countImages(paragraph) > 0) return true;
+                    if (isHeadingWithText(paragraph, "References")) return false;
+                } else if (structuralElement.getTable() != null) {
+                    for (TableRow row : structuralElement.getTable().getTableRows()) {
+                        for (TableCell cell : row.getTableCells()) {
+                            if (containsRenderedImage(cell.getContent(), Collections.emptyList())) return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private List<String> processStructuralElements(List<StructuralElement> elements, List<Integer> indicesToSkip) {
+            List<String> out = new ArrayList<>();
+            boolean inReferencesSection = false;
+            StringBuilder referencesTextBuilder = new StringBuilder();
+
+            for (int i = 0; i < elements.size(); i++) {
+                if (indicesToSkip.contains(i)) continue;
+                StructuralElement structuralElement = elements.get(i);
+                Paragraph paragraph = structuralElement.getParagraph();
+
+                if (!inReferencesSection) {
+                    if (paragraph != null) {
+                        if (isHeadingWithText(paragraph, "References")) {
+                            inReferencesSection = true;
+                        }
+                        processParagraph(paragraph, out);
+                    } else if (structuralElement.getTable() != null) {
+                        processTable(structuralElement.getTable(), out);
+                    }
+                } else {
+                    if (paragraph != null) {
+                        referencesTextBuilder.append(getRawParagraphContent(paragraph)).append("\n");
+                    }
+                }
+            }
+
+            if (referencesTextBuilder.length() > 0) {
+                String rawReferences = referencesTextBuilder.toString();
+                String cleanedReferences = rawReferences.replaceAll("[\\n\\u000B]+", "\n").trim();
+                out.add("paragraph/NORMAL_TEXT:|" + cleanedReferences);
+            }
+            return out;
+        }
+
+        private void processTable(Table table, List<String> out) {
+            List<String> rows = new ArrayList<>();
+            for (TableRow row : table.getTableRows()) {
+                List<String> cells = new ArrayList<>();
+                for (TableCell cell : row.getTableCells()) {
+                    cells.add("cell" + processStructuralElements(cell.getContent(), Collections.emptyList()));
+                }
+                rows.add("row" + cells);
+            }
+            out.add("table" + rows);
+        }
+
+        private void processParagraph(Paragraph paragraph, List<String> out) {
+            if (!hasRenderedContent(paragraph)) {
+                int images = countImages(paragraph);
+                if (imageCounter == 0 && images > 0) articleImageObjectId = firstInlineObjectId(paragraph);
+                imageCounter += images;
+                return;
+            }
+            ParagraphStyle paragraphStyle = paragraph.getParagraphStyle();
+            StringBuilder sb = new StringBuilder(paragraph.getBullet() != null ? "listItem" : "paragraph").append('/')
+                .append(paragraphStyle != null ? paragraphStyle.getNamedStyleType() : null).append(':');
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getTextRun() != null) {
+                    String text = element.getTextRun().getContent();
+                    if (text != null && !text.equals("\n")) {
+                        sb.append('|').append(text);
+                    }
+                } else if (element.getInlineObjectElement() != null) {
+                    String objectId = element.getInlineObjectElement().getInlineObjectId();
+                    if (objectId != null && inlineObjectsMap != null && inlineObjectsMap.containsKey(objectId)) {
+                        int imageIndex = ++imageCounter;
+                        if (imageIndex == 1) {
+                            articleImageObjectId = objectId;
+                            continue;
+                        }
+                        sb.append("|<").append(String.format("image_%03d", imageIndex)).append(' ').append(objectId).append('>');
+                    }
+                }
+            }
+            out.add(sb.toString());
+        }
+
+        private boolean hasRenderedContent(Paragraph paragraph) {
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getTextRun() != null) {
+                    String text = element.getTextRun().getContent();
+                    if (text != null && !text.equals("\n")) return true;
+                }
+            }
+            int images = countImages(paragraph);
+            return imageCounter == 0 ? images > 1 : images > 0;
+        }
+
+        private int countImages(Paragraph paragraph) {
+            int images = 0;
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getInlineObjectElement() != null) {
+                    String objectId = element.getInlineObjectElement().getInlineObjectId();
+                    if (objectId != null && inlineObjectsMap != null && inlineObjectsMap.containsKey(objectId)) {
+                        images++;
+                    }
+                }
+            }
+            return images;
+        }
+
+        private String firstInlineObjectId(Paragraph paragraph) {
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getInlineObjectElement() == null) continue;
+                String objectId = element.getInlineObjectElement().getInlineObjectId();
+                if (objectId != null && inlineObjectsMap != null && inlineObjectsMap.containsKey(objectId)) return objectId;
+            }
+            return null;
+        }
+
+        private boolean isHeadingWithText(Paragraph paragraph, String headingText) {
+            return paragraph.getParagraphStyle() != null
+                && "HEADING_1".equals(paragraph.getParagraphStyle().getNamedStyleType())
+                && headingText.equalsIgnoreCase(extractTextFromParagraph(paragraph).trim());
+        }
+
+        private String extractTextFromParagraph(Paragraph paragraph) {
+            if (paragraph == null || paragraph.getElements() == null) return "";
+            StringBuilder sb = new StringBuilder();
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
+                    sb.append(element.getTextRun().getContent());
+                }
+            }
+            return sb.toString().replaceAll("[\\n\\u000B]", " ").trim();
+        }
+
+        private String getRawParagraphContent(Paragraph paragraph) {
+            if (paragraph == null || paragraph.getElements() == null) return "";
+            StringBuilder sb = new StringBuilder();
+            for (ParagraphElement element : paragraph.getElements()) {
+                if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
+                    sb.append(element.getTextRun().getContent());
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Builds documents whose inline objects are registered as they are placed; ids starting with
+     * {@code id_not} are left out of the document's inline objects.
+     */
+    private static final class DocumentBuilder {
+        private static final String[] HEADINGS = {
+            "Introduction", " introduction \n", "INTRODUCTION\u000B", "Introductions",
+            "References", "references\n", " REFERENCES ", "Reference list" };
+
+        private final Map<String, InlineObject> inlineObjects = new HashMap<>();
+        private int nextId = 0;
+
+        Document document(List<StructuralElement> body) {
+            return new Document().setDocumentId("doc_" + nextId).setTitle("Document " + nextId)
+                .setBody(new Body().setContent(body)).setInlineObjects(inlineObjects);
+        }
+
+        Document random(Random random) {
+            return document(randomList(random, 0));
+        }
+
+        StructuralElement text(String text, String styleType) {
+            return paragraph(styleType, new ParagraphElement().setTextRun(new TextRun().setContent(text)));
+        }
+
+        StructuralElement bullet(String text) {
+            StructuralElement element = text(text, "NORMAL_TEXT");
+            element.getParagraph().setBullet(new Bullet().setNestingLevel(1));
+            return element;
+        }
+
+        /** A paragraph of the given images, after the text if there is any. */
+        StructuralElement images(String text, String... objectIds) {
+            List<ParagraphElement> elements = new ArrayList<>();
+            if (text != null) elements.add(new ParagraphElement().setTextRun(new TextRun().setContent(text)));
+            for (String objectId : objectIds) {
+                elements.add(new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId(objectId)));
+                if (!objectId.startsWith("id_not")) inlineObjects.put(objectId, image("https://docs.google.com/img/" + objectId, true));
+            }
+            return new StructuralElement().setParagraph(new Paragraph().setElements(elements));
+        }
+
+        /** A table with one row per entry, each of those with one cell per element list. */
+        @SafeVarargs
+        final StructuralElement table(List<List<StructuralElement>>... rows) {
+            List<TableRow> tableRows = new ArrayList<>();
+            for (List<List<StructuralElement>> row : rows) {
+                List<TableCell> cells = new ArrayList<>();
+                for (List<StructuralElement> content : row) cells.add(new TableCell().setContent(content));
+                tableRows.add(new TableRow().setTableCells(cells));
+            }
+            return new StructuralElement().setTable(new Table().setTableRows(tableRows));
+        }
+
+        private StructuralElement paragraph(String styleType, ParagraphElement... elements) {
+            return new StructuralElement().setParagraph(new Paragraph()
+                .setElements(new ArrayList<>(List.of(elements)))
+                .setParagraphStyle(new ParagraphStyle().setNamedStyleType(styleType)));
+        }
+
+        private List<StructuralElement> randomList(Random random, int depth) {
+            List<StructuralElement> elements = new ArrayList<>();
+            int size = 2 + random.nextInt(depth == 0 ? 14 : 5);
+            for (int i = 0; i < size; i++) {
+                int kind = random.nextInt(depth < 2 ? 8 : 7);
+                switch (kind) {
+                    case 0, 1 -> {
+                        String text = "text " + (nextId++) + (random.nextBoolean() ? "\u000B" : "") + "\n";
+                        elements.add(random.nextInt(4) == 0 ? bullet(text) : text(text, random.nextBoolean() ? "NORMAL_TEXT" : "HEADING_2"));
+                    }
+                    case 2 -> elements.add(text("\n", "NORMAL_TEXT"));
+                    case 3, 4 -> elements.add(randomImages(random));
+                    case 5 -> elements.add(text(HEADINGS[random.nextInt(4)], random.nextInt(5) == 0 ? "HEADING_2" : "HEADING_1"));
+                    case 6 -> elements.add(text(HEADINGS[4 + random.nextInt(4)], random.nextInt(5) == 0 ? "NORMAL_TEXT" : "HEADING_1"));
+                    default -> {
+                        List<TableRow> rows = new ArrayList<>();
+                        for (int r = 1 + random.nextInt(2); r > 0; r--) {
+                            List<TableCell> cells = new ArrayList<>();
+                            for (int c = 1 + random.nextInt(2); c > 0; c--) cells.add(new TableCell().setContent(randomList(random, depth + 1)));
+                            rows.add(new TableRow().setTableCells(cells));
+                        }
+                        elements.add(new StructuralElement().setTable(new Table().setTableRows(rows)));
+                    }
+                }
+            }
+            return elements;
+        }
+
+        private StructuralElement randomImages(Random random) {
+            List<ParagraphElement> elements = new ArrayList<>();
+            if (random.nextBoolean()) elements.add(new ParagraphElement().setTextRun(new TextRun().setContent("caption " + (nextId++))));
+            for (int count = 1 + random.nextInt(2); count > 0; count--) {
+                int kind = random.nextInt(10);
+                String objectId = (kind == 0 ? "id_not_" : "id_") + (nextId++);
+                elements.add(new ParagraphElement().setInlineObjectElement(new InlineObjectElement().setInlineObjectId(objectId)));
+                // Some objects have no content URI: they are numbered but never uploaded
+                if (kind != 0) inlineObjects.put(objectId, image(kind == 1 ? null : "https://docs.google.com/img/" + objectId, random.nextBoolean()));
+            }
+            if (random.nextBoolean()) elements.add(new ParagraphElement().setTextRun(new TextRun().setContent("\n")));
+            return new StructuralElement().setParagraph(new Paragraph().setElements(elements));
+        }
+
+        private static InlineObject image(String contentUri, boolean sized) {
+            EmbeddedObject embeddedObject = new EmbeddedObject().setImageProperties(new ImageProperties().setContentUri(contentUri));
+            if (sized) {
+                embeddedObject.setSize(new Size().setWidth(new Dimension().setMagnitude(640.0)).setHeight(new Dimension().setMagnitude(480.0)));
+            }
+            return new InlineObject().setInlineObjectProperties(new InlineObjectProperties().setEmbeddedObject(embeddedObject));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.extractor;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.services.docs.v1.model.Document;
+
+class DocumentPipelineTest {
+
+    @Test
+    void testRun_AllStagesSeeEveryDocument() throws Exception {
+        // --- ARRANGE ---
+        List<String> docIds = IntStream.range(0, 50).mapToObj(i -> "doc_" + i).collect(Collectors.toList());
+        ConcurrentHashMap<String, String> written = new ConcurrentHashMap<>();
+
+        DocumentPipeline pipeline = new DocumentPipeline(2)
+            .addStage("fetch", 4, job -> job.document = new Document().setDocumentId(job.docId).setTitle("Title " + job.docId))
+            .addStage("extract", 2, job -> job.outputPath = job.document.getTitle())
+            .addStage("write", 3, job -> written.put(job.docId, job.outputPath));
+
+        // --- ACT ---
+        DocumentPipeline.PipelineSummary summary = pipeline.run(docIds);
+
+        // --- ASSERT ---
+        assertEquals(50, summary.getSucceeded().size());
+        assertTrue(summary.getFailed().isEmpty());
+        assertEquals(50, written.size());
+        assertEquals("Title doc_7", written.get("doc_7"));
+    }
+
+    @Test
+    void testRun_FailureIsIsolatedToOneDocument() throws Exception {
+        // --- ARRANGE ---
+        AtomicInteger uploads = new AtomicInteger();
+        DocumentPipeline pipeline = new DocumentPipeline(1)
+            .addStage("fetch", 2, job -> {
+                if (job.docId.equals("broken")) throw new IllegalStateException("404 Not Found");
+                job.document = new Document().setDocumentId(job.docId);
+            })
+            .addStage("images", 1, job -> uploads.incrementAndGet());
+
+        // --- ACT ---
+        DocumentPipeline.PipelineSummary summary = pipeline.run(List.of("a", "broken", "b", "c"));
+
+        // --- ASSERT ---
+        assertEquals(3, summary.getSucceeded().size());
+        assertEquals(3, uploads.get());
+        assertEquals("fetch: 404 Not Found", summary.getFailed().get("broken"));
+    }
+
+    @Test
+    void testRun_BatchStageGroupsDocumentsAndFailsThemIndividually() throws Exception {
+        // --- ARRANGE ---
+        List<String> docIds = IntStream.range(0, 25).mapToObj(i -> "doc_" + i).collect(Collectors.toList());
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        DocumentPipeline pipeline = new DocumentPipeline(4)
+            .addBatchStage("fetch", 1, 10, jobs -> {
+                batchSizes.add(jobs.size());
+                Map<DocumentPipeline.DocumentJob, Exception> failures = new HashMap<>();
+                for (DocumentPipeline.DocumentJob job : jobs) {
+                    if (job.docId.equals("doc_3")) {
+                        failures.put(job, new IllegalStateException("404 Not Found"));
+                    } else {
+                        job.document = new Document().setDocumentId(job.docId);
+                    }
+                }
+                return failures;
+            })
+            .addStage("extract", 2, job -> job.outputPath = job.document.getDocumentId());
+
+        // --- ACT ---
+        DocumentPipeline.PipelineSummary summary = pipeline.run(docIds);
+
+        // --- ASSERT ---
+        assertEquals(24, summary.getSucceeded().size());
+        assertEquals("fetch: 404 Not Found", summary.getFailed().get("doc_3"));
+        assertEquals(25, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+        assertTrue(batchSizes.size() < 25, "documents should be grouped, got batches " + batchSizes);
+    }
+
+    @Test
+    void testRun_ThrowingFailureListenerDoesNotStallThePipeline() throws Exception {
+        // --- ARRANGE ---
+        DocumentPipeline pipeline = new DocumentPipeline(1)
+            .addStage("fetch", 1, job -> {
+                if (job.docId.startsWith("broken")) throw new IllegalStateException("404 Not Found");
+                job.document = new Document().setDocumentId(job.docId);
+            })
+            .addStage("extract", 1, job -> job.outputPath = job.document.getDocumentId())
+            .onFailure((docId, stage, error) -> {
+                throw new IllegalStateException("lease store unavailable");
+            });
+
+        // --- ACT ---
+        DocumentPipeline.PipelineSummary summary = assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> pipeline.run(List.of("a", "broken_1", "b", "broken_2", "c")));
+
+        // --- ASSERT ---
+        assertEquals(List.of("a", "b", "c"), summary.getSucceeded());
+        assertEquals(2, summary.getFailed().size());
+    }
+
+    @Test
+    void testFailAfterwards_MovesDocumentsOutOfTheSucceededOnes() throws Exception {
+        // --- ARRANGE ---
+        RunMetrics metrics = new RunMetrics();
+        DocumentPipeline pipeline = new DocumentPipeline(2, metrics)
+            .addStage("extract", 2, job -> job.outputPath = job.docId + ".json");
+        DocumentPipeline.PipelineSummary summary = pipeline.run(List.of("a", "b", "c"));
+
+        // --- ACT ---
+        // The output of b could not be stored once its batch was flushed; d never ran in this pipeline
+        DocumentPipeline.PipelineSummary corrected = pipeline.failAfterwards(summary, "output",
+            Map.of("b", "500 Internal Error", "d", "500 Internal Error"));
+
+        // --- ASSERT ---
+        assertEquals(List.of("a", "c"), corrected.getSucceeded().stream().sorted().toList());
+        assertEquals(Map.of("b", "output: 500 Internal Error"), corrected.getFailed());
+        // Counters never go down: b passed every stage and then failed in the output
+        assertEquals(3, metrics.getCounter("documents.succeeded"));
+        assertEquals(1, metrics.getCounter("documents.failed.output"));
+    }
+}
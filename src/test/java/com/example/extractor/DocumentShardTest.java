@@ -0,0 +1,51 @@
+package com.example.extractor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class DocumentShardTest {
+
+    @Test
+    void testSelect_ShardsSplitTheListIntoDisjointStableParts() {
+        // --- ARRANGE ---
+        List<String> docIds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            docIds.add("1AbCdEfGhIjKlMnOpQrStUvWxYz_" + i);
+        }
+
+        // --- ACT ---
+        List<List<String>> shards = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            shards.add(DocumentShard.parse(i + "/4").select(docIds));
+        }
+
+        // --- ASSERT ---
+        Set<String> seen = new HashSet<>();
+        for (List<String> shard : shards) {
+            for (String docId : shard) {
+                assertTrue(seen.add(docId), docId + " is in two shards");
+            }
+            // IDs sharing a long prefix still spread evenly
+            assertTrue(shard.size() > 200 && shard.size() < 300, "shard of " + shard.size());
+        }
+        assertEquals(docIds.size(), seen.size());
+        // A document stays in its shard however the list around it changes
+        assertEquals(shards.get(2).subList(0, 1), DocumentShard.parse("3/4").select(List.of(shards.get(2).get(0), shards.get(0).get(0))));
+    }
+
+    @Test
+    void testParse_RejectsShardsOutsideTheirCount() {
+        assertEquals("2/4", DocumentShard.parse("2/4").toString());
+        assertThrows(IllegalArgumentException.class, () -> DocumentShard.parse("0/4"));
+        assertThrows(IllegalArgumentException.class, () -> DocumentShard.parse("5/4"));
+        assertThrows(IllegalArgumentException.class, () -> DocumentShard.parse("2"));
+        assertThrows(IllegalArgumentException.class, () -> DocumentShard.parse("a/b"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+class ExtractionServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final RunMetrics metrics = new RunMetrics();
+    private ExtractionServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void testJobs_WaitForResultThenLookUpStatusAndJson() throws Exception {
+        // --- ARRANGE ---
+        AtomicInteger processed = new AtomicInteger();
+        server = new ExtractionServer(docId -> {
+            processed.incrementAndGet();
+            if (docId.equals("missing")) throw new IOException("404 Not Found");
+            return new ExtractionServer.Result("{\"article_title\":\"" + docId + "\"}",
+                List.of(ImageTransferResult.success(1, "obj", "slug/" + docId + "/image_001.png", 10, 1)), docId + ".json");
+        }, metrics, 0, 2, 4, 100);
+        server.start();
+
+        // --- ACT ---
+        HttpResponse<String> waited = send("POST", "/jobs?docId=doc_a&wait=true", "");
+        JsonObject status = json(waited);
+        HttpResponse<String> result = send("GET", "/jobs/" + status.get("jobId").getAsString() + "/result", null);
+        HttpResponse<String> failed = send("POST", "/jobs?wait=true", "{\"docId\": \"missing\"}");
+
+        // --- ASSERT ---
+        assertEquals(200, waited.statusCode());
+        assertEquals("succeeded", status.get("status").getAsString());
+        assertEquals("doc_a.json", status.get("output").getAsString());
+        assertEquals("slug/doc_a/image_001.png", status.getAsJsonArray("images").get(0).getAsJsonObject().get("s3Key").getAsString());
+        assertEquals(200, result.statusCode());
+        assertEquals("{\"article_title\":\"doc_a\"}", result.body());
+        assertEquals("failed", json(failed).get("status").getAsString());
+        assertEquals("404 Not Found", json(failed).get("error").getAsString());
+        assertEquals(409, send("GET", "/jobs/" + json(failed).get("jobId").getAsString() + "/result", null).statusCode());
+        assertEquals(404, send("GET", "/jobs/job-999", null).statusCode());
+        assertEquals(400, send("POST", "/jobs", "").statusCode());
+        assertEquals(405, send("GET", "/jobs", null).statusCode());
+        assertEquals(2, processed.get());
+        assertTrue(send("GET", "/metrics", null).body().contains("extractor_server_jobs_succeeded_total 1\n"));
+    }
+
+    @Test
+    void testSubmit_RejectsJobsBeyondTheQueueAndReportsQueuedOnes() throws Exception {
+        // --- ARRANGE ---
+        // One worker blocked on its job and a queue of one: the third submission does not fit
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        server = new ExtractionServer(docId -> {
+            started.countDown();
+            release.await();
+            return new ExtractionServer.Result("{}", List.of(), null);
+        }, metrics, 0, 1, 1, 100);
+        server.start();
+
+        // --- ACT ---
+        HttpResponse<String> running = send("POST", "/jobs?docId=a", "");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        HttpResponse<String> queued = send("POST", "/jobs?docId=b", "");
+        HttpResponse<String> rejected = send("POST", "/jobs?docId=c", "");
+        JsonObject health = json(send("GET", "/health", null));
+        String queuedJob = json(queued).get("jobId").getAsString();
+        String queuedStatus = json(send("GET", "/jobs/" + queuedJob, null)).get("status").getAsString();
+        release.countDown();
+
+        // --- ASSERT ---
+        assertEquals(202, running.statusCode());
+        assertEquals("/jobs/" + json(running).get("jobId").getAsString(), running.headers().firstValue("Location").orElse(null));
+        assertEquals(202, queued.statusCode());
+        assertEquals("queued", queuedStatus);
+        assertEquals(503, rejected.statusCode());
+        assertEquals(1, health.get("running").getAsInt());
+        assertEquals(1, health.get("queued").getAsInt());
+        assertEquals(1, metrics.getCounter("server.jobs.rejected"));
+    }
+
+    @Test
+    void testRequests_NeedTheTokenAndAnOpenAddressNeedsOne() throws Exception {
+        // --- ARRANGE ---
+        server = new ExtractionServer(docId -> new ExtractionServer.Result("{}", List.of(), null), metrics,
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "s3cret", 1, 1, 100);
+        server.start();
+
+        // --- ACT ---
+        HttpResponse<String> anonymous = send("GET", "/health", null);
+        HttpResponse<String> wrongToken = send("GET", "/health", null, "Bearer guess");
+        HttpResponse<String> authorized = send("POST", "/jobs?docId=doc_a&wait=true", "", "Bearer s3cret");
+
+        // --- ASSERT ---
+        assertEquals(401, anonymous.statusCode());
+        assertEquals("Bearer", anonymous.headers().firstValue("WWW-Authenticate").orElse(null));
+        assertEquals(401, wrongToken.statusCode());
+        assertEquals(200, authorized.statusCode());
+        assertEquals("succeeded", json(authorized).get("status").getAsString());
+        assertThrows(IllegalArgumentException.class, () -> new ExtractionServer(docId -> null, metrics,
+            new InetSocketAddress(0), null, 1, 1, 100));
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        return send(method, path, body, null);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String authorization) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonObject json(HttpResponse<String> response) {
+        return new Gson().fromJson(response.body(), JsonObject.class);
+    }
+}
@@ -1,18 +1,43 @@
 package com.example.extractor;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.google.api.services.docs.v1.model.Body;
@@ -23,18 +48,29 @@ import com.google.api.services.docs.v1.model.ImageProperties;
 import com.google.api.services.docs.v1.model.InlineObject;
 import com.google.api.services.docs.v1.model.InlineObjectElement;
 import com.google.api.services.docs.v1.model.InlineObjectProperties;
+import com.google.api.services.docs.v1.model.Link;
 import com.google.api.services.docs.v1.model.Paragraph;
 import com.google.api.services.docs.v1.model.ParagraphElement;
 import com.google.api.services.docs.v1.model.ParagraphStyle;
 import com.google.api.services.docs.v1.model.Size;
 import com.google.api.services.docs.v1.model.StructuralElement;
 import com.google.api.services.docs.v1.model.TextRun;
+import com.google.api.services.docs.v1.model.TextStyle;
+import com.google.api.services.docs.v1.model.WeightedFontFamily;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 @ExtendWith(MockitoExtension.class)
 class GoogleDocExtractorTest {
@@ -42,10 +78,15 @@ class GoogleDocExtractorTest {
     private static final String BUCKET_NAME = "test-bucket";
     private static final String DOC_ID = "doc_id_123";
     private static final String DOC_TITLE = "Heart Disease - Completed";
+    // Serves the file: content URIs the tests point images at
+    private static final PooledHttpClient LOCAL_FILES = new LocalFileHttpClient();
     
     @Mock
     private S3Client mockS3Client;
 
+    @Mock
+    private S3AsyncClient mockS3AsyncClient;
+
     @Captor
     private ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor;
 
@@ -54,7 +95,7 @@ class GoogleDocExtractorTest {
     @BeforeEach
     void setUp() {
         // Instantiate the class under test before each test run
-        extractor = new GoogleDocExtractor(mockS3Client, BUCKET_NAME);
+        extractor = new GoogleDocExtractor(mockS3Client, BUCKET_NAME, 1, LOCAL_FILES);
     }
 
     @Test
@@ -112,22 +153,400 @@ class GoogleDocExtractorTest {
         assertEquals("https://url1.com\nhttps://url2.com", refValue); // Check for normalized newlines
     }
 
+    @Test
+    void testExtractContentAsJson_StreamingCompactMatchesPrettyOutput() throws IOException {
+        // --- ARRANGE ---
+        Document mockDocument = createMockDocument();
+        ByteArrayOutputStream compactOut = new ByteArrayOutputStream();
+
+        // --- ACT ---
+        extractor.extractContentAsJson(mockDocument, compactOut, false);
+        String compact = compactOut.toString(StandardCharsets.UTF_8);
+        String pretty = extractor.extractContentAsJson(mockDocument);
+
+        // --- ASSERT ---
+        assertFalse(compact.contains("\n"));
+        assertTrue(compact.startsWith("{\"article_title\":\"Heart Disease\","));
+        assertEquals(new Gson().fromJson(pretty, JsonObject.class), new Gson().fromJson(compact, JsonObject.class));
+    }
+
     @Test
     void testDownloadAndUploadImagesToS3() {
         // --- ARRANGE ---
         Document mockDocument = createMockDocument();
 
         // --- ACT ---
-        extractor.downloadAndUploadImagesToS3(mockDocument);
+        List<ImageTransferResult> results = extractor.downloadAndUploadImagesToS3(mockDocument);
 
         // --- ASSERT ---
         // Since the mock URLs don't exist, the download will fail and no S3 uploads will happen
         // This is expected behavior - the method should handle download failures gracefully
-        // We verify that the method completed without throwing exceptions
-        
-        // The test passes if no exceptions are thrown and the method completes
-        // In a real scenario with valid image URLs, putObject would be called
-        // For this test, we're verifying the error handling works correctly
+        // and report every image as a failed result instead of throwing
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).isSuccess());
+        assertNotNull(results.get(0).getError());
+        // Without the bytes the format, and so the extension, is unknown
+        assertEquals("heartdisease/doc_id_123/image_001", results.get(0).getS3Key());
+        assertEquals("heartdisease/doc_id_123/image_002", results.get(1).getS3Key());
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testDownloadAndUploadImagesToS3_ParallelKeepsDocumentOrder(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // Local files stand in for the Google content URIs so the downloads succeed
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        List<StructuralElement> elements = new ArrayList<>();
+        Map<String, InlineObject> inlineObjects = new HashMap<>();
+        for (int i = 1; i <= 12; i++) {
+            Path imageFile = tempDir.resolve("img" + i);
+            Files.write(imageFile, jpegBytes(i * 10));
+            elements.add(createImageParagraph("id_image_" + i));
+            inlineObjects.put("id_image_" + i, createInlineImageObject(imageFile.toUri().toString()));
+        }
+        document.setBody(new Body().setContent(elements));
+        document.setInlineObjects(inlineObjects);
+        GoogleDocExtractor parallelExtractor = new GoogleDocExtractor(mockS3Client, BUCKET_NAME, 4, LOCAL_FILES);
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+
+        // --- ACT ---
+        List<ImageTransferResult> results = parallelExtractor.downloadAndUploadImagesToS3(document);
+
+        // --- ASSERT ---
+        assertEquals(12, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ImageTransferResult result = results.get(i);
+            assertTrue(result.isSuccess());
+            assertEquals(i + 1, result.getIndex());
+            assertEquals("id_image_" + (i + 1), result.getObjectId());
+            assertEquals(String.format("heartdisease/doc_id_123/image_%03d.jpg", i + 1), result.getS3Key());
+            assertEquals((i + 1) * 10L, result.getBytes());
+            assertEquals("image/jpeg", result.getContentType());
+        }
+        verify(mockS3Client, times(12)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        assertEquals(BUCKET_NAME, putObjectRequestCaptor.getValue().bucket());
+        assertEquals("image/jpeg", putObjectRequestCaptor.getValue().contentType());
+    }
+
+    @Test
+    void testDownloadAndUploadImagesToS3_StoresDetectedFormatAndVariantsLinkedFromJson(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // A 600x400 PNG displayed 150pt (200px) wide: the 1x variant is 200px, 2x 400px, and 4x would not be smaller
+        Path png = tempDir.resolve("chart");
+        ImageIO.write(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        document.setBody(new Body().setContent(List.of(
+            createParagraph("Intro", "NORMAL_TEXT"), createImageParagraph("header"), createImageParagraph("chart"))));
+        document.setInlineObjects(Map.of(
+            "header", createInlineImageObject(tempDir.resolve("missing").toUri().toString()),
+            "chart", createInlineImageObjectWithDimensions(png.toUri().toString(), 150.0, 100.0)));
+        extractor.enableImageVariants(new ImageVariants(1, 2, 4));
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        DocumentIndex index = DocumentIndex.build(document);
+
+        // --- ACT ---
+        List<ImageTransferResult> results = extractor.downloadAndUploadImagesToS3(index, ImageTransferTracker.NONE);
+        StringWriter json = new StringWriter();
+        extractor.extractContentAsJson(index, json, false, results);
+
+        // --- ASSERT ---
+        ImageTransferResult chart = results.get(1);
+        assertEquals("heartdisease/doc_id_123/image_002.png", chart.getS3Key());
+        assertEquals("image/png", chart.getContentType());
+        assertEquals(List.of(200, 400), chart.getVariants().stream().map(ImageTransferResult.Variant::getWidth).toList());
+        assertEquals("heartdisease/doc_id_123/image_002_w200.png", chart.getVariants().get(0).getS3Key());
+        assertEquals(133, chart.getVariants().get(0).getHeight());
+        verify(mockS3Client, times(3)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        assertTrue(putObjectRequestCaptor.getAllValues().stream().allMatch(request -> "image/png".equals(request.contentType())));
+
+        JsonObject root = new Gson().fromJson(json.toString(), JsonObject.class);
+        // The header image failed to transfer, so it keeps the URL it always had and lists no variants
+        assertEquals("/api/images/heartdisease/doc_id_123/image_001.jpg", root.get("article_image").getAsString());
+        assertFalse(root.has("article_image_variants"));
+        JsonArray body = root.getAsJsonArray("document");
+        JsonObject image = body.get(body.size() - 1).getAsJsonObject().getAsJsonArray("content").get(0).getAsJsonObject();
+        assertEquals("/api/images/heartdisease/doc_id_123/image_002.png", image.get("url").getAsString());
+        JsonArray variants = image.getAsJsonArray("variants");
+        assertEquals(2, variants.size());
+        assertEquals("/api/images/heartdisease/doc_id_123/image_002_w400.png", variants.get(1).getAsJsonObject().get("url").getAsString());
+        assertEquals(267, variants.get(1).getAsJsonObject().get("height").getAsInt());
+    }
+
+    @Test
+    void testDownloadAndUploadImagesToS3_ImageWhoseVariantsCannotBeMadeKeepsTheOriginal(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // A PNG cut short: its header names the format, but ImageIO fails to decode the pixels
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), "png", png);
+        Path broken = tempDir.resolve("broken");
+        Files.write(broken, Arrays.copyOf(png.toByteArray(), 100));
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        document.setBody(new Body().setContent(List.of(createImageParagraph("broken"))));
+        document.setInlineObjects(Map.of(
+            "broken", createInlineImageObjectWithDimensions(broken.toUri().toString(), 150.0, 100.0)));
+        RunMetrics metrics = new RunMetrics();
+        extractor.enableMetrics(metrics);
+        extractor.enableImageVariants(new ImageVariants(1, 2));
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+
+        // --- ACT ---
+        List<ImageTransferResult> results = extractor.downloadAndUploadImagesToS3(DocumentIndex.build(document), ImageTransferTracker.NONE);
+
+        // --- ASSERT ---
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("heartdisease/doc_id_123/image_001.png", results.get(0).getS3Key());
+        assertTrue(results.get(0).getVariants().isEmpty());
+        assertEquals(1, metrics.getCounter("image.variants.failed"));
+        verify(mockS3Client, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testTransferImagesAsync_AsyncClientKeepsDocumentOrderAndBoundsImagesInFlight(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Document document = createDocumentWithLocalImages(tempDir, 12);
+        GoogleDocExtractor asyncExtractor = GoogleDocExtractor.withAsyncClient(mockS3AsyncClient, BUCKET_NAME, 4, LOCAL_FILES);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        // Each upload completes later on another thread, like the SDK's event loop would
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return PutObjectResponse.builder().eTag("etag").build();
+            }, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+        });
+
+        // --- ACT ---
+        CompletableFuture<List<ImageTransferResult>> future = asyncExtractor.transferImagesAsync(DocumentIndex.build(document), ImageTransferTracker.NONE);
+        List<ImageTransferResult> results = future.join();
+
+        // --- ASSERT ---
+        assertEquals(12, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ImageTransferResult result = results.get(i);
+            assertTrue(result.isSuccess());
+            assertEquals(String.format("heartdisease/doc_id_123/image_%03d.jpg", i + 1), result.getS3Key());
+            assertEquals((i + 1) * 10L, result.getBytes());
+            assertEquals("image/jpeg", result.getContentType());
+        }
+        assertTrue(maxInFlight.get() <= 4, "max in flight " + maxInFlight.get());
+        verify(mockS3AsyncClient, times(12)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        assertEquals(BUCKET_NAME, putObjectRequestCaptor.getValue().bucket());
+    }
+
+    @Test
+    void testTransferImagesAsync_BothClientsReportFailuresAsResults(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // One image in flight at a time, so the stubbed answers are used in document order
+        Document document = createDocumentWithLocalImages(tempDir, 2);
+        GoogleDocExtractor syncExtractor = new GoogleDocExtractor(mockS3Client, BUCKET_NAME, 1, LOCAL_FILES);
+        GoogleDocExtractor asyncExtractor = GoogleDocExtractor.withAsyncClient(mockS3AsyncClient, BUCKET_NAME, 1, LOCAL_FILES);
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build())
+            .thenThrow(S3Exception.builder().statusCode(500).message("boom").build());
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("etag").build()))
+            .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(500).message("boom").build()));
+
+        // --- ACT ---
+        // Either client can be joined through the future or called through the blocking method
+        List<ImageTransferResult> syncResults = syncExtractor.transferImagesAsync(DocumentIndex.build(document), ImageTransferTracker.NONE).join();
+        List<ImageTransferResult> asyncResults = asyncExtractor.downloadAndUploadImagesToS3(document);
+
+        // --- ASSERT ---
+        for (List<ImageTransferResult> results : List.of(syncResults, asyncResults)) {
+            assertEquals(2, results.size());
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(1).getError().contains("boom"), results.get(1).getError());
+        }
+    }
+
+    @Test
+    void testDownloadAndUploadImagesToS3_DeduplicatesUnchangedAndRepeatedImages(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // Two inline objects share the same bytes, a third one is different
+        Path logo = Files.write(tempDir.resolve("logo"), new byte[] {1, 2, 3});
+        Path chart = Files.write(tempDir.resolve("chart"), new byte[] {4, 5, 6, 7});
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        document.setBody(new Body().setContent(List.of(
+            createImageParagraph("logo_1"), createImageParagraph("chart"), createImageParagraph("logo_2"))));
+        document.setInlineObjects(Map.of(
+            "logo_1", createInlineImageObject(logo.toUri().toString()),
+            "chart", createInlineImageObject(chart.toUri().toString()),
+            "logo_2", createInlineImageObject(logo.toUri().toString())));
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        when(mockS3Client.copyObject(any(CopyObjectRequest.class)))
+            .thenReturn(CopyObjectResponse.builder().copyObjectResult(CopyObjectResult.builder().eTag("etag").build()).build());
+
+        try (ImageManifest manifest = ImageManifest.open(tempDir.resolve("manifest.tsv"))) {
+            extractor.enableDeduplication(manifest, null);
+
+            // --- ACT ---
+            List<ImageTransferResult> firstRun = extractor.downloadAndUploadImagesToS3(document);
+            List<ImageTransferResult> secondRun = extractor.downloadAndUploadImagesToS3(document);
+
+            // --- ASSERT ---
+            // First run: the logo and the chart are uploaded, the repeated logo is copied server-side
+            assertFalse(firstRun.get(0).isDeduplicated());
+            assertFalse(firstRun.get(1).isDeduplicated());
+            assertTrue(firstRun.get(2).isDeduplicated());
+            // Second run: every key already holds identical content
+            assertTrue(secondRun.stream().allMatch(ImageTransferResult::isDeduplicated));
+            verify(mockS3Client, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+            verify(mockS3Client, times(1)).copyObject(any(CopyObjectRequest.class));
+        }
+    }
+
+    @Test
+    void testDownloadAndUploadImagesToS3_ImageCacheServesRepeatedRunsFromDisk(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path logo = Files.write(tempDir.resolve("logo"), jpegBytes(30));
+        Path chart = Files.write(tempDir.resolve("chart"), jpegBytes(40));
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        document.setBody(new Body().setContent(List.of(createImageParagraph("logo"), createImageParagraph("chart"))));
+        document.setInlineObjects(Map.of(
+            "logo", createInlineImageObject(logo.toUri().toString()),
+            "chart", createInlineImageObjectWithDimensions(chart.toUri().toString(), 150.0, 100.0)));
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        RunMetrics metrics = new RunMetrics();
+        extractor.enableMetrics(metrics);
+        extractor.enableImageCache(new ImageCache(tempDir.resolve("cache"), 1024 * 1024));
+
+        // --- ACT ---
+        List<ImageTransferResult> firstRun = extractor.downloadAndUploadImagesToS3(document);
+        // A later fetch signs new content URIs, which no longer reach the old bytes
+        Files.delete(logo);
+        Files.delete(chart);
+        document.setInlineObjects(new HashMap<>(Map.of(
+            "logo", createInlineImageObject(tempDir.resolve("logo-resigned").toUri().toString()),
+            "chart", createInlineImageObjectWithDimensions(tempDir.resolve("chart-resigned").toUri().toString(), 150.0, 100.0))));
+        List<ImageTransferResult> secondRun = extractor.downloadAndUploadImagesToS3(document);
+        // Resizing the chart changes its fingerprint, so only the logo is still cached
+        document.getInlineObjects().put("chart",
+            createInlineImageObjectWithDimensions(tempDir.resolve("chart-resigned").toUri().toString(), 300.0, 200.0));
+        List<ImageTransferResult> thirdRun = extractor.downloadAndUploadImagesToS3(document);
+
+        // --- ASSERT ---
+        assertTrue(firstRun.stream().allMatch(ImageTransferResult::isSuccess));
+        assertTrue(secondRun.stream().allMatch(ImageTransferResult::isSuccess));
+        assertEquals(30L, secondRun.get(0).getBytes());
+        assertEquals(40L, secondRun.get(1).getBytes());
+        assertTrue(thirdRun.get(0).isSuccess());
+        assertFalse(thirdRun.get(1).isSuccess());
+        assertEquals(3, metrics.getCounter("image.cache.hits"));
+        assertEquals(3, metrics.getCounter("image.cache.misses"));
+        // Readers' links are gone once the uploads are done
+        try (Stream<Path> files = Files.list(tempDir.resolve("cache"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testExtractContentAsJson_BlockHashesIgnoreIndentationAndFollowEdits() throws IOException {
+        // --- ARRANGE ---
+        Document document = createMockDocument();
+        DocumentIndex index = DocumentIndex.build(document);
+        List<BlockDelta.Block> prettyBlocks = new ArrayList<>();
+        List<BlockDelta.Block> compactBlocks = new ArrayList<>();
+        List<BlockDelta.Block> editedBlocks = new ArrayList<>();
+
+        // --- ACT ---
+        StringWriter pretty = new StringWriter();
+        extractor.extractContentAsJson(index, pretty, true, List.of(), prettyBlocks);
+        extractor.extractContentAsJson(index, new StringWriter(), false, List.of(), compactBlocks);
+        document.getBody().getContent().set(3, createParagraph("An edited paragraph.", "NORMAL_TEXT"));
+        extractor.extractContentAsJson(DocumentIndex.build(document), new StringWriter(), true, List.of(), editedBlocks);
+
+        // --- ASSERT ---
+        // Every entry of the document array carries the hash of its block
+        JsonArray body = new Gson().fromJson(pretty.toString(), JsonObject.class).getAsJsonArray("document");
+        assertEquals(body.size(), prettyBlocks.size());
+        for (int i = 0; i < body.size(); i++) {
+            assertEquals(prettyBlocks.get(i).getHash(), body.get(i).getAsJsonObject().get("hash").getAsString());
+        }
+        assertEquals(prettyBlocks.stream().map(BlockDelta.Block::getHash).toList(),
+            compactBlocks.stream().map(BlockDelta.Block::getHash).toList());
+        // Only the edited paragraph, the first block, hashes differently
+        assertFalse(prettyBlocks.get(0).getHash().equals(editedBlocks.get(0).getHash()));
+        for (int i = 1; i < prettyBlocks.size(); i++) {
+            assertEquals(prettyBlocks.get(i).getHash(), editedBlocks.get(i).getHash());
+        }
+    }
+
+    @Test
+    void testExtractContentAsJson_StyleDictionaryMergesRunsAndListsEachStyleOnce() throws IOException {
+        // --- ARRANGE ---
+        TextStyle bold = new TextStyle().setBold(true);
+        TextStyle link = new TextStyle().setLink(new Link().setUrl("https://example.com"))
+            .setWeightedFontFamily(new WeightedFontFamily().setFontFamily("Arial"));
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        List<StructuralElement> elements = new ArrayList<>();
+        elements.add(createStyledParagraph(run("Bold ", bold), run("and bold ", bold), run("plain ", null), run("link", link)));
+        elements.add(createStyledParagraph(run("more link", link), run(" then ", null), run("bold", bold)));
+        document.setBody(new Body().setContent(elements));
+        extractor.enableStyleDictionary();
+        List<BlockDelta.Block> blocks = new ArrayList<>();
+        List<BlockDelta.Block> renumberedBlocks = new ArrayList<>();
+
+        // --- ACT ---
+        StringWriter out = new StringWriter();
+        extractor.extractContentAsJson(DocumentIndex.build(document), out, false, List.of(), blocks);
+        // A new style in front of the others moves every style one place down the dictionary
+        elements.set(0, createStyledParagraph(run("Italic ", new TextStyle().setItalic(true)), run("Bold and bold plain link", bold)));
+        extractor.extractContentAsJson(DocumentIndex.build(document), new StringWriter(), false, List.of(), renumberedBlocks);
+
+        // --- ASSERT ---
+        JsonObject json = new Gson().fromJson(out.toString(), JsonObject.class);
+        JsonArray styles = json.getAsJsonArray("styles");
+        assertEquals(2, styles.size());
+        assertTrue(styles.get(0).getAsJsonObject().get("bold").getAsBoolean());
+        assertEquals("Arial", styles.get(1).getAsJsonObject().get("fontFamily").getAsString());
+
+        JsonArray first = json.getAsJsonArray("document").get(0).getAsJsonObject().getAsJsonArray("content");
+        assertEquals(3, first.size());
+        assertEquals("Bold and bold ", first.get(0).getAsJsonObject().get("value").getAsString());
+        assertEquals(0, first.get(0).getAsJsonObject().get("style").getAsInt());
+        assertFalse(first.get(1).getAsJsonObject().has("style"));
+        assertEquals(1, first.get(2).getAsJsonObject().get("style").getAsInt());
+        JsonArray second = json.getAsJsonArray("document").get(1).getAsJsonObject().getAsJsonArray("content");
+        assertEquals(1, second.get(0).getAsJsonObject().get("style").getAsInt());
+        assertEquals(0, second.get(2).getAsJsonObject().get("style").getAsInt());
+
+        // The hash covers the style itself, not its position in the dictionary
+        assertEquals(blocks.get(1).getHash(), renumberedBlocks.get(1).getHash());
+    }
+
+    /**
+     * A document of {@code count} JPEG images backed by local files of 10, 20, 30... bytes, so the downloads succeed.
+     */
+    private Document createDocumentWithLocalImages(Path dir, int count) throws IOException {
+        Document document = new Document().setDocumentId(DOC_ID).setTitle(DOC_TITLE);
+        List<StructuralElement> elements = new ArrayList<>();
+        Map<String, InlineObject> inlineObjects = new HashMap<>();
+        for (int i = 1; i <= count; i++) {
+            Path imageFile = dir.resolve("img" + i);
+            Files.write(imageFile, jpegBytes(i * 10));
+            elements.add(createImageParagraph("id_image_" + i));
+            inlineObjects.put("id_image_" + i, createInlineImageObject(imageFile.toUri().toString()));
+        }
+        document.setBody(new Body().setContent(elements));
+        document.setInlineObjects(inlineObjects);
+        return document;
+    }
+
+    /** {@code length} bytes starting with the JPEG magic number, which is all format detection looks at. */
+    private static byte[] jpegBytes(int length) {
+        byte[] bytes = new byte[length];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        bytes[2] = (byte) 0xFF;
+        return bytes;
     }
 
     /**
@@ -182,6 +601,17 @@ class GoogleDocExtractorTest {
         return new StructuralElement().setParagraph(paragraph);
     }
     
+    private static ParagraphElement run(String text, TextStyle style) {
+        return new ParagraphElement().setTextRun(new TextRun().setContent(text).setTextStyle(style));
+    }
+
+    private StructuralElement createStyledParagraph(ParagraphElement... runs) {
+        Paragraph paragraph = new Paragraph()
+            .setElements(List.of(runs))
+            .setParagraphStyle(new ParagraphStyle().setNamedStyleType("NORMAL_TEXT"));
+        return new StructuralElement().setParagraph(paragraph);
+    }
+
     private StructuralElement createImageParagraph(String objectId) {
         Paragraph paragraph = new Paragraph()
             .setElements(List.of(
@@ -211,4 +641,28 @@ class GoogleDocExtractorTest {
                 )
             );
     }
-}
\ No newline at end of file
+
+    /** Reads {@code file:} URIs from disk, where the real client only speaks HTTP. */
+    private static final class LocalFileHttpClient extends PooledHttpClient {
+        LocalFileHttpClient() {
+            super(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+        }
+
+        @Override
+        public Download open(URI uri) throws IOException {
+            if (!"file".equals(uri.getScheme())) return super.open(uri);
+            Path path = Paths.get(uri);
+            return new Download(Files.newInputStream(path), Files.size(path));
+        }
+
+        @Override
+        public CompletableFuture<Path> download(URI uri, Path target) {
+            if (!"file".equals(uri.getScheme())) return super.download(uri, target);
+            try {
+                return CompletableFuture.completedFuture(Files.copy(Paths.get(uri), target, StandardCopyOption.REPLACE_EXISTING));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+}
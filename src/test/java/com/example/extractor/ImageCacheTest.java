@@ -0,0 +1,59 @@
+package com.example.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageCacheTest {
+
+    @Test
+    void testCommit_EvictsLeastRecentlyUsedImagesBeyondTheSizeLimit(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        ImageCache cache = new ImageCache(tempDir, 250);
+        store(cache, "a", 100);
+        store(cache, "b", 100);
+
+        // --- ACT ---
+        // Reading "a" makes "b" the least recently used, so "c" pushes out "b"
+        Files.delete(cache.pin("a"));
+        Path pinned = cache.store("c", new ByteArrayInputStream(new byte[100]));
+
+        // --- ASSERT ---
+        assertNotNull(pinned);
+        assertNull(cache.pin("b"));
+        assertEquals(200, cache.getTotalBytes());
+        assertEquals(1, cache.getEvictionCount());
+        // A restarted cache finds the entries in the same order
+        ImageCache reopened = new ImageCache(tempDir, 250);
+        assertEquals(200, reopened.getTotalBytes());
+        Path a = reopened.pin("a");
+        assertArrayEquals(new byte[100], Files.readAllBytes(a));
+    }
+
+    @Test
+    void testCommit_ImageLargerThanTheCacheIsStillReadable(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        ImageCache cache = new ImageCache(tempDir, 10);
+        byte[] image = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+
+        // --- ACT ---
+        Path pinned = cache.store("big", new ByteArrayInputStream(image));
+
+        // --- ASSERT ---
+        assertArrayEquals(image, Files.readAllBytes(pinned));
+        assertNull(cache.pin("big"));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    private static void store(ImageCache cache, String key, int size) throws IOException {
+        Files.delete(cache.store(key, new ByteArrayInputStream(new byte[size])));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class ImageDeduplicatorTest {
+
+    private static final String BUCKET_NAME = "test-bucket";
+
+    @Mock
+    private S3Client mockS3Client;
+
+    @Test
+    void testStore_KeyWhoseContentWasReplacedIsNotACopySource(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("put-etag").build());
+        try (ImageManifest manifest = ImageManifest.open(tempDir.resolve("manifest.tsv"))) {
+            ImageDeduplicator deduplicator = new ImageDeduplicator(mockS3Client, BUCKET_NAME,
+                new S3StreamingUploader(mockS3Client, BUCKET_NAME), manifest, null);
+            ImageDeduplicator.StoredImage original = deduplicator.store("doc/image_003.png", "image/png", content("logo"));
+            // An image inserted before it shifts the key onto other content
+            deduplicator.store("doc/image_003.png", "image/png", content("chart"));
+
+            // --- ACT ---
+            ImageDeduplicator.StoredImage shifted = deduplicator.store("doc/image_004.png", "image/png", content("logo"));
+
+            // --- ASSERT ---
+            assertEquals(ImageDeduplicator.Outcome.UPLOADED, shifted.getOutcome());
+            verify(mockS3Client, never()).copyObject(any(CopyObjectRequest.class));
+            verify(mockS3Client, times(3)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+            assertEquals("doc/image_004.png", manifest.findByHash(original.getSha256()).getKey());
+        }
+    }
+
+    @Test
+    void testFindByHash_ForgetsKeyReassignedOnReload(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path path = tempDir.resolve("manifest.tsv");
+        try (ImageManifest manifest = ImageManifest.open(path)) {
+            manifest.record("doc/image_003.png", "h1", "etag-1", 4);
+            manifest.record("doc/image_003.png", "h2", "etag-2", 5);
+        }
+
+        // --- ACT ---
+        try (ImageManifest reloaded = ImageManifest.open(path)) {
+
+            // --- ASSERT ---
+            assertNull(reloaded.findByHash("h1"));
+            assertEquals("doc/image_003.png", reloaded.findByHash("h2").getKey());
+        }
+    }
+
+    @Test
+    void testRecord_AfterATornLastLineIsKeptOnReload(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        // An earlier run died while writing its second record
+        Path path = tempDir.resolve("manifest.tsv");
+        Files.writeString(path, "doc/image_001.png\th1\tetag-1\t4\ndoc/image_002.png\th2\tet", StandardCharsets.UTF_8);
+
+        // --- ACT ---
+        try (ImageManifest manifest = ImageManifest.open(path)) {
+            manifest.record("doc/image_003.png", "h3", "etag-3", 6);
+        }
+
+        // --- ASSERT ---
+        try (ImageManifest reloaded = ImageManifest.open(path)) {
+            assertEquals(2, reloaded.size());
+            assertEquals("h1", reloaded.findByKey("doc/image_001.png").getSha256());
+            assertNull(reloaded.findByKey("doc/image_002.png"));
+            assertEquals("etag-3", reloaded.findByKey("doc/image_003.png").getETag());
+        }
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.extractor;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+
+class ImageVariantsTest {
+
+    @Test
+    void testDetect_RecognisesFormatsByMagicBytesAndLeavesTheStreamIntact() throws IOException {
+        byte[] gif = {'G', 'I', 'F', '8', '9', 'a', 1, 0, 1, 0};
+        byte[] webp = {'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P'};
+        byte[] wav = {'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'A', 'V', 'E'};
+
+        assertEquals(ImageFormat.JPEG, ImageFormat.detect(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0}, 4));
+        assertEquals(ImageFormat.GIF, ImageFormat.detect(gif, gif.length));
+        assertEquals(ImageFormat.WEBP, ImageFormat.detect(webp, webp.length));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(wav, wav.length));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(new byte[0], 0));
+
+        PushbackInputStream stream = new PushbackInputStream(new ByteArrayInputStream(gif), ImageFormat.HEADER_BYTES);
+        assertEquals(ImageFormat.GIF, ImageFormat.detect(stream));
+        assertArrayEquals(gif, stream.readAllBytes());
+    }
+
+    @Test
+    void testTargetWidths_OnlyWidthsSmallerThanTheOriginal() {
+        ImageVariants variants = new ImageVariants(2, 1, 1.5);
+
+        // 300pt is 400px at 1x
+        assertEquals(List.of(400, 600, 800), variants.targetWidths(300, 2000));
+        assertEquals(List.of(400, 600), variants.targetWidths(300, 800));
+        assertEquals(List.of(), variants.targetWidths(300, 400));
+        assertEquals(List.of(), variants.targetWidths(0, 2000));
+    }
+
+    @Test
+    void testRender_KeepsAspectRatioAndFormat(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path jpeg = tempDir.resolve("photo");
+        ImageIO.write(new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB), "jpg", jpeg.toFile());
+        ImageVariants variants = new ImageVariants(1, 2);
+
+        // --- ACT ---
+        List<ImageVariants.Rendition> renditions = variants.render(jpeg, ImageFormat.detect(jpeg), 225);
+        List<ImageVariants.Rendition> animated = variants.render(jpeg, ImageFormat.GIF, 225);
+
+        // --- ASSERT ---
+        assertEquals(2, renditions.size());
+        assertEquals(300, renditions.get(0).getWidth());
+        assertEquals(225, renditions.get(0).getHeight());
+        assertEquals(600, renditions.get(1).getWidth());
+        assertEquals(450, renditions.get(1).getHeight());
+        for (ImageVariants.Rendition rendition : renditions) {
+            assertEquals(ImageFormat.JPEG, ImageFormat.detect(rendition.getData(), rendition.getData().length));
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(rendition.getData()));
+            assertEquals(rendition.getWidth(), decoded.getWidth());
+        }
+        assertTrue(animated.isEmpty());
+        assertEquals("a/b/image_001_w300.jpg", ImageVariants.variantKey("a/b/image_001", 300, ImageFormat.JPEG));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class LazyClientTest {
+
+    @Test
+    void testGet_BuildsOnFirstUseOnlyAndClosesWhatWasBuilt() throws Exception {
+        // --- ARRANGE ---
+        AtomicInteger built = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        LazyClient<AutoCloseable> client = new LazyClient<>("test client", () -> {
+            built.incrementAndGet();
+            return closed::incrementAndGet;
+        });
+        LazyClient<AutoCloseable> unused = new LazyClient<>("unused client", () -> {
+            throw new AssertionError("An unused client must not be built");
+        });
+
+        // --- ACT ---
+        assertFalse(client.isCreated());
+        AutoCloseable first = client.get();
+        AutoCloseable second = client.get();
+        client.close();
+        unused.close();
+
+        // --- ASSERT ---
+        assertSame(first, second);
+        assertTrue(client.isCreated());
+        assertEquals(1, built.get());
+        assertEquals(1, closed.get());
+        assertFalse(unused.isCreated());
+    }
+
+    @Test
+    void testGet_RemembersNullAndFailures() {
+        // --- ARRANGE ---
+        AtomicInteger attempts = new AtomicInteger();
+        LazyClient<Object> unconfigured = new LazyClient<>("unconfigured client", () -> {
+            attempts.incrementAndGet();
+            return null;
+        });
+        LazyClient<Object> broken = new LazyClient<>("broken client", () -> {
+            attempts.incrementAndGet();
+            throw new IOException("credentials.json not found");
+        });
+
+        // --- ACT & ASSERT ---
+        assertNull(unconfigured.get());
+        assertNull(unconfigured.get());
+        IllegalStateException first = assertThrows(IllegalStateException.class, broken::get);
+        IllegalStateException second = assertThrows(IllegalStateException.class, broken::get);
+        assertTrue(first.getMessage().contains("credentials.json not found"));
+        assertSame(first.getCause(), second.getCause());
+        assertEquals(2, attempts.get());
+    }
+}
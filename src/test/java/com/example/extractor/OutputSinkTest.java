@@ -0,0 +1,198 @@
+package com.example.extractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class OutputSinkTest {
+
+    @Mock
+    private S3Client mockS3Client;
+
+    /** Stands in for the extractor: a small document, pretty-printed across several lines when asked. */
+    private static OutputSink.Content document(String docId) {
+        return (out, pretty) -> out.write(pretty ? "{\n  \"id\": \"" + docId + "\"\n}" : "{\"id\":\"" + docId + "\"}");
+    }
+
+    @Test
+    void testNdjson_StoresBatchesReadableBeforeCloseAndReportsOnlyStoredDocuments(@TempDir Path tempDir) throws Exception {
+        // --- ARRANGE ---
+        Path file = tempDir.resolve("out/documents.ndjson.gz");
+        List<String> stored = new ArrayList<>();
+        NdjsonOutputSink sink = new NdjsonOutputSink(file, 4, false);
+
+        // --- ACT ---
+        // Ten workers writing at once: two full batches are stored, two documents wait for the next one
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Long>> writes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String docId = "doc" + i;
+                writes.add(executor.submit(() -> sink.write(docId, document(docId), location -> {
+                    synchronized (stored) {
+                        stored.add(location);
+                    }
+                })));
+            }
+            for (Future<Long> write : writes) {
+                assertEquals(13, write.get());
+            }
+        }
+        List<String> linesBeforeClose = readLines(file);
+        int storedBeforeClose = stored.size();
+        sink.close();
+
+        // --- ASSERT ---
+        assertEquals(8, linesBeforeClose.size());
+        assertEquals(8, storedBeforeClose);
+        List<String> lines = readLines(file);
+        assertEquals(10, lines.size());
+        assertEquals(10, lines.stream().map(line -> new Gson().fromJson(line, JsonObject.class).get("id").getAsString()).distinct().count());
+        assertEquals(10, stored.size());
+        assertTrue(stored.contains(file.toAbsolutePath() + "#doc3"), stored.toString());
+        assertTrue(sink.exists(stored.get(0)));
+    }
+
+    @Test
+    void testNdjson_KeepingTheExistingFileStartsTheNextPart(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("documents.ndjson.gz");
+        try (NdjsonOutputSink first = new NdjsonOutputSink(file, 10, false)) {
+            first.write("a", document("a"), location -> { });
+        }
+
+        try (NdjsonOutputSink resumed = new NdjsonOutputSink(file, 10, true)) {
+            resumed.write("b", document("b"), location -> { });
+            assertEquals(tempDir.resolve("documents.1.ndjson.gz").toAbsolutePath(), resumed.getFile());
+        }
+
+        assertEquals(List.of("{\"id\":\"a\"}"), readLines(file));
+        assertEquals(List.of("{\"id\":\"b\"}"), readLines(tempDir.resolve("documents.1.ndjson.gz")));
+    }
+
+    @Test
+    void testS3_UploadsEachBatchUnderThePrefixAndLeavesFailedDocumentsUnreported() throws IOException {
+        // --- ARRANGE ---
+        S3OutputSink sink = new S3OutputSink(mockS3Client, "bucket", "exports/", 3, true, null);
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        when(mockS3Client.putObject(argThat((PutObjectRequest request) -> request != null && request.key().equals("exports/broken.json")), any(RequestBody.class)))
+            .thenThrow(S3Exception.builder().statusCode(500).message("boom").build());
+        List<String> stored = new ArrayList<>();
+
+        // --- ACT ---
+        sink.write("a", document("a"), stored::add);
+        sink.write("broken", document("broken"), stored::add);
+        List<String> storedBeforeBatchIsFull = new ArrayList<>(stored);
+        sink.write("c", document("c"), stored::add);
+        sink.write("d", document("d"), stored::add);
+        sink.close();
+
+        // --- ASSERT ---
+        assertTrue(storedBeforeBatchIsFull.isEmpty());
+        assertEquals(List.of("s3://bucket/exports/a.json", "s3://bucket/exports/c.json", "s3://bucket/exports/d.json"),
+            stored.stream().sorted().collect(Collectors.toList()));
+        ArgumentCaptor<PutObjectRequest> requests = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3Client, times(4)).putObject(requests.capture(), any(RequestBody.class));
+        assertTrue(requests.getAllValues().stream().allMatch(request -> request.contentType().startsWith("application/json")));
+    }
+
+    @Test
+    void testS3_TellsListenersOfFailedDocumentsAndSurvivesAThrowingListener() throws IOException {
+        // --- ARRANGE ---
+        S3OutputSink sink = new S3OutputSink(mockS3Client, "bucket", "exports/", 3, false, null);
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("etag").build());
+        when(mockS3Client.putObject(argThat((PutObjectRequest request) -> request != null && request.key().equals("exports/broken.json")), any(RequestBody.class)))
+            .thenThrow(S3Exception.builder().statusCode(500).message("boom").build());
+        List<String> stored = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+
+        // --- ACT ---
+        sink.write("a", document("a"), location -> {
+            throw new IllegalStateException("journal unavailable");
+        });
+        sink.write("broken", document("broken"), new OutputSink.Listener() {
+            @Override
+            public void onStored(String location) {
+                stored.add(location);
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                failed.add(error.getMessage());
+            }
+        });
+        sink.write("c", document("c"), stored::add);
+        sink.close();
+
+        // --- ASSERT ---
+        assertEquals(List.of("s3://bucket/exports/c.json"), stored);
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0).contains("boom"), failed.toString());
+    }
+
+    @Test
+    void testFile_WritesPrettyJsonPerDocument(@TempDir Path tempDir) throws IOException {
+        List<String> stored = new ArrayList<>();
+        try (FileOutputSink sink = new FileOutputSink(tempDir.resolve("json"), true)) {
+            long bytes = sink.write("doc", document("doc"), stored::add);
+
+            Path written = tempDir.resolve("json/doc.json");
+            assertEquals(List.of(written.toString()), stored);
+            assertEquals(Files.size(written), bytes);
+            assertEquals("{\n  \"id\": \"doc\"\n}", Files.readString(written));
+            assertTrue(sink.exists(written.toString()));
+            assertFalse(sink.exists(tempDir.resolve("json/other.json").toString()));
+        }
+    }
+
+    /** Decompresses as much as is there: a file still being written has no gzip trailer yet. */
+    private static List<String> readLines(Path file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                content.write(buffer, 0, read);
+            }
+        } catch (EOFException e) {
+            // Reached the end of the last complete batch
+        }
+        String text = content.toString(StandardCharsets.UTF_8);
+        return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+    }
+}
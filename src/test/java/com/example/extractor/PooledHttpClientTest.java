@@ -0,0 +1,183 @@
+package com.example.extractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.extractor.AdaptiveRateLimiter.FailureKind;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.Docs;
+import com.google.api.services.docs.v1.model.Document;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class PooledHttpClientTest {
+
+    private static final byte[] IMAGE = "not really a JPEG".getBytes(StandardCharsets.UTF_8);
+
+    private final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private HttpServer server;
+    private PooledHttpClient http;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plain.jpg", exchange -> respond(exchange, 200, IMAGE, false));
+        server.createContext("/gzipped.jpg", exchange -> respond(exchange, 200, IMAGE, true));
+        server.createContext("/missing.jpg", exchange -> respond(exchange, 404, new byte[0], false));
+        server.createContext("/busy.jpg", exchange -> {
+            exchange.getResponseHeaders().set("Retry-After", "7");
+            respond(exchange, 503, new byte[0], false);
+        });
+        // Sends the headers and half the body, then goes quiet until the test is over
+        server.createContext("/stalled.jpg", exchange -> {
+            exchange.sendResponseHeaders(200, IMAGE.length);
+            exchange.getResponseBody().write(IMAGE, 0, IMAGE.length / 2);
+            exchange.getResponseBody().flush();
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/v1/documents/", exchange -> {
+            String docId = exchange.getRequestURI().getPath().substring("/v1/documents/".length());
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            byte[] body = ("{\"documentId\": \"" + docId + "\", \"title\": \"Über\"}").getBytes(StandardCharsets.UTF_8);
+            respond(exchange, 200, body, true);
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        http = new PooledHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stopServer() {
+        stalled.countDown();
+        http.close();
+        server.stop(0);
+    }
+
+    @Test
+    void testOpen_DecodesGzipAndKeepsTheLengthOfPlainBodies() throws IOException {
+        // --- ACT ---
+        PooledHttpClient.Download plain = http.open(URI.create(baseUrl + "/plain.jpg"));
+        byte[] plainBytes = readAll(plain);
+        PooledHttpClient.Download gzipped = http.open(URI.create(baseUrl + "/gzipped.jpg"));
+        byte[] gzippedBytes = readAll(gzipped);
+
+        // --- ASSERT ---
+        assertEquals(IMAGE.length, plain.getContentLength());
+        assertArrayEquals(IMAGE, plainBytes);
+        // The compressed length says nothing about the decoded one
+        assertEquals(-1, gzipped.getContentLength());
+        assertArrayEquals(IMAGE, gzippedBytes);
+        assertTrue(acceptEncodings.stream().allMatch("gzip"::equals), acceptEncodings.toString());
+    }
+
+    @Test
+    void testOpen_FailuresAreClassifiedByStatus() {
+        // --- ACT ---
+        IOException missing = assertThrows(FileNotFoundException.class, () -> http.open(URI.create(baseUrl + "/missing.jpg")));
+        PooledHttpClient.StatusException busy = assertThrows(PooledHttpClient.StatusException.class,
+            () -> http.open(URI.create(baseUrl + "/busy.jpg")));
+
+        // --- ASSERT ---
+        assertEquals(FailureKind.FATAL, ApiRetryClassifiers.classifyS3(missing).kind);
+        assertEquals(503, busy.getStatusCode());
+        AdaptiveRateLimiter.Failure failure = ApiRetryClassifiers.classifyS3(busy);
+        assertEquals(FailureKind.TRANSIENT, failure.kind);
+        assertEquals(Duration.ofSeconds(7), failure.retryAfter);
+    }
+
+    @Test
+    void testOpen_BodyThatStopsArrivingTimesOut() throws IOException {
+        // --- ARRANGE ---
+        PooledHttpClient impatient = new PooledHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+        // --- ACT ---
+        try (impatient; PooledHttpClient.Download download = impatient.open(URI.create(baseUrl + "/stalled.jpg"))) {
+            long startNanos = System.nanoTime();
+            IOException timeout = assertThrows(IOException.class, () -> download.getBody().readAllBytes());
+
+            // --- ASSERT ---
+            // The headers came in time; it is the wait for the rest of the body that fails
+            assertTrue(timeout instanceof HttpTimeoutException || timeout.getCause() instanceof HttpTimeoutException, timeout.toString());
+            assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    void testGoogleTransport_CarriesDocsApiCalls() throws IOException {
+        // --- ARRANGE ---
+        int connectMillis = (int) http.getConnectTimeout().toMillis();
+        Docs docs = new Docs.Builder(http.newGoogleTransport(), GsonFactory.getDefaultInstance(), request -> {
+                request.setConnectTimeout(connectMillis);
+                request.setReadTimeout(5_000);
+            })
+            .setRootUrl(baseUrl + "/")
+            .setApplicationName("test")
+            .build();
+        // Left to the library's default connect timeout, which the shared client cannot apply
+        Docs unconfigured = new Docs.Builder(http.newGoogleTransport(), GsonFactory.getDefaultInstance(), null)
+            .setRootUrl(baseUrl + "/")
+            .setApplicationName("test")
+            .build();
+
+        // --- ACT ---
+        Document document = docs.documents().get("doc_id_123").execute();
+
+        // --- ASSERT ---
+        // The client library asked for gzip and decoded the response itself
+        assertEquals("doc_id_123", document.getDocumentId());
+        assertEquals("Über", document.getTitle());
+        assertEquals(List.of("gzip"), acceptEncodings);
+        assertThrows(IllegalArgumentException.class, () -> unconfigured.documents().get("doc_id_123").execute());
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body, boolean gzip) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        acceptEncodings.add(acceptEncoding != null ? acceptEncoding : "");
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static byte[] readAll(PooledHttpClient.Download download) throws IOException {
+        try (download; InputStream body = download.getBody()) {
+            return body.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.extractor;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.docs.v1.Docs;
+import com.sun.net.httpserver.HttpServer;
+
+class RevisionWatcherTest {
+
+    // What the stand-in Docs endpoint reports as each document's current revision
+    private final Map<String, String> revisions = new ConcurrentHashMap<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private HttpServer standIn;
+    private Docs docs;
+
+    @BeforeEach
+    void startStandIn() throws Exception {
+        standIn = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        standIn.createContext("/v1/documents/", exchange -> {
+            String docId = exchange.getRequestURI().getPath().substring("/v1/documents/".length());
+            queries.add(exchange.getRequestURI().getQuery());
+            String revisionId = revisions.get(docId);
+            byte[] body = (revisionId != null)
+                ? ("{\"revisionId\": \"" + revisionId + "\"}").getBytes(StandardCharsets.UTF_8)
+                : "{\"error\": {\"code\": 404, \"message\": \"Requested entity was not found.\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(revisionId != null ? 200 : 404, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        standIn.start();
+        docs = new Docs.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+            .setRootUrl("http://127.0.0.1:" + standIn.getAddress().getPort() + "/")
+            .setApplicationName("test")
+            .build();
+    }
+
+    @AfterEach
+    void stopStandIn() {
+        standIn.stop(0);
+    }
+
+    @Test
+    void testFindChanged_OnlyReportsDocumentsWhoseRevisionMoved(@TempDir Path dir) throws Exception {
+        // --- ARRANGE ---
+        revisions.put("doc_a", "r1");
+        revisions.put("doc_b", "r1");
+        RevisionWatcher.RevisionSource source = RevisionWatcher.fromDocsApi(() -> docs);
+        RevisionWatcher watcher = RevisionWatcher.open(dir.resolve("watch-state.json"), source, 2);
+
+        // --- ACT & ASSERT ---
+        // Nothing was extracted yet; a document the endpoint does not know is skipped until it appears
+        assertEquals(List.of("doc_a", "doc_b"), watcher.findChanged(List.of("doc_a", "doc_b", "doc_missing")));
+        watcher.recordProcessed("doc_a", "r1");
+        watcher.recordProcessed("doc_b", "r1");
+        assertEquals(List.of(), watcher.findChanged(List.of("doc_a", "doc_b", "doc_missing")));
+
+        revisions.put("doc_b", "r2");
+        revisions.put("doc_missing", "r1");
+        assertEquals(List.of("doc_b", "doc_missing"), watcher.findChanged(List.of("doc_a", "doc_b", "doc_missing")));
+
+        // Every poll only asked for the revision
+        assertTrue(queries.stream().allMatch(query -> query.contains("fields=revisionId")), queries.toString());
+    }
+
+    @Test
+    void testSave_StateSurvivesARestart(@TempDir Path dir) throws Exception {
+        // --- ARRANGE ---
+        revisions.put("doc_a", "r2");
+        revisions.put("doc_b", "r1");
+        Path stateFile = dir.resolve("watch-state.json");
+        RevisionWatcher first = RevisionWatcher.open(stateFile, RevisionWatcher.fromDocsApi(() -> docs), 1);
+        first.recordProcessed("doc_a", "r1");
+        first.recordProcessed("doc_b", "r1");
+
+        // --- ACT ---
+        first.save();
+        RevisionWatcher restarted = RevisionWatcher.open(stateFile, RevisionWatcher.fromDocsApi(() -> docs), 1);
+
+        // --- ASSERT ---
+        assertEquals("r1", restarted.getProcessedRevision("doc_a"));
+        assertEquals(List.of("doc_a"), restarted.findChanged(List.of("doc_a", "doc_b")));
+    }
+}
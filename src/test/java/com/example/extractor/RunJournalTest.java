@@ -0,0 +1,111 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RunJournalTest {
+
+    @Test
+    void testResume_RestoresProgressOfPreviousRun(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path journalPath = tempDir.resolve("journal.jsonl");
+        try (RunJournal journal = RunJournal.open(journalPath, RunJournal.Mode.NEW)) {
+            journal.recordOutput("doc_a", "rev1", "doc_a.json");
+            journal.recordImage("doc_a", "rev1", ImageTransferResult.success(1, "obj", "slug/doc_a/image_001.jpg", 10, 1));
+            journal.recordComplete("doc_a", "rev1");
+            journal.recordOutput("doc_b", "rev7", "doc_b.json");
+            journal.recordImage("doc_b", "rev7", ImageTransferResult.success(1, "obj", "slug/doc_b/image_001.jpg", 10, 1));
+        }
+        // Simulate a crash in the middle of writing the next entry
+        Files.writeString(journalPath, "{\"type\":\"image\",\"docId\":\"doc_b\",\"rev", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // --- ACT ---
+        try (RunJournal resumed = RunJournal.open(journalPath, RunJournal.Mode.RESUME)) {
+
+            // --- ASSERT ---
+            assertTrue(resumed.isComplete("doc_a"));
+            assertFalse(resumed.isComplete("doc_b"));
+            assertEquals("doc_b.json", resumed.getOutputPath("doc_b", "rev7"));
+            assertEquals("slug/doc_b/image_001.jpg", resumed.findImage("doc_b", "rev7", "slug/doc_b/image_001").getS3Key());
+            assertNull(resumed.findImage("doc_b", "rev7", "slug/doc_b/image_002"));
+            // Progress recorded for another revision does not count
+            assertNull(resumed.getOutputPath("doc_b", "rev8"));
+            assertNull(resumed.findImage("doc_b", "rev8", "slug/doc_b/image_001"));
+            resumed.recordComplete("doc_b", "rev7");
+        }
+        // The entry appended after the torn line must still be readable
+        try (RunJournal again = RunJournal.open(journalPath, RunJournal.Mode.RESUME)) {
+            assertTrue(again.isComplete("doc_b"));
+        }
+    }
+
+    @Test
+    void testFindImage_RestoresDetectedFormatAndVariants(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path journalPath = tempDir.resolve("journal.jsonl");
+        ImageTransferResult result = ImageTransferResult.success(1, "obj", "slug/doc_a/image_001.png", 4096, 5)
+            .withRendition("image/png", List.of(new ImageTransferResult.Variant("slug/doc_a/image_001_w320.png", 320, 240)));
+        try (RunJournal journal = RunJournal.open(journalPath, RunJournal.Mode.NEW)) {
+            journal.recordImage("doc_a", "rev1", result);
+        }
+        // An entry as written before formats were detected
+        Files.writeString(journalPath, "{\"type\":\"image\",\"docId\":\"doc_a\",\"revisionId\":\"rev1\",\"s3Key\":\"slug/doc_a/image_002.jpg\"}\n",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // --- ACT ---
+        try (RunJournal resumed = RunJournal.open(journalPath, RunJournal.Mode.RESUME)) {
+            RunJournal.UploadedImage png = resumed.findImage("doc_a", "rev1", "slug/doc_a/image_001");
+            RunJournal.UploadedImage legacy = resumed.findImage("doc_a", "rev1", "slug/doc_a/image_002");
+
+            // --- ASSERT ---
+            assertEquals("slug/doc_a/image_001.png", png.getS3Key());
+            assertEquals("image/png", png.getContentType());
+            assertEquals(1, png.getVariants().size());
+            assertEquals("slug/doc_a/image_001_w320.png", png.getVariants().get(0).getS3Key());
+            assertEquals(240, png.getVariants().get(0).getHeight());
+            // Entries written before formats were detected have neither
+            assertNull(legacy.getContentType());
+            assertEquals("slug/doc_a/image_002.jpg", legacy.getS3Key());
+            assertTrue(legacy.getVariants().isEmpty());
+            assertNull(resumed.findImage("doc_a", "rev1", "slug/doc_a/image_003"));
+        }
+    }
+
+    @Test
+    void testOpen_NewRefusesAnEarlierRunThatOverwriteStartsOver(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        Path journalPath = tempDir.resolve("journal.jsonl");
+        try (RunJournal journal = RunJournal.open(journalPath, RunJournal.Mode.NEW)) {
+            journal.recordComplete("doc_a", "rev1");
+        }
+        long recorded = Files.size(journalPath);
+
+        // --- ACT ---
+        assertThrows(FileAlreadyExistsException.class, () -> RunJournal.open(journalPath, RunJournal.Mode.NEW));
+        long afterRefusal = Files.size(journalPath);
+        try (RunJournal journal = RunJournal.open(journalPath, RunJournal.Mode.OVERWRITE)) {
+
+            // --- ASSERT ---
+            assertFalse(journal.isComplete("doc_a"));
+        }
+        assertEquals(recorded, afterRefusal);
+        assertEquals(0, Files.size(journalPath));
+        // An empty journal holds nothing to lose
+        try (RunJournal journal = RunJournal.open(journalPath, RunJournal.Mode.NEW)) {
+            assertFalse(journal.isComplete("doc_a"));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+class RunMetricsTest {
+
+    @Test
+    void testHistogram_PercentilesWithinBucketErrorAndMergeable() {
+        // --- ARRANGE ---
+        // 1..1000 ms split over two histograms, as two workers would record them
+        LatencyHistogram odd = new LatencyHistogram();
+        LatencyHistogram even = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            (millis % 2 == 0 ? even : odd).record(millis * 1_000_000L);
+        }
+
+        // --- ACT ---
+        odd.merge(even);
+
+        // --- ASSERT ---
+        assertEquals(1000, odd.getCount());
+        assertEquals(500_500_000_000L, odd.getSumNanos());
+        assertEquals(1_000_000_000L, odd.getMaxNanos());
+        for (double quantile : new double[] {0.5, 0.95, 0.99}) {
+            double exact = quantile * 1000 * 1_000_000;
+            double reported = odd.getValueAtQuantile(quantile);
+            assertTrue(reported >= exact && reported <= exact * 1.125, quantile + " reported as " + reported);
+        }
+        assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+    }
+
+    @Test
+    void testBuckets_EveryValueFallsBelowItsBucketsUpperBound() {
+        for (long value : List.of(0L, 7L, 8L, 9L, 15L, 16L, 1_000L, 123_456_789L, Long.MAX_VALUE)) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(bucket), "value " + value);
+            assertTrue(bucket == 0 || value > LatencyHistogram.bucketUpperBound(bucket - 1), "value " + value);
+        }
+    }
+
+    @Test
+    void testExport_WritesJsonSummaryAndPrometheusText(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        RunMetrics metrics = new RunMetrics();
+        metrics.timer("stage.fetch").record(20_000_000L);
+        metrics.timer("stage.fetch").record(40_000_000L);
+        metrics.add("image.bytes", 4096);
+        metrics.increment("images.uploaded");
+        AtomicLong retries = new AtomicLong(3);
+        metrics.registerCounter("docs_api.retries", retries::get);
+        RunMetrics otherWorker = new RunMetrics();
+        otherWorker.increment("images.uploaded");
+
+        // --- ACT ---
+        metrics.merge(otherWorker);
+        retries.set(5);
+        metrics.export(tempDir);
+
+        // --- ASSERT ---
+        JsonObject summary = new Gson().fromJson(Files.readString(tempDir.resolve(RunMetrics.SUMMARY_FILE)), JsonObject.class);
+        JsonObject fetch = summary.getAsJsonObject("timers").getAsJsonObject("stage.fetch");
+        assertEquals(2, fetch.get("count").getAsInt());
+        assertEquals(60.0, fetch.get("totalMillis").getAsDouble());
+        assertEquals(30.0, fetch.get("meanMillis").getAsDouble());
+        assertEquals(40.0, fetch.get("p99Millis").getAsDouble());
+        JsonObject counters = summary.getAsJsonObject("counters");
+        assertEquals(4096, counters.get("image.bytes").getAsLong());
+        assertEquals(2, counters.get("images.uploaded").getAsLong());
+        assertEquals(5, counters.get("docs_api.retries").getAsLong());
+
+        String prometheus = Files.readString(tempDir.resolve(RunMetrics.PROMETHEUS_FILE), StandardCharsets.UTF_8);
+        assertTrue(prometheus.contains("# TYPE extractor_stage_fetch_seconds summary\n"), prometheus);
+        assertTrue(prometheus.contains("extractor_stage_fetch_seconds{quantile=\"0.99\"} 0.040000\n"), prometheus);
+        assertTrue(prometheus.contains("extractor_stage_fetch_seconds_count 2\n"), prometheus);
+        assertTrue(prometheus.contains("extractor_image_bytes_total 4096\n"), prometheus);
+        assertTrue(prometheus.contains("extractor_docs_api_retries_total 5\n"), prometheus);
+    }
+
+    @Test
+    void testCombine_SummariesOfSeveralNodesAddUpLikeOneRun(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        RunMetrics nodeA = new RunMetrics();
+        RunMetrics nodeB = new RunMetrics();
+        RunMetrics whole = new RunMetrics();
+        for (int millis = 1; millis <= 200; millis++) {
+            (millis % 3 == 0 ? nodeB : nodeA).timer("stage.fetch").record(millis * 1_000_000L);
+            whole.timer("stage.fetch").record(millis * 1_000_000L);
+        }
+        nodeA.addNode("node-a");
+        nodeA.add("documents.succeeded", 7);
+        nodeB.addNode("node-b");
+        nodeB.add("documents.succeeded", 5);
+        nodeA.export(tempDir.resolve("a"));
+        nodeB.export(tempDir.resolve("b"));
+
+        // --- ACT ---
+        RunMetrics merged = RunMetrics.combine(List.of(
+            RunMetrics.readSummary(tempDir.resolve("a")),
+            RunMetrics.readSummary(tempDir.resolve("b").resolve(RunMetrics.SUMMARY_FILE))));
+
+        // --- ASSERT ---
+        // The buckets travel with the summary, so the merged percentiles are those of the whole run
+        LatencyHistogram fetch = merged.timer("stage.fetch");
+        assertEquals(200, fetch.getCount());
+        assertEquals(whole.timer("stage.fetch").getSumNanos(), fetch.getSumNanos());
+        assertEquals(200_000_000L, fetch.getMaxNanos());
+        for (double quantile : new double[] {0.5, 0.95, 0.99}) {
+            assertEquals(whole.timer("stage.fetch").getValueAtQuantile(quantile), fetch.getValueAtQuantile(quantile));
+        }
+        assertEquals(12, merged.getCounter("documents.succeeded"));
+        assertEquals(List.of("node-a", "node-b"), List.copyOf(merged.getNodes()));
+        assertTrue(!merged.getStartedAt().isAfter(nodeB.getStartedAt()));
+    }
+
+    @Test
+    void testPipeline_TimesEveryStageAndCountsOutcomes() throws Exception {
+        // --- ARRANGE ---
+        RunMetrics metrics = new RunMetrics();
+        DocumentPipeline pipeline = new DocumentPipeline(4, metrics)
+            .addStage("fetch", 2, job -> { })
+            .addStage("extract", 1, job -> {
+                if (job.getDocId().equals("bad")) throw new IOException("broken");
+            });
+
+        // --- ACT ---
+        pipeline.run(List.of("a", "bad", "c"));
+        StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+
+        // --- ASSERT ---
+        assertEquals(3, metrics.timer("stage.fetch").getCount());
+        assertEquals(3, metrics.timer("stage.extract").getCount());
+        assertEquals(2, metrics.getCounter("documents.succeeded"));
+        assertEquals(1, metrics.getCounter("documents.failed.extract"));
+        assertTrue(json.toString().contains("\"documents.failed.extract\": 1"), json.toString());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.extractor;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sun.net.httpserver.HttpServer;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class S3AsyncUploaderTest {
+
+    private static final byte[] IMAGE = pngBytes(800, 600);
+
+    @Mock
+    private S3AsyncClient mockS3AsyncClient;
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        // Stands in for the Google content URIs
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image", exchange -> {
+            exchange.sendResponseHeaders(200, IMAGE.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(IMAGE);
+            }
+        });
+        server.createContext("/truncated", exchange -> {
+            // A PNG cut short: its header names the format, but ImageIO fails to decode the pixels
+            exchange.sendResponseHeaders(200, 100);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(IMAGE, 0, 100);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testTransferImage_DownloadsThenUploadsUnderTheDetectedFormat() {
+        // --- ARRANGE ---
+        S3AsyncUploader uploader = new S3AsyncUploader(mockS3AsyncClient, "bucket");
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<AsyncRequestBody> body = ArgumentCaptor.forClass(AsyncRequestBody.class);
+        when(mockS3AsyncClient.putObject(request.capture(), body.capture()))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("etag").build()));
+
+        // --- ACT ---
+        S3AsyncUploader.StoredImage stored = uploader.transferImage("topic/doc/image_001", uri("/image"), null, 150).join();
+
+        // --- ASSERT ---
+        assertEquals(IMAGE.length, stored.getBytes());
+        assertEquals(ImageFormat.PNG, stored.getFormat());
+        assertEquals("topic/doc/image_001.png", stored.getKey());
+        assertTrue(stored.getVariants().isEmpty());
+        assertEquals("topic/doc/image_001.png", request.getValue().key());
+        assertEquals("image/png", request.getValue().contentType());
+        assertEquals(IMAGE.length, request.getValue().contentLength());
+        assertEquals(IMAGE.length, body.getValue().contentLength().orElse(-1L));
+    }
+
+    @Test
+    void testTransferImage_UploadsVariantsNextToTheOriginal() {
+        // --- ARRANGE ---
+        S3AsyncUploader uploader = new S3AsyncUploader(mockS3AsyncClient, "bucket");
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(mockS3AsyncClient.putObject(request.capture(), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("etag").build()));
+
+        // --- ACT ---
+        // Displayed 150pt (200px) wide: 1x and 2x are smaller than the 800px original
+        S3AsyncUploader.StoredImage stored = uploader.transferImage("topic/doc/image_001", uri("/image"), new ImageVariants(1, 2), 150).join();
+
+        // --- ASSERT ---
+        assertEquals(2, stored.getVariants().size());
+        assertEquals("topic/doc/image_001_w200.png", stored.getVariants().get(0).getS3Key());
+        assertEquals(150, stored.getVariants().get(0).getHeight());
+        assertEquals(400, stored.getVariants().get(1).getWidth());
+        assertEquals(3, request.getAllValues().size());
+        assertTrue(request.getAllValues().stream().allMatch(put -> "image/png".equals(put.contentType())));
+    }
+
+    @Test
+    void testTransferImage_ImageWhoseVariantsCannotBeMadeKeepsTheOriginal() {
+        // --- ARRANGE ---
+        S3AsyncUploader uploader = new S3AsyncUploader(mockS3AsyncClient, "bucket");
+        RunMetrics metrics = new RunMetrics();
+        uploader.enableMetrics(metrics);
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("etag").build()));
+
+        // --- ACT ---
+        S3AsyncUploader.StoredImage stored = uploader.transferImage("topic/doc/image_001", uri("/truncated"), new ImageVariants(1, 2), 150).join();
+
+        // --- ASSERT ---
+        assertEquals("topic/doc/image_001.png", stored.getKey());
+        assertEquals(100, stored.getBytes());
+        assertTrue(stored.getVariants().isEmpty());
+        assertEquals(1, metrics.getCounter("image.variants.failed"));
+        verify(mockS3AsyncClient, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    void testTransferImage_FailedDownloadCompletesExceptionallyWithoutUploading() {
+        // --- ARRANGE ---
+        S3AsyncUploader uploader = new S3AsyncUploader(mockS3AsyncClient, "bucket");
+
+        // --- ACT ---
+        CompletionException failure = assertThrows(CompletionException.class,
+            () -> uploader.transferImage("topic/doc/image_001", uri("/missing"), null, 0).join());
+
+        // --- ASSERT ---
+        assertInstanceOf(IOException.class, failure.getCause());
+        assertTrue(failure.getCause().getMessage().startsWith("HTTP 404"), failure.getCause().getMessage());
+        verify(mockS3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    private static byte[] pngBytes(int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
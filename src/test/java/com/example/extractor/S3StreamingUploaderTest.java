@@ -0,0 +1,150 @@
+package com.example.extractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@ExtendWith(MockitoExtension.class)
+class S3StreamingUploaderTest {
+
+    private static final String BUCKET_NAME = "test-bucket";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    @Mock
+    private S3Client mockS3Client;
+
+    @Captor
+    private ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor;
+
+    @Captor
+    private ArgumentCaptor<CompleteMultipartUploadRequest> completeRequestCaptor;
+
+    private S3StreamingUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        uploader = new S3StreamingUploader(mockS3Client, BUCKET_NAME, PART_SIZE, PART_SIZE);
+    }
+
+    @Test
+    void testUpload_KnownSmallLengthUsesSinglePut() throws IOException {
+        stubPutObject();
+        S3StreamingUploader.UploadedObject uploaded = uploader.upload("a/b/image_001.jpg", "image/jpeg", new ByteArrayInputStream(new byte[1000]), 1000);
+
+        assertEquals(1000, uploaded.getBytes());
+        assertEquals("put-etag", uploaded.getETag());
+        verify(mockS3Client).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        assertEquals(1000L, putObjectRequestCaptor.getValue().contentLength());
+        verify(mockS3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUpload_UnknownSmallLengthUsesSinglePut() throws IOException {
+        stubPutObject();
+        S3StreamingUploader.UploadedObject uploaded = uploader.upload("key", "image/png", new ByteArrayInputStream(new byte[4096]), -1);
+
+        assertEquals(4096, uploaded.getBytes());
+        verify(mockS3Client).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        assertEquals(4096L, putObjectRequestCaptor.getValue().contentLength());
+    }
+
+    @Test
+    void testUpload_UnknownLengthBeyondTheInitialBufferStaysIntact() throws IOException {
+        stubPutObject();
+        byte[] content = new byte[S3StreamingUploader.INITIAL_BUFFER_SIZE * 5 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        // Hands out a few bytes per read, as a decompressing stream does
+        InputStream in = new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+
+        S3StreamingUploader.UploadedObject uploaded = uploader.upload("key", "image/png", in, -1);
+
+        assertEquals(content.length, uploaded.getBytes());
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3Client).putObject(putObjectRequestCaptor.capture(), body.capture());
+        assertEquals((long) content.length, putObjectRequestCaptor.getValue().contentLength());
+        try (InputStream sent = body.getValue().contentStreamProvider().newStream()) {
+            assertArrayEquals(content, sent.readAllBytes());
+        }
+        verify(mockS3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUpload_LargeStreamUsesMultipart() throws IOException {
+        stubMultipartUpload();
+        int size = PART_SIZE * 2 + 123;
+
+        S3StreamingUploader.UploadedObject uploaded = uploader.upload("key", "image/png", new ByteArrayInputStream(new byte[size]), size);
+
+        assertEquals(size, uploaded.getBytes());
+        assertEquals("multipart-etag", uploaded.getETag());
+        verify(mockS3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3Client).completeMultipartUpload(completeRequestCaptor.capture());
+        List<Integer> partNumbers = completeRequestCaptor.getValue().multipartUpload().parts().stream()
+            .map(part -> part.partNumber()).toList();
+        assertEquals(List.of(1, 2, 3), partNumbers);
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testUpload_FailedPartAbortsMultipartUpload() {
+        when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+            .thenThrow(S3Exception.builder().message("SlowDown").build());
+        InputStream in = new ByteArrayInputStream(new byte[PART_SIZE + 1]);
+
+        assertThrows(S3Exception.class, () -> uploader.upload("key", "image/png", in, -1));
+        verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    private void stubPutObject() {
+        when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().eTag("put-etag").build());
+    }
+
+    private void stubMultipartUpload() {
+        when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+            .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+        when(mockS3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+            .thenReturn(CompleteMultipartUploadResponse.builder().eTag("multipart-etag").build());
+    }
+}
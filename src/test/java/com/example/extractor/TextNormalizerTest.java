@@ -0,0 +1,56 @@
+package com.example.extractor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.services.docs.v1.model.Paragraph;
+import com.google.api.services.docs.v1.model.ParagraphElement;
+import com.google.api.services.docs.v1.model.TextRun;
+
+class TextNormalizerTest {
+
+    private static final List<String> SAMPLES = List.of(
+        "", " ", "\n", "\u000B\n\u000B", "  Introduction \n", "Ünïcödé Title - Completed",
+        "Intro: Part 1 - COMPLETED", "a\n\n\u000Bb\n", "\t tabs\tand  spaces \t", "ends - completed ");
+
+    @Test
+    void testSlugify_MatchesRegexVersion() {
+        for (String sample : SAMPLES) {
+            String lower = sample.toLowerCase();
+            if (lower.endsWith(" - completed")) lower = lower.substring(0, lower.length() - " - completed".length());
+            assertEquals(lower.replaceAll("[^a-z0-9]", ""), TextNormalizer.slugify(sample), sample);
+        }
+    }
+
+    @Test
+    void testParagraphTextAndLineBreaks_MatchRegexVersions() {
+        StringBuilder reused = new StringBuilder();
+        for (String sample : SAMPLES) {
+            // --- ARRANGE ---
+            Paragraph paragraph = new Paragraph().setElements(List.of(
+                new ParagraphElement().setTextRun(new TextRun().setContent(sample)),
+                new ParagraphElement().setTextRun(new TextRun().setContent(sample))));
+            String raw = sample + sample;
+
+            // --- ACT ---
+            String text = TextNormalizer.trimmedString(TextNormalizer.appendParagraphText(paragraph, reused));
+
+            // --- ASSERT ---
+            assertEquals(raw.replaceAll("[\\n\\u000B]", " ").trim(), text, sample);
+            assertEquals(raw.replaceAll("[\\n\\u000B]+", "\n").trim(), TextNormalizer.normalizeLineBreaks(raw), sample);
+        }
+        assertTrue(TextNormalizer.trimmedEqualsIgnoreCase(" INTRODUCTION \u000B", "Introduction"));
+        assertFalse(TextNormalizer.trimmedEqualsIgnoreCase("Introductions", "Introduction"));
+    }
+
+    @Test
+    void testImageName_MatchesFormat() {
+        for (int i : new int[] {1, 9, 10, 99, 100, 1234}) {
+            assertEquals(String.format("image_%03d", i), TextNormalizer.imageName(i));
+        }
+    }
+}
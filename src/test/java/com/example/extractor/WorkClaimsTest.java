@@ -0,0 +1,149 @@
+package com.example.extractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonParser;
+
+class WorkClaimsTest {
+
+    private static final List<String> DOC_IDS = List.of("doc_1", "doc_2", "doc_3", "doc_4", "doc_5");
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final RunMetrics metrics = new RunMetrics();
+
+    @Test
+    void testClaim_OneNodeWinsAndOthersTakeOverOnceTheLeaseExpires(@TempDir Path tempDir) throws IOException {
+        // --- ARRANGE ---
+        DirectoryLeaseStore store = new DirectoryLeaseStore(tempDir);
+        try (WorkClaims slow = claims(store, "node-a", Duration.ofMinutes(5));
+             WorkClaims idle = claims(store, "node-b", Duration.ofMinutes(5))) {
+
+            // --- ACT ---
+            WorkClaims.Claim first = slow.claim("doc_1");
+            WorkClaims.Claim contended = idle.claim("doc_1");
+            slow.claim("doc_2");
+            slow.complete("doc_2");
+            // node-a stalls on doc_1 past its lease
+            clock.addAndGet(Duration.ofMinutes(6).toMillis());
+            List<String> takenOver = new ArrayList<>();
+            idle.claiming(DOC_IDS).forEachRemaining(takenOver::add);
+
+            // --- ASSERT ---
+            assertEquals(WorkClaims.Claim.WON, first);
+            assertEquals(WorkClaims.Claim.HELD_ELSEWHERE, contended);
+            assertEquals(List.of("doc_1", "doc_3", "doc_4", "doc_5"), takenOver.stream().sorted().toList());
+            assertEquals(WorkClaims.Claim.DONE, idle.claim("doc_2"));
+            assertEquals(1, metrics.getCounter("claims.stolen"));
+            assertEquals(1, metrics.getCounter("claims.done_elsewhere"));
+            assertTrue(store.read("doc_1" + WorkClaims.LEASE_INFIX + 2).contains("\"node-b\""));
+        }
+    }
+
+    @Test
+    void testClaiming_WaitsForDocumentsHeldElsewhereUntilTheyAreDone(@TempDir Path tempDir) throws Exception {
+        // --- ARRANGE ---
+        DirectoryLeaseStore store = new DirectoryLeaseStore(tempDir);
+        try (WorkClaims busy = claims(store, "node-a", Duration.ofSeconds(1));
+             WorkClaims idle = claims(store, "node-b", Duration.ofSeconds(1))) {
+            busy.claim("doc_3");
+            busy.claim("doc_4");
+            busy.release("doc_4");
+            Thread finisher = Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(300);
+                    busy.complete("doc_3");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // --- ACT ---
+            List<String> claimed = new ArrayList<>();
+            idle.claiming(DOC_IDS).forEachRemaining(claimed::add);
+            finisher.join();
+
+            // --- ASSERT ---
+            // The released document is free right away; the held one ends up done by its holder
+            assertEquals(List.of("doc_1", "doc_2", "doc_4", "doc_5"), claimed.stream().sorted().toList());
+            assertEquals(WorkClaims.Claim.DONE, idle.claim("doc_3"));
+            assertEquals(1, metrics.getCounter("claims.held_elsewhere"));
+            assertNull(store.read("doc_3" + WorkClaims.LEASE_INFIX + 2));
+        }
+    }
+
+    @Test
+    void testRelease_IsNotUndoneByARenewalInFlight(@TempDir Path tempDir) throws Exception {
+        // --- ARRANGE ---
+        // The first renewal stalls in the store until the test lets it go on
+        DirectoryLeaseStore files = new DirectoryLeaseStore(tempDir);
+        CountDownLatch renewing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        LeaseStore store = new LeaseStore() {
+            @Override
+            public boolean create(String name, String content) throws IOException {
+                return files.create(name, content);
+            }
+
+            @Override
+            public void write(String name, String content) throws IOException {
+                if (expiresAt(content) != 0 && renewing.getCount() > 0) {
+                    renewing.countDown();
+                    try {
+                        proceed.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                files.write(name, content);
+            }
+
+            @Override
+            public String read(String name) throws IOException {
+                return files.read(name);
+            }
+        };
+        try (WorkClaims claims = claims(store, "node-a", Duration.ofMillis(300))) {
+            claims.claim("doc_1");
+            assertTrue(renewing.await(5, TimeUnit.SECONDS));
+
+            // --- ACT ---
+            Thread releaser = Thread.ofVirtual().start(() -> {
+                try {
+                    claims.release("doc_1");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Thread.sleep(100);
+            proceed.countDown();
+            releaser.join();
+            // Long enough for several more heartbeats
+            Thread.sleep(400);
+
+            // --- ASSERT ---
+            assertEquals(0, expiresAt(files.read("doc_1" + WorkClaims.LEASE_INFIX + 1)));
+        }
+    }
+
+    private static long expiresAt(String lease) {
+        return JsonParser.parseString(lease).getAsJsonObject().get("expiresAt").getAsLong();
+    }
+
+    private WorkClaims claims(LeaseStore store, String nodeId, Duration leaseTime) {
+        return new WorkClaims(store, nodeId, leaseTime, metrics, clock::get);
+    }
+}